@@ -0,0 +1,39 @@
+plugins {
+    id("java")
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+group = "org.killeroonie"
+version = "0.0.0-SNAPSHOT"
+
+repositories {
+    mavenCentral()
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_22
+    targetCompatibility = JavaVersion.VERSION_22
+}
+
+dependencies {
+    jmh(project(":"))
+    // for reading the corpus from the test fixtures
+    jmh("com.fasterxml.jackson.core:jackson-databind:2.15.2")
+}
+
+// The corpus is read from the main project's test fixtures, so they are added to the benchmark classpath
+sourceSets {
+    named("jmh") {
+        resources.srcDir(rootProject.file("src/test/resources"))
+    }
+}
+
+// Run with `./gradlew :benchmarks:jmh`. Select benchmarks with a regex, e.g. `-PjmhIncludes=LexerBenchmark.tokenize$`
+jmh {
+    jmhVersion.set("1.37")
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+    // reports gc.alloc.rate.norm, the bytes allocated per operation
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    jvmArgsAppend.addAll("--add-modules", "jdk.incubator.vector")
+}
@@ -0,0 +1,117 @@
+package org.killeroonie.jsonpath.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The JSONPath strings the benchmarks scan.
+ */
+public enum Corpus {
+
+    /** The selectors of the JSONPath Compliance Test Suite. */
+    CTS {
+        @Override
+        List<String> paths() {
+            return readPaths("/org/killeroonie/jsonpath/cts.json", "selector");
+        }
+    },
+
+    /** The paths of the python-jsonpath lexer tests. */
+    TEST_LEX {
+        @Override
+        List<String> paths() {
+            return readPaths("/org/killeroonie/jsonpath/lexer/test_lex.json", "path");
+        }
+    },
+
+    /** Generated paths of a few hundred to a few thousand chars, with long member chains, filters and literals. */
+    LONG {
+        @Override
+        List<String> paths() {
+            return syntheticPaths();
+        }
+    };
+
+    // seeded, so every run and every fork scans the same paths
+    private static final long SEED = 9535;
+
+    /**
+     * @return the paths of this corpus, in a stable order.
+     */
+    abstract List<String> paths();
+
+    private static List<String> readPaths(String resource, String field) {
+        try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Corpus resource not found: " + resource);
+            }
+            final List<String> paths = new ArrayList<>();
+            for (JsonNode test : new ObjectMapper().readTree(in).get("tests")) {
+                final JsonNode path = test.get(field);
+                if (path != null && path.isTextual()) {
+                    paths.add(path.asText());
+                }
+            }
+            return paths;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> syntheticPaths() {
+        final Random random = new Random(SEED);
+        final List<String> paths = new ArrayList<>();
+
+        // a long chain of member names
+        final StringBuilder members = new StringBuilder("$");
+        for (int i = 0; i < 200; i++) {
+            members.append('.').append("member_").append(i);
+        }
+        paths.add(members.toString());
+
+        // a filter with many comparisons, joined by logical operators
+        final StringBuilder filter = new StringBuilder("$.store.book[?");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                filter.append(random.nextBoolean() ? " && " : " || ");
+            }
+            filter.append("@.field").append(i).append(switch (random.nextInt(4)) {
+                case 0 -> " == 'value " + i + "'";
+                case 1 -> " > " + random.nextInt(10_000);
+                case 2 -> " <= " + random.nextDouble();
+                default -> " != \"other\"";
+            });
+        }
+        paths.add(filter.append(']').toString());
+
+        // multi-kilobyte string literals, with escaped quotes
+        paths.add("$[?@.description == '" + "lorem ipsum dolor \\'sit\\' amet ".repeat(150) + "']");
+        paths.add("$[\"" + "x".repeat(8_000) + "\"]");
+
+        // a long union of indexes, slices and names, with whitespace
+        final StringBuilder union = new StringBuilder("$[");
+        for (int i = 0; i < 300; i++) {
+            if (i > 0) {
+                union.append(", ");
+            }
+            union.append(switch (i % 3) {
+                case 0 -> String.valueOf(random.nextInt(1_000));
+                case 1 -> random.nextInt(100) + ":" + random.nextInt(100) + ":2";
+                default -> "'name" + i + "'";
+            });
+        }
+        paths.add(union.append(']').toString());
+
+        // deeply nested function calls and recursive descent
+        paths.add("$..a" + "..b[?match(@.c, 'd.*')]".repeat(50) + "..*");
+        paths.add("$[?" + "length(".repeat(64) + "@.x" + ")".repeat(64) + " > 0]");
+        return paths;
+    }
+}
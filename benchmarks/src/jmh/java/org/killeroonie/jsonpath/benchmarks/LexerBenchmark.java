@@ -0,0 +1,104 @@
+package org.killeroonie.jsonpath.benchmarks;
+
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenBuffer;
+import org.killeroonie.jsonpath.exception.JSONPathException;
+import org.killeroonie.jsonpath.lexer.*;
+import org.killeroonie.jsonpath.parser.Parser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the Lexers, one JSONPath string per operation, for each Lexer and rule set and each
+ * {@link Corpus}. Run with the GC profiler, as the build does, to report the bytes allocated per path
+ * ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Each operation scans the next path of the corpus, cycling through the corpus. Paths the Lexer rejects with a syntax
+ * error are removed from the corpus when the benchmark is set up, so the numbers don't include exception handling.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class LexerBenchmark {
+
+    /**
+     * The Lexer classes and rule sets compared.
+     */
+    public enum LexerConfig {
+        JJP(JJPRulesBuilder.class, JJPLexer.class),
+        RFC(RFCRulesBuilder.class, JJPLexer.class),
+        PJP(PJPRulesBuilder.class, PJPLexer.class),
+        JJP_DFA(JJPRulesBuilder.class, DFALexer.class),
+        JJP_GENERATED(JJPRulesBuilder.class, GeneratedLexer.class);
+
+        private final Class<? extends RulesBuilder> rulesBuilderClass;
+        private final Class<? extends Lexer> lexerClass;
+
+        LexerConfig(Class<? extends RulesBuilder> rulesBuilderClass, Class<? extends Lexer> lexerClass) {
+            this.rulesBuilderClass = rulesBuilderClass;
+            this.lexerClass = lexerClass;
+        }
+
+        Lexer newLexer() {
+            return new JSONPathEnvironment(true, true, true, rulesBuilderClass, lexerClass, Parser.class)
+                    .getLexer();
+        }
+    }
+
+    @Param({"JJP", "RFC", "PJP"})
+    public LexerConfig lexerConfig;
+
+    @Param({"CTS", "TEST_LEX", "LONG"})
+    public Corpus corpus;
+
+    private Lexer lexer;
+    private String[] paths;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lexer = lexerConfig.newLexer();
+        final List<String> accepted = new ArrayList<>();
+        for (String path : corpus.paths()) {
+            try {
+                lexer.tokenize(path);
+                accepted.add(path);
+            } catch (JSONPathException e) {
+                // not valid for this rule set
+            }
+        }
+        if (accepted.isEmpty()) {
+            throw new IllegalStateException("%s accepts no paths of the %s corpus".formatted(lexerConfig, corpus));
+        }
+        paths = accepted.toArray(new String[0]);
+    }
+
+    private String nextPath() {
+        final String path = paths[next];
+        next = next + 1 == paths.length ? 0 : next + 1;
+        return path;
+    }
+
+    /**
+     * Scans a path into a list of Tokens.
+     */
+    @Benchmark
+    public List<Token> tokenize() {
+        return lexer.tokenize(nextPath());
+    }
+
+    /**
+     * Scans a path into a TokenBuffer, without creating Token objects.
+     */
+    @Benchmark
+    public TokenBuffer tokenizeToBuffer() {
+        return lexer.tokenizeToBuffer(nextPath());
+    }
+}
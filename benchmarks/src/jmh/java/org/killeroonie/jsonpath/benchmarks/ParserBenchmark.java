@@ -0,0 +1,95 @@
+package org.killeroonie.jsonpath.benchmarks;
+
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.TokenBuffer;
+import org.killeroonie.jsonpath.exception.JSONPathException;
+import org.killeroonie.jsonpath.lexer.Lexer;
+import org.killeroonie.jsonpath.parser.Parser;
+import org.killeroonie.jsonpath.parser.TokenStream;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the Parser, one JSONPath string per operation, for each {@link Corpus}.
+ * <p>
+ * Each operation parses the next path of the corpus, cycling through the corpus. Paths the environment rejects are
+ * removed from the corpus when the benchmark is set up, as in {@link LexerBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param({"CTS", "LONG"})
+    public Corpus corpus;
+
+    private JSONPathEnvironment env;
+    private Lexer lexer;
+    private Parser parser;
+    private String[] paths;
+    private TokenBuffer[] tokens;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        env = new PJPEnv();
+        env.setPathCacheSize(0); // every compile lexes and parses
+        lexer = env.getLexer();
+        parser = env.getParser();
+        final List<String> accepted = new ArrayList<>();
+        final List<TokenBuffer> acceptedTokens = new ArrayList<>();
+        for (String path : corpus.paths()) {
+            try {
+                env.compile(path);
+                accepted.add(path);
+                acceptedTokens.add(lexer.tokenizeToBuffer(path));
+            } catch (JSONPathException e) {
+                // not a valid path for this environment
+            }
+        }
+        if (accepted.isEmpty()) {
+            throw new IllegalStateException("PJPEnv accepts no paths of the %s corpus".formatted(corpus));
+        }
+        paths = accepted.toArray(new String[0]);
+        tokens = acceptedTokens.toArray(new TokenBuffer[0]);
+    }
+
+    private int nextIndex() {
+        final int index = next;
+        next = next + 1 == paths.length ? 0 : next + 1;
+        return index;
+    }
+
+    /**
+     * Parses the tokens of a path, scanned when the benchmark was set up.
+     */
+    @Benchmark
+    public List<JSONPathSegment> parse() {
+        return parser.parse(new TokenStream(tokens[nextIndex()]));
+    }
+
+    /**
+     * Scans and parses a path, pulling tokens from the Lexer as the Parser needs them.
+     */
+    @Benchmark
+    public List<JSONPathSegment> scanAndParse() {
+        return parser.parse(new TokenStream(lexer.tokenSource(paths[nextIndex()])));
+    }
+
+    /**
+     * Compiles a path with the cache disabled, as on a cache miss.
+     */
+    @Benchmark
+    public CompiledJSONPath compile() {
+        return env.compile(paths[nextIndex()]);
+    }
+}
@@ -0,0 +1,239 @@
+package org.killeroonie.jsonpath.processor;
+
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPathConstant;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.exception.JSONPathException;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles the constant path strings annotated with {@link JSONPathConstant} at build time, and generates classes
+ * holding the compiled paths.
+ * <p>
+ * Each path is compiled with a new instance of the annotation's environment, so an invalid path is reported as a
+ * compile error at the annotated field. For each class with annotated fields, a class named after it with the suffix
+ * {@code JSONPaths} is generated in the same package. It has a {@code public static final} field for each annotated
+ * field, with the same name, whose initializer builds the compiled path from its segments, selectors and filter
+ * expressions. The generated class creates one instance of each environment its paths are bound to.
+ * <p>
+ * To use the processor with Gradle, add it to the {@code annotationProcessor} configuration, e.g.
+ * {@code annotationProcessor(project(":processor"))}.
+ */
+@SupportedAnnotationTypes(JSONPathProcessor.ANNOTATION)
+public final class JSONPathProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "org.killeroonie.jsonpath.JSONPathConstant";
+    static final String SUFFIX = "JSONPaths";
+
+    private final Map<String, JSONPathEnvironment> environments = new HashMap<>();
+    private Elements elements;
+    private Messager messager;
+    private Filer filer;
+
+    /**
+     * A validated constant, and the environment it was compiled by.
+     */
+    private record Constant(VariableElement field, String path, String envClass, CompiledJSONPath compiled) {}
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement annotation = elements.getTypeElement(ANNOTATION);
+        if (annotation == null) {
+            return false;
+        }
+        final Map<TypeElement, List<Constant>> constantsByType = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            final Constant constant = compile(element);
+            if (constant != null) {
+                constantsByType.computeIfAbsent((TypeElement) element.getEnclosingElement(), type -> new ArrayList<>())
+                        .add(constant);
+            }
+        }
+        for (Map.Entry<TypeElement, List<Constant>> entry : constantsByType.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Compiles the path of an annotated field, reporting an error if the field isn't a constant String, or the path
+     * is invalid.
+     *
+     * @return the compiled constant, or null if there was an error.
+     */
+    private Constant compile(Element element) {
+        if (element.getKind() != ElementKind.FIELD || !element.getModifiers().contains(Modifier.STATIC) ||
+            !(((VariableElement) element).getConstantValue() instanceof String path)) {
+            error(element, "@JSONPathConstant must annotate a static final String field with a constant value");
+            return null;
+        }
+        final String envClass = envClass(element);
+        final JSONPathEnvironment env = environment(element, envClass);
+        if (env == null) {
+            return null;
+        }
+        try {
+            return new Constant((VariableElement) element, path, envClass, env.compile(path));
+        } catch (JSONPathException e) {
+            error(element, "invalid JSONPath for %s: %s".formatted(simpleName(envClass), e.getMessage()));
+        } catch (RuntimeException e) {
+            error(element, "%s can't compile JSONPath: %s".formatted(simpleName(envClass), e));
+        }
+        return null;
+    }
+
+    /**
+     * @return the binary name of the {@code env} of the field's annotation.
+     */
+    private String envClass(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().toString().equals(ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                    mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("env") &&
+                    entry.getValue().getValue() instanceof DeclaredType type) {
+                    return elements.getBinaryName((TypeElement) type.asElement()).toString();
+                }
+            }
+        }
+        return PJPEnv.class.getName();
+    }
+
+    /**
+     * @return the environment of the class {@code envClass}, created on first use, or null if it can't be created.
+     */
+    private JSONPathEnvironment environment(Element element, String envClass) {
+        JSONPathEnvironment env = environments.get(envClass);
+        if (env != null) {
+            return env;
+        }
+        try {
+            env = Class.forName(envClass, true, getClass().getClassLoader())
+                    .asSubclass(JSONPathEnvironment.class)
+                    .getConstructor()
+                    .newInstance();
+        } catch (ClassNotFoundException e) {
+            error(element, "%s must be on the annotation processor path".formatted(envClass));
+            return null;
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                 InvocationTargetException e) {
+            error(element, "%s must have a public no-arg constructor".formatted(envClass));
+            return null;
+        }
+        environments.put(envClass, env);
+        return env;
+    }
+
+    private void generate(TypeElement type, List<Constant> constants) {
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        final String className = generatedName(type);
+        final StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("/**\n * The JSONPath constants of {@link ").append(type.getQualifiedName())
+          .append("}, compiled at build time.\n */\n");
+        sb.append("@javax.annotation.processing.Generated(\"").append(JSONPathProcessor.class.getName()).append("\")\n");
+        sb.append("public final class ").append(className).append(" {\n\n");
+
+        final Map<String, String> envFields = new LinkedHashMap<>();
+        for (Constant constant : constants) {
+            if (!envFields.containsKey(constant.envClass())) {
+                envFields.put(constant.envClass(), "ENV" + envFields.size());
+                sb.append("    private static final ").append(constant.envClass().replace('$', '.')).append(' ')
+                  .append(envFields.get(constant.envClass())).append(" = new ")
+                  .append(constant.envClass().replace('$', '.')).append("();\n");
+            }
+        }
+        sb.append('\n');
+        for (Constant constant : constants) {
+            final String name = constant.field().getSimpleName().toString();
+            sb.append("    // ").append(PathSourceGenerator.string(constant.path())).append('\n');
+            sb.append("    public static final ").append(PathSourceGenerator.typeName(constant.compiled())).append(' ')
+              .append(name).append(" = build").append(name).append("();\n\n");
+        }
+        sb.append("    private ").append(className).append("() {}\n");
+        for (Constant constant : constants) {
+            final String name = constant.field().getSimpleName().toString();
+            final PathSourceGenerator generator =
+                    new PathSourceGenerator(envFields.get(constant.envClass()), constant.path(), "path");
+            sb.append("\n    private static ").append(PathSourceGenerator.typeName(constant.compiled()))
+              .append(" build").append(name).append("() {\n");
+            sb.append("        final String path = ").append(PathSourceGenerator.string(constant.path())).append(";\n");
+            sb.append("        return ").append(generator.generate(constant.compiled(), 2)).append(";\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+
+        final String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        final Element[] originatingElements = constants.stream().map(Constant::field).toArray(Element[]::new);
+        try (Writer writer = filer.createSourceFile(qualifiedName, originatingElements).openWriter()) {
+            writer.write(sb.toString());
+        } catch (IOException e) {
+            error(type, "can't write %s: %s".formatted(qualifiedName, e.getMessage()));
+        }
+    }
+
+    /**
+     * @return the name of the class generated for {@code type}: its simple name, prefixed by the names of its enclosing
+     * classes, and suffixed with {@link #SUFFIX}.
+     */
+    static String generatedName(TypeElement type) {
+        final StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement outer; e = outer.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, outer.getSimpleName());
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,313 @@
+package org.killeroonie.jsonpath.processor;
+
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.CompoundJSONPath;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.parser.filter.Comparison;
+import org.killeroonie.jsonpath.parser.filter.CurrentKey;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+import org.killeroonie.jsonpath.parser.filter.FilterQuery;
+import org.killeroonie.jsonpath.parser.filter.FunctionCall;
+import org.killeroonie.jsonpath.parser.filter.Hoisted;
+import org.killeroonie.jsonpath.parser.filter.ListLiteral;
+import org.killeroonie.jsonpath.parser.filter.Literal;
+import org.killeroonie.jsonpath.parser.filter.Logical;
+import org.killeroonie.jsonpath.parser.filter.Not;
+import org.killeroonie.jsonpath.parser.filter.RegexLiteral;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.KeysSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * Writes the Java expression that builds a compiled path from its segments, selectors and filter expressions, by
+ * calling their constructors. Class names are written in full, so the generated code doesn't depend on imports.
+ */
+final class PathSourceGenerator {
+
+    private static final String PACKAGE = "org.killeroonie.jsonpath.";
+    private static final String FILTER_PACKAGE = PACKAGE + "parser.filter.";
+
+    private final String env;
+    private final String source;
+    private final String sourceVariable;
+    private final StringBuilder out = new StringBuilder();
+    private int indent;
+
+    /**
+     * @param env            the expression of the environment to bind the path to.
+     * @param source         the path string.
+     * @param sourceVariable the variable holding the path string, which the tokens of the path refer to.
+     */
+    PathSourceGenerator(String env, String source, String sourceVariable) {
+        this.env = env;
+        this.source = source;
+        this.sourceVariable = sourceVariable;
+    }
+
+    /**
+     * @return the Java expression that builds {@code path}, for an indentation of {@code indent} levels.
+     */
+    String generate(CompiledJSONPath path, int indent) {
+        out.setLength(0);
+        this.indent = indent;
+        path(path);
+        return out.toString();
+    }
+
+    /**
+     * @return the name of the class of {@code path}, in full.
+     */
+    static String typeName(CompiledJSONPath path) {
+        return path.getClass().getName().replace('$', '.');
+    }
+
+    private void path(CompiledJSONPath path) {
+        if (path instanceof CompoundJSONPath compound) {
+            out.append("new ").append(PACKAGE).append("CompoundJSONPath(").append(env).append(", ");
+            path(compound.path);
+            out.append(')');
+            for (CompoundJSONPath.PathOperation operation : compound.paths) {
+                newLine(1);
+                out.append(operation.op().equals(compound.env.unionToken) ? ".union(" : ".intersection(");
+                path(operation.path());
+                out.append(')');
+            }
+            return;
+        }
+        final JSONPath simple = (JSONPath) path;
+        out.append("new ").append(PACKAGE).append("JSONPath(").append(env).append(", ");
+        segments(simple.segments);
+        out.append(", ").append(simple.isFakeRoot()).append(')');
+    }
+
+    private void segments(List<JSONPathSegment> segments) {
+        if (segments.isEmpty()) {
+            out.append("java.util.List.of()");
+            return;
+        }
+        out.append("java.util.List.of(");
+        indent++;
+        for (int i = 0; i < segments.size(); i++) {
+            newLine(0);
+            segment(segments.get(i));
+            if (i < segments.size() - 1) {
+                out.append(',');
+            }
+        }
+        indent--;
+        out.append(')');
+    }
+
+    private void segment(JSONPathSegment segment) {
+        out.append("new ").append(segment.getClass().getName()).append('(').append(env).append(", ");
+        token(segment.getToken());
+        out.append(", new ").append(PACKAGE).append("parser.selector.JSONPathSelector[]{");
+        indent++;
+        for (int i = 0; i < segment.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            newLine(0);
+            selector(segment.selector(i));
+        }
+        indent--;
+        out.append("})");
+    }
+
+    private void selector(JSONPathSelector selector) {
+        out.append("new ").append(selector.getClass().getName()).append('(');
+        token(selector.getToken());
+        switch (selector) {
+            case NameSelector name -> out.append(", ").append(string(name.getName())).append(", ")
+                    .append(name.isShorthand());
+            case IndexSelector index -> out.append(", ").append(index.getIndex()).append('L');
+            case SliceSelector slice -> out.append(", ").append(bound(slice.getStart())).append(", ")
+                    .append(bound(slice.getStop())).append(", ").append(bound(slice.getStep()));
+            case FilterSelector filter -> {
+                out.append(", ");
+                expression(filter.getExpression());
+            }
+            case WildcardSelector wildcard -> {}
+            case KeysSelector keys -> {}
+            default -> throw new IllegalArgumentException("unknown selector " + selector.getClass().getName());
+        }
+        out.append(')');
+    }
+
+    private void expression(FilterExpression expression) {
+        switch (expression) {
+            case Literal literal -> literal(literal);
+            case ListLiteral list -> {
+                out.append("new ").append(FILTER_PACKAGE).append("ListLiteral(");
+                value(list.values());
+                out.append(')');
+            }
+            case CurrentKey currentKey -> out.append("new ").append(FILTER_PACKAGE).append("CurrentKey()");
+            case RegexLiteral regex -> {
+                int flags = 0;
+                for (int i = 0; i < regex.getFlags().length(); i++) {
+                    flags |= RegexLiteral.patternFlags(regex.getFlags().charAt(i));
+                }
+                out.append("new ").append(FILTER_PACKAGE).append("RegexLiteral(").append(string(regex.getSource()))
+                   .append(", ").append(string(regex.getFlags())).append(", java.util.regex.Pattern.compile(")
+                   .append(string(regex.getSource())).append(", ").append(flags).append("))");
+            }
+            case FilterQuery query -> {
+                out.append("new ").append(FILTER_PACKAGE).append("FilterQuery(").append(FILTER_PACKAGE)
+                   .append("FilterQuery.Anchor.").append(query.getAnchor().name()).append(", ");
+                segments(query.getSegments());
+                out.append(')');
+            }
+            case FunctionCall call -> {
+                out.append("new ").append(FILTER_PACKAGE).append("FunctionCall(").append(string(call.name()))
+                   .append(", ").append(env).append(".getFunctionExtensions().get(").append(string(call.name()))
+                   .append("), ");
+                expressions(call.arguments());
+                out.append(')');
+            }
+            case Comparison comparison -> {
+                out.append("new ").append(FILTER_PACKAGE).append("Comparison(").append(FILTER_PACKAGE)
+                   .append("ComparisonOperator.").append(comparison.operator().name()).append(", ");
+                expression(comparison.left());
+                out.append(", ");
+                expression(comparison.right());
+                out.append(')');
+            }
+            case Logical logical -> {
+                out.append("new ").append(FILTER_PACKAGE).append("Logical(").append(FILTER_PACKAGE)
+                   .append("LogicalOperator.").append(logical.operator().name()).append(", ");
+                expressions(logical.operands());
+                out.append(')');
+            }
+            case Not not -> {
+                out.append("new ").append(FILTER_PACKAGE).append("Not(");
+                expression(not.operand());
+                out.append(')');
+            }
+            case Hoisted hoisted -> {
+                out.append("new ").append(FILTER_PACKAGE).append("Hoisted(");
+                expression(hoisted.getExpression());
+                out.append(", ").append(hoisted.getSlot()).append(')');
+            }
+        }
+    }
+
+    private void expressions(List<FilterExpression> expressions) {
+        out.append("java.util.List.of(");
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            expression(expressions.get(i));
+        }
+        out.append(')');
+    }
+
+    private void literal(Literal literal) {
+        final Object value = literal.value();
+        final String constant = value == null ? "NULL" : value == UNDEFINED ? "NOTHING" :
+                value instanceof Boolean b ? (b ? "TRUE" : "FALSE") : null;
+        if (constant != null) {
+            out.append(FILTER_PACKAGE).append("Literal.").append(constant);
+            return;
+        }
+        out.append("new ").append(FILTER_PACKAGE).append("Literal(");
+        value(value);
+        out.append(')');
+    }
+
+    private void value(Object value) {
+        switch (value) {
+            case null -> out.append("null");
+            case Boolean b -> out.append(b);
+            case Integer i -> out.append("Integer.valueOf(").append(i).append(')');
+            case Long l -> out.append("Long.valueOf(").append(l).append("L)");
+            case Double d -> out.append("Double.valueOf(").append(doubleLiteral(d)).append(')');
+            case BigInteger i -> out.append("new java.math.BigInteger(").append(string(i.toString())).append(')');
+            case BigDecimal d -> out.append("new java.math.BigDecimal(").append(string(d.toString())).append(')');
+            case String s -> out.append(string(s));
+            case List<?> list -> {
+                // Arrays.asList, since the values of list literals may be null
+                out.append("java.util.Arrays.<Object>asList(");
+                for (int i = 0; i < list.size(); i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    value(list.get(i));
+                }
+                out.append(')');
+            }
+            default -> {
+                if (value != UNDEFINED) {
+                    throw new IllegalArgumentException("can't generate a literal of " + value.getClass().getName());
+                }
+                out.append(PACKAGE).append("JSONPointer.UNDEFINED");
+            }
+        }
+    }
+
+    private static String doubleLiteral(double d) {
+        if (Double.isNaN(d)) {
+            return "Double.NaN";
+        }
+        if (Double.isInfinite(d)) {
+            return d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return d + "d";
+    }
+
+    private static String bound(Long bound) {
+        return bound == null ? "null" : "Long.valueOf(" + bound + "L)";
+    }
+
+    private void token(Token token) {
+        if (token == null) {
+            out.append("null");
+            return;
+        }
+        out.append("new ").append(PACKAGE).append("Token(").append(PACKAGE).append("TokenKind.")
+           .append(token.kind().name()).append(", ").append(string(token.value())).append(", ").append(token.index())
+           .append(", ").append(source.equals(token.path()) ? sourceVariable : string(token.path())).append(')');
+    }
+
+    private void newLine(int extraIndent) {
+        out.append('\n').append("    ".repeat(indent + extraIndent));
+    }
+
+    /**
+     * @return {@code s} as a Java string literal. Characters outside printable ASCII are written as unicode escapes.
+     */
+    static String string(String s) {
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c >= 0x20 && c < 0x7F) {
+                        sb.append(c);
+                    } else {
+                        sb.append("\\u%04x".formatted((int) c));
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
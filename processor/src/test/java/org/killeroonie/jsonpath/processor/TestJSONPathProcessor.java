@@ -0,0 +1,151 @@
+package org.killeroonie.jsonpath.processor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.CompoundJSONPath;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.PJPEnv;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSONPathProcessor {
+
+    private static final Map<String, String> PATHS = Map.of(
+            "NAMES", "$.store.book[*].author",
+            "FILTER", "$..book[?@.price < 10 && @.category == 'fiction' || !(@.x in [1, 2.5, 'x', null])].title",
+            "FUNCTIONS", "$[?count(@.*) > length($.limit) && match(@.a, 'a.*') && @.b =~ /^\\u00e9/i]",
+            "COMPOUND", "$.a[1:-1:2, 0, 'b'].~ | ^[?# != 'k'] & $['\\ud83d\\ude00']..[*]",
+            "ROOT", "$");
+
+    private Path directory;
+
+    private record Compilation(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                               ClassLoader classLoader) {
+
+        String errors() {
+            return diagnostics.stream()
+                    .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                    .map(d -> d.getMessage(null))
+                    .reduce("", (a, b) -> a + b + "\n");
+        }
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("processor");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Compiles {@code source}, the class {@code example.Queries}, with the processor.
+     */
+    private Compilation compile(String source) throws IOException {
+        Path sourceFile = directory.resolve("src/example/Queries.java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.writeString(sourceFile, source);
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                    List.of("-d", classes.toString(), "-s", classes.toString(),
+                            "-classpath", System.getProperty("java.class.path")),
+                    null, files.getJavaFileObjects(sourceFile));
+            task.setProcessors(List.of(new JSONPathProcessor()));
+            boolean success = task.call();
+            ClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader());
+            return new Compilation(success, diagnostics.getDiagnostics(), loader);
+        }
+    }
+
+    private static String queries(Map<String, String> paths, String annotation) {
+        StringBuilder sb = new StringBuilder("""
+                package example;
+
+                import org.killeroonie.jsonpath.JSONPathConstant;
+
+                public class Queries {
+                """);
+        for (Map.Entry<String, String> entry : paths.entrySet()) {
+            sb.append("    ").append(annotation).append("\n    static final String ").append(entry.getKey())
+              .append(" = ").append(PathSourceGenerator.string(entry.getValue())).append(";\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    @Test
+    void test_generated_paths_equal_compiled_paths() throws Exception {
+        Compilation compilation = compile(queries(PATHS, "@JSONPathConstant"));
+        assertTrue(compilation.success(), compilation.errors());
+        Class<?> generated = compilation.classLoader().loadClass("example.QueriesJSONPaths");
+        PJPEnv env = new PJPEnv();
+        for (Map.Entry<String, String> entry : PATHS.entrySet()) {
+            CompiledJSONPath expected = env.compile(entry.getValue());
+            CompiledJSONPath actual = (CompiledJSONPath) generated.getField(entry.getKey()).get(null);
+            assertEquals(expected, actual, entry.getKey());
+            assertEquals(expected.toString(), actual.toString(), entry.getKey());
+            assertEquals(expected.getClass(), generated.getField(entry.getKey()).getType());
+        }
+        JSONPath root = (JSONPath) generated.getField("ROOT").get(null);
+        assertInstanceOf(PJPEnv.class, root.env);
+        assertSame(root.env, ((CompoundJSONPath) generated.getField("COMPOUND").get(null)).env);
+        Object data = Map.of("store", Map.of("book", List.of(Map.of("author", "a"), Map.of("author", "b"))));
+        assertEquals(List.of("a", "b"), ((JSONPath) generated.getField("NAMES").get(null)).findall(data));
+    }
+
+    @Test
+    void test_invalid_paths_are_compile_errors() throws Exception {
+        Compilation compilation = compile(queries(Map.of("BAD", "$.a[?length(@.*) > 1]"), "@JSONPathConstant"));
+        assertFalse(compilation.success());
+        assertTrue(compilation.errors().contains("invalid JSONPath for PJPEnv"), compilation.errors());
+        assertEquals(1, compilation.diagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR).count());
+        assertFalse(Files.exists(directory.resolve("classes/example/QueriesJSONPaths.java")));
+    }
+
+    @Test
+    void test_annotated_fields_must_be_constants() throws Exception {
+        Compilation compilation = compile("""
+                package example;
+
+                import org.killeroonie.jsonpath.JSONPathConstant;
+
+                public class Queries {
+                    @JSONPathConstant
+                    static final String NOT_CONSTANT = String.valueOf("$.a");
+                    @JSONPathConstant(env = org.killeroonie.jsonpath.JJPEnv.class)
+                    static final String NO_PARSER = "$.a";
+                }
+                """);
+        assertFalse(compilation.success());
+        assertTrue(compilation.errors().contains("must annotate a static final String field"), compilation.errors());
+        assertTrue(compilation.errors().contains("JJPEnv can't compile JSONPath"), compilation.errors());
+    }
+}
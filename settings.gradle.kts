@@ -1,2 +1,4 @@
 rootProject.name = "java-jsonpath"
-include("incubator")
\ No newline at end of file
+include("incubator")
+include("benchmarks")
+include("processor")
\ No newline at end of file
@@ -0,0 +1,206 @@
+package org.killeroonie.jsonpath;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A path string compiled by {@link JSONPathEnvironment#compile(String)}, ready to match against some data.
+ * <p>
+ * This is a {@link JSONPath}, or a {@link CompoundJSONPath} if the path string uses the union or intersection
+ * operators. Compiled paths are immutable and can be shared between threads.
+ */
+public interface CompiledJSONPath {
+
+    /**
+     * Find all objects in data matching this path.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A list of matched objects. If there are no matches, the list will be empty.
+     */
+    List<Object> findall(Object data, FilterContextVars filterContext);
+
+    default List<Object> findall(Object data) {
+        return findall(data, null);
+    }
+
+    /**
+     * Generate the objects in data matching this path, lazily, for when their locations aren't needed.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return An iterable over the matched objects.
+     */
+    default Iterable<Object> values(Object data, FilterContextVars filterContext) {
+        final Iterable<JSONPathMatch> matches = finditer(data, filterContext);
+        return () -> {
+            final Iterator<JSONPathMatch> it = matches.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    return it.next().obj;
+                }
+            };
+        };
+    }
+
+    default Iterable<Object> values(Object data) {
+        return values(data, null);
+    }
+
+    /**
+     * Generate JSONPathMatch objects for each match.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return An iterator yielding JSONPathMatch objects for each match.
+     */
+    Iterable<JSONPathMatch> finditer(Object data, FilterContextVars filterContext);
+
+    default Iterable<JSONPathMatch> finditer(Object data) {
+        return finditer(data, null);
+    }
+
+    /**
+     * Generate JSONPathMatch objects for each match, as a sequential stream that can be made parallel.
+     * <p>
+     * The stream is ordered, so collecting it keeps the matches in document order, even when it is parallel.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A stream of JSONPathMatch objects for each match.
+     */
+    default Stream<JSONPathMatch> stream(Object data, FilterContextVars filterContext) {
+        return StreamSupport.stream(finditer(data, filterContext).spliterator(), false);
+    }
+
+    default Stream<JSONPathMatch> stream(Object data) {
+        return stream(data, null);
+    }
+
+    /**
+     * Find all objects in data matching this path with a parallel {@link #stream}, in the common ForkJoinPool.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A list of matched objects, in the same order as {@link #findall}.
+     */
+    default List<Object> findallParallel(Object data, FilterContextVars filterContext) {
+        return stream(data, filterContext).parallel().map(match -> match.obj).collect(Collectors.toList());
+    }
+
+    default List<Object> findallParallel(Object data) {
+        return findallParallel(data, null);
+    }
+
+    /**
+     * Find all objects in data matching this path with a parallel {@link #stream}, in {@code pool}.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @param pool          The pool whose workers evaluate the stream.
+     * @return A list of matched objects, in the same order as {@link #findall}.
+     */
+    default List<Object> findallParallel(Object data, FilterContextVars filterContext, ForkJoinPool pool) {
+        return pool.submit(() -> findallParallel(data, filterContext)).join();
+    }
+
+    /**
+     * Return a JSONPathMatch instance for the first object found in data, or null if there are no matches.
+     */
+    JSONPathMatch match(Object data, FilterContextVars filterContext);
+
+    default JSONPathMatch match(Object data) {
+        return match(data, null);
+    }
+
+    /**
+     * Return true if this path matches at least one object in data. Only the nodes needed to find the first match are
+     * visited.
+     */
+    default boolean exists(Object data, FilterContextVars filterContext) {
+        return match(data, filterContext) != null;
+    }
+
+    default boolean exists(Object data) {
+        return exists(data, null);
+    }
+
+    /**
+     * Return the first object found in data, or {@link JSONPointer#UNDEFINED} if there are no matches.
+     * <p>
+     * This is meant for singular queries, which select at most one object. A {@link JSONPath} evaluates a singular
+     * query by reading the members and elements it names directly, without creating matches.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return The matched object, which may be null, or {@code UNDEFINED}.
+     */
+    default Object get(Object data, FilterContextVars filterContext) {
+        final Iterator<Object> it = values(data, filterContext).iterator();
+        return it.hasNext() ? it.next() : JSONPointer.UNDEFINED;
+    }
+
+    default Object get(Object data) {
+        return get(data, null);
+    }
+
+    /**
+     * Pass each object in data matching this path to {@code consumer}, in order, with its location.
+     * <p>
+     * Unlike {@link #finditer}, the locations are passed as a cursor that is only valid during each call, which lets
+     * evaluators skip creating a JSONPathMatch for each match.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @param consumer      Receives each matched object and its location.
+     */
+    default void forEach(Object data, FilterContextVars filterContext, MatchConsumer consumer) {
+        final MatchCursor cursor = new MatchCursor();
+        for (JSONPathMatch match : finditer(data, filterContext)) {
+            cursor.match = match;
+            consumer.accept(match.obj, cursor);
+        }
+    }
+
+    default void forEach(Object data, MatchConsumer consumer) {
+        forEach(data, null, consumer);
+    }
+
+    /**
+     * Return a Query iterator over matches found by applying this path to data.
+     */
+    Query query(Object data, FilterContextVars filterContext);
+
+    default Query query(Object data) {
+        return query(data, null);
+    }
+
+    /**
+     * An async version of findall().
+     */
+    CompletableFuture<List<Object>> findallAsync(Object data, FilterContextVars filterContext);
+
+    default CompletableFuture<List<Object>> findallAsync(Object data) {
+        return findallAsync(data, null);
+    }
+
+    /**
+     * An async version of finditer().
+     */
+    CompletableFuture<Stream<JSONPathMatch>> finditerAsync(Object data, FilterContextVars filterContext);
+
+    default CompletableFuture<Stream<JSONPathMatch>> finditerAsync(Object data) {
+        return finditerAsync(data, null);
+    }
+}
@@ -0,0 +1,193 @@
+package org.killeroonie.jsonpath;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe cache of compiled paths, keyed by path string.
+ * <p>
+ * Lookups are a single {@link ConcurrentHashMap} read, so cache hits from many threads don't contend. When the cache is
+ * full, an entry is chosen for eviction with the CLOCK algorithm, an approximation of least recently used: entries
+ * sit in a ring of slots, each with a bit that's set when the entry is used. The clock hand sweeps the ring, clearing
+ * set bits, and evicts the first entry whose bit is already clear. Only the insertion of a new entry takes a lock.
+ * <p>
+ * Two threads that miss the same path at the same time may both compile it; the first to finish is cached, and both
+ * results are equal.
+ */
+public final class CompiledPathCache {
+
+    /**
+     * The default maximum number of compiled paths held by a cache.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * A snapshot of a cache's counters. The counters are updated without locking, so a snapshot taken while other
+     * threads use the cache may be slightly inconsistent.
+     *
+     * @param hits      the number of lookups that found a compiled path in the cache.
+     * @param misses    the number of lookups that had to compile their path.
+     * @param evictions the number of entries removed to make room for new entries. Invalidated entries aren't counted.
+     * @param size      the number of compiled paths in the cache.
+     * @param maxSize   the maximum number of compiled paths the cache holds.
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+
+        /**
+         * @return the fraction of lookups that were hits, or 0 if there have been no lookups.
+         */
+        public double hitRate() {
+            final long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final CompiledJSONPath path;
+        volatile boolean referenced;
+        int slot = -1; // guarded by the clock lock
+
+        Entry(String key, CompiledJSONPath path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    private final Object clockLock = new Object();
+    private final Entry[] clock;
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of compiled paths to hold. 0 disables caching: every lookup compiles its path.
+     * @throws IllegalArgumentException if {@code maxSize} is negative.
+     */
+    public CompiledPathCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maxSize, DEFAULT_MAX_SIZE));
+        this.clock = new Entry[maxSize];
+    }
+
+    /**
+     * Returns the compiled path for {@code path}, compiling and caching it if it isn't in the cache. Exceptions thrown
+     * by {@code compiler} are passed to the caller, and nothing is cached for the path.
+     *
+     * @param path     the path string.
+     * @param compiler compiles the path string when it isn't in the cache.
+     * @return the compiled path.
+     */
+    public CompiledJSONPath get(String path, Function<String, ? extends CompiledJSONPath> compiler) {
+        final Entry entry = entries.get(path);
+        if (entry != null) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.path;
+        }
+        misses.increment();
+        final CompiledJSONPath compiled = compiler.apply(path);
+        if (maxSize == 0) {
+            return compiled;
+        }
+        final Entry created = new Entry(path, compiled);
+        final Entry existing = entries.putIfAbsent(path, created);
+        if (existing != null) {
+            return existing.path;
+        }
+        admit(created);
+        return compiled;
+    }
+
+    /**
+     * @return the cached compiled path for {@code path}, or null if it isn't in the cache. The counters aren't updated.
+     */
+    public CompiledJSONPath getIfPresent(String path) {
+        final Entry entry = entries.get(path);
+        return entry == null ? null : entry.path;
+    }
+
+    /**
+     * Removes the compiled path for {@code path} from the cache, if present.
+     */
+    public void invalidate(String path) {
+        final Entry entry = entries.remove(path);
+        if (entry != null) {
+            synchronized (clockLock) {
+                if (entry.slot >= 0 && clock[entry.slot] == entry) {
+                    clock[entry.slot] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes every compiled path from the cache. The counters aren't reset.
+     */
+    public void invalidateAll() {
+        synchronized (clockLock) {
+            entries.clear();
+            Arrays.fill(clock, null);
+        }
+    }
+
+    /**
+     * @return the number of compiled paths in the cache.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return a snapshot of the counters of this cache.
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size(), maxSize);
+    }
+
+    /**
+     * Places a new entry in the clock, evicting an entry if there is no free slot.
+     */
+    private void admit(Entry entry) {
+        synchronized (clockLock) {
+            if (entries.get(entry.key) != entry) {
+                return; // invalidated before it was placed
+            }
+            // every pass of the hand clears the bits it passes, so a slot is found in at most two passes
+            while (true) {
+                final Entry current = clock[hand];
+                if (current == null) {
+                    break;
+                }
+                if (current.referenced) {
+                    current.referenced = false;
+                    hand = (hand + 1) % maxSize;
+                    continue;
+                }
+                if (entries.remove(current.key, current)) {
+                    evictions.increment();
+                }
+                break;
+            }
+            clock[hand] = entry;
+            entry.slot = hand;
+            hand = (hand + 1) % maxSize;
+        }
+    }
+}
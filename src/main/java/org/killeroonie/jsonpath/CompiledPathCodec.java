@@ -0,0 +1,840 @@
+package org.killeroonie.jsonpath;
+
+import org.killeroonie.jsonpath.lexer.RulesBuilder;
+import org.killeroonie.jsonpath.parser.filter.Comparison;
+import org.killeroonie.jsonpath.parser.filter.ComparisonOperator;
+import org.killeroonie.jsonpath.parser.filter.CurrentKey;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+import org.killeroonie.jsonpath.parser.filter.FilterOptimizer;
+import org.killeroonie.jsonpath.parser.filter.FilterQuery;
+import org.killeroonie.jsonpath.parser.filter.FunctionCall;
+import org.killeroonie.jsonpath.parser.filter.Hoisted;
+import org.killeroonie.jsonpath.parser.filter.ListLiteral;
+import org.killeroonie.jsonpath.parser.filter.Literal;
+import org.killeroonie.jsonpath.parser.filter.Logical;
+import org.killeroonie.jsonpath.parser.filter.LogicalOperator;
+import org.killeroonie.jsonpath.parser.filter.Not;
+import org.killeroonie.jsonpath.parser.filter.RegexLiteral;
+import org.killeroonie.jsonpath.parser.filter.StandardFunctions;
+import org.killeroonie.jsonpath.parser.segment.JSONPathChildSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.KeysSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * A versioned binary format for compiled paths, so a path can be stored and loaded again without lexing and parsing
+ * its path string. See {@link CompiledPathStore} for a cache of serialized paths on disk.
+ * <p>
+ * A serialized path starts with a header: a magic number, the {@link #FORMAT_VERSION} and the
+ * {@linkplain JSONPathEnvironment#getRulesFingerprint() rules fingerprint} of the environment that compiled the path.
+ * A path can only be deserialized by an environment with the same fingerprint, since a path string may compile
+ * differently, or not at all, under other rules. The header is followed by the segments, selectors and filter
+ * expressions of the path, written pre-order as tagged nodes. Each distinct string is written once, and referred to by
+ * its index after that. Function extensions are written by name, and looked up in the environment that reads them.
+ */
+public final class CompiledPathCodec {
+
+    /**
+     * The version of the format. It changes whenever the format, or the compiled form of any path, changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4A504350; // "JPCP"
+
+    // paths
+    private static final int PATH = 1;
+    private static final int COMPOUND = 2;
+    private static final int UNION = 0;
+    private static final int INTERSECTION = 1;
+    // segments
+    private static final int CHILD = 1;
+    private static final int DESCENDANT = 2;
+    // selectors
+    private static final int NAME = 1;
+    private static final int INDEX = 2;
+    private static final int SLICE = 3;
+    private static final int WILDCARD = 4;
+    private static final int KEYS = 5;
+    private static final int FILTER = 6;
+    // filter expressions
+    private static final int LITERAL = 1;
+    private static final int LIST_LITERAL = 2;
+    private static final int CURRENT_KEY = 3;
+    private static final int REGEX = 4;
+    private static final int QUERY = 5;
+    private static final int FUNCTION = 6;
+    private static final int COMPARISON = 7;
+    private static final int LOGICAL = 8;
+    private static final int NOT = 9;
+    private static final int HOISTED = 10;
+    // literal values
+    private static final int NULL_VALUE = 0;
+    private static final int UNDEFINED_VALUE = 1;
+    private static final int FALSE_VALUE = 2;
+    private static final int TRUE_VALUE = 3;
+    private static final int INT_VALUE = 4;
+    private static final int LONG_VALUE = 5;
+    private static final int DOUBLE_VALUE = 6;
+    private static final int BIG_INTEGER_VALUE = 7;
+    private static final int BIG_DECIMAL_VALUE = 8;
+    private static final int STRING_VALUE = 9;
+    private static final int LIST_VALUE = 10;
+
+    private static final ComparisonOperator[] COMPARISON_OPERATORS = ComparisonOperator.values();
+    private static final LogicalOperator[] LOGICAL_OPERATORS = LogicalOperator.values();
+    private static final FilterQuery.Anchor[] ANCHORS = FilterQuery.Anchor.values();
+
+    private CompiledPathCodec() {}
+
+    /**
+     * @param path a path compiled by {@link JSONPathEnvironment#compile(String)}.
+     * @return the serialized path, with a header.
+     * @throws NotSerializableException if a filter expression of the path holds a value this format can't represent.
+     */
+    public static byte[] serialize(CompiledJSONPath path) throws NotSerializableException {
+        final JSONPathEnvironment env = env(path);
+        final Encoder out = new Encoder();
+        out.writeInt(MAGIC);
+        out.writeVarInt(FORMAT_VERSION);
+        out.writeString(env.getRulesFingerprint());
+        out.writePath(path);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param env   the environment to bind the path to. It must have the rules fingerprint of the environment that
+     *              serialized the path.
+     * @param bytes a path serialized by {@link #serialize(CompiledJSONPath)}.
+     * @return the compiled path, equal to the serialized path.
+     * @throws IOException if {@code bytes} isn't a serialized path of this version of the format, was serialized by an
+     *                     environment with different rules, or calls a function that {@code env} doesn't have.
+     */
+    public static CompiledJSONPath deserialize(JSONPathEnvironment env, byte[] bytes) throws IOException {
+        final Decoder in = new Decoder(env, bytes, 0, bytes.length);
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("not a serialized path");
+        }
+        final int version = in.readVarInt();
+        if (version != FORMAT_VERSION) {
+            throw new StreamCorruptedException("unsupported format version " + version);
+        }
+        if (!in.readString().equals(env.getRulesFingerprint())) {
+            throw new StreamCorruptedException("path was serialized by an environment with different rules");
+        }
+        return in.finish(in.readPath());
+    }
+
+    /**
+     * Serializes a path without a header, for {@link CompiledPathStore}, which writes one header for all its paths.
+     */
+    static byte[] serializeBody(CompiledJSONPath path) throws NotSerializableException {
+        final Encoder out = new Encoder();
+        out.writePath(path);
+        return out.toByteArray();
+    }
+
+    /**
+     * Deserializes a path written by {@link #serializeBody(CompiledJSONPath)}.
+     */
+    static CompiledJSONPath deserializeBody(JSONPathEnvironment env, byte[] bytes, int offset, int length)
+            throws IOException {
+        final Decoder in = new Decoder(env, bytes, offset, offset + length);
+        return in.finish(in.readPath());
+    }
+
+    private static JSONPathEnvironment env(CompiledJSONPath path) {
+        return switch (path) {
+            case JSONPath p -> p.env;
+            case CompoundJSONPath p -> p.env;
+            default -> throw new IllegalArgumentException("not a compiled path: " + path.getClass().getName());
+        };
+    }
+
+    /**
+     * The digest of the bytecode of each class and its superclasses, so a rebuilt class changes the fingerprints of the
+     * environments that use it, whether or not the library's jar has a version in its manifest.
+     */
+    private static final ClassValue<String> CLASS_DIGESTS = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            final StringBuilder sb = new StringBuilder();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                sb.append(c.getName()).append(':').append(classFileDigest(c)).append(' ');
+            }
+            return sb.toString();
+        }
+    };
+
+    /**
+     * Stands for the bytecode of classes whose class file can't be read, so their fingerprints change from run to run,
+     * and the paths they compiled in an earlier run are never loaded.
+     */
+    private static final String UNREADABLE = "unreadable-" + UUID.randomUUID();
+
+    /**
+     * Computes the fingerprint of everything that decides how an environment compiles a path string: the classes of
+     * the environment, its lexer and parser, the lexer rules, the custom rules of the environment, its settings and
+     * tokens, the names, types and purity of its function extensions, the version of this format, and the bytecode of
+     * the classes of the environment, its lexer and parser, its function extensions, and the classes of this library
+     * that build compiled paths.
+     *
+     * @return the hex encoded SHA-256 digest of the description of the environment.
+     */
+    static String fingerprint(JSONPathEnvironment env) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("format=").append(FORMAT_VERSION).append('\n');
+        sb.append("library=").append(JSONPathEnvironment.class.getPackage().getImplementationVersion()).append('\n');
+        for (Class<?> type : List.of(CompiledPathCodec.class, FilterOptimizer.class, StandardFunctions.class,
+                env.getClass(), env.getRulesBuilderClass(), env.getLexerClass(), env.getParser_class())) {
+            sb.append("classes=").append(CLASS_DIGESTS.get(type)).append('\n');
+        }
+        sb.append("environment=").append(env.getClass().getName()).append('\n');
+        sb.append("rulesBuilder=").append(env.getRulesBuilderClass().getName()).append('\n');
+        sb.append("lexer=").append(env.getLexerClass().getName()).append('\n');
+        sb.append("parser=").append(env.getParser_class().getName()).append('\n');
+        sb.append("cacheFilters=").append(env.isCacheFilters()).append('\n');
+        sb.append("unicodeEscape=").append(env.isUnicodeEscape()).append('\n');
+        sb.append("wellTyped=").append(env.isWellTyped()).append('\n');
+        sb.append("rootToken=").append(env.rootToken).append('\n');
+        sb.append("unionToken=").append(env.unionToken).append('\n');
+        sb.append("intersectionToken=").append(env.intersectionToken).append('\n');
+        appendRules(sb, "rule.", env.getRulesBuilder().getRules());
+        appendRules(sb, "customRule.", env.getCustomEnvRules());
+        for (Map.Entry<String, FilterFunction> entry : new TreeMap<>(env.getFunctionExtensions()).entrySet()) {
+            final FilterFunction function = entry.getValue();
+            sb.append("function.").append(entry.getKey()).append('=').append(function.parameterTypes())
+              .append("->").append(function.returnType()).append(function.isPure() ? " pure" : "");
+            // calls of pure functions are folded into the stored paths, so the code of a function is part of the
+            // fingerprint. Lambdas are hidden classes, whose names change from run to run, and whose code is in the
+            // class that defines them.
+            final Class<?> type = function.getClass();
+            sb.append(' ').append(CLASS_DIGESTS.get(type.isHidden() ? type.getNestHost() : type));
+            if (function instanceof Enum<?> constant) {
+                sb.append('.').append(constant.name());
+            }
+            sb.append('\n');
+        }
+        return sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the hex encoded SHA-256 digest of the class file of {@code type}, or {@link #UNREADABLE} if it can't be
+     * read.
+     */
+    private static String classFileDigest(Class<?> type) {
+        final String name = type.getName();
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return in == null ? UNREADABLE : sha256(in.readAllBytes());
+        } catch (IOException e) {
+            return UNREADABLE;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void appendRules(StringBuilder sb, String prefix, Map<TokenKind, RulesBuilder.LexerRule> rules) {
+        final TreeMap<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<TokenKind, RulesBuilder.LexerRule> entry : rules.entrySet()) {
+            final String rule = switch (entry.getValue()) {
+                case RulesBuilder.RegexRule r -> "regex /%s/%d %s %s".formatted(
+                        r.pattern().pattern(), r.pattern().flags(), Arrays.toString(r.firstSet()), r.emitKind());
+                case RulesBuilder.LexemeRule r -> "lexeme '%s' %s".formatted(r.lexeme(), r.emitKind());
+                case RulesBuilder.LexerRule r -> r.getClass().getName() + " " + r;
+            };
+            sorted.put(entry.getKey().name(), rule);
+        }
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            sb.append(prefix).append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+    }
+
+    /**
+     * Writes paths to a growable byte array.
+     */
+    private static final class Encoder {
+        private byte[] buf = new byte[128];
+        private int size;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        void writePath(CompiledJSONPath path) throws NotSerializableException {
+            if (path instanceof CompoundJSONPath compound) {
+                writeByte(COMPOUND);
+                writePath(compound.path);
+                writeVarInt(compound.paths.size());
+                for (CompoundJSONPath.PathOperation operation : compound.paths) {
+                    writeByte(operation.op().equals(compound.env.unionToken) ? UNION : INTERSECTION);
+                    writePath(operation.path());
+                }
+            } else {
+                final JSONPath simple = (JSONPath) path;
+                writeByte(PATH);
+                writeByte(simple.isFakeRoot() ? 1 : 0);
+                writeSegments(simple.segments);
+            }
+        }
+
+        void writeSegments(List<JSONPathSegment> segments) throws NotSerializableException {
+            writeVarInt(segments.size());
+            for (JSONPathSegment segment : segments) {
+                writeByte(segment instanceof JSONPathRecursiveDescentSegment ? DESCENDANT : CHILD);
+                writeToken(segment.getToken());
+                writeVarInt(segment.size());
+                for (int i = 0; i < segment.size(); i++) {
+                    writeSelector(segment.selector(i));
+                }
+            }
+        }
+
+        void writeSelector(JSONPathSelector selector) throws NotSerializableException {
+            switch (selector) {
+                case NameSelector name -> {
+                    writeByte(NAME);
+                    writeToken(name.getToken());
+                    writeString(name.getName());
+                    writeByte(name.isShorthand() ? 1 : 0);
+                }
+                case IndexSelector index -> {
+                    writeByte(INDEX);
+                    writeToken(index.getToken());
+                    writeVarLong(index.getIndex());
+                }
+                case SliceSelector slice -> {
+                    writeByte(SLICE);
+                    writeToken(slice.getToken());
+                    writeByte((slice.getStart() != null ? 1 : 0) | (slice.getStop() != null ? 2 : 0) |
+                              (slice.getStep() != null ? 4 : 0));
+                    for (Long bound : new Long[]{slice.getStart(), slice.getStop(), slice.getStep()}) {
+                        if (bound != null) {
+                            writeVarLong(bound);
+                        }
+                    }
+                }
+                case WildcardSelector wildcard -> {
+                    writeByte(WILDCARD);
+                    writeToken(wildcard.getToken());
+                }
+                case KeysSelector keys -> {
+                    writeByte(KEYS);
+                    writeToken(keys.getToken());
+                }
+                case FilterSelector filter -> {
+                    writeByte(FILTER);
+                    writeToken(filter.getToken());
+                    writeExpression(filter.getExpression());
+                }
+                default -> throw new NotSerializableException(selector.getClass().getName());
+            }
+        }
+
+        void writeExpression(FilterExpression expression) throws NotSerializableException {
+            switch (expression) {
+                case Literal literal -> {
+                    writeByte(LITERAL);
+                    writeValue(literal.value());
+                }
+                case ListLiteral list -> {
+                    writeByte(LIST_LITERAL);
+                    writeValue(list.values());
+                }
+                case CurrentKey currentKey -> writeByte(CURRENT_KEY);
+                case RegexLiteral regex -> {
+                    writeByte(REGEX);
+                    writeString(regex.getSource());
+                    writeString(regex.getFlags());
+                }
+                case FilterQuery query -> {
+                    writeByte(QUERY);
+                    writeByte(query.getAnchor().ordinal());
+                    writeSegments(query.getSegments());
+                }
+                case FunctionCall call -> {
+                    writeByte(FUNCTION);
+                    writeString(call.name());
+                    writeExpressions(call.arguments());
+                }
+                case Comparison comparison -> {
+                    writeByte(COMPARISON);
+                    writeByte(comparison.operator().ordinal());
+                    writeExpression(comparison.left());
+                    writeExpression(comparison.right());
+                }
+                case Logical logical -> {
+                    writeByte(LOGICAL);
+                    writeByte(logical.operator().ordinal());
+                    writeExpressions(logical.operands());
+                }
+                case Not not -> {
+                    writeByte(NOT);
+                    writeExpression(not.operand());
+                }
+                case Hoisted hoisted -> {
+                    writeByte(HOISTED);
+                    writeVarInt(hoisted.getSlot());
+                    writeExpression(hoisted.getExpression());
+                }
+            }
+        }
+
+        void writeExpressions(List<FilterExpression> expressions) throws NotSerializableException {
+            writeVarInt(expressions.size());
+            for (FilterExpression expression : expressions) {
+                writeExpression(expression);
+            }
+        }
+
+        void writeValue(Object value) throws NotSerializableException {
+            switch (value) {
+                case null -> writeByte(NULL_VALUE);
+                case Boolean b -> writeByte(b ? TRUE_VALUE : FALSE_VALUE);
+                case Integer i -> {
+                    writeByte(INT_VALUE);
+                    writeVarLong(i);
+                }
+                case Long l -> {
+                    writeByte(LONG_VALUE);
+                    writeVarLong(l);
+                }
+                case Double d -> {
+                    writeByte(DOUBLE_VALUE);
+                    writeLong(Double.doubleToRawLongBits(d));
+                }
+                case BigInteger i -> {
+                    writeByte(BIG_INTEGER_VALUE);
+                    writeString(i.toString());
+                }
+                case BigDecimal d -> {
+                    writeByte(BIG_DECIMAL_VALUE);
+                    writeString(d.toString());
+                }
+                case String s -> {
+                    writeByte(STRING_VALUE);
+                    writeString(s);
+                }
+                case List<?> list -> {
+                    writeByte(LIST_VALUE);
+                    writeVarInt(list.size());
+                    for (Object element : list) {
+                        writeValue(element);
+                    }
+                }
+                default -> {
+                    if (value != UNDEFINED) {
+                        throw new NotSerializableException(value.getClass().getName());
+                    }
+                    writeByte(UNDEFINED_VALUE);
+                }
+            }
+        }
+
+        void writeToken(Token token) {
+            writeString(token.kind().name());
+            writeString(token.value());
+            writeVarLong(token.index());
+            writeString(token.path());
+        }
+
+        /**
+         * Writes the index of a string written before, plus one, or 0 followed by the length and UTF-16 code units
+         * of a new string. Code units are written, rather than UTF-8, so lone surrogates survive.
+         */
+        void writeString(String s) {
+            final Integer index = strings.get(s);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            strings.put(s, strings.size());
+            writeVarInt(0);
+            writeVarInt(s.length());
+            ensureCapacity(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[size++] = (byte) c;
+                } else {
+                    writeVarInt(c);
+                }
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        /**
+         * Writes an unsigned int in 7-bit groups, least significant first.
+         */
+        void writeVarInt(int v) {
+            ensureCapacity(5);
+            while ((v & ~0x7F) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        /**
+         * Writes a signed long, zigzag encoded so small negative numbers are short too, in 7-bit groups.
+         */
+        void writeVarLong(long v) {
+            ensureCapacity(10);
+            long zigzag = (v << 1) ^ (v >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[size++] = (byte) zigzag;
+        }
+
+        private void ensureCapacity(int n) {
+            if (size + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n));
+            }
+        }
+    }
+
+    /**
+     * Reads paths from a region of a byte array.
+     */
+    private static final class Decoder {
+        private final JSONPathEnvironment env;
+        private final byte[] buf;
+        private int position;
+        private final int limit;
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(JSONPathEnvironment env, byte[] buf, int offset, int limit) {
+            this.env = env;
+            this.buf = buf;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        CompiledJSONPath finish(CompiledJSONPath path) throws StreamCorruptedException {
+            if (position != limit) {
+                throw new StreamCorruptedException("unexpected data after the path");
+            }
+            return path;
+        }
+
+        CompiledJSONPath readPath() throws IOException {
+            final int tag = readByte();
+            return switch (tag) {
+                case PATH -> {
+                    final boolean fakeRoot = readByte() != 0;
+                    yield new JSONPath(env, readSegments(), fakeRoot);
+                }
+                case COMPOUND -> {
+                    CompoundJSONPath compound = new CompoundJSONPath(env, readPath());
+                    for (int i = 0, n = readVarInt(); i < n; i++) {
+                        final int operator = readByte();
+                        if (!(readPath() instanceof JSONPath path)) {
+                            throw new StreamCorruptedException("nested compound path");
+                        }
+                        compound = switch (operator) {
+                            case UNION -> compound.union(path);
+                            case INTERSECTION -> compound.intersection(path);
+                            default -> throw corrupt("operator", operator);
+                        };
+                    }
+                    yield compound;
+                }
+                default -> throw corrupt("path", tag);
+            };
+        }
+
+        List<JSONPathSegment> readSegments() throws IOException {
+            final int n = readVarInt();
+            final List<JSONPathSegment> segments = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                final int tag = readByte();
+                final Token token = readToken();
+                final JSONPathSelector[] selectors = new JSONPathSelector[readVarInt()];
+                for (int j = 0; j < selectors.length; j++) {
+                    selectors[j] = readSelector();
+                }
+                segments.add(switch (tag) {
+                    case CHILD -> new JSONPathChildSegment(env, token, selectors);
+                    case DESCENDANT -> new JSONPathRecursiveDescentSegment(env, token, selectors);
+                    default -> throw corrupt("segment", tag);
+                });
+            }
+            return segments;
+        }
+
+        JSONPathSelector readSelector() throws IOException {
+            final int tag = readByte();
+            final Token token = readToken();
+            return switch (tag) {
+                case NAME -> {
+                    final String name = readString();
+                    yield new NameSelector(token, name, readByte() != 0);
+                }
+                case INDEX -> new IndexSelector(token, readVarLong());
+                case SLICE -> {
+                    final int present = readByte();
+                    final Long start = (present & 1) != 0 ? readVarLong() : null;
+                    final Long stop = (present & 2) != 0 ? readVarLong() : null;
+                    final Long step = (present & 4) != 0 ? readVarLong() : null;
+                    yield new SliceSelector(token, start, stop, step);
+                }
+                case WILDCARD -> new WildcardSelector(token);
+                case KEYS -> new KeysSelector(token);
+                case FILTER -> new FilterSelector(token, readExpression());
+                default -> throw corrupt("selector", tag);
+            };
+        }
+
+        FilterExpression readExpression() throws IOException {
+            final int tag = readByte();
+            return switch (tag) {
+                case LITERAL -> literal(readValue());
+                case LIST_LITERAL -> {
+                    if (!(readValue() instanceof List<?> values)) {
+                        throw new StreamCorruptedException("list literal without a list");
+                    }
+                    yield new ListLiteral(new ArrayList<>(values));
+                }
+                case CURRENT_KEY -> new CurrentKey();
+                case REGEX -> regex(readString(), readString());
+                case QUERY -> {
+                    final FilterQuery.Anchor anchor = element(ANCHORS, readByte(), "anchor");
+                    yield new FilterQuery(anchor, readSegments());
+                }
+                case FUNCTION -> {
+                    final String name = readString();
+                    final FilterFunction function = env.getFunctionExtensions().get(name);
+                    if (function == null) {
+                        throw new StreamCorruptedException("unknown function extension '%s'".formatted(name));
+                    }
+                    yield new FunctionCall(name, function, readExpressions());
+                }
+                case COMPARISON -> {
+                    final ComparisonOperator operator = element(COMPARISON_OPERATORS, readByte(), "operator");
+                    final FilterExpression left = readExpression();
+                    yield new Comparison(operator, left, readExpression());
+                }
+                case LOGICAL -> {
+                    final LogicalOperator operator = element(LOGICAL_OPERATORS, readByte(), "operator");
+                    yield new Logical(operator, readExpressions());
+                }
+                case NOT -> new Not(readExpression());
+                case HOISTED -> {
+                    final int slot = readVarInt();
+                    yield new Hoisted(readExpression(), slot);
+                }
+                default -> throw corrupt("expression", tag);
+            };
+        }
+
+        List<FilterExpression> readExpressions() throws IOException {
+            final int n = readVarInt();
+            final List<FilterExpression> expressions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                expressions.add(readExpression());
+            }
+            return expressions;
+        }
+
+        Object readValue() throws IOException {
+            final int tag = readByte();
+            return switch (tag) {
+                case NULL_VALUE -> null;
+                case UNDEFINED_VALUE -> UNDEFINED;
+                case FALSE_VALUE -> Boolean.FALSE;
+                case TRUE_VALUE -> Boolean.TRUE;
+                case INT_VALUE -> (int) readVarLong();
+                case LONG_VALUE -> readVarLong();
+                case DOUBLE_VALUE -> Double.longBitsToDouble(readLong());
+                case BIG_INTEGER_VALUE -> new BigInteger(readString());
+                case BIG_DECIMAL_VALUE -> new BigDecimal(readString());
+                case STRING_VALUE -> readString();
+                case LIST_VALUE -> {
+                    final int n = readVarInt();
+                    final List<Object> list = new ArrayList<>(Math.min(n, limit - position));
+                    for (int i = 0; i < n; i++) {
+                        list.add(readValue());
+                    }
+                    yield list;
+                }
+                default -> throw corrupt("value", tag);
+            };
+        }
+
+        private static Literal literal(Object value) {
+            if (value == null) {
+                return Literal.NULL;
+            }
+            if (value == UNDEFINED) {
+                return Literal.NOTHING;
+            }
+            if (value instanceof Boolean b) {
+                return b ? Literal.TRUE : Literal.FALSE;
+            }
+            return new Literal(value);
+        }
+
+        private static RegexLiteral regex(String source, String flags) throws StreamCorruptedException {
+            int patternFlags = 0;
+            for (int i = 0; i < flags.length(); i++) {
+                final int flag = RegexLiteral.patternFlags(flags.charAt(i));
+                if (flag < 0) {
+                    throw new StreamCorruptedException("unknown regular expression flag '%c'".formatted(flags.charAt(i)));
+                }
+                patternFlags |= flag;
+            }
+            try {
+                return new RegexLiteral(source, flags, Pattern.compile(source, patternFlags));
+            } catch (PatternSyntaxException e) {
+                throw new StreamCorruptedException("invalid regular expression /%s/".formatted(source));
+            }
+        }
+
+        Token readToken() throws IOException {
+            final String kind = readString();
+            final String value = readString();
+            final long index = readVarLong();
+            final String path = readString();
+            try {
+                return new Token(TokenKind.valueOf(kind), value, (int) index, path);
+            } catch (IllegalArgumentException e) {
+                throw new StreamCorruptedException("unknown token kind " + kind);
+            }
+        }
+
+        String readString() throws IOException {
+            final int index = readVarInt();
+            if (index > 0) {
+                if (index > strings.size()) {
+                    throw corrupt("string index", index);
+                }
+                return strings.get(index - 1);
+            }
+            final int length = readVarInt();
+            if (length > limit - position) {
+                throw new EOFException();
+            }
+            final char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                final int b = readByte();
+                if (b < 0x80) {
+                    chars[i] = (char) b;
+                } else {
+                    position--;
+                    chars[i] = (char) readVarInt();
+                }
+            }
+            final String s = new String(chars);
+            strings.add(s);
+            return s;
+        }
+
+        int readByte() throws EOFException {
+            if (position >= limit) {
+                throw new EOFException();
+            }
+            return buf[position++] & 0xFF;
+        }
+
+        int readInt() throws EOFException {
+            int v = 0;
+            for (int i = 0; i < 4; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+
+        long readLong() throws EOFException {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        int readVarInt() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final int b = readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new StreamCorruptedException("malformed varint");
+        }
+
+        long readVarLong() throws IOException {
+            long zigzag = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                final int b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new StreamCorruptedException("malformed varlong");
+        }
+
+        private static <T> T element(T[] values, int ordinal, String what) throws StreamCorruptedException {
+            if (ordinal >= values.length) {
+                throw corrupt(what, ordinal);
+            }
+            return values[ordinal];
+        }
+
+        private static StreamCorruptedException corrupt(String what, int tag) {
+            return new StreamCorruptedException("invalid %s tag %d".formatted(what, tag));
+        }
+    }
+}
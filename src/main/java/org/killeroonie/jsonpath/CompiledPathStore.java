@@ -0,0 +1,340 @@
+package org.killeroonie.jsonpath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of compiled paths on disk, consulted by {@link JSONPathEnvironment#compile(String)} before it lexes and
+ * parses a path string. See {@link JSONPathEnvironment#setCompiledPathDirectory(Path)}.
+ * <p>
+ * The paths of an environment are stored in one file in the cache directory, named after the environment's
+ * {@linkplain JSONPathEnvironment#getRulesFingerprint() rules fingerprint}. An environment whose rules change has a
+ * different fingerprint, so it uses a new file, and never sees the paths compiled under the old rules. The file is read
+ * in full on first use, and each newly compiled path is appended to it as a record of its path string and its
+ * {@linkplain CompiledPathCodec serialized} form. A record is only decoded when its path is compiled.
+ * <p>
+ * A store never makes compiling fail: a record that can't be read, or a path that can't be written, is compiled from
+ * its path string as if there were no store. A file truncated by a crash loses only its incomplete last record.
+ * <p>
+ * Many processes can share a directory. Each record is appended while holding a lock on the file, at the end of the
+ * file as it is then, after reading the records that other processes have appended since. Files for old fingerprints
+ * are left in the directory; they can be deleted while no process uses them.
+ */
+public final class CompiledPathStore implements Closeable {
+
+    /**
+     * The extension of the files of compiled paths.
+     */
+    public static final String FILE_EXTENSION = ".jpc";
+
+    private static final int MAGIC = 0x4A504353; // "JPCS"
+    private static final int RECORD_HEADER_SIZE = 8; // the length and the CRC-32 of the record
+    // file locks are held by the whole process, so the stores of one process that share a file take turns first
+    private static final Map<Path, Object> FILE_MONITORS = new ConcurrentHashMap<>();
+
+    /**
+     * A snapshot of a store's counters.
+     *
+     * @param hits     the number of paths loaded from the store.
+     * @param misses   the number of paths compiled because they weren't in the store, or couldn't be loaded.
+     * @param writes   the number of paths appended to the store's file.
+     * @param failures the number of records that couldn't be loaded and paths that couldn't be written.
+     * @param size     the number of paths in the store.
+     */
+    public record Stats(long hits, long misses, long writes, long failures, int size) {}
+
+    private final JSONPathEnvironment env;
+    private final Path directory;
+    private final Object lock = new Object();
+    private volatile Map<String, byte[]> records; // serialized paths by path string, read on first use
+    private FileChannel channel; // guarded by lock, opened by the first write
+    private long validLength; // guarded by lock, the length of the file up to the end of the last record read, or 0
+    private boolean closed; // guarded by lock
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param env       the environment that compiles and loads the paths.
+     * @param directory the directory of the cache. It's created when the first path is written.
+     */
+    public CompiledPathStore(JSONPathEnvironment env, Path directory) {
+        this.env = env;
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the file of this store's environment in the cache directory.
+     */
+    public Path getFile() {
+        return directory.resolve(env.getRulesFingerprint() + FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the compiled path for {@code path}, loaded from the store if it's there, or else compiled by
+     * {@code compiler} and appended to the store. Exceptions thrown by {@code compiler} are passed to the caller, and
+     * nothing is stored for the path.
+     *
+     * @param path     the path string.
+     * @param compiler lexes and parses the path string when it isn't in the store.
+     * @return the compiled path.
+     */
+    public CompiledJSONPath get(String path, Function<String, ? extends CompiledJSONPath> compiler) {
+        final Map<String, byte[]> records = records();
+        final byte[] record = records.get(path);
+        if (record != null) {
+            try {
+                final CompiledJSONPath loaded = CompiledPathCodec.deserializeBody(env, record, 0, record.length);
+                hits.increment();
+                return loaded;
+            } catch (IOException e) {
+                failures.increment();
+                records.remove(path, record);
+            }
+        }
+        misses.increment();
+        final CompiledJSONPath compiled = compiler.apply(path);
+        final byte[] serialized;
+        try {
+            serialized = CompiledPathCodec.serializeBody(compiled);
+        } catch (NotSerializableException e) {
+            failures.increment();
+            return compiled;
+        }
+        if (records.putIfAbsent(path, serialized) == null) {
+            append(path, serialized);
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the number of paths in the store.
+     */
+    public int size() {
+        return records().size();
+    }
+
+    /**
+     * @return a snapshot of the counters of this store.
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), writes.sum(), failures.sum(), size());
+    }
+
+    /**
+     * Closes the file of this store. Paths compiled after the store is closed are still loaded from it, but new paths
+     * aren't written to it.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private Map<String, byte[]> records() {
+        Map<String, byte[]> result = records;
+        if (result == null) {
+            synchronized (lock) {
+                result = records;
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    validLength = load(result);
+                    records = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the records of the file into {@code records}.
+     *
+     * @return the length of the file up to the end of its last complete record, or 0 if there is no file, or it isn't
+     * a file of this store's environment.
+     */
+    private long load(Map<String, byte[]> records) {
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(getFile());
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            failures.increment();
+            return 0;
+        }
+        final byte[] header = header();
+        if (bytes.length < header.length || !ByteBuffer.wrap(bytes, 0, header.length).equals(ByteBuffer.wrap(header))) {
+            return 0;
+        }
+        final int end = readRecords(bytes, header.length, records);
+        if (end < bytes.length) {
+            failures.increment(); // an incomplete or damaged record, which the next write replaces
+        }
+        return end;
+    }
+
+    /**
+     * Reads the records of {@code bytes} from {@code offset} into {@code records}.
+     *
+     * @return the offset of the end of the last complete record.
+     */
+    private static int readRecords(byte[] bytes, int offset, Map<String, byte[]> records) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(offset);
+        final CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length < 4 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, buffer.position(), length);
+            final int keyLength = buffer.getInt(buffer.position());
+            if ((int) crc.getValue() != checksum || keyLength < 0 || keyLength > length - 4) {
+                buffer.position(start);
+                break;
+            }
+            final String key = new String(bytes, buffer.position() + 4, keyLength, StandardCharsets.UTF_8);
+            final int bodyOffset = buffer.position() + 4 + keyLength;
+            final byte[] body = new byte[length - 4 - keyLength];
+            System.arraycopy(bytes, bodyOffset, body, 0, body.length);
+            records.put(key, body);
+            buffer.position(buffer.position() + length);
+        }
+        return buffer.position();
+    }
+
+    private byte[] header() {
+        final byte[] fingerprint = env.getRulesFingerprint().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(8 + fingerprint.length)
+                .putInt(MAGIC)
+                .putShort((short) CompiledPathCodec.FORMAT_VERSION)
+                .putShort((short) fingerprint.length)
+                .put(fingerprint)
+                .array();
+    }
+
+    /**
+     * Appends a record to the file, writing the file's header first if the file is new.
+     */
+    private void append(String path, byte[] body) {
+        final byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        final int length = 4 + key.length + body.length;
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(0).putInt(key.length).put(key).put(body);
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(4, (int) crc.getValue()).flip();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                final Path file = getFile();
+                if (channel == null) {
+                    Files.createDirectories(directory);
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+                }
+                synchronized (FILE_MONITORS.computeIfAbsent(file.toAbsolutePath(), f -> new Object())) {
+                    try (FileLock ignored = channel.lock()) {
+                        long position = catchUp();
+                        while (record.hasRemaining()) {
+                            position += channel.write(record, position);
+                        }
+                        validLength = position;
+                    }
+                }
+                writes.increment();
+            } catch (IOException e) {
+                failures.increment();
+                closed = true; // the file may be damaged, so stop writing to it
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException ignored) {
+                    // already failed
+                }
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Brings the file up to date before a record is appended, while its lock is held: writes the header if the file is
+     * new, or isn't a file of this store's environment, reads the records that other processes have appended since
+     * the file was read, and drops an incomplete last record left by a crash.
+     *
+     * @return the length of the file, where the next record goes.
+     */
+    private long catchUp() throws IOException {
+        long size = channel.size();
+        if (size < validLength) {
+            validLength = 0; // the file was replaced, so it's read again from its header
+        }
+        if (validLength == 0) {
+            final byte[] header = header();
+            final ByteBuffer existing = ByteBuffer.allocate(header.length);
+            if (size >= header.length) {
+                readFully(existing, 0);
+            }
+            if (existing.flip().equals(ByteBuffer.wrap(header))) {
+                validLength = header.length;
+            } else {
+                channel.truncate(0);
+                final ByteBuffer buffer = ByteBuffer.wrap(header);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position());
+                }
+                validLength = header.length;
+                return validLength;
+            }
+        }
+        if (size > validLength) {
+            final ByteBuffer appended = ByteBuffer.allocate(Math.toIntExact(size - validLength));
+            readFully(appended, validLength);
+            validLength += readRecords(appended.array(), 0, records);
+            if (size > validLength) {
+                channel.truncate(validLength);
+            }
+        }
+        return validLength;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.killeroonie.jsonpath;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Multiple JSONPaths combined.
+ */
+public class CompoundJSONPath implements CompiledJSONPath {
+    public final JSONPathEnvironment env;
+    public final CompiledJSONPath path; // a JSONPath or CompoundJSONPath
+    public final List<PathOperation> paths;
+
+    /**
+     * A path combined with the paths before it by the union or intersection operator.
+     *
+     * @param op   the operator, either {@code env.unionToken} or {@code env.intersectionToken}.
+     * @param path the path to combine.
+     */
+    public record PathOperation(String op, JSONPath path) {}
+
+    public CompoundJSONPath(JSONPathEnvironment env, CompiledJSONPath path, Iterable<PathOperation> paths) {
+        this.env = env;
+        this.path = path;
+        List<PathOperation> ops = new ArrayList<>();
+        for (PathOperation pathOp : paths) {
+            ops.add(pathOp);
+        }
+        this.paths = List.copyOf(ops);
+    }
+
+    public CompoundJSONPath(JSONPathEnvironment env, CompiledJSONPath path) {
+        this(env, path, List.of());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder(path.toString());
+        for (PathOperation pathOp : paths) {
+            buf.append(" ").append(pathOp.op).append(" ");
+            buf.append(pathOp.path.toString());
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof CompoundJSONPath otherPath)) {
+            return false;
+        }
+        return path.equals(otherPath.path) && paths.equals(otherPath.paths);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, paths);
+    }
+
+    /**
+     * Find all objects in data matching the given JSONPath path.
+     * <p>
+     * If data is a string or a file-like object, it will be loaded
+     * using JSON parsing and the default JSONDecoder.
+     *
+     * @param data A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A list of matched objects. If there are no matches, the list will be empty.
+     * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
+     *                         in an incompatible way.
+     */
+    @Override
+    public List<Object> findall(Object data, FilterContextVars filterContext) {
+        List<Object> objs = new ArrayList<>(path.findall(data, filterContext));
+
+        for (PathOperation pathOp : paths) {
+            List<Object> _objs = pathOp.path.findall(data, filterContext);
+            if (pathOp.op.equals(env.unionToken)) {
+                objs.addAll(_objs);
+            } else {
+                assert pathOp.op.equals(env.intersectionToken) : pathOp.op;
+                objs = objs.stream().filter(_objs::contains).collect(Collectors.toList());
+            }
+        }
+
+        return objs;
+    }
+
+    /**
+     * Generate JSONPathMatch objects for each match.
+     * <p>
+     * If data is a string or a file-like object, it will be loaded
+     * using JSON parsing and the default JSONDecoder.
+     *
+     * @param data A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return An iterator yielding JSONPathMatch objects for each match. The matches of each path are found lazily,
+     * and the paths of a union are only applied when the matches before them have been consumed.
+     * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types incompatibly.
+     */
+    @Override
+    public Iterable<JSONPathMatch> finditer(Object data, FilterContextVars filterContext) {
+        Iterable<JSONPathMatch> matches = path.finditer(data, filterContext);
+
+        for (PathOperation pathOp : paths) {
+            final Iterable<JSONPathMatch> left = matches;
+            final JSONPath right = pathOp.path;
+            if (pathOp.op.equals(env.unionToken)) {
+                matches = () -> new UnionIterator(left.iterator(), () -> right.finditer(data, filterContext).iterator());
+            } else {
+                assert pathOp.op.equals(env.intersectionToken);
+                matches = () -> {
+                    // all the right matches are needed to filter the left ones, but only once iteration starts
+                    List<Object> _objs = right.findall(data, filterContext);
+                    return StreamSupport.stream(left.spliterator(), false)
+                            .filter(match -> _objs.contains(match.obj))
+                            .iterator();
+                };
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * The matches of the left path followed by those of the right path, which is only applied once the left matches
+     * have all been consumed.
+     */
+    private static final class UnionIterator implements Iterator<JSONPathMatch> {
+        private final Iterator<JSONPathMatch> left;
+        private final Supplier<Iterator<JSONPathMatch>> rightSupplier;
+        private Iterator<JSONPathMatch> right;
+
+        UnionIterator(Iterator<JSONPathMatch> left, Supplier<Iterator<JSONPathMatch>> rightSupplier) {
+            this.left = left;
+            this.rightSupplier = rightSupplier;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (right == null) {
+                if (left.hasNext()) {
+                    return true;
+                }
+                right = rightSupplier.get();
+            }
+            return right.hasNext();
+        }
+
+        @Override
+        public JSONPathMatch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return right == null ? left.next() : right.next();
+        }
+    }
+
+    /**
+     * Return a JSONPathMatch instance for the first object found in data.
+     * <p>
+     * null is returned if there are no matches.
+     *
+     * @param data A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A JSONPathMatch object for the first match, or null if there were no matches.
+     * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
+     *                         in an incompatible way.
+     */
+    @Override
+    public JSONPathMatch match(Object data, FilterContextVars filterContext) {
+        Iterator<JSONPathMatch> iterator = finditer(data, filterContext).iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * An async version of findall().
+     */
+    @Override
+    public CompletableFuture<List<Object>> findallAsync(Object data, FilterContextVars filterContext) {
+        CompletableFuture<List<Object>> objsFuture = path.findallAsync(data, filterContext);
+
+        return objsFuture.thenCompose(objs -> {
+            List<CompletableFuture<List<Object>>> futures = new ArrayList<>();
+            for (PathOperation pathOp : paths) {
+                futures.add(pathOp.path.findallAsync(data, filterContext));
+            }
+
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> {
+                        List<Object> result = new ArrayList<>(objs);
+                        for (int i = 0; i < paths.size(); i++) {
+                            PathOperation pathOp = paths.get(i);
+                            List<Object> _objs = futures.get(i).join();
+                            if (pathOp.op.equals(env.unionToken)) {
+                                result.addAll(_objs);
+                            } else {
+                                assert pathOp.op.equals(env.intersectionToken);
+                                result = result.stream().filter(_objs::contains).collect(Collectors.toList());
+                            }
+                        }
+                        return result;
+                    });
+        });
+    }
+
+    /**
+     * An async version of finditer().
+     */
+    @Override
+    public CompletableFuture<Stream<JSONPathMatch>> finditerAsync(Object data, FilterContextVars filterContext) {
+        CompletableFuture<Stream<JSONPathMatch>> matchesFuture = path.finditerAsync(data, filterContext);
+
+        return matchesFuture.thenCompose(matches -> {
+            CompletableFuture<Stream<JSONPathMatch>> result = CompletableFuture.completedFuture(matches);
+
+            for (PathOperation pathOp : paths) {
+                result = result.thenCompose(currentMatches -> {
+                    return pathOp.path.finditerAsync(data, filterContext)
+                            .thenApply(_matches -> {
+                                if (pathOp.op.equals(env.unionToken)) {
+                                    return Stream.concat(currentMatches, _matches);
+                                } else {
+                                    assert pathOp.op.equals(env.intersectionToken);
+                                    List<Object> _objs = _matches.map(match -> match.obj).collect(Collectors.toList());
+                                    return currentMatches.filter(match -> _objs.contains(match.obj));
+                                }
+                            });
+                });
+            }
+
+            return result;
+        });
+    }
+
+    /**
+     * Return a Query iterator over matches found by applying this path to data.
+     *
+     * @param data A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return A query iterator.
+     * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
+     *                         in an incompatible way.
+     */
+    @Override
+    public Query query(Object data, FilterContextVars filterContext) {
+        return new Query(finditer(data, filterContext), env);
+    }
+
+    /**
+     * Union of this path and another path.
+     */
+    public CompoundJSONPath union(JSONPath path) {
+        List<PathOperation> newPaths = new ArrayList<>(paths);
+        newPaths.add(new PathOperation(env.unionToken, path));
+        return new CompoundJSONPath(env, this.path, newPaths);
+    }
+
+    /**
+     * Intersection of this path and another path.
+     */
+    public CompoundJSONPath intersection(JSONPath path) {
+        List<PathOperation> newPaths = new ArrayList<>(paths);
+        newPaths.add(new PathOperation(env.intersectionToken, path));
+        return new CompoundJSONPath(env, this.path, newPaths);
+    }
+}
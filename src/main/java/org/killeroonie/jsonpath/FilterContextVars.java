@@ -0,0 +1,35 @@
+package org.killeroonie.jsonpath;
+
+import java.util.Map;
+
+/**
+ * Arbitrary data made available to filter expressions by the filter context selector.
+ * <p>
+ * Queries starting with the filter context token, {@code _} by default, select from the data, e.g.
+ * {@code $.users[?@.age >= _.minAge]}.
+ */
+public class FilterContextVars {
+
+    private final Object data;
+
+    /**
+     * Creates a filter context with no data. Filter context queries select nothing.
+     */
+    public FilterContextVars() {
+        this(Map.of());
+    }
+
+    /**
+     * @param data a JSON document or Java object implementing the List or Map interfaces.
+     */
+    public FilterContextVars(Object data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the data selected by filter context queries.
+     */
+    public Object getData() {
+        return data;
+    }
+}
@@ -0,0 +1,155 @@
+package org.killeroonie.jsonpath;
+
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The function extensions of an environment, by name. A thread-safe map that tells its environment when a function is
+ * added, replaced or removed, so the paths compiled with the old functions aren't returned by
+ * {@link JSONPathEnvironment#compile(String)} anymore.
+ * <p>
+ * Every change goes through {@link #put}, {@link #remove}, {@link #putIfAbsent}, {@link #replace} or {@link #clear},
+ * including the changes made by the default methods of {@link ConcurrentMap} and through the views of the map. The
+ * entries of the views can't be set.
+ */
+final class FunctionExtensions extends AbstractMap<String, FilterFunction>
+        implements ConcurrentMap<String, FilterFunction> {
+
+    private final ConcurrentHashMap<String, FilterFunction> functions;
+    private final Runnable onChange;
+    private final Set<Map.Entry<String, FilterFunction>> entrySet = new EntrySet();
+
+    /**
+     * @param functions the initial functions, by name.
+     * @param onChange  called after each change of the map.
+     */
+    FunctionExtensions(Map<String, FilterFunction> functions, Runnable onChange) {
+        this.functions = new ConcurrentHashMap<>(functions);
+        this.onChange = onChange;
+    }
+
+    @Override
+    public int size() {
+        return functions.size();
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return functions.containsKey(name);
+    }
+
+    @Override
+    public FilterFunction get(Object name) {
+        return functions.get(name);
+    }
+
+    @Override
+    public FilterFunction put(String name, FilterFunction function) {
+        final FilterFunction previous = functions.put(name, function);
+        if (previous != function) {
+            onChange.run();
+        }
+        return previous;
+    }
+
+    @Override
+    public FilterFunction remove(Object name) {
+        final FilterFunction previous = functions.remove(name);
+        if (previous != null) {
+            onChange.run();
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (!functions.isEmpty()) {
+            functions.clear();
+            onChange.run();
+        }
+    }
+
+    @Override
+    public FilterFunction putIfAbsent(String name, FilterFunction function) {
+        final FilterFunction previous = functions.putIfAbsent(name, function);
+        if (previous == null) {
+            onChange.run();
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object name, Object function) {
+        final boolean removed = functions.remove(name, function);
+        if (removed) {
+            onChange.run();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean replace(String name, FilterFunction oldFunction, FilterFunction newFunction) {
+        final boolean replaced = functions.replace(name, oldFunction, newFunction);
+        if (replaced && oldFunction != newFunction) {
+            onChange.run();
+        }
+        return replaced;
+    }
+
+    @Override
+    public FilterFunction replace(String name, FilterFunction function) {
+        final FilterFunction previous = functions.replace(name, function);
+        if (previous != null && previous != function) {
+            onChange.run();
+        }
+        return previous;
+    }
+
+    @Override
+    public Set<Map.Entry<String, FilterFunction>> entrySet() {
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, FilterFunction>> {
+        @Override
+        public int size() {
+            return functions.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, FilterFunction>> iterator() {
+            final Iterator<Map.Entry<String, FilterFunction>> it = functions.entrySet().iterator();
+            return new Iterator<>() {
+                private String last;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, FilterFunction> next() {
+                    final Map.Entry<String, FilterFunction> entry = it.next();
+                    last = entry.getKey();
+                    return Map.entry(last, entry.getValue());
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    FunctionExtensions.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+    }
+}
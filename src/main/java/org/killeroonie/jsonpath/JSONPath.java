@@ -1,71 +1,100 @@
 package org.killeroonie.jsonpath;
 
+import org.killeroonie.jsonpath.codegen.CodegenException;
+import org.killeroonie.jsonpath.evaluator.DocumentModel;
+import org.killeroonie.jsonpath.evaluator.EvaluationStrategy;
+import org.killeroonie.jsonpath.evaluator.PathCodegen;
+import org.killeroonie.jsonpath.evaluator.PathEvaluator;
+import org.killeroonie.jsonpath.evaluator.PathProgram;
+import org.killeroonie.jsonpath.evaluator.SingularPath;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import org.killeroonie.jsonpath.JSONPathEnvironment;
 /**
  * A compiled JSONPath ready to be applied to a JSON string or Java object.
  */
-public class JSONPath {
+public class JSONPath implements CompiledJSONPath {
+
+    private static final Logger logger = LoggerFactory.getLogger(JSONPath.class);
+
     /**
      * The JSONPathEnvironment this path is bound to.
      */
     public final JSONPathEnvironment env;
     /**
-     * The JSONPathSelector instances that make up this path.
+     * The JSONPathSegment instances that make up this path.
      */
-    public final List<JSONPathSelector> selectors;
+    public final List<JSONPathSegment> segments;
     private final boolean fakeRoot;
+    private final SingularPath singularPath; // the steps of a singular query, or null
+    private volatile GeneratedEvaluator generated; // created on first use by the BYTECODE evaluation strategy
+    private volatile PathProgram program; // created on first use by the VM evaluation strategy
+
+    /**
+     * The evaluator of this path for a document model.
+     */
+    private record GeneratedEvaluator(DocumentModel model, PathEvaluator evaluator) {}
 
     /**
      * A compiled JSONPath ready to be applied to a JSON string or Java object.
      *
      * @param env       The JSONPathEnvironment this path is bound to.
-     * @param selectors An iterable of JSONPathSelector objects, as generated by a Parser.
+     * @param segments  An iterable of JSONPathSegment objects, as generated by a Parser.
      * @param fakeRoot  Indicates if target JSON values should be wrapped in a single-element array to make
      *                  the target root value selectable.
      */
-    public JSONPath(JSONPathEnvironment env, Iterable<JSONPathSelector> selectors, boolean fakeRoot) {
+    public JSONPath(JSONPathEnvironment env, Iterable<JSONPathSegment> segments, boolean fakeRoot) {
         this.env = env;
-        this.selectors = new ArrayList<>();
-        for (JSONPathSelector selector : selectors) {
-            this.selectors.add(selector);
+        if (segments instanceof List<JSONPathSegment> list) {
+            this.segments = List.copyOf(list);
+        } else {
+            List<JSONPathSegment> list = new ArrayList<>();
+            for (JSONPathSegment segment : segments) {
+                list.add(segment);
+            }
+            this.segments = List.copyOf(list);
         }
         this.fakeRoot = fakeRoot;
+        this.singularPath = SingularPath.compile(this.segments);
     }
 
-    public JSONPath(JSONPathEnvironment env, Iterable<JSONPathSelector> selectors) {
-        this(env, selectors, false);
+    public JSONPath(JSONPathEnvironment env, Iterable<JSONPathSegment> segments) {
+        this(env, segments, false);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(env.rootToken);
-        for (JSONPathSelector selector : selectors) {
-            sb.append(selector.toString());
+        for (JSONPathSegment segment : segments) {
+            sb.append(segment.toString());
         }
         return sb.toString();
     }
 
     @Override
     public boolean equals(Object other) {
-        if (!(other instanceof JSONPath)) {
+        if (!(other instanceof JSONPath otherPath)) {
             return false;
         }
-        JSONPath otherPath = (JSONPath) other;
-        return selectors.equals(otherPath.selectors);
+        return fakeRoot == otherPath.fakeRoot && segments.equals(otherPath.segments);
     }
 
     @Override
     public int hashCode() {
-        return selectors.hashCode();
+        return segments.hashCode();
     }
 
     /**
@@ -80,14 +109,37 @@ public class JSONPath {
      * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
      *                          in an incompatible way.
      */
+    @Override
     public List<Object> findall(Object data, FilterContextVars filterContext) {
-        return StreamSupport.stream(finditer(data, filterContext).spliterator(), false)
-                .map(match -> match.obj)
-                .collect(Collectors.toList());
+        final List<Object> values = new ArrayList<>();
+        if (strategy() == EvaluationStrategy.BYTECODE) {
+            generatedEvaluator().evaluate(rootMatch(data, filterContext), match -> values.add(match.obj));
+        } else {
+            for (Object value : values(data, filterContext)) {
+                values.add(value);
+            }
+        }
+        return values;
     }
 
-    public List<Object> findall(Object data) {
-        return findall(data, null);
+    /**
+     * Generate the objects in data matching this path, lazily.
+     * <p>
+     * With the {@link EvaluationStrategy#VM} evaluation strategy, the locations of the matches aren't tracked at all,
+     * and no JSONPathMatch is created. {@link #findall} finds its objects this way.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return An iterable over the matched objects.
+     */
+    @Override
+    public Iterable<Object> values(Object data, FilterContextVars filterContext) {
+        if (strategy() == EvaluationStrategy.VM) {
+            final JSONPathMatch root = rootMatch(data, filterContext);
+            final PathProgram program = program();
+            return () -> program.values(root);
+        }
+        return CompiledJSONPath.super.values(data, filterContext);
     }
 
     /**
@@ -98,72 +150,183 @@ public class JSONPath {
      *
      * @param data          A JSON document or Java object implementing the List or Map interfaces.
      * @param filterContext Arbitrary data made available to filters using the filter context selector.
-     * @return An iterator yielding JSONPathMatch objects for each match.
+     * @return An iterator yielding JSONPathMatch objects for each match. The matches are found lazily, unless the
+     * environment's evaluation strategy is {@link EvaluationStrategy#BYTECODE}.
      * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
      *                          in an incompatible way.
      */
+    @Override
     public Iterable<JSONPathMatch> finditer(Object data, FilterContextVars filterContext) {
+        final JSONPathMatch root = rootMatch(data, filterContext);
+        return switch (strategy()) {
+            case INTERPRETER -> resolve(root);
+            case VM -> {
+                final PathProgram program = program();
+                yield () -> program.iterator(root);
+            }
+            case BYTECODE -> {
+                final List<JSONPathMatch> matches = new ArrayList<>();
+                generatedEvaluator().evaluate(root, matches::add);
+                yield matches;
+            }
+        };
+    }
+
+    /**
+     * Generate JSONPathMatch objects for each match, as a sequential stream that can be made parallel.
+     * <p>
+     * The stream applies the segments with the interpreter, whatever the evaluation strategy. When it is parallel, the
+     * elements of arrays of at least {@link JSONPathEnvironment#parallelThreshold} elements selected by a wildcard,
+     * slice or filter selector are split between its workers. Smaller arrays are selected by a single worker.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return An ordered stream of JSONPathMatch objects for each match.
+     */
+    @Override
+    public Stream<JSONPathMatch> stream(Object data, FilterContextVars filterContext) {
+        Spliterator<JSONPathMatch> matches = Spliterators.spliterator(
+                new Object[] {rootMatch(data, filterContext)}, Spliterator.ORDERED | Spliterator.NONNULL);
+        for (JSONPathSegment segment : segments) {
+            matches = segment.spliterator(matches, env.parallelThreshold);
+        }
+        return StreamSupport.stream(matches, false);
+    }
+
+    /**
+     * Pass each object in data matching this path to {@code consumer}, in order, with its location.
+     * <p>
+     * With the {@link EvaluationStrategy#VM} evaluation strategy, no JSONPathMatch is created for the matches, unless
+     * the consumer asks for one with {@link PathCursor#toMatch()}.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @param consumer      Receives each matched object and its location, which is only valid during the call.
+     */
+    @Override
+    public void forEach(Object data, FilterContextVars filterContext, MatchConsumer consumer) {
+        if (strategy() == EvaluationStrategy.VM) {
+            program().forEach(rootMatch(data, filterContext), consumer);
+        } else {
+            CompiledJSONPath.super.forEach(data, filterContext, consumer);
+        }
+    }
+
+    /**
+     * Return the object in data matching this path, or {@link JSONPointer#UNDEFINED} if there is none.
+     * <p>
+     * A singular query is evaluated by following its names and indices, whatever the evaluation strategy, and no
+     * JSONPathMatch is created. Other paths return their first match.
+     *
+     * @param data          A JSON document or Java object implementing the List or Map interfaces.
+     * @param filterContext Arbitrary data made available to filters using the filter context selector.
+     * @return The matched object, which may be null, or {@code UNDEFINED}.
+     */
+    @Override
+    public Object get(Object data, FilterContextVars filterContext) {
+        if (singularPath != null) {
+            final Object _data = JsonLoader.load(data);
+            return singularPath.get(fakeRoot ? Arrays.asList(_data) : _data);
+        }
+        return CompiledJSONPath.super.get(data, filterContext);
+    }
+
+    private JSONPathMatch rootMatch(Object data, FilterContextVars filterContext) {
         Object _data = JsonLoader.load(data);
-        Iterable<JSONPathMatch> matches = Arrays.asList(
-                new JSONPathMatch(
-                        filterContext != null ? filterContext : new FilterContextVars(),
-                        fakeRoot ? Arrays.asList(_data) : _data,
-                        null,
-                        env.rootToken,
-                        new ArrayList<>(),
-                        _data
-                )
+        return new JSONPathMatch(
+                filterContext != null ? filterContext : new FilterContextVars(),
+                fakeRoot ? Arrays.asList(_data) : _data,
+                null,
+                env.rootToken,
+                new ArrayList<>(),
+                _data
         );
+    }
 
-        for (JSONPathSelector selector : selectors) {
-            matches = selector.resolve(matches);
+    /**
+     * Applies the segments to the root match, lazily.
+     */
+    private Iterable<JSONPathMatch> resolve(JSONPathMatch root) {
+        Iterable<JSONPathMatch> matches = List.of(root);
+        for (JSONPathSegment segment : segments) {
+            matches = segment.resolve(matches);
         }
-
         return matches;
     }
 
-    public Iterable<JSONPathMatch> finditer(Object data) {
-        return finditer(data, null);
+    /**
+     * Returns the evaluation strategy of the environment, or {@link EvaluationStrategy#INTERPRETER} if the path has a
+     * descendant segment and the environment enables parallel descent, which only the interpreter does.
+     */
+    private EvaluationStrategy strategy() {
+        if (env.isParallelDescent()) {
+            for (JSONPathSegment segment : segments) {
+                if (segment instanceof JSONPathRecursiveDescentSegment) {
+                    return EvaluationStrategy.INTERPRETER;
+                }
+            }
+        }
+        return env.getEvaluationStrategy();
+    }
+
+    /**
+     * Returns the program of this path, lowering it on first use.
+     */
+    private PathProgram program() {
+        PathProgram result = program;
+        if (result == null) {
+            // threads that race here lower equal programs, and any of them can be kept
+            result = PathProgram.compile(this);
+            program = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the evaluator generated for this path and the environment's document model, generating it on first use.
+     * If the path can't be generated, the evaluator resolves the segments instead.
+     */
+    private PathEvaluator generatedEvaluator() {
+        final DocumentModel model = env.getDocumentModel();
+        GeneratedEvaluator result = generated;
+        if (result == null || result.model() != model) {
+            PathEvaluator evaluator;
+            try {
+                evaluator = PathCodegen.generate(this, model);
+            } catch (CodegenException e) {
+                logger.warn("Interpreting {}: {}", this, e.getMessage());
+                evaluator = (root, sink) -> {
+                    for (JSONPathMatch match : resolve(root)) {
+                        if (!sink.accept(match)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+            // threads that race here generate equivalent evaluators, and any of them can be kept
+            result = new GeneratedEvaluator(model, evaluator);
+            generated = result;
+        }
+        return result.evaluator();
     }
 
     /**
      * An async version of findall().
      */
+    @Override
     public CompletableFuture<List<Object>> findallAsync(Object data, FilterContextVars filterContext) {
         return finditerAsync(data, filterContext)
                 .thenApply(stream -> stream.map(match -> match.obj).collect(Collectors.toList()));
     }
 
-    public CompletableFuture<List<Object>> findallAsync(Object data) {
-        return findallAsync(data, null);
-    }
-
     /**
      * An async version of finditer().
      */
+    @Override
     public CompletableFuture<Stream<JSONPathMatch>> finditerAsync(Object data, FilterContextVars filterContext) {
-        Object _data = JsonLoader.load(data);
-
-        CompletableFuture<Stream<JSONPathMatch>> matches = CompletableFuture.completedFuture(
-                Stream.of(new JSONPathMatch(
-                        filterContext != null ? filterContext : new FilterContextVars(),
-                        fakeRoot ? Arrays.asList(_data) : _data,
-                        null,
-                        env.rootToken,
-                        new ArrayList<>(),
-                        _data
-                ))
-        );
-
-        for (JSONPathSelector selector : selectors) {
-            matches = selector.resolveAsync(matches);
-        }
-
-        return matches;
-    }
-
-    public CompletableFuture<Stream<JSONPathMatch>> finditerAsync(Object data) {
-        return finditerAsync(data, null);
+        return CompletableFuture.completedFuture(
+                StreamSupport.stream(finditer(data, filterContext).spliterator(), false));
     }
 
     /**
@@ -177,15 +340,20 @@ public class JSONPath {
      * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
      *                          in an incompatible way.
      */
+    @Override
     public JSONPathMatch match(Object data, FilterContextVars filterContext) {
+        if (strategy() == EvaluationStrategy.BYTECODE) {
+            final JSONPathMatch[] first = new JSONPathMatch[1];
+            generatedEvaluator().evaluate(rootMatch(data, filterContext), match -> {
+                first[0] = match;
+                return false;
+            });
+            return first[0];
+        }
         Iterator<JSONPathMatch> iterator = finditer(data, filterContext).iterator();
         return iterator.hasNext() ? iterator.next() : null;
     }
 
-    public JSONPathMatch match(Object data) {
-        return match(data, null);
-    }
-
     /**
      * Return a Query iterator over matches found by applying this path to data.
      *
@@ -195,38 +363,33 @@ public class JSONPath {
      * @throws RuntimeException If the path is invalid or if a filter expression attempts to use types
      *                          in an incompatible way.
      */
+    @Override
     public Query query(Object data, FilterContextVars filterContext) {
         return new Query(finditer(data, filterContext), env);
     }
 
-    public Query query(Object data) {
-        return query(data, null);
+    /**
+     * Return true if target values are wrapped in a single-element array, to make the root value selectable.
+     */
+    public boolean isFakeRoot() {
+        return fakeRoot;
     }
 
     /**
-     * Return true if this path has no selectors.
+     * Return true if this path has no segments.
      */
     public boolean empty() {
-        return selectors.isEmpty();
+        return segments.isEmpty();
     }
 
     /**
      * Return true if this JSONPath query is a singular query.
      */
     public boolean singularQuery() {
-        for (JSONPathSelector selector : selectors) {
-            if (selector instanceof PropertySelector || selector instanceof IndexSelector) {
-                continue;
+        for (JSONPathSegment segment : segments) {
+            if (!segment.isSingular()) {
+                return false;
             }
-            if (selector instanceof ListSelector) {
-                ListSelector listSelector = (ListSelector) selector;
-                if (listSelector.items.size() == 1 &&
-                        (listSelector.items.get(0) instanceof PropertySelector ||
-                                listSelector.items.get(0) instanceof IndexSelector)) {
-                    continue;
-                }
-            }
-            return false;
         }
         return true;
     }
@@ -0,0 +1,33 @@
+package org.killeroonie.jsonpath;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a constant path string to be compiled at build time, e.g.
+ * <pre>{@code
+ * public class Queries {
+ *     @JSONPathConstant(env = PJPEnv.class)
+ *     static final String BOOK_TITLES = "$.store.book[*].title";
+ * }
+ * }</pre>
+ * The annotation processor of the {@code processor} project compiles each annotated string with a new instance of
+ * {@link #env()}, and reports a compile error for an invalid path. For each class with annotated constants, it
+ * generates a class named after it with the suffix {@code JSONPaths}, e.g. {@code QueriesJSONPaths}, in the same
+ * package. The generated class has a {@link JSONPath} or {@link CompoundJSONPath} constant of the same name for each
+ * annotated constant, built from its segments and selectors, so the path isn't lexed or parsed at runtime.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface JSONPathConstant {
+
+    /**
+     * @return the environment that compiles the path, and that the generated path is bound to. It must have a public
+     * no-arg constructor, and be on the annotation processor path.
+     */
+    Class<? extends JSONPathEnvironment> env() default PJPEnv.class;
+}
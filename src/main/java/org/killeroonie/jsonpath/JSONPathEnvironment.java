@@ -1,14 +1,26 @@
 package org.killeroonie.jsonpath;
 
 import org.jetbrains.annotations.NotNull;
+import org.killeroonie.jsonpath.evaluator.DocumentModel;
+import org.killeroonie.jsonpath.evaluator.EvaluationStrategy;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.exception.JSONPathTypeException;
 import org.killeroonie.jsonpath.lexer.Lexer;
 import org.killeroonie.jsonpath.lexer.RulesBuilder;
 import org.killeroonie.jsonpath.parser.Parser;
+import org.killeroonie.jsonpath.parser.TokenStream;
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+import org.killeroonie.jsonpath.parser.filter.StandardFunctions;
 
 import java.lang.reflect.Constructor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 
@@ -35,7 +47,7 @@ import java.util.Optional;
  * `lexer_class` or `parser_class`. `lexer_class` must be a subclass of
  * [`Lexer`]() and `parser_class` must be a subclass of [`Parser`]().
  * - Setup built-in function extensions by overriding
- * `setup_function_extensions()`
+ * `setupFunctionExtensions()`
  * - Hook in to mapping and sequence item getting by overriding `getitem()`.
  * - Change filter comparison operator behavior by overriding `compare()`.
  * <p>
@@ -59,6 +71,8 @@ import java.util.Optional;
  * data. Defaults to `"_"`.
  * intersection_token (str): The pattern used as the intersection operator.
  * Defaults to `"&"`.
+ * max_recursion_depth (int): The maximum number of nested arrays and objects visited by the descendant segment
+ * before a `JSONPathRecursionError` is raised. Defaults to `100`.
  * key_token (str): The pattern used to identify the current key or index when
  * filtering a, mapping or sequence. Defaults to `"#"`.
  * keys_selector_token (str): The pattern used as the "keys" selector. Defaults to
@@ -88,13 +102,28 @@ public class JSONPathEnvironment {
     public String intersectionToken = "&";
     public String rootToken = "$";
     public String unionToken = "|";
+    // The maximum depth of nested arrays and objects the descendant segment will visit.
+    public int maxRecursionDepth = 100;
+    // Arrays and objects with at least this many children are split between the workers of a ForkJoinPool, by
+    // parallel descent and parallel streams.
+    public int parallelThreshold = 8192;
     Class<JSONPathMatch> match_class = JSONPathMatch.class;
 
-    private Lexer lexer;
-    private Parser parser;
-    private RulesBuilder rulesBuilder;
+    // These are created lazily, at most once, and safely published so an environment can be shared between threads.
+    private final Object lock = new Object();
+    private volatile Lexer lexer;
+    private volatile Parser parser;
+    private volatile RulesBuilder rulesBuilder;
 
-    private Map<TokenKind, RulesBuilder.LexerRule> customEnvRules;
+    private volatile Map<TokenKind, RulesBuilder.LexerRule> customEnvRules;
+    private volatile CompiledPathCache pathCache;
+    private volatile Map<String, FilterFunction> functionExtensions;
+    private volatile String rulesFingerprint;
+    private volatile CompiledPathStore pathStore;
+    private volatile EvaluationStrategy evaluationStrategy = EvaluationStrategy.VM;
+    private volatile DocumentModel documentModel = DocumentModel.ANY;
+    private volatile boolean parallelDescent;
+    private int pathCacheSize = CompiledPathCache.DEFAULT_MAX_SIZE; // guarded by lock
 
 
     /**
@@ -144,31 +173,205 @@ public class JSONPathEnvironment {
     }
 
     public RulesBuilder getRulesBuilder() {
-        if (rulesBuilder == null) {
-            rulesBuilder = factoryMethod(rulesBuilderClass, null);
+        RulesBuilder result = rulesBuilder;
+        if (result == null) {
+            synchronized (lock) {
+                result = rulesBuilder;
+                if (result == null) {
+                    result = factoryMethod(rulesBuilderClass, null);
+                    rulesBuilder = result;
+                }
+            }
         }
-        return rulesBuilder;
+        return result;
     }
 
+    /**
+     * Returns the Lexer for this environment, creating it on first use. The Lexer is shared by all threads using
+     * this environment.
+     * @return the Lexer instance.
+     */
     public Lexer getLexer() {
-        if (lexer == null) {
-            lexer = factoryMethod(lexerClass, this);
+        Lexer result = lexer;
+        if (result == null) {
+            synchronized (lock) {
+                result = lexer;
+                if (result == null) {
+                    result = factoryMethod(lexerClass, this);
+                    lexer = result;
+                }
+            }
         }
-        return lexer;
+        return result;
     }
 
+    /**
+     * Returns the Parser for this environment, creating it on first use. The Parser is shared by all threads using
+     * this environment.
+     * @return the Parser instance.
+     */
     public Parser getParser() {
-        if (parser == null) {
-            parser = factoryMethod(parserClass, this);
+        Parser result = parser;
+        if (result == null) {
+            synchronized (lock) {
+                result = parser;
+                if (result == null) {
+                    result = factoryMethod(parserClass, this);
+                    parser = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cache of paths compiled by {@link #compile(String)}, creating it on first use. The cache is shared by
+     * all threads using this environment.
+     * @return the CompiledPathCache instance.
+     */
+    public CompiledPathCache getPathCache() {
+        CompiledPathCache result = pathCache;
+        if (result == null) {
+            synchronized (lock) {
+                result = pathCache;
+                if (result == null) {
+                    result = new CompiledPathCache(pathCacheSize);
+                    pathCache = result;
+                }
+            }
         }
-        return parser;
+        return result;
+    }
+
+    /**
+     * Replaces the cache of compiled paths with an empty cache holding at most {@code maxSize} paths.
+     * @param maxSize the maximum number of compiled paths to cache. 0 disables caching.
+     * @throws IllegalArgumentException if {@code maxSize} is negative.
+     */
+    public void setPathCacheSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        synchronized (lock) {
+            pathCacheSize = maxSize;
+            pathCache = null;
+        }
+    }
+
+    /**
+     * Sets the directory of the on-disk cache of compiled paths, which {@link #compile(String)} consults before it lexes
+     * and parses a path string. Paths compiled by this environment are stored in a file named after its
+     * {@linkplain #getRulesFingerprint() rules fingerprint}, so a cache is never shared by environments with different
+     * rules. See {@link CompiledPathStore}.
+     * @param directory the cache directory, or null to stop using an on-disk cache.
+     * @throws UncheckedIOException if the file of the previous cache directory can't be closed.
+     */
+    public void setCompiledPathDirectory(Path directory) {
+        final CompiledPathStore previous;
+        synchronized (lock) {
+            previous = pathStore;
+            pathStore = directory == null ? null : new CompiledPathStore(this, directory);
+        }
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return the on-disk cache of compiled paths, or null if there is none.
+     */
+    public CompiledPathStore getCompiledPathStore() {
+        return pathStore;
+    }
+
+    /**
+     * Returns a fingerprint of everything that decides how this environment compiles path strings: its classes,
+     * settings, tokens, lexer rules and function extensions. Paths serialized by {@link CompiledPathCodec} can only be
+     * loaded by an environment with the same fingerprint. The fingerprint is computed on first use, so the tokens must
+     * not be changed after that. It's computed again after each change of the
+     * {@linkplain #getFunctionExtensions() function extensions}, and the on-disk cache then uses the file of the new
+     * fingerprint.
+     * @return the fingerprint, as a string of hex digits.
+     */
+    public String getRulesFingerprint() {
+        String result = rulesFingerprint;
+        if (result == null) {
+            synchronized (lock) {
+                result = rulesFingerprint;
+                if (result == null) {
+                    result = CompiledPathCodec.fingerprint(this);
+                    rulesFingerprint = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets how the paths of this environment are applied to data. Paths evaluated with {@link EvaluationStrategy#VM}
+     * are lowered to programs on first use, and paths evaluated with {@link EvaluationStrategy#BYTECODE} are generated as classes on first use, specialized for the
+     * {@linkplain #setDocumentModel(DocumentModel) document model}.
+     * @param strategy the evaluation strategy. The default is {@link EvaluationStrategy#VM}.
+     */
+    public void setEvaluationStrategy(EvaluationStrategy strategy) {
+        evaluationStrategy = Objects.requireNonNull(strategy);
+    }
+
+    public EvaluationStrategy getEvaluationStrategy() {
+        return evaluationStrategy;
+    }
+
+    /**
+     * Sets the kind of data that generated paths are specialized for. Generated paths give the same results for any
+     * data, but read data of this model faster.
+     * @param model the document model. The default is {@link DocumentModel#ANY}.
+     */
+    public void setDocumentModel(DocumentModel model) {
+        documentModel = Objects.requireNonNull(model);
+    }
+
+    public DocumentModel getDocumentModel() {
+        return documentModel;
     }
 
+    /**
+     * Enables or disables parallel descent. With parallel descent, the descendant segment visits the children of
+     * arrays and objects of at least {@link #parallelThreshold} children in parallel, with the ForkJoinPool the path
+     * is evaluated in, or the common pool. The matches are still found in document order.
+     * <p>
+     * Parallel descent is done by the interpreter, so paths with descendant segments are interpreted while it's
+     * enabled, whatever the evaluation strategy, and all the descendants of a node are visited before its first match
+     * is returned.
+     * @param enabled true to enable parallel descent. The default is false.
+     */
+    public void setParallelDescent(boolean enabled) {
+        parallelDescent = enabled;
+    }
+
+    public boolean isParallelDescent() {
+        return parallelDescent;
+    }
+
+    /**
+     * Returns the custom rules of this environment, building them on first use.
+     * @return an unmodifiable Map of the custom rules.
+     */
     public final Map<TokenKind, RulesBuilder.LexerRule> getCustomEnvRules() {
-        if (customEnvRules == null) {
-            customEnvRules = buildCustomEnvRules();
+        Map<TokenKind, RulesBuilder.LexerRule> result = customEnvRules;
+        if (result == null) {
+            synchronized (lock) {
+                result = customEnvRules;
+                if (result == null) {
+                    result = Collections.unmodifiableMap(new LinkedHashMap<>(buildCustomEnvRules()));
+                    customEnvRules = result;
+                }
+            }
         }
-        return customEnvRules;
+        return result;
     }
 
     /**
@@ -183,27 +386,117 @@ public class JSONPathEnvironment {
         return new LinkedHashMap<>(); // empty list
     }
 
+    /**
+     * Returns the function extensions that filter expressions can call, by name, creating them with
+     * {@link #setupFunctionExtensions()} on first use. Functions can be added to, replaced in or removed from the map.
+     * Each change empties the {@linkplain #getPathCache() path cache} and changes the
+     * {@linkplain #getRulesFingerprint() rules fingerprint}, so {@link #compile(String)} only returns paths
+     * compiled with the current functions; paths that have already been returned keep the functions they were
+     * compiled with. Functions should be changed before the paths that call them are compiled on other threads.
+     * @return the mutable, thread-safe Map of function names to functions. The entries of its views can't be set.
+     */
+    public Map<String, FilterFunction> getFunctionExtensions() {
+        Map<String, FilterFunction> result = functionExtensions;
+        if (result == null) {
+            synchronized (lock) {
+                result = functionExtensions;
+                if (result == null) {
+                    result = new FunctionExtensions(setupFunctionExtensions(), this::functionExtensionsChanged);
+                    functionExtensions = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the paths compiled with the function extensions as they were before a change: the functions are part of the
+     * rules fingerprint, so the on-disk cache moves to the file of the new fingerprint.
+     */
+    private void functionExtensionsChanged() {
+        synchronized (lock) {
+            rulesFingerprint = null;
+        }
+        final CompiledPathStore store = pathStore;
+        if (store != null) {
+            setCompiledPathDirectory(store.getDirectory());
+        }
+        final CompiledPathCache cache = pathCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * The default {@code JSONPathEnvironment} implementation provides the standard functions of RFC 9535:
+     * {@code length}, {@code count}, {@code match}, {@code search} and {@code value}. Subclasses can override
+     * {@code setupFunctionExtensions()} to add or replace functions.
+     *
+     * @return the Map of function names to functions.
+     */
+    protected Map<String, FilterFunction> setupFunctionExtensions() {
+        final Map<String, FilterFunction> functions = new LinkedHashMap<>();
+        for (StandardFunctions function : StandardFunctions.values()) {
+            functions.put(function.functionName(), function);
+        }
+        return functions;
+    }
+
     /**
      * Prepare a path string ready for repeated matching against different data.
      * <p>
-     * Arguments:
-     * path: A JSONPath as a string.
-     * <p>
-     * Returns:
-     * A `JSONPath` or `CompoundJSONPath`, ready to match against some data.
-     * Expect a `CompoundJSONPath` if the path string uses the _union_ or
-     * _intersection_ operators.
-     * <p>
-     * Raises:
-     * JSONPathSyntaxError: If _path_ is invalid.
-     * JSONPathTypeError: If filter functions are given arguments of an
-     * unacceptable type.
+     * Compiled paths are cached by path string, so compiling the same path again returns the same instance without
+     * lexing or parsing it. See {@link #getPathCache()}. Paths that aren't in the cache are loaded from the on-disk
+     * cache, if there is one, before they're lexed and parsed. See {@link #setCompiledPathDirectory(Path)}.
      *
-     * @param path
-     * @return
+     * @param path A JSONPath as a string.
+     * @return A {@link JSONPath} or {@link CompoundJSONPath}, ready to match against some data. Expect a
+     * {@code CompoundJSONPath} if the path string uses the union or intersection operators.
+     * @throws JSONPathSyntaxException If {@code path} is invalid.
+     * @throws JSONPathTypeException If filter functions are given arguments of an unacceptable type.
      */
-    public JSONPath compile(String path) {
-        return null;
+    public CompiledJSONPath compile(String path) {
+        return getPathCache().get(path, this::compileStored);
+    }
+
+    private CompiledJSONPath compileStored(String path) {
+        final CompiledPathStore store = pathStore;
+        return store == null ? compileUncached(path) : store.get(path, this::compileUncached);
+    }
+
+    /**
+     * Lexes and parses a path string, bypassing the caches.
+     *
+     * @param path A JSONPath as a string.
+     * @return A {@link JSONPath} or {@link CompoundJSONPath}.
+     */
+    protected CompiledJSONPath compileUncached(String path) {
+        final TokenStream stream = new TokenStream(getLexer().tokenSource(path));
+        final Parser parser = getParser();
+        boolean fakeRoot = stream.currentKind() == TokenKind.PSEUDO_ROOT;
+        final JSONPath first = new JSONPath(this, parser.parse(stream), fakeRoot);
+        if (stream.currentKind() == TokenKind.EOF) {
+            return first;
+        }
+
+        CompoundJSONPath compound = new CompoundJSONPath(this, first);
+        while (stream.currentKind() != TokenKind.EOF) {
+            final TokenKind operator = stream.currentKind();
+            if (operator != TokenKind.UNION && operator != TokenKind.INTERSECTION) {
+                throw new JSONPathSyntaxException(
+                        "unexpected token '%s'".formatted(stream.currentValue()), stream.current());
+            }
+            if (stream.peekKind() == TokenKind.EOF) {
+                // trailing union or intersection
+                throw new JSONPathSyntaxException(
+                        "expected a path after '%s'".formatted(stream.currentValue()), stream.current());
+            }
+            stream.advance();
+            fakeRoot = stream.currentKind() == TokenKind.PSEUDO_ROOT;
+            final JSONPath next = new JSONPath(this, parser.parse(stream), fakeRoot);
+            compound = operator == TokenKind.UNION ? compound.union(next) : compound.intersection(next);
+        }
+        return compound;
     }
 
     public Iterable<JSONPathMatch> findIter(String path, Object data) {
@@ -290,7 +583,7 @@ public class JSONPathEnvironment {
      * @return an Optional<LexerRule> with the custom rule if found, or an empty Optional otherwise.
      */
     public Optional<RulesBuilder.LexerRule> findRule(TokenKind kind) {
-        RulesBuilder.LexerRule rule = customEnvRules.getOrDefault(kind, null);
+        RulesBuilder.LexerRule rule = getCustomEnvRules().getOrDefault(kind, null);
         return Optional.ofNullable(rule);
     }
 }
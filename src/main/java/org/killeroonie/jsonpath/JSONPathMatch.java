@@ -0,0 +1,217 @@
+package org.killeroonie.jsonpath;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A matched object with a concrete path.
+ * <p>
+ * Each match records the object selected from the target data and the step from its parent: the member name or
+ * index it was selected by. The normalized path and the keys and indices ({@code parts}) along it, from which a
+ * {@link JSONPointer} can be made, are built from the chain of parents the first time they are asked for, so selecting
+ * a match costs the same at any depth.
+ */
+public class JSONPathMatch {
+    public final FilterContextVars filterContext;
+    /**
+     * The matched object.
+     */
+    public final Object obj;
+    /**
+     * The match from which this match was selected, or null for the root match.
+     */
+    public final JSONPathMatch parent;
+    /**
+     * The root object of the target data.
+     */
+    public final Object root;
+
+    private final Object part; // the member name or Integer index selected from the parent, or null if parts is given
+    private final boolean memberKey; // true if part is a member name selected by the keys selector
+    private String path; // built on first use, unless given
+    private List<Object> parts; // built on first use, unless given
+
+    private volatile Map<Object, Object> queryScope; // only created on the root match of a query
+
+    /**
+     * @param path  the canonical string representation of the path to this match.
+     * @param parts the keys and indices that make up the path to this match.
+     */
+    public JSONPathMatch(FilterContextVars filterContext, Object obj, JSONPathMatch parent,
+                         String path, List<Object> parts, Object root) {
+        this.filterContext = filterContext;
+        this.obj = obj;
+        this.parent = parent;
+        this.path = path;
+        this.parts = parts;
+        this.root = root;
+        this.part = null;
+        this.memberKey = false;
+    }
+
+    private JSONPathMatch(JSONPathMatch parent, Object obj, Object part, boolean memberKey, String path) {
+        this.filterContext = parent.filterContext;
+        this.obj = obj;
+        this.parent = parent;
+        this.root = parent.root;
+        this.part = part;
+        this.memberKey = memberKey;
+        this.path = path;
+    }
+
+    /**
+     * Creates a match for the member {@code name} of this match's object.
+     * @param obj  the value of the member.
+     * @param name the member name.
+     * @return the new match, with this match as its parent.
+     */
+    public JSONPathMatch newChild(Object obj, String name) {
+        return new JSONPathMatch(this, obj, name, false, null);
+    }
+
+    /**
+     * Creates a match for the element at {@code index} of this match's object.
+     * @param obj   the element.
+     * @param index the non-negative index of the element.
+     * @return the new match, with this match as its parent.
+     */
+    public JSONPathMatch newChild(Object obj, int index) {
+        return new JSONPathMatch(this, obj, index, false, null);
+    }
+
+    /**
+     * Creates a match for the member name {@code name} of this match's object itself, as selected by the keys
+     * selector. Its path part is {@code ~name}, and its path ends with {@code [~'name']}.
+     * @param name the member name, which is also the matched object.
+     * @return the new match, with this match as its parent.
+     */
+    public JSONPathMatch newKeyChild(String name) {
+        return new JSONPathMatch(this, name, name, true, null);
+    }
+
+    /**
+     * Creates a child match with the given path part and path.
+     * @param obj  the selected object.
+     * @param part the key or index appended to this match's parts.
+     * @param path the path of the new match.
+     * @return the new match, with this match as its parent.
+     */
+    public JSONPathMatch newChild(Object obj, Object part, String path) {
+        return new JSONPathMatch(this, obj, part, false, path);
+    }
+
+    /**
+     * @return the canonical string representation of the path to this match, built on first use.
+     */
+    public String path() {
+        String result = path;
+        if (result == null) {
+            // collect the steps from the nearest match whose path is known
+            int steps = 0;
+            JSONPathMatch known = this;
+            while (known.path == null) {
+                steps++;
+                known = known.parent;
+            }
+            final JSONPathMatch[] chain = new JSONPathMatch[steps];
+            for (JSONPathMatch match = this; match != known; match = match.parent) {
+                chain[--steps] = match;
+            }
+            final StringBuilder sb = new StringBuilder(known.path);
+            for (JSONPathMatch match : chain) {
+                sb.append('[');
+                if (match.part instanceof String name) {
+                    if (match.memberKey) {
+                        sb.append(JsonPathUtils.KEYS_SELECTOR);
+                    }
+                    JsonPathUtils.appendCanonicalString(sb, name);
+                } else {
+                    sb.append(match.part);
+                }
+                sb.append(']');
+            }
+            result = sb.toString();
+            path = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a map for values computed once per query, like the results of filter expressions that only depend on
+     * the root. The map belongs to the root match of the query, the match without a parent, so it is shared by all
+     * the matches of the query.
+     * @return the thread-safe map of the query, created on first use.
+     */
+    public Map<Object, Object> queryScope() {
+        JSONPathMatch first = this;
+        while (first.parent != null) {
+            first = first.parent;
+        }
+        Map<Object, Object> result = first.queryScope;
+        if (result == null) {
+            synchronized (first) {
+                result = first.queryScope;
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    first.queryScope = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the matched object. The same as {@link #obj}.
+     */
+    public Object value() {
+        return obj;
+    }
+
+    /**
+     * @return the keys and indices that make up the path to this match, built on first use.
+     */
+    public List<Object> getParts() {
+        List<Object> result = parts;
+        if (result == null) {
+            int steps = 0;
+            JSONPathMatch known = this;
+            while (known.parts == null) {
+                steps++;
+                known = known.parent;
+            }
+            final Object[] array = new Object[known.parts.size() + steps];
+            known.parts.toArray(array);
+            for (JSONPathMatch match = this; match != known; match = match.parent) {
+                array[known.parts.size() + --steps] = match.memberKey ? JsonPathUtils.KEYS_SELECTOR + match.part
+                        : match.part;
+            }
+            result = Arrays.asList(array);
+            parts = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return a JSONPointer pointing to this match's location.
+     */
+    public JSONPointer pointer() {
+        return JSONPointer.fromMatch(this);
+    }
+
+    @Override
+    public String toString() {
+        return "%s @ %s".formatted(truncate(String.valueOf(obj)), truncate(path()));
+    }
+
+    // shortens s to its first five words
+    private static String truncate(String s) {
+        final int maxWords = 5;
+        final String[] words = s.trim().split("\\s+");
+        if (words.length < maxWords) {
+            return String.join(" ", words);
+        }
+        return String.join(" ", Arrays.copyOf(words, maxWords)) + "...";
+    }
+}
@@ -121,4 +121,43 @@ public class JsonPathUtils {
         }
     }
 
+    /**
+     * Returns {@code name} as a single-quoted string literal, escaped as for a member name in an RFC 9535 normalized
+     * path: backslash and single quote are escaped with a backslash, control characters with their short escape or
+     * <code>&#92;u00XX</code>.
+     * @param name the member name.
+     * @return the quoted name, e.g. {@code 'a\'b'}.
+     */
+    public static String canonicalString(String name) {
+        final StringBuilder sb = new StringBuilder(name.length() + 2);
+        appendCanonicalString(sb, name);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code name} to {@code sb} as by {@link #canonicalString(String)}.
+     */
+    public static void appendCanonicalString(StringBuilder sb, String name) {
+        sb.append('\'');
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            switch (c) {
+                case '\'' -> sb.append("\\'");
+                case '\\' -> sb.append("\\\\");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('\'');
+    }
 }
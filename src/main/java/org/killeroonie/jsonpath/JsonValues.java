@@ -0,0 +1,244 @@
+package org.killeroonie.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * Access to the values of JSON documents for path evaluation.
+ * <p>
+ * A document is either a tree of Jackson {@link JsonNode}s, as returned by {@link JsonLoader#load(Object)} for JSON
+ * text, or a tree of Java {@link Map}s, {@link List}s and scalars. Selectors read documents only through these methods,
+ * so they work on both models, and return the values of the same model they're given.
+ */
+public final class JsonValues {
+
+    private JsonValues() {}
+
+    /**
+     * @return true if {@code value} is a JSON object.
+     */
+    public static boolean isObject(Object value) {
+        return value instanceof Map || (value instanceof JsonNode node && node.isObject());
+    }
+
+    /**
+     * @return true if {@code value} is a JSON array.
+     */
+    public static boolean isArray(Object value) {
+        return value instanceof List || (value instanceof JsonNode node && node.isArray());
+    }
+
+    /**
+     * @return the number of elements of the array or members of the object {@code value}, or 0 for other values.
+     */
+    public static int size(Object value) {
+        if (value instanceof List<?> list) {
+            return list.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (value instanceof JsonNode node && node.isContainerNode()) {
+            return node.size();
+        }
+        return 0;
+    }
+
+    /**
+     * @param array a JSON array.
+     * @param index the index of the element, from 0 to {@code size(array) - 1}.
+     * @return the element at {@code index}.
+     */
+    public static Object element(Object array, int index) {
+        if (array instanceof List<?> list) {
+            return list.get(index);
+        }
+        return ((JsonNode) array).get(index);
+    }
+
+    /**
+     * @param object a JSON object.
+     * @param name   the member name.
+     * @return the value of the member, or {@link JSONPointer#UNDEFINED} if the object has no such member.
+     */
+    public static Object member(Object object, String name) {
+        if (object instanceof Map<?, ?> map) {
+            final Object value = map.get(name);
+            return value != null || map.containsKey(name) ? value : UNDEFINED;
+        }
+        final JsonNode value = ((JsonNode) object).get(name);
+        return value != null ? value : UNDEFINED;
+    }
+
+    /**
+     * @param object a JSON object.
+     * @return an iterator over the members of the object, in document order. Keys that aren't Strings are converted
+     * with {@link String#valueOf(Object)}.
+     */
+    public static Iterator<Map.Entry<String, Object>> members(Object object) {
+        if (object instanceof Map<?, ?> map) {
+            final Iterator<? extends Map.Entry<?, ?>> entries = map.entrySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, Object> next() {
+                    final Map.Entry<?, ?> entry = entries.next();
+                    return new AbstractMap.SimpleImmutableEntry<>(String.valueOf(entry.getKey()), entry.getValue());
+                }
+            };
+        }
+        final Iterator<Map.Entry<String, JsonNode>> fields = ((JsonNode) object).fields();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return fields.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Object> next() {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                return new AbstractMap.SimpleImmutableEntry<>(field.getKey(), field.getValue());
+            }
+        };
+    }
+
+    /**
+     * @param object a JSON object.
+     * @return the member names of the object, in document order.
+     */
+    public static Iterator<String> names(Object object) {
+        if (object instanceof Map<?, ?> map) {
+            final Iterator<?> keys = map.keySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return keys.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    return String.valueOf(keys.next());
+                }
+            };
+        }
+        return ((JsonNode) object).fieldNames();
+    }
+
+    /**
+     * Converts a scalar {@link JsonNode} to the equivalent Java value: a String, Number, Boolean or null. A missing node
+     * is {@link JSONPointer#UNDEFINED}. Other values, including arrays and objects, are returned as is.
+     */
+    public static Object scalar(Object value) {
+        if (!(value instanceof JsonNode node) || node.isContainerNode()) {
+            return value;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isNumber()) {
+            return node.numberValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isMissingNode()) {
+            return UNDEFINED;
+        }
+        return node.isNull() ? null : node;
+    }
+
+    /**
+     * Compares two JSON values for equality, as specified by RFC 9535 section 2.3.5.2.2. Numbers are equal if they
+     * have the same mathematical value, so {@code 1} equals {@code 1.0}. Arrays are equal if they have equal elements
+     * in the same order, and objects if they have the same member names with equal values. Values of the two document
+     * models can be compared with each other.
+     * <p>
+     * {@link JSONPointer#UNDEFINED} is only equal to itself.
+     */
+    public static boolean equal(Object a, Object b) {
+        a = scalar(a);
+        b = scalar(b);
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a == UNDEFINED || b == UNDEFINED) {
+            return false;
+        }
+        if (a instanceof Number x && b instanceof Number y) {
+            return compareNumbers(x, y) == 0;
+        }
+        if (isArray(a)) {
+            if (!isArray(b) || size(a) != size(b)) {
+                return false;
+            }
+            for (int i = 0, n = size(a); i < n; i++) {
+                if (!equal(element(a, i), element(b, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (isObject(a)) {
+            if (!isObject(b) || size(a) != size(b)) {
+                return false;
+            }
+            for (Iterator<Map.Entry<String, Object>> it = members(a); it.hasNext(); ) {
+                final Map.Entry<String, Object> member = it.next();
+                final Object other = member(b, member.getKey());
+                if (other == UNDEFINED || !equal(member.getValue(), other)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Compares the mathematical values of two numbers, whatever their classes.
+     * @return a negative number, zero or a positive number if {@code a} is less than, equal to or greater than
+     * {@code b}.
+     */
+    public static int compareNumbers(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        if ((a instanceof Double || a instanceof Float) && (b instanceof Double || b instanceof Float)
+            || !isFinite(a) || !isFinite(b)) {
+            final double x = a.doubleValue();
+            final double y = b.doubleValue();
+            return x < y ? -1 : x > y ? 1 : 0; // unlike Double.compare, -0.0 equals 0.0
+        }
+        return toBigDecimal(a).compareTo(toBigDecimal(b));
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    private static boolean isFinite(Number n) {
+        return !(n instanceof Double || n instanceof Float) || Double.isFinite(n.doubleValue());
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        return switch (n) {
+            case BigDecimal d -> d;
+            case BigInteger i -> new BigDecimal(i);
+            case Double d -> BigDecimal.valueOf(d);
+            case Float f -> BigDecimal.valueOf(f.doubleValue());
+            default -> isIntegral(n) ? BigDecimal.valueOf(n.longValue()) : new BigDecimal(n.toString());
+        };
+    }
+}
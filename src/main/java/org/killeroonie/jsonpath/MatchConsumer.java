@@ -0,0 +1,14 @@
+package org.killeroonie.jsonpath;
+
+/**
+ * Receives the matches of a path from {@link CompiledJSONPath#forEach}, one at a time.
+ */
+@FunctionalInterface
+public interface MatchConsumer {
+
+    /**
+     * @param value  the matched object.
+     * @param cursor the location of the match, only valid during this call.
+     */
+    void accept(Object value, PathCursor cursor);
+}
@@ -0,0 +1,34 @@
+package org.killeroonie.jsonpath;
+
+/**
+ * A {@link PathCursor} over the match objects found by an evaluator, reused for each of them.
+ */
+final class MatchCursor implements PathCursor {
+
+    JSONPathMatch match;
+
+    @Override
+    public Object value() {
+        return match.obj;
+    }
+
+    @Override
+    public int depth() {
+        return match.getParts().size();
+    }
+
+    @Override
+    public Object part(int index) {
+        return match.getParts().get(index);
+    }
+
+    @Override
+    public String path() {
+        return match.path();
+    }
+
+    @Override
+    public JSONPathMatch toMatch() {
+        return match;
+    }
+}
@@ -0,0 +1,57 @@
+package org.killeroonie.jsonpath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The location of a match passed to a {@link MatchConsumer}.
+ * <p>
+ * A cursor is only valid during the callback it is passed to: the evaluator reuses it for the next match. The path,
+ * parts and pointer are built when asked for, and {@link #toMatch()} makes a match that stays valid.
+ */
+public interface PathCursor {
+
+    /**
+     * @return the matched object.
+     */
+    Object value();
+
+    /**
+     * @return the number of keys and indices on the path to the match, 0 for the root.
+     */
+    int depth();
+
+    /**
+     * @param index the position of the part, from 0 to {@code depth() - 1}.
+     * @return the key or index at {@code index} on the path to the match, as in {@link JSONPathMatch#parts}.
+     */
+    Object part(int index);
+
+    /**
+     * @return the canonical string representation of the path to the match.
+     */
+    String path();
+
+    /**
+     * @return the keys and indices that make up the path to the match.
+     */
+    default List<Object> parts() {
+        final List<Object> parts = new ArrayList<>(depth());
+        for (int i = 0; i < depth(); i++) {
+            parts.add(part(i));
+        }
+        return parts;
+    }
+
+    /**
+     * @return a JSONPointer pointing to the match's location.
+     */
+    default JSONPointer pointer() {
+        return toMatch().pointer();
+    }
+
+    /**
+     * @return the match at this location, which stays valid after the callback.
+     */
+    JSONPathMatch toMatch();
+}
@@ -0,0 +1,29 @@
+package org.killeroonie.jsonpath;
+
+import java.util.Iterator;
+
+/**
+ * An iterable over the matches found by applying a compiled path to some data.
+ */
+public class Query implements Iterable<JSONPathMatch> {
+    private final Iterable<JSONPathMatch> matches;
+    private final JSONPathEnvironment env;
+
+    public Query(Iterable<JSONPathMatch> matches, JSONPathEnvironment env) {
+        this.matches = matches;
+        this.env = env;
+    }
+
+    @Override
+    public Iterator<JSONPathMatch> iterator() {
+        return matches.iterator();
+    }
+
+    /**
+     * Return the first match, or null if there are no matches. Matches after the first are not looked for.
+     */
+    public JSONPathMatch first() {
+        final Iterator<JSONPathMatch> it = matches.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
@@ -0,0 +1,285 @@
+package org.killeroonie.jsonpath;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, growable sequence of tokens scanned from a single JSONPath string.
+ * <p>
+ * Tokens are stored in parallel primitive arrays holding the {@link TokenKind} ordinal, and the start and end offsets
+ * of the token's value in the path string. No {@link Token} or {@code String} objects are created while scanning;
+ * a token's value is only materialized when it's requested, either as a {@link CharSequence} view of the path
+ * string with {@link #value(int)}, or as a {@code Token} with {@link #token(int)}.
+ * <p>
+ * A token with a start offset of -1 has an empty value, e.g., the EOF token or an omitted slice step.
+ */
+public final class TokenBuffer {
+
+    private static final TokenKind[] KINDS = TokenKind.values();
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final String path;
+    private int[] kinds;
+    private int[] starts;
+    private int[] ends;
+    // values of tokens that aren't substrings of the path; only created by of(List)
+    private String[] valueOverrides;
+    private int size;
+
+    public TokenBuffer(String path) {
+        this(path, DEFAULT_CAPACITY);
+    }
+
+    public TokenBuffer(String path, int initialCapacity) {
+        this.path = path;
+        final int capacity = Math.max(initialCapacity, 1);
+        kinds = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+    }
+
+    /**
+     * Creates a TokenBuffer from a List of Tokens. This is useful for tests and for Lexers that produce Tokens.
+     *
+     * @param tokens the Tokens to copy into the new buffer.
+     * @return a new TokenBuffer with the same tokens as the argument List.
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        String path = "";
+        for (Token token : tokens) {
+            if (token.index() >= 0) {
+                path = token.path();
+                break;
+            }
+        }
+        final TokenBuffer buffer = new TokenBuffer(path, tokens.size());
+        for (Token token : tokens) {
+            final int start = token.index();
+            final String value = token.value();
+            if (start >= 0 && path.regionMatches(start, value, 0, value.length())) {
+                buffer.add(token.kind(), start, start + value.length());
+            } else {
+                buffer.add(token.kind(), -1, -1);
+                if (!value.isEmpty() || start >= 0) {
+                    buffer.overrideValue(buffer.size - 1, value, start);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    private void overrideValue(int tokenIndex, String value, int start) {
+        if (valueOverrides == null) {
+            valueOverrides = new String[kinds.length];
+        }
+        valueOverrides[tokenIndex] = value;
+        starts[tokenIndex] = start;
+        ends[tokenIndex] = -1;
+    }
+
+    /**
+     * Appends a token to this buffer.
+     *
+     * @param kind  the TokenKind of the token.
+     * @param start the index of the first character of the token's value in the path, or -1 if the value is empty
+     *              and has no position.
+     * @param end   the index after the last character of the token's value in the path, or -1.
+     */
+    public void add(TokenKind kind, int start, int end) {
+        if (size == kinds.length) {
+            final int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            if (valueOverrides != null) {
+                valueOverrides = Arrays.copyOf(valueOverrides, capacity);
+            }
+        }
+        kinds[size] = kind.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Removes all tokens of the argument kind, preserving the order of the remaining tokens.
+     *
+     * @param kind the TokenKind to remove.
+     */
+    public void removeAll(TokenKind kind) {
+        removeAll(kind, 0);
+    }
+
+    /**
+     * Removes all tokens of the argument kind at or after {@code fromIndex}, preserving the order of the remaining
+     * tokens.
+     *
+     * @param kind      the TokenKind to remove.
+     * @param fromIndex the index of the first token to examine.
+     */
+    public void removeAll(TokenKind kind, int fromIndex) {
+        final int ordinal = kind.ordinal();
+        int target = fromIndex;
+        for (int i = fromIndex; i < size; i++) {
+            if (kinds[i] != ordinal) {
+                kinds[target] = kinds[i];
+                starts[target] = starts[i];
+                ends[target] = ends[i];
+                if (valueOverrides != null) {
+                    valueOverrides[target] = valueOverrides[i];
+                }
+                target++;
+            }
+        }
+        if (valueOverrides != null) {
+            Arrays.fill(valueOverrides, target, size, null);
+        }
+        size = target;
+    }
+
+    /**
+     * Removes the first {@code count} tokens, moving the remaining tokens to the start of the buffer. Used by
+     * incremental consumers to release tokens they've finished with.
+     *
+     * @param count the number of tokens to remove.
+     */
+    public void discard(int count) {
+        if (count < 0 || count > size) {
+            throw new IndexOutOfBoundsException("Can't discard %d tokens from size %d".formatted(count, size));
+        }
+        final int remaining = size - count;
+        System.arraycopy(kinds, count, kinds, 0, remaining);
+        System.arraycopy(starts, count, starts, 0, remaining);
+        System.arraycopy(ends, count, ends, 0, remaining);
+        if (valueOverrides != null) {
+            System.arraycopy(valueOverrides, count, valueOverrides, 0, remaining);
+            Arrays.fill(valueOverrides, remaining, size, null);
+        }
+        size = remaining;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public TokenKind kind(int tokenIndex) {
+        return KINDS[kinds[checkIndex(tokenIndex)]];
+    }
+
+    /**
+     * @return the index of the first character of the token's value in the path, or -1.
+     */
+    public int start(int tokenIndex) {
+        return starts[checkIndex(tokenIndex)];
+    }
+
+    /**
+     * @return the index after the last character of the token's value in the path, or -1.
+     */
+    public int end(int tokenIndex) {
+        return ends[checkIndex(tokenIndex)];
+    }
+
+    /**
+     * Returns the token's value as a view of the path string. No characters are copied.
+     *
+     * @param tokenIndex the index of the token in this buffer.
+     * @return the value of the token.
+     */
+    public CharSequence value(int tokenIndex) {
+        checkIndex(tokenIndex);
+        if (valueOverrides != null && valueOverrides[tokenIndex] != null) {
+            return valueOverrides[tokenIndex];
+        }
+        final int start = starts[tokenIndex];
+        if (start < 0) {
+            return "";
+        }
+        return CharBuffer.wrap(path, start, ends[tokenIndex]);
+    }
+
+    /**
+     * Returns the token's value as a new String.
+     *
+     * @param tokenIndex the index of the token in this buffer.
+     * @return the value of the token.
+     */
+    public String stringValue(int tokenIndex) {
+        checkIndex(tokenIndex);
+        if (valueOverrides != null && valueOverrides[tokenIndex] != null) {
+            return valueOverrides[tokenIndex];
+        }
+        final int start = starts[tokenIndex];
+        return start < 0 ? "" : path.substring(start, ends[tokenIndex]);
+    }
+
+    /**
+     * Compares the token's value to the argument without materializing the value.
+     *
+     * @param tokenIndex the index of the token in this buffer.
+     * @param text       the text to compare.
+     * @return true if the value of the token equals {@code text}.
+     */
+    public boolean valueEquals(int tokenIndex, String text) {
+        checkIndex(tokenIndex);
+        if (valueOverrides != null && valueOverrides[tokenIndex] != null) {
+            return valueOverrides[tokenIndex].equals(text);
+        }
+        final int start = starts[tokenIndex];
+        if (start < 0) {
+            return text.isEmpty();
+        }
+        final int length = ends[tokenIndex] - start;
+        return length == text.length() && path.regionMatches(start, text, 0, length);
+    }
+
+    /**
+     * Materializes the token at the argument index.
+     *
+     * @param tokenIndex the index of the token in this buffer.
+     * @return a new Token, or {@link Token#EOF} for an EOF token without a position.
+     */
+    public Token token(int tokenIndex) {
+        final TokenKind kind = kind(tokenIndex);
+        final int start = starts[tokenIndex];
+        if (kind == TokenKind.EOF && start < 0) {
+            return Token.EOF;
+        }
+        return new Token(kind, stringValue(tokenIndex), start, path);
+    }
+
+    /**
+     * @return a new List with all the tokens in this buffer.
+     */
+    public List<Token> toList() {
+        final List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    private int checkIndex(int tokenIndex) {
+        if (tokenIndex < 0 || tokenIndex >= size) {
+            throw new IndexOutOfBoundsException("Token index %d out of bounds for size %d".formatted(tokenIndex, size));
+        }
+        return tokenIndex;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return toList().toString();
+    }
+}
@@ -0,0 +1,228 @@
+package org.killeroonie.jsonpath.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for Java class files, with just enough features to generate the small specialized classes this
+ * library defines at runtime with {@link java.lang.invoke.MethodHandles.Lookup#defineHiddenClass}.
+ * <p>
+ * Classes are written in the version 49 (Java 5) format. The JVM verifies these by type inference, so no
+ * {@code StackMapTable} attributes have to be computed. The generated code can still call any method of the running
+ * JVM, but can't use constant pool entries added after Java 5, such as {@code invokedynamic}.
+ * <p>
+ * Names are JVM internal names, e.g. {@code java/lang/String}, and types are JVM descriptors, e.g.
+ * {@code (Ljava/lang/String;I)J}.
+ */
+public final class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(constantPool);
+    private final Map<String, Integer> constantIndexes = new HashMap<>();
+    private int constantCount = 1; // entry 0 is unused
+
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<CodeBuilder> methods = new ArrayList<>();
+
+    /**
+     * @param access     the class access flags, e.g. {@code ACC_PUBLIC | ACC_FINAL}. {@code ACC_SUPER} is always added.
+     * @param name       the internal name of the class.
+     * @param superName  the internal name of the superclass.
+     * @param interfaces the internal names of the implemented interfaces.
+     */
+    public ClassFileWriter(int access, String name, String superName, String... interfaces) {
+        this.access = access | ACC_SUPER;
+        this.thisClass = classConstant(name);
+        this.superClass = classConstant(superName);
+        this.interfaces = new int[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            this.interfaces[i] = classConstant(interfaces[i]);
+        }
+    }
+
+    /**
+     * Adds a field without a ConstantValue attribute. Static final fields must be assigned in {@code <clinit>}.
+     */
+    public void addField(int access, String name, String descriptor) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    /**
+     * Adds a method and returns the builder for its code.
+     *
+     * @param maxStack  the maximum depth of the operand stack, in slots. long values take two slots.
+     * @param maxLocals the number of local variable slots, including the parameters and {@code this}.
+     */
+    public CodeBuilder addMethod(int access, String name, String descriptor, int maxStack, int maxLocals) {
+        final CodeBuilder code = new CodeBuilder(this, access, utf8(name), utf8(descriptor), maxStack, maxLocals);
+        methods.add(code);
+        return code;
+    }
+
+    /**
+     * @return the class file.
+     * @throws IllegalStateException if a method has an unplaced label or a branch that doesn't fit in its offset.
+     */
+    public byte[] toByteArray() {
+        final int codeAttribute = utf8("Code");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            final List<byte[]> methodBytes = new ArrayList<>();
+            for (CodeBuilder method : methods) {
+                methodBytes.add(method.toByteArray(codeAttribute));
+            }
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            out.writeShort(constantCount);
+            constantPool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) {
+                out.writeShort(i);
+            }
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methodBytes.size());
+            for (byte[] method : methodBytes) {
+                out.write(method);
+            }
+            out.writeShort(0); // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Constant pool
+    ////////////////////////////////////////////////////////////////////
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integerConstant(int value) {
+        return constant("I" + value, 1, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int longConstant(long value) {
+        return constant("J" + value, 2, out -> {
+            out.writeByte(CONSTANT_LONG);
+            out.writeLong(value);
+        });
+    }
+
+    int classConstant(String internalName) {
+        final int name = utf8(internalName);
+        return constant("C" + internalName, 1, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int stringConstant(String value) {
+        final int utf8 = utf8(value);
+        return constant("S" + value, 1, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    int fieldConstant(String owner, String name, String descriptor) {
+        return memberConstant(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodConstant(String owner, String name, String descriptor, boolean isInterface) {
+        return memberConstant(isInterface ? CONSTANT_INTERFACE_METHODREF : CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberConstant(int tag, String owner, String name, String descriptor) {
+        final int ownerClass = classConstant(owner);
+        final int nameUtf8 = utf8(name);
+        final int descriptorUtf8 = utf8(descriptor);
+        final int nameAndType = constant("N" + name + ' ' + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameUtf8);
+            out.writeShort(descriptorUtf8);
+        });
+        return constant("M" + tag + owner + '.' + name + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, int slots, ConstantWriter writer) {
+        final Integer existing = constantIndexes.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final int index = constantCount;
+        try {
+            writer.write(constants);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constantCount += slots;
+        if (constantCount > 0xFFFF) {
+            throw new IllegalStateException("Too many constants in class file");
+        }
+        constantIndexes.put(key, index);
+        return index;
+    }
+}
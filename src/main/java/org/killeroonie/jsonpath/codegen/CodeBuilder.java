@@ -0,0 +1,409 @@
+package org.killeroonie.jsonpath.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the bytecode of one method of a {@link ClassFileWriter}. Branch targets are {@link Label}s, which are
+ * resolved when the class file is written.
+ * <p>
+ * The caller is responsible for the correctness of the code, including the {@code maxStack} and {@code maxLocals}
+ * declared for the method. Mistakes are reported by the verifier when the class is defined.
+ */
+public final class CodeBuilder {
+
+    // opcodes used by the code generators in this library
+    public static final int ACONST_NULL = 0x01;
+    public static final int ICONST_M1 = 0x02;
+    public static final int ICONST_0 = 0x03;
+    public static final int LCONST_0 = 0x09;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int LDC2_W = 0x14;
+    public static final int ILOAD = 0x15;
+    public static final int LLOAD = 0x16;
+    public static final int ALOAD = 0x19;
+    public static final int IALOAD = 0x2E;
+    public static final int AALOAD = 0x32;
+    public static final int BALOAD = 0x33;
+    public static final int ISTORE = 0x36;
+    public static final int LSTORE = 0x37;
+    public static final int ASTORE = 0x3A;
+    public static final int IASTORE = 0x4F;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int DUP_X1 = 0x5A;
+    public static final int SWAP = 0x5F;
+    public static final int IADD = 0x60;
+    public static final int LADD = 0x61;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int INEG = 0x74;
+    public static final int ISHL = 0x78;
+    public static final int LSHL = 0x79;
+    public static final int IUSHR = 0x7C;
+    public static final int IAND = 0x7E;
+    public static final int IOR = 0x80;
+    public static final int LOR = 0x81;
+    public static final int IINC = 0x84;
+    public static final int I2L = 0x85;
+    public static final int L2I = 0x88;
+    public static final int LCMP = 0x94;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9A;
+    public static final int IFLT = 0x9B;
+    public static final int IFGE = 0x9C;
+    public static final int IFGT = 0x9D;
+    public static final int IFLE = 0x9E;
+    public static final int IF_ICMPEQ = 0x9F;
+    public static final int IF_ICMPNE = 0xA0;
+    public static final int IF_ICMPLT = 0xA1;
+    public static final int IF_ICMPGE = 0xA2;
+    public static final int IF_ICMPGT = 0xA3;
+    public static final int IF_ICMPLE = 0xA4;
+    public static final int IF_ACMPEQ = 0xA5;
+    public static final int IF_ACMPNE = 0xA6;
+    public static final int GOTO = 0xA7;
+    public static final int TABLESWITCH = 0xAA;
+    public static final int LOOKUPSWITCH = 0xAB;
+    public static final int IRETURN = 0xAC;
+    public static final int LRETURN = 0xAD;
+    public static final int ARETURN = 0xB0;
+    public static final int RETURN = 0xB1;
+    public static final int GETSTATIC = 0xB2;
+    public static final int PUTSTATIC = 0xB3;
+    public static final int GETFIELD = 0xB4;
+    public static final int PUTFIELD = 0xB5;
+    public static final int INVOKEVIRTUAL = 0xB6;
+    public static final int INVOKESPECIAL = 0xB7;
+    public static final int INVOKESTATIC = 0xB8;
+    public static final int INVOKEINTERFACE = 0xB9;
+    public static final int NEW = 0xBB;
+    public static final int ANEWARRAY = 0xBD;
+    public static final int ARRAYLENGTH = 0xBE;
+    public static final int ATHROW = 0xBF;
+    public static final int CHECKCAST = 0xC0;
+    public static final int INSTANCEOF = 0xC1;
+    public static final int WIDE = 0xC4;
+    public static final int IFNULL = 0xC6;
+    public static final int IFNONNULL = 0xC7;
+
+    /**
+     * HotSpot doesn't compile methods with more bytecode than this (-XX:HugeMethodLimit), so generated methods larger
+     * than this would only be interpreted.
+     */
+    public static final int HUGE_METHOD_LIMIT = 8000;
+
+    /**
+     * A position in the code, used as a branch target. A Label must be placed exactly once.
+     */
+    public static final class Label {
+        private int position = -1;
+
+        public boolean isPlaced() {
+            return position >= 0;
+        }
+    }
+
+    private record Fixup(int instruction, int operand, Label target, boolean wide) {}
+
+    private final ClassFileWriter classFile;
+    private final int access;
+    private final int name;
+    private final int descriptor;
+    private final int maxStack;
+    private final int maxLocals;
+    private byte[] code = new byte[256];
+    private int length;
+    private final List<Fixup> fixups = new ArrayList<>();
+
+    CodeBuilder(ClassFileWriter classFile, int access, int name, int descriptor, int maxStack, int maxLocals) {
+        this.classFile = classFile;
+        this.access = access;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.maxStack = maxStack;
+        this.maxLocals = maxLocals;
+    }
+
+    /**
+     * @return the number of bytes of code written so far.
+     */
+    public int size() {
+        return length;
+    }
+
+    public Label newLabel() {
+        return new Label();
+    }
+
+    public CodeBuilder place(Label label) {
+        if (label.isPlaced()) {
+            throw new IllegalStateException("Label is already placed");
+        }
+        label.position = length;
+        return this;
+    }
+
+    /**
+     * Writes an instruction that has no operands.
+     */
+    public CodeBuilder op(int opcode) {
+        u1(opcode);
+        return this;
+    }
+
+    /**
+     * Pushes an int constant with the shortest instruction for its value.
+     */
+    public CodeBuilder iconst(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            ldcIndex(classFile.integerConstant(value));
+        }
+        return this;
+    }
+
+    public CodeBuilder lconst(long value) {
+        if (value == 0L || value == 1L) {
+            u1(LCONST_0 + (int) value);
+        } else {
+            u1(LDC2_W);
+            u2(classFile.longConstant(value));
+        }
+        return this;
+    }
+
+    public CodeBuilder ldc(String value) {
+        ldcIndex(classFile.stringConstant(value));
+        return this;
+    }
+
+    /**
+     * Pushes the Class object of the argument internal name.
+     */
+    public CodeBuilder ldcClass(String internalName) {
+        ldcIndex(classFile.classConstant(internalName));
+        return this;
+    }
+
+    private void ldcIndex(int index) {
+        if (index <= 0xFF) {
+            u1(LDC);
+            u1(index);
+        } else {
+            u1(LDC_W);
+            u2(index);
+        }
+    }
+
+    /**
+     * Writes a local variable instruction, e.g. {@code ILOAD} or {@code ASTORE}.
+     */
+    public CodeBuilder var(int opcode, int index) {
+        if (index > 0xFF) {
+            u1(WIDE);
+            u1(opcode);
+            u2(index);
+        } else {
+            u1(opcode);
+            u1(index);
+        }
+        return this;
+    }
+
+    public CodeBuilder iinc(int index, int delta) {
+        if (index > 0xFF || delta < Byte.MIN_VALUE || delta > Byte.MAX_VALUE) {
+            u1(WIDE);
+            u1(IINC);
+            u2(index);
+            u2(delta);
+        } else {
+            u1(IINC);
+            u1(index);
+            u1(delta);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a branch instruction, e.g. {@code GOTO} or {@code IF_ICMPGE}.
+     */
+    public CodeBuilder jump(int opcode, Label target) {
+        final int instruction = length;
+        u1(opcode);
+        fixups.add(new Fixup(instruction, length, target, false));
+        u2(0);
+        return this;
+    }
+
+    /**
+     * @param keys    the case values, in ascending order.
+     * @param targets the target of each key.
+     */
+    public CodeBuilder lookupSwitch(int[] keys, Label[] targets, Label defaultTarget) {
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i - 1] >= keys[i]) {
+                throw new IllegalArgumentException("lookupswitch keys must be in ascending order");
+            }
+        }
+        final int instruction = length;
+        u1(LOOKUPSWITCH);
+        pad();
+        wideFixup(instruction, defaultTarget);
+        u4(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            u4(keys[i]);
+            wideFixup(instruction, targets[i]);
+        }
+        return this;
+    }
+
+    /**
+     * @param targets the targets of the values from {@code low} to {@code low + targets.length - 1}.
+     */
+    public CodeBuilder tableSwitch(int low, Label[] targets, Label defaultTarget) {
+        final int instruction = length;
+        u1(TABLESWITCH);
+        pad();
+        wideFixup(instruction, defaultTarget);
+        u4(low);
+        u4(low + targets.length - 1);
+        for (Label target : targets) {
+            wideFixup(instruction, target);
+        }
+        return this;
+    }
+
+    public CodeBuilder field(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(classFile.fieldConstant(owner, name, descriptor));
+        return this;
+    }
+
+    public CodeBuilder invoke(int opcode, String owner, String name, String descriptor) {
+        final boolean isInterface = opcode == INVOKEINTERFACE;
+        u1(opcode);
+        u2(classFile.methodConstant(owner, name, descriptor, isInterface));
+        if (isInterface) {
+            u1(1 + argumentSlots(descriptor));
+            u1(0);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a type instruction, {@code NEW}, {@code ANEWARRAY}, {@code CHECKCAST} or {@code INSTANCEOF}.
+     */
+    public CodeBuilder type(int opcode, String internalName) {
+        u1(opcode);
+        u2(classFile.classConstant(internalName));
+        return this;
+    }
+
+    private static int argumentSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            final char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                slots += 2;
+                i++;
+                continue;
+            }
+            slots++;
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+        }
+        return slots;
+    }
+
+    private void pad() {
+        while (length % 4 != 0) {
+            u1(0);
+        }
+    }
+
+    private void wideFixup(int instruction, Label target) {
+        fixups.add(new Fixup(instruction, length, target, true));
+        u4(0);
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + bytes));
+        }
+    }
+
+    private void u1(int value) {
+        ensure(1);
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        ensure(2);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+
+    private void u4(int value) {
+        ensure(4);
+        code[length++] = (byte) (value >>> 24);
+        code[length++] = (byte) (value >>> 16);
+        code[length++] = (byte) (value >>> 8);
+        code[length++] = (byte) value;
+    }
+
+    byte[] toByteArray(int codeAttributeName) throws IOException {
+        if (length > 0xFFFF) {
+            throw new IllegalStateException("Method code is too large: %d bytes".formatted(length));
+        }
+        for (Fixup fixup : fixups) {
+            if (!fixup.target().isPlaced()) {
+                throw new IllegalStateException("Branch to a label that was never placed");
+            }
+            final int offset = fixup.target().position - fixup.instruction();
+            int at = fixup.operand();
+            if (fixup.wide()) {
+                code[at++] = (byte) (offset >>> 24);
+                code[at++] = (byte) (offset >>> 16);
+            } else if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Branch offset %d doesn't fit in 16 bits".formatted(offset));
+            }
+            code[at++] = (byte) (offset >>> 8);
+            code[at] = (byte) offset;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1); // attributes
+        out.writeShort(codeAttributeName);
+        out.writeInt(12 + length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(length);
+        out.write(code, 0, length);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,16 @@
+package org.killeroonie.jsonpath.codegen;
+
+/**
+ * Thrown if something can't be generated as code, e.g., because a method would be too large for the JIT, or the
+ * generated class can't be defined. Callers fall back to code that isn't generated.
+ */
+public final class CodegenException extends RuntimeException {
+
+    public CodegenException(String message) {
+        super(message);
+    }
+
+    public CodegenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,23 @@
+package org.killeroonie.jsonpath.evaluator;
+
+/**
+ * The kind of data that generated code is specialized for. See {@link PathCodegen}.
+ * <p>
+ * Code specialized for a model tests each value for the classes of that model, and reads it with direct calls to
+ * those classes. Values of other classes are read through {@link org.killeroonie.jsonpath.JsonValues}, so the results
+ * are the same for any data, only slower for data of another model.
+ */
+public enum DocumentModel {
+    /**
+     * Values are read through {@link org.killeroonie.jsonpath.JsonValues}.
+     */
+    ANY,
+    /**
+     * Arrays are {@link java.util.List}s and objects are {@link java.util.Map}s, as for Java objects.
+     */
+    COLLECTIONS,
+    /**
+     * Arrays and objects are Jackson {@link com.fasterxml.jackson.databind.JsonNode}s, as for loaded JSON text.
+     */
+    JSON_NODE
+}
@@ -0,0 +1,25 @@
+package org.killeroonie.jsonpath.evaluator;
+
+/**
+ * How the paths of an environment are applied to data. See
+ * {@link org.killeroonie.jsonpath.JSONPathEnvironment#setEvaluationStrategy(EvaluationStrategy)}.
+ */
+public enum EvaluationStrategy {
+    /**
+     * Each segment resolves the matches of the previous one lazily, and applies its selectors to each match by calling
+     * them.
+     */
+    INTERPRETER,
+    /**
+     * Each path is lowered to a {@link PathProgram} on first use, a flat array of instructions, which a small virtual
+     * machine runs with an explicit stack. Matches are found lazily. Unlike {@link #BYTECODE}, this doesn't define
+     * classes at runtime, so it also works in GraalVM native images. This is the default.
+     */
+    VM,
+    /**
+     * Each path is generated as a class by {@link PathCodegen} on first use, with its selectors and, where possible, its
+     * filter expressions written as code. Matches are found eagerly, except that {@code match()} stops at the first.
+     * Falls back to the interpreter if a path can't be generated.
+     */
+    BYTECODE
+}
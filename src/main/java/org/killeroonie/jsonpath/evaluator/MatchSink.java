@@ -0,0 +1,16 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+
+/**
+ * Receives the matches of a path, in document order, from a {@link PathEvaluator}.
+ */
+@FunctionalInterface
+public interface MatchSink {
+
+    /**
+     * @param match the next match.
+     * @return true to receive more matches, false to stop the evaluation.
+     */
+    boolean accept(JSONPathMatch match);
+}
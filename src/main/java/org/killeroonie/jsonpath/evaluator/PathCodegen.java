@@ -0,0 +1,879 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.codegen.ClassFileWriter;
+import org.killeroonie.jsonpath.codegen.CodeBuilder;
+import org.killeroonie.jsonpath.codegen.CodeBuilder.Label;
+import org.killeroonie.jsonpath.codegen.CodegenException;
+import org.killeroonie.jsonpath.parser.filter.Comparison;
+import org.killeroonie.jsonpath.parser.filter.ComparisonOperator;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+import org.killeroonie.jsonpath.parser.filter.FilterQuery;
+import org.killeroonie.jsonpath.parser.filter.Literal;
+import org.killeroonie.jsonpath.parser.filter.Logical;
+import org.killeroonie.jsonpath.parser.filter.LogicalOperator;
+import org.killeroonie.jsonpath.parser.filter.Not;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.KeysSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+import static org.killeroonie.jsonpath.codegen.CodeBuilder.*;
+
+/**
+ * Generates a {@link PathEvaluator} class for a {@link JSONPath}, with its segments, selectors and filter expressions
+ * written as code instead of being called through the segment and selector classes. The class is defined as a hidden
+ * class, so it can be unloaded with the path that uses it.
+ * <p>
+ * Each segment becomes a static method that takes one match, applies the segment's selectors to it with loops over
+ * the selected elements and members, and calls the method of the next segment with each selected match. The method
+ * of the last segment passes the match to the sink. A descendant segment is a method that also calls itself for each
+ * child array and object, and checks the environment's {@code maxRecursionDepth} as the interpreter does.
+ * <p>
+ * Comparisons, logical operators and singular queries of filter expressions are written as code too, with the
+ * comparisons themselves calling {@link org.killeroonie.jsonpath.JsonValues} and
+ * {@link ComparisonOperator}. Other filter expressions, like function calls,
+ * and the matches of non-singular queries, are evaluated by calling them. The filter expressions, tokens and literals
+ * the code needs are passed to the class as its class data, and held in static final fields, which the JIT compiler
+ * treats as constants.
+ * <p>
+ * Values are read with direct calls to the classes of a {@link DocumentModel}, guarded by type tests that fall back to
+ * {@code JsonValues}, so the generated code gives the same results as the interpreter for any data.
+ */
+public final class PathCodegen {
+
+    private static final String CLASS_NAME = "org/killeroonie/jsonpath/evaluator/GeneratedPathEvaluator";
+    private static final String MATCH = "org/killeroonie/jsonpath/JSONPathMatch";
+    private static final String SINK = "org/killeroonie/jsonpath/evaluator/MatchSink";
+    private static final String ENV = "org/killeroonie/jsonpath/JSONPathEnvironment";
+    private static final String TOKEN = "org/killeroonie/jsonpath/Token";
+    private static final String VALUES = "org/killeroonie/jsonpath/JsonValues";
+    private static final String POINTER = "org/killeroonie/jsonpath/JSONPointer";
+    private static final String RECURSION_EXCEPTION = "org/killeroonie/jsonpath/exception/JSONPathRecursionException";
+    private static final String CONTEXT = "org/killeroonie/jsonpath/parser/filter/EvaluationContext";
+    private static final String EXPRESSION = "org/killeroonie/jsonpath/parser/filter/FilterExpression";
+    private static final String OPERATOR = "org/killeroonie/jsonpath/parser/filter/ComparisonOperator";
+    private static final String KEYS_SELECTOR = "org/killeroonie/jsonpath/parser/selector/KeysSelector";
+    private static final String NODE = "com/fasterxml/jackson/databind/JsonNode";
+    private static final String LIST = "java/util/List";
+    private static final String MAP = "java/util/Map";
+    private static final String ENTRY = "java/util/Map$Entry";
+    private static final String SET = "java/util/Set";
+    private static final String ITERATOR = "java/util/Iterator";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+
+    private static final String MATCH_DESCRIPTOR = "L" + MATCH + ";";
+    private static final String SEGMENT_METHOD_DESCRIPTOR = "(" + MATCH_DESCRIPTOR + "L" + SINK + ";)Z";
+    private static final String DESCENDANT_METHOD_DESCRIPTOR = "(" + MATCH_DESCRIPTOR + "L" + SINK + ";I)Z";
+
+    // The local variables of the segment methods. The first three are the parameters; only descendant segment
+    // methods have a depth.
+    private static final int MATCH_VAR = 0;
+    private static final int SINK_VAR = 1;
+    private static final int DEPTH = 2;
+    private static final int OBJ = 3;          // the object of the match
+    private static final int CONTAINER = 4;    // OBJ, cast to the class of the document model
+    private static final int SIZE = 5;
+    private static final int INDEX = 6;
+    private static final int VALUE = 7;
+    private static final int ITERATOR_VAR = 8;
+    private static final int ENTRY_VAR = 9;
+    private static final int CONTEXT_VAR = 10;
+    private static final int LOWER = 11;
+    private static final int UPPER = 12;
+    // used by filter expressions, which run inside the loops of a filter selector
+    private static final int QUERY = 13;
+    private static final int QUERY_CONTAINER = 14;
+    private static final int QUERY_SIZE = 15;
+    private static final int QUERY_INDEX = 16;
+    private static final int LEFT = 17;
+    private static final int RIGHT = 18;
+    private static final int SEGMENT_METHOD_LOCALS = 19;
+    private static final int SEGMENT_METHOD_STACK = 8;
+
+    private final JSONPath path;
+    private final DocumentModel model;
+    private final ClassFileWriter cf;
+    private final List<Object> constants = new ArrayList<>();
+    private final List<String> constantDescriptors = new ArrayList<>();
+    private CodeBuilder code; // the method being written
+
+    private PathCodegen(JSONPath path, DocumentModel model) {
+        this.path = path;
+        this.model = model;
+        this.cf = new ClassFileWriter(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL,
+                CLASS_NAME, OBJECT, "org/killeroonie/jsonpath/evaluator/PathEvaluator");
+    }
+
+    /**
+     * Generates and defines an evaluator class for the argument path.
+     *
+     * @param path  the path to generate.
+     * @param model the kind of data to specialize the code for.
+     * @return a new PathEvaluator which returns the same matches as the segments of {@code path}.
+     * @throws CodegenException if the class can't be generated or defined.
+     */
+    public static PathEvaluator generate(JSONPath path, DocumentModel model) {
+        final PathCodegen codegen = new PathCodegen(path, model);
+        final byte[] classFile = codegen.writeClass();
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(classFile, codegen.constants.toArray(), true);
+            return (PathEvaluator) lookup.lookupClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new CodegenException("Can't define the generated evaluator class: " + e, e);
+        }
+    }
+
+    /**
+     * Normalizes a slice bound, as {@link SliceSelector} does. Called by the generated code.
+     * @return {@code index}, counted from the end of the array if negative, and clamped to {@code [min, max]}.
+     */
+    static int sliceBound(long index, int length, int min, int max) {
+        final long normalized = index >= 0 ? index : length + index;
+        return (int) Math.min(Math.max(normalized, min), max);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Class
+    ////////////////////////////////////////////////////////////////////
+
+    private byte[] writeClass() {
+        constant(path.env, ENV); // K0
+
+        code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1);
+        code.var(ALOAD, 0)
+                .invoke(INVOKESPECIAL, OBJECT, "<init>", "()V")
+                .op(RETURN);
+
+        // public boolean evaluate(JSONPathMatch root, MatchSink sink)
+        code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, "evaluate", SEGMENT_METHOD_DESCRIPTOR, 2, 3);
+        code.var(ALOAD, 1)
+                .var(ALOAD, 2)
+                .invoke(INVOKESTATIC, CLASS_NAME, segmentMethod(0), SEGMENT_METHOD_DESCRIPTOR)
+                .op(IRETURN);
+
+        final List<JSONPathSegment> segments = path.segments;
+        for (int i = 0; i < segments.size(); i++) {
+            writeSegmentMethod(i, segments.get(i));
+        }
+
+        // the method after the last segment passes its match to the sink
+        code = cf.addMethod(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC,
+                segmentMethod(segments.size()), SEGMENT_METHOD_DESCRIPTOR, 2, 2);
+        code.var(ALOAD, SINK_VAR)
+                .var(ALOAD, MATCH_VAR)
+                .invoke(INVOKEINTERFACE, SINK, "accept", "(" + MATCH_DESCRIPTOR + ")Z")
+                .op(IRETURN);
+
+        writeStaticInitializer();
+        return cf.toByteArray();
+    }
+
+    /**
+     * Writes the static initializer, which reads the constants from the class data.
+     */
+    private void writeStaticInitializer() {
+        final int constantField = ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL;
+        code = cf.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V", 4, 0);
+        code.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                        "()Ljava/lang/invoke/MethodHandles$Lookup;")
+                .ldc("_")
+                .ldcClass(OBJECT_ARRAY)
+                .invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;")
+                .type(CHECKCAST, OBJECT_ARRAY);
+        for (int i = 0; i < constants.size(); i++) {
+            final String descriptor = constantDescriptors.get(i);
+            cf.addField(constantField, constantField(i), descriptor);
+            code.op(DUP).iconst(i).op(AALOAD)
+                    .type(CHECKCAST, descriptor.substring(1, descriptor.length() - 1))
+                    .field(PUTSTATIC, CLASS_NAME, constantField(i), descriptor);
+        }
+        code.op(POP).op(RETURN);
+    }
+
+    /**
+     * Adds a constant to the class data.
+     * @param internalName the class of the field that holds the constant.
+     * @return the name of the field.
+     */
+    private String constant(Object value, String internalName) {
+        for (int i = 0; i < constants.size(); i++) {
+            if (constants.get(i) == value && constantDescriptors.get(i).equals("L" + internalName + ";")) {
+                return constantField(i);
+            }
+        }
+        constants.add(value);
+        constantDescriptors.add("L" + internalName + ";");
+        return constantField(constants.size() - 1);
+    }
+
+    private CodeBuilder getConstant(Object value, String internalName) {
+        return code.field(GETSTATIC, CLASS_NAME, constant(value, internalName), "L" + internalName + ";");
+    }
+
+    private static String constantField(int index) {
+        return "K" + index;
+    }
+
+    private static String segmentMethod(int segment) {
+        return "s" + segment;
+    }
+
+    private static String descendantMethod(int segment) {
+        return "d" + segment;
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Segments
+    ////////////////////////////////////////////////////////////////////
+
+    private void writeSegmentMethod(int index, JSONPathSegment segment) {
+        final boolean descendant = segment instanceof JSONPathRecursiveDescentSegment;
+        final int access = ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC;
+        if (descendant) {
+            // the segment starts at depth 1
+            code = cf.addMethod(access, segmentMethod(index), SEGMENT_METHOD_DESCRIPTOR, 3, 2);
+            code.var(ALOAD, MATCH_VAR)
+                    .var(ALOAD, SINK_VAR)
+                    .iconst(1)
+                    .invoke(INVOKESTATIC, CLASS_NAME, descendantMethod(index), DESCENDANT_METHOD_DESCRIPTOR)
+                    .op(IRETURN);
+            code = cf.addMethod(access, descendantMethod(index), DESCENDANT_METHOD_DESCRIPTOR,
+                    SEGMENT_METHOD_STACK, SEGMENT_METHOD_LOCALS);
+            final Label inLimit = code.newLabel();
+            code.var(ILOAD, DEPTH);
+            getConstant(path.env, ENV)
+                    .field(GETFIELD, ENV, "maxRecursionDepth", "I")
+                    .jump(IF_ICMPLE, inLimit)
+                    .type(NEW, RECURSION_EXCEPTION)
+                    .op(DUP)
+                    .ldc("recursion limit exceeded");
+            getConstant(segment.getToken(), TOKEN)
+                    .invoke(INVOKESPECIAL, RECURSION_EXCEPTION, "<init>", "(L" + STRING + ";L" + TOKEN + ";)V")
+                    .op(ATHROW)
+                    .place(inLimit);
+        } else {
+            code = cf.addMethod(access, segmentMethod(index), SEGMENT_METHOD_DESCRIPTOR,
+                    SEGMENT_METHOD_STACK, SEGMENT_METHOD_LOCALS);
+        }
+        final Label stop = code.newLabel();
+        code.var(ALOAD, MATCH_VAR).field(GETFIELD, MATCH, "obj", "L" + OBJECT + ";").var(ASTORE, OBJ);
+        for (JSONPathSelector selector : segment.selectors()) {
+            selector(selector, index + 1, stop);
+        }
+        if (descendant) {
+            descend(index, stop);
+        }
+        code.iconst(1).op(IRETURN)
+                .place(stop)
+                .iconst(0).op(IRETURN);
+
+        if (code.size() > HUGE_METHOD_LIMIT) {
+            throw new CodegenException("Generated segment method has %d bytes of code, the JIT limit is %d"
+                    .formatted(code.size(), HUGE_METHOD_LIMIT));
+        }
+    }
+
+    /**
+     * Calls the method of the next segment with the match on top of the stack, and jumps to {@code stop} if it returns
+     * false.
+     */
+    private void next(int segment, Label stop) {
+        code.var(ALOAD, SINK_VAR)
+                .invoke(INVOKESTATIC, CLASS_NAME, segmentMethod(segment), SEGMENT_METHOD_DESCRIPTOR)
+                .jump(IFEQ, stop);
+    }
+
+    /**
+     * Calls the descendant segment method {@code segment} for each child array and object of OBJ, at the next depth.
+     */
+    private void descend(int segment, Label stop) {
+        final Label tryObject = code.newLabel();
+        final Label done = code.newLabel();
+        onArray(OBJ, CONTAINER, tryObject, done, access -> forEachElement(access, CONTAINER, () -> {
+            final Label skip = code.newLabel();
+            elementAt(access, CONTAINER, INDEX);
+            code.var(ASTORE, VALUE);
+            containerTest(VALUE, skip);
+            code.var(ALOAD, MATCH_VAR).var(ALOAD, VALUE).var(ILOAD, INDEX)
+                    .invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";I)" + MATCH_DESCRIPTOR);
+            descendTo(segment, stop);
+            code.place(skip);
+        }));
+        code.place(tryObject);
+        onObject(OBJ, CONTAINER, done, done, access -> forEachMember(access, CONTAINER, () -> {
+            final Label skip = code.newLabel();
+            code.var(ALOAD, ENTRY_VAR).invoke(INVOKEINTERFACE, ENTRY, "getValue", "()L" + OBJECT + ";")
+                    .var(ASTORE, VALUE);
+            containerTest(VALUE, skip);
+            code.var(ALOAD, MATCH_VAR).var(ALOAD, VALUE);
+            memberName(access);
+            code.invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";L" + STRING + ";)" + MATCH_DESCRIPTOR);
+            descendTo(segment, stop);
+            code.place(skip);
+        }));
+        code.place(done);
+    }
+
+    private void descendTo(int segment, Label stop) {
+        code.var(ALOAD, SINK_VAR).var(ILOAD, DEPTH).iconst(1).op(IADD)
+                .invoke(INVOKESTATIC, CLASS_NAME, descendantMethod(segment), DESCENDANT_METHOD_DESCRIPTOR)
+                .jump(IFEQ, stop);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Selectors
+    ////////////////////////////////////////////////////////////////////
+
+    private void selector(JSONPathSelector selector, int next, Label stop) {
+        final Label done = code.newLabel();
+        switch (selector) {
+            case NameSelector name -> {
+                member(OBJ, name.getName(), VALUE, CONTAINER, done);
+                code.var(ALOAD, MATCH_VAR).var(ALOAD, VALUE).ldc(name.getName())
+                        .invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";L" + STRING + ";)" + MATCH_DESCRIPTOR);
+                next(next, stop);
+            }
+            case IndexSelector index -> {
+                element(OBJ, index.getIndex(), VALUE, CONTAINER, SIZE, INDEX, done);
+                code.var(ALOAD, MATCH_VAR).var(ALOAD, VALUE).var(ILOAD, INDEX)
+                        .invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";I)" + MATCH_DESCRIPTOR);
+                next(next, stop);
+            }
+            case SliceSelector slice -> slice(slice, next, stop, done);
+            case WildcardSelector wildcard -> {
+                final Label tryObject = code.newLabel();
+                onArray(OBJ, CONTAINER, tryObject, done, access -> forEachElement(access, CONTAINER, () -> {
+                    code.var(ALOAD, MATCH_VAR);
+                    elementAt(access, CONTAINER, INDEX);
+                    code.var(ILOAD, INDEX)
+                            .invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";I)" + MATCH_DESCRIPTOR);
+                    next(next, stop);
+                }));
+                code.place(tryObject);
+                onObject(OBJ, CONTAINER, done, done, access -> forEachMember(access, CONTAINER, () -> {
+                    code.var(ALOAD, MATCH_VAR)
+                            .var(ALOAD, ENTRY_VAR).invoke(INVOKEINTERFACE, ENTRY, "getValue", "()L" + OBJECT + ";");
+                    memberName(access);
+                    code.invoke(INVOKEVIRTUAL, MATCH, "newChild",
+                            "(L" + OBJECT + ";L" + STRING + ";)" + MATCH_DESCRIPTOR);
+                    next(next, stop);
+                }));
+            }
+            case FilterSelector filter -> {
+                final FilterExpression expression = filter.getExpression();
+                final Label tryObject = code.newLabel();
+                onArray(OBJ, CONTAINER, tryObject, done, access -> {
+                    newContext();
+                    forEachElement(access, CONTAINER, () -> {
+                        final Label skip = code.newLabel();
+                        code.var(ALOAD, CONTEXT_VAR);
+                        elementAt(access, CONTAINER, INDEX);
+                        code.var(ILOAD, INDEX).invoke(INVOKEVIRTUAL, CONTEXT, "moveTo", "(L" + OBJECT + ";I)V");
+                        branch(expression, false, skip);
+                        code.var(ALOAD, CONTEXT_VAR)
+                                .invoke(INVOKEVIRTUAL, CONTEXT, "currentMatch", "()" + MATCH_DESCRIPTOR);
+                        next(next, stop);
+                        code.place(skip);
+                    });
+                });
+                code.place(tryObject);
+                onObject(OBJ, CONTAINER, done, done, access -> {
+                    newContext();
+                    forEachMember(access, CONTAINER, () -> {
+                        final Label skip = code.newLabel();
+                        code.var(ALOAD, CONTEXT_VAR)
+                                .var(ALOAD, ENTRY_VAR).invoke(INVOKEINTERFACE, ENTRY, "getValue", "()L" + OBJECT + ";");
+                        memberName(access);
+                        code.invoke(INVOKEVIRTUAL, CONTEXT, "moveTo", "(L" + OBJECT + ";L" + STRING + ";)V");
+                        branch(expression, false, skip);
+                        code.var(ALOAD, CONTEXT_VAR)
+                                .invoke(INVOKEVIRTUAL, CONTEXT, "currentMatch", "()" + MATCH_DESCRIPTOR);
+                        next(next, stop);
+                        code.place(skip);
+                    });
+                });
+            }
+            case KeysSelector keys -> onObject(OBJ, CONTAINER, done, done, access -> {
+                final Label loop = code.newLabel();
+                final Label end = code.newLabel();
+                switch (access) {
+                    case ANY -> code.var(ALOAD, CONTAINER)
+                            .invoke(INVOKESTATIC, VALUES, "names", "(L" + OBJECT + ";)L" + ITERATOR + ";");
+                    case COLLECTIONS -> code.var(ALOAD, CONTAINER)
+                            .invoke(INVOKEINTERFACE, MAP, "keySet", "()L" + SET + ";")
+                            .invoke(INVOKEINTERFACE, SET, "iterator", "()L" + ITERATOR + ";");
+                    case JSON_NODE -> code.var(ALOAD, CONTAINER)
+                            .invoke(INVOKEVIRTUAL, NODE, "fieldNames", "()L" + ITERATOR + ";");
+                }
+                code.var(ASTORE, ITERATOR_VAR)
+                        .place(loop)
+                        .var(ALOAD, ITERATOR_VAR).invoke(INVOKEINTERFACE, ITERATOR, "hasNext", "()Z")
+                        .jump(IFEQ, end)
+                        .var(ALOAD, MATCH_VAR)
+                        .var(ALOAD, ITERATOR_VAR).invoke(INVOKEINTERFACE, ITERATOR, "next", "()L" + OBJECT + ";");
+                toName(access);
+                code.invoke(INVOKESTATIC, KEYS_SELECTOR, "newKeyMatch",
+                        "(" + MATCH_DESCRIPTOR + "L" + STRING + ";)" + MATCH_DESCRIPTOR);
+                next(next, stop);
+                code.jump(GOTO, loop).place(end);
+            });
+            default -> throw new CodegenException("Can't generate the selector " + selector.getClass().getName());
+        }
+        code.place(done);
+    }
+
+    private void slice(SliceSelector slice, int next, Label stop, Label done) {
+        final long step = slice.getStep() == null ? 1 : slice.getStep();
+        if (step == 0) {
+            return;
+        }
+        final int stride = (int) Math.min(Math.abs(step), Integer.MAX_VALUE); // a larger step selects one element
+        onArray(OBJ, CONTAINER, done, done, access -> {
+            final Label loop = code.newLabel();
+            final Label end = code.newLabel();
+            size(access, CONTAINER);
+            code.var(ISTORE, SIZE);
+            if (step > 0) {
+                bound(slice.getStart(), false, LOWER, () -> code.iconst(0));
+                bound(slice.getStop(), false, UPPER, () -> code.var(ILOAD, SIZE));
+                // for (i = lower; i < upper; i += step)
+                code.var(ILOAD, LOWER).var(ISTORE, INDEX)
+                        .place(loop)
+                        .var(ILOAD, INDEX).var(ILOAD, UPPER).jump(IF_ICMPGE, end);
+                sliceElement(access, next, stop);
+                code.var(ILOAD, UPPER).var(ILOAD, INDEX).op(ISUB).iconst(stride).jump(IF_ICMPLE, end);
+                advance(stride);
+            } else {
+                bound(slice.getStart(), true, UPPER, () -> code.var(ILOAD, SIZE).iconst(1).op(ISUB));
+                bound(slice.getStop(), true, LOWER, () -> code.iconst(-1));
+                // for (i = upper; lower < i; i += step)
+                code.var(ILOAD, UPPER).var(ISTORE, INDEX)
+                        .place(loop)
+                        .var(ILOAD, LOWER).var(ILOAD, INDEX).jump(IF_ICMPGE, end);
+                sliceElement(access, next, stop);
+                code.var(ILOAD, INDEX).var(ILOAD, LOWER).op(ISUB).iconst(stride).jump(IF_ICMPLE, end);
+                advance(-stride);
+            }
+            code.jump(GOTO, loop).place(end);
+        });
+    }
+
+    /**
+     * Stores the slice bound {@code value}, normalized for the array of length SIZE, in {@code var}. Bounds are clamped
+     * to {@code [0, SIZE]} for a positive step, and {@code [-1, SIZE - 1]} for a negative step.
+     * @param omitted pushes the default bound, if {@code value} is null.
+     */
+    private void bound(Long value, boolean negativeStep, int var, Runnable omitted) {
+        if (value == null) {
+            omitted.run();
+        } else {
+            code.lconst(value).var(ILOAD, SIZE);
+            if (negativeStep) {
+                code.iconst(-1).var(ILOAD, SIZE).iconst(1).op(ISUB);
+            } else {
+                code.iconst(0).var(ILOAD, SIZE);
+            }
+            code.invoke(INVOKESTATIC, "org/killeroonie/jsonpath/evaluator/PathCodegen", "sliceBound", "(JIII)I");
+        }
+        code.var(ISTORE, var);
+    }
+
+    private void sliceElement(DocumentModel access, int next, Label stop) {
+        code.var(ALOAD, MATCH_VAR);
+        elementAt(access, CONTAINER, INDEX);
+        code.var(ILOAD, INDEX).invoke(INVOKEVIRTUAL, MATCH, "newChild", "(L" + OBJECT + ";I)" + MATCH_DESCRIPTOR);
+        next(next, stop);
+    }
+
+    private void advance(int delta) {
+        if (delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE) {
+            code.iinc(INDEX, delta);
+        } else {
+            code.var(ILOAD, INDEX).iconst(delta).op(IADD).var(ISTORE, INDEX);
+        }
+    }
+
+    private void newContext() {
+        code.type(NEW, CONTEXT)
+                .op(DUP)
+                .var(ALOAD, MATCH_VAR)
+                .invoke(INVOKESPECIAL, CONTEXT, "<init>", "(" + MATCH_DESCRIPTOR + ")V")
+                .var(ASTORE, CONTEXT_VAR);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Filter expressions
+    ////////////////////////////////////////////////////////////////////
+
+    /**
+     * Jumps to {@code target} if the test of {@code expression} in the context of CONTEXT_VAR is {@code jumpIf}.
+     */
+    private void branch(FilterExpression expression, boolean jumpIf, Label target) {
+        switch (expression) {
+            case Logical logical -> {
+                // the operands decide the result when they are equal to this
+                final boolean decisive = logical.operator() == LogicalOperator.OR;
+                final List<FilterExpression> operands = logical.operands();
+                if (jumpIf == decisive) {
+                    for (FilterExpression operand : operands) {
+                        branch(operand, decisive, target);
+                    }
+                } else {
+                    final Label decided = code.newLabel();
+                    for (int i = 0; i < operands.size() - 1; i++) {
+                        branch(operands.get(i), decisive, decided);
+                    }
+                    branch(operands.getLast(), jumpIf, target);
+                    code.place(decided);
+                }
+            }
+            case Not not -> branch(not.operand(), !jumpIf, target);
+            case Comparison comparison -> {
+                final boolean negated = comparison(comparison);
+                code.jump(jumpIf != negated ? IFNE : IFEQ, target);
+            }
+            case FilterQuery query when query.isSingular() -> {
+                singularQuery(query);
+                code.field(GETSTATIC, POINTER, "UNDEFINED", "L" + OBJECT + ";")
+                        .jump(jumpIf ? IF_ACMPNE : IF_ACMPEQ, target);
+            }
+            default -> {
+                getConstant(expression, EXPRESSION)
+                        .var(ALOAD, CONTEXT_VAR)
+                        .invoke(INVOKEINTERFACE, EXPRESSION, "test", "(L" + CONTEXT + ";)Z")
+                        .jump(jumpIf ? IFNE : IFEQ, target);
+            }
+        }
+    }
+
+    /**
+     * Pushes the result of a comparison.
+     * @return true if the result pushed is the negation of the comparison.
+     */
+    private boolean comparison(Comparison comparison) {
+        value(comparison.left());
+        code.var(ASTORE, LEFT);
+        value(comparison.right());
+        code.var(ASTORE, RIGHT);
+        final String binary = "(L" + OBJECT + ";L" + OBJECT + ";)Z";
+        switch (comparison.operator()) {
+            case EQ, NE -> code.var(ALOAD, LEFT).var(ALOAD, RIGHT).invoke(INVOKESTATIC, VALUES, "equal", binary);
+            case LT -> code.var(ALOAD, LEFT).var(ALOAD, RIGHT).invoke(INVOKESTATIC, OPERATOR, "lessThan", binary);
+            case GT -> code.var(ALOAD, RIGHT).var(ALOAD, LEFT).invoke(INVOKESTATIC, OPERATOR, "lessThan", binary);
+            case LE, GE -> {
+                final boolean le = comparison.operator() == ComparisonOperator.LE;
+                final Label decided = code.newLabel();
+                code.var(ALOAD, le ? LEFT : RIGHT).var(ALOAD, le ? RIGHT : LEFT)
+                        .invoke(INVOKESTATIC, OPERATOR, "lessThan", binary)
+                        .op(DUP).jump(IFNE, decided)
+                        .op(POP)
+                        .var(ALOAD, LEFT).var(ALOAD, RIGHT).invoke(INVOKESTATIC, VALUES, "equal", binary)
+                        .place(decided);
+            }
+            default -> code.field(GETSTATIC, OPERATOR, comparison.operator().name(), "L" + OPERATOR + ";")
+                    .var(ALOAD, LEFT).var(ALOAD, RIGHT)
+                    .invoke(INVOKEVIRTUAL, OPERATOR, "apply", binary);
+        }
+        return comparison.operator() == ComparisonOperator.NE;
+    }
+
+    /**
+     * Pushes the value of {@code expression} as a comparison operand.
+     */
+    private void value(FilterExpression expression) {
+        switch (expression) {
+            case Literal literal -> {
+                final Object value = literal.value();
+                if (value == null) {
+                    code.op(ACONST_NULL);
+                } else if (value instanceof String s) {
+                    code.ldc(s);
+                } else if (value == UNDEFINED) {
+                    code.field(GETSTATIC, POINTER, "UNDEFINED", "L" + OBJECT + ";");
+                } else {
+                    getConstant(value, OBJECT);
+                }
+            }
+            case FilterQuery query when query.isSingular() -> singularQuery(query);
+            default -> getConstant(expression, EXPRESSION)
+                    .var(ALOAD, CONTEXT_VAR)
+                    .invoke(INVOKEINTERFACE, EXPRESSION, "value", "(L" + CONTEXT + ";)L" + OBJECT + ";");
+        }
+    }
+
+    /**
+     * Pushes the value of a singular query, or {@link org.killeroonie.jsonpath.JSONPointer#UNDEFINED} if it selects
+     * nothing, by following its names and indices.
+     */
+    private void singularQuery(FilterQuery query) {
+        final String start = switch (query.getAnchor()) {
+            case SELF -> "current";
+            case ROOT -> "root";
+            case FILTER_CONTEXT -> "filterContext";
+        };
+        code.var(ALOAD, CONTEXT_VAR).invoke(INVOKEVIRTUAL, CONTEXT, start, "()L" + OBJECT + ";")
+                .var(ASTORE, QUERY);
+        final Label missing = code.newLabel();
+        final Label end = code.newLabel();
+        for (JSONPathSegment segment : query.getSegments()) {
+            switch (segment.selector(0)) {
+                case NameSelector name -> member(QUERY, name.getName(), QUERY, QUERY_CONTAINER, missing);
+                case IndexSelector index ->
+                        element(QUERY, index.getIndex(), QUERY, QUERY_CONTAINER, QUERY_SIZE, QUERY_INDEX, missing);
+                default -> throw new CodegenException("Not a singular query: " + query);
+            }
+        }
+        code.var(ALOAD, QUERY).jump(GOTO, end)
+                .place(missing)
+                .field(GETSTATIC, POINTER, "UNDEFINED", "L" + OBJECT + ";")
+                .place(end);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Values
+    ////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the models whose code is written for each value: the specialized model, if any, then the fallback to
+     * JsonValues.
+     */
+    private List<DocumentModel> accesses() {
+        return model == DocumentModel.ANY ? List.of(DocumentModel.ANY) : List.of(model, DocumentModel.ANY);
+    }
+
+    /**
+     * Writes {@code body} for the array in {@code src}, once for each access, with the array in {@code container}.
+     * Jumps to {@code notArray} if {@code src} isn't an array, and to {@code done} after the body.
+     */
+    private void onArray(int src, int container, Label notArray, Label done, Consumer<DocumentModel> body) {
+        final List<DocumentModel> accesses = accesses();
+        for (int i = 0; i < accesses.size(); i++) {
+            final DocumentModel access = accesses.get(i);
+            final Label other = i == accesses.size() - 1 ? notArray : code.newLabel();
+            switch (access) {
+                case ANY -> code.var(ALOAD, src).invoke(INVOKESTATIC, VALUES, "isArray", "(L" + OBJECT + ";)Z")
+                        .jump(IFEQ, notArray)
+                        .var(ALOAD, src).var(ASTORE, container);
+                case COLLECTIONS -> code.var(ALOAD, src).type(INSTANCEOF, LIST).jump(IFEQ, other)
+                        .var(ALOAD, src).type(CHECKCAST, LIST).var(ASTORE, container);
+                case JSON_NODE -> code.var(ALOAD, src).type(INSTANCEOF, NODE).jump(IFEQ, other)
+                        .var(ALOAD, src).type(CHECKCAST, NODE).op(DUP).var(ASTORE, container)
+                        .invoke(INVOKEVIRTUAL, NODE, "isArray", "()Z").jump(IFEQ, notArray);
+            }
+            body.accept(access);
+            code.jump(GOTO, done);
+            if (other != notArray) {
+                code.place(other);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code body} for the object in {@code src}, as {@link #onArray} does for arrays.
+     */
+    private void onObject(int src, int container, Label notObject, Label done, Consumer<DocumentModel> body) {
+        final List<DocumentModel> accesses = accesses();
+        for (int i = 0; i < accesses.size(); i++) {
+            final DocumentModel access = accesses.get(i);
+            final Label other = i == accesses.size() - 1 ? notObject : code.newLabel();
+            switch (access) {
+                case ANY -> code.var(ALOAD, src).invoke(INVOKESTATIC, VALUES, "isObject", "(L" + OBJECT + ";)Z")
+                        .jump(IFEQ, notObject)
+                        .var(ALOAD, src).var(ASTORE, container);
+                case COLLECTIONS -> code.var(ALOAD, src).type(INSTANCEOF, MAP).jump(IFEQ, other)
+                        .var(ALOAD, src).type(CHECKCAST, MAP).var(ASTORE, container);
+                case JSON_NODE -> code.var(ALOAD, src).type(INSTANCEOF, NODE).jump(IFEQ, other)
+                        .var(ALOAD, src).type(CHECKCAST, NODE).op(DUP).var(ASTORE, container)
+                        .invoke(INVOKEVIRTUAL, NODE, "isObject", "()Z").jump(IFEQ, notObject);
+            }
+            body.accept(access);
+            code.jump(GOTO, done);
+            if (other != notObject) {
+                code.place(other);
+            }
+        }
+    }
+
+    /**
+     * Stores the value of the member {@code name} of the object in {@code src} in {@code dst}, or jumps to
+     * {@code missing} if {@code src} isn't an object or has no such member.
+     */
+    private void member(int src, String name, int dst, int container, Label missing) {
+        final Label found = code.newLabel();
+        onObject(src, container, missing, found, access -> {
+            switch (access) {
+                case ANY -> code.var(ALOAD, container).ldc(name)
+                        .invoke(INVOKESTATIC, VALUES, "member", "(L" + OBJECT + ";L" + STRING + ";)L" + OBJECT + ";")
+                        .op(DUP).var(ASTORE, dst)
+                        .field(GETSTATIC, POINTER, "UNDEFINED", "L" + OBJECT + ";")
+                        .jump(IF_ACMPEQ, missing);
+                case COLLECTIONS -> {
+                    final Label notNull = code.newLabel();
+                    // a null value is a member if the map contains the name
+                    code.var(ALOAD, container).ldc(name)
+                            .invoke(INVOKEINTERFACE, MAP, "get", "(L" + OBJECT + ";)L" + OBJECT + ";")
+                            .op(DUP).var(ASTORE, dst)
+                            .jump(IFNONNULL, notNull)
+                            .var(ALOAD, container).ldc(name)
+                            .invoke(INVOKEINTERFACE, MAP, "containsKey", "(L" + OBJECT + ";)Z")
+                            .jump(IFEQ, missing)
+                            .place(notNull);
+                }
+                case JSON_NODE -> code.var(ALOAD, container).ldc(name)
+                        .invoke(INVOKEVIRTUAL, NODE, "get", "(L" + STRING + ";)L" + NODE + ";")
+                        .op(DUP).var(ASTORE, dst)
+                        .jump(IFNULL, missing);
+            }
+        });
+        code.place(found);
+    }
+
+    /**
+     * Stores the element at {@code index} of the array in {@code src} in {@code dst}, and its non-negative index in
+     * {@code indexVar}, or jumps to {@code missing} if {@code src} isn't an array or has no such element.
+     */
+    private void element(int src, long index, int dst, int container, int sizeVar, int indexVar, Label missing) {
+        if (index > Integer.MAX_VALUE || index < -Integer.MAX_VALUE) {
+            code.jump(GOTO, missing); // no array is that long
+            return;
+        }
+        final Label found = code.newLabel();
+        onArray(src, container, missing, found, access -> {
+            size(access, container);
+            if (index >= 0) {
+                code.var(ISTORE, sizeVar)
+                        .iconst((int) index).var(ISTORE, indexVar)
+                        .var(ILOAD, indexVar).var(ILOAD, sizeVar).jump(IF_ICMPGE, missing);
+            } else {
+                code.iconst((int) index).op(IADD).op(DUP).var(ISTORE, indexVar)
+                        .jump(IFLT, missing);
+            }
+            elementAt(access, container, indexVar);
+            code.var(ASTORE, dst);
+        });
+        code.place(found);
+    }
+
+    /**
+     * Pushes the size of the array in {@code container}.
+     */
+    private void size(DocumentModel access, int container) {
+        code.var(ALOAD, container);
+        switch (access) {
+            case ANY -> code.invoke(INVOKESTATIC, VALUES, "size", "(L" + OBJECT + ";)I");
+            case COLLECTIONS -> code.invoke(INVOKEINTERFACE, LIST, "size", "()I");
+            case JSON_NODE -> code.invoke(INVOKEVIRTUAL, NODE, "size", "()I");
+        }
+    }
+
+    /**
+     * Pushes the element at the index in {@code indexVar} of the array in {@code container}.
+     */
+    private void elementAt(DocumentModel access, int container, int indexVar) {
+        code.var(ALOAD, container).var(ILOAD, indexVar);
+        switch (access) {
+            case ANY -> code.invoke(INVOKESTATIC, VALUES, "element", "(L" + OBJECT + ";I)L" + OBJECT + ";");
+            case COLLECTIONS -> code.invoke(INVOKEINTERFACE, LIST, "get", "(I)L" + OBJECT + ";");
+            case JSON_NODE -> code.invoke(INVOKEVIRTUAL, NODE, "get", "(I)L" + NODE + ";");
+        }
+    }
+
+    /**
+     * Writes a loop over the elements of the array in {@code container}, with the index of each in INDEX.
+     */
+    private void forEachElement(DocumentModel access, int container, Runnable body) {
+        final Label loop = code.newLabel();
+        final Label end = code.newLabel();
+        size(access, container);
+        code.var(ISTORE, SIZE)
+                .iconst(0).var(ISTORE, INDEX)
+                .place(loop)
+                .var(ILOAD, INDEX).var(ILOAD, SIZE).jump(IF_ICMPGE, end);
+        body.run();
+        code.iinc(INDEX, 1)
+                .jump(GOTO, loop)
+                .place(end);
+    }
+
+    /**
+     * Writes a loop over the members of the object in {@code container}, with each member in ENTRY_VAR.
+     */
+    private void forEachMember(DocumentModel access, int container, Runnable body) {
+        final Label loop = code.newLabel();
+        final Label end = code.newLabel();
+        code.var(ALOAD, container);
+        switch (access) {
+            case ANY -> code.invoke(INVOKESTATIC, VALUES, "members", "(L" + OBJECT + ";)L" + ITERATOR + ";");
+            case COLLECTIONS -> code.invoke(INVOKEINTERFACE, MAP, "entrySet", "()L" + SET + ";")
+                    .invoke(INVOKEINTERFACE, SET, "iterator", "()L" + ITERATOR + ";");
+            case JSON_NODE -> code.invoke(INVOKEVIRTUAL, NODE, "fields", "()L" + ITERATOR + ";");
+        }
+        code.var(ASTORE, ITERATOR_VAR)
+                .place(loop)
+                .var(ALOAD, ITERATOR_VAR).invoke(INVOKEINTERFACE, ITERATOR, "hasNext", "()Z")
+                .jump(IFEQ, end)
+                .var(ALOAD, ITERATOR_VAR).invoke(INVOKEINTERFACE, ITERATOR, "next", "()L" + OBJECT + ";")
+                .type(CHECKCAST, ENTRY).var(ASTORE, ENTRY_VAR);
+        body.run();
+        code.jump(GOTO, loop)
+                .place(end);
+    }
+
+    /**
+     * Pushes the name of the member in ENTRY_VAR.
+     */
+    private void memberName(DocumentModel access) {
+        code.var(ALOAD, ENTRY_VAR).invoke(INVOKEINTERFACE, ENTRY, "getKey", "()L" + OBJECT + ";");
+        toName(access);
+    }
+
+    /**
+     * Converts the key on top of the stack to a String. The keys of Maps may be of any class.
+     */
+    private void toName(DocumentModel access) {
+        if (access == DocumentModel.COLLECTIONS) {
+            code.invoke(INVOKESTATIC, STRING, "valueOf", "(L" + OBJECT + ";)L" + STRING + ";");
+        } else {
+            code.type(CHECKCAST, STRING);
+        }
+    }
+
+    /**
+     * Jumps to {@code notContainer} unless the value in {@code var} is an array or an object.
+     */
+    private void containerTest(int var, Label notContainer) {
+        final Label container = code.newLabel();
+        switch (model) {
+            case ANY -> {}
+            case COLLECTIONS -> code.var(ALOAD, var).type(INSTANCEOF, MAP).jump(IFNE, container)
+                    .var(ALOAD, var).type(INSTANCEOF, LIST).jump(IFNE, container);
+            case JSON_NODE -> {
+                final Label other = code.newLabel();
+                code.var(ALOAD, var).type(INSTANCEOF, NODE).jump(IFEQ, other)
+                        .var(ALOAD, var).type(CHECKCAST, NODE).invoke(INVOKEVIRTUAL, NODE, "isContainerNode", "()Z")
+                        .jump(IFEQ, notContainer)
+                        .jump(GOTO, container)
+                        .place(other);
+            }
+        }
+        code.var(ALOAD, var).invoke(INVOKESTATIC, VALUES, "isObject", "(L" + OBJECT + ";)Z").jump(IFNE, container)
+                .var(ALOAD, var).invoke(INVOKESTATIC, VALUES, "isArray", "(L" + OBJECT + ";)Z").jump(IFEQ, notContainer)
+                .place(container);
+    }
+}
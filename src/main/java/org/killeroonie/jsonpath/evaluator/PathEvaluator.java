@@ -0,0 +1,19 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+
+/**
+ * Evaluates the segments of one {@link org.killeroonie.jsonpath.JSONPath}, pushing the matches to a sink rather than
+ * returning them as an Iterable. Evaluators are stateless and can be shared between threads.
+ */
+public interface PathEvaluator {
+
+    /**
+     * Applies the path to the root match, passing each match to {@code sink} in document order, until the sink asks to
+     * stop.
+     * @param root the match of the target data, as created by the path.
+     * @param sink receives the matches.
+     * @return false if the sink stopped the evaluation, true if all the matches were passed to it.
+     */
+    boolean evaluate(JSONPathMatch root, MatchSink sink);
+}
@@ -0,0 +1,235 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.MatchConsumer;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.KeysSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link JSONPath} lowered to a flat array of instructions, which the {@link QueryVM} executes.
+ * <p>
+ * Each segment is a header instruction, followed by one instruction for each selector, and an instruction that ends
+ * the segment. The program ends with {@link #EMIT}. Instructions are an opcode followed by its int operands, which
+ * are indices into the pools of member names, of other constants, like filter expressions and tokens, and of the long
+ * bounds of slices.
+ * <p>
+ * Unlike the classes generated by {@link PathCodegen}, programs are plain data, so they work where classes can't be
+ * defined at runtime, like GraalVM native images. Programs are immutable and can be shared between threads.
+ */
+public final class PathProgram implements PathEvaluator {
+
+    /** {@code CHILD next}: enters a child segment, whose matches continue at the instruction {@code next}. */
+    static final int CHILD = 0;
+    /** {@code DESCENDANT next token}: enters a descendant segment, checking the recursion depth. */
+    static final int DESCENDANT = 1;
+    /** {@code NAME name}: selects the member {@code names[name]}. */
+    static final int NAME = 2;
+    /** {@code INDEX index}: selects the element at {@code index}, counted from the end if negative. */
+    static final int INDEX = 3;
+    /** {@code SLICE bounds}: selects the slice {@code longs[bounds..bounds + 2]}, start, stop and step. */
+    static final int SLICE = 4;
+    /** {@code WILDCARD}: selects every element or member value. */
+    static final int WILDCARD = 5;
+    /** {@code KEYS}: selects every member name. */
+    static final int KEYS = 6;
+    /** {@code FILTER expression}: selects the elements and member values for which a filter expression is true. */
+    static final int FILTER = 7;
+    /** {@code END_CHILD}: ends a child segment. */
+    static final int END_CHILD = 8;
+    /** {@code END_DESCENDANT start}: applies the descendant segment at {@code start} to each child array and object. */
+    static final int END_DESCENDANT = 9;
+    /** {@code EMIT}: the match is a result of the path. */
+    static final int EMIT = 10;
+
+    /** An omitted slice bound. Slice bounds are I-JSON integers, so this isn't a valid bound. */
+    static final long OMITTED = Long.MIN_VALUE;
+
+    private static final String[] OPCODE_NAMES = {"CHILD", "DESCENDANT", "NAME", "INDEX", "SLICE", "WILDCARD", "KEYS",
+            "FILTER", "END_CHILD", "END_DESCENDANT", "EMIT"};
+    private static final int[] OPERAND_COUNTS = {1, 2, 1, 1, 1, 0, 0, 1, 0, 1, 0};
+
+    final JSONPathEnvironment env;
+    final int[] code;
+    final String[] names;
+    final Object[] constants;
+    final long[] longs;
+
+    private PathProgram(JSONPathEnvironment env, int[] code, String[] names, Object[] constants, long[] longs) {
+        this.env = env;
+        this.code = code;
+        this.names = names;
+        this.constants = constants;
+        this.longs = longs;
+    }
+
+    /**
+     * Lowers the segments of a path to a program.
+     * @throws IllegalArgumentException if the path has a selector this class doesn't know.
+     */
+    public static PathProgram compile(JSONPath path) {
+        return new Assembler().assemble(path);
+    }
+
+    /**
+     * @return an iterator that runs this program on {@code root}, one match at a time.
+     */
+    public Iterator<JSONPathMatch> iterator(JSONPathMatch root) {
+        return new QueryVM(this, root, false);
+    }
+
+    /**
+     * @return an iterator that runs this program on {@code root}, one value at a time, without tracking the locations
+     * of the matches.
+     */
+    public Iterator<Object> values(JSONPathMatch root) {
+        return QueryVM.acquire(this, root, true).values();
+    }
+
+    /**
+     * Runs this program on {@code root}, passing each match to {@code consumer} without creating match objects, except
+     * for the nodes that filters select from.
+     */
+    public void forEach(JSONPathMatch root, MatchConsumer consumer) {
+        final QueryVM vm = QueryVM.acquire(this, root, false);
+        vm.forEach(consumer);
+        vm.release();
+    }
+
+    @Override
+    public boolean evaluate(JSONPathMatch root, MatchSink sink) {
+        final QueryVM vm = QueryVM.acquire(this, root, false);
+        boolean complete = true;
+        while (complete && vm.hasNext()) {
+            complete = sink.accept(vm.next());
+        }
+        vm.release();
+        return complete;
+    }
+
+    /**
+     * @return the instructions of this program, one per line, e.g. {@code 2: NAME 0 ('a')}.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < code.length; pc += 1 + OPERAND_COUNTS[code[pc]]) {
+            final int opcode = code[pc];
+            sb.append(pc).append(": ").append(OPCODE_NAMES[opcode]);
+            for (int i = 1; i <= OPERAND_COUNTS[opcode]; i++) {
+                sb.append(' ').append(code[pc + i]);
+            }
+            switch (opcode) {
+                case NAME -> sb.append(" ('").append(names[code[pc + 1]]).append("')");
+                case SLICE -> sb.append(" (").append(bound(longs[code[pc + 1]])).append(':')
+                        .append(bound(longs[code[pc + 1] + 1])).append(':')
+                        .append(bound(longs[code[pc + 1] + 2])).append(')');
+                case FILTER -> sb.append(" (").append(constants[code[pc + 1]]).append(')');
+                default -> {}
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String bound(long bound) {
+        return bound == OMITTED ? "" : Long.toString(bound);
+    }
+
+    /**
+     * Writes the instructions and pools of a program.
+     */
+    private static final class Assembler {
+        private int[] code = new int[32];
+        private int length;
+        private final List<String> names = new ArrayList<>();
+        private final List<Object> constants = new ArrayList<>();
+        private long[] longs = new long[0];
+
+        PathProgram assemble(JSONPath path) {
+            for (JSONPathSegment segment : path.segments) {
+                final int start = length;
+                final boolean descendant = segment instanceof JSONPathRecursiveDescentSegment;
+                if (descendant) {
+                    emit(DESCENDANT, 0, constant(segment.getToken()));
+                } else {
+                    emit(CHILD, 0);
+                }
+                for (JSONPathSelector selector : segment.selectors()) {
+                    selector(selector);
+                }
+                if (descendant) {
+                    emit(END_DESCENDANT, start);
+                } else {
+                    emit(END_CHILD);
+                }
+                code[start + 1] = length; // the next segment starts here
+            }
+            emit(EMIT);
+            return new PathProgram(path.env, Arrays.copyOf(code, length), names.toArray(new String[0]),
+                    constants.toArray(), longs);
+        }
+
+        private void selector(JSONPathSelector selector) {
+            switch (selector) {
+                case NameSelector name -> {
+                    int index = names.indexOf(name.getName());
+                    if (index < 0) {
+                        index = names.size();
+                        names.add(name.getName());
+                    }
+                    emit(NAME, index);
+                }
+                case IndexSelector index -> {
+                    // no array is long enough for an index outside the range of int
+                    if (index.getIndex() >= -Integer.MAX_VALUE && index.getIndex() <= Integer.MAX_VALUE) {
+                        emit(INDEX, (int) index.getIndex());
+                    }
+                }
+                case SliceSelector slice -> {
+                    final int bounds = longs.length;
+                    longs = Arrays.copyOf(longs, bounds + 3);
+                    longs[bounds] = slice.getStart() == null ? OMITTED : slice.getStart();
+                    longs[bounds + 1] = slice.getStop() == null ? OMITTED : slice.getStop();
+                    longs[bounds + 2] = slice.getStep() == null ? 1 : slice.getStep();
+                    emit(SLICE, bounds);
+                }
+                case WildcardSelector wildcard -> emit(WILDCARD);
+                case KeysSelector keys -> emit(KEYS);
+                case FilterSelector filter -> emit(FILTER, constant(filter.getExpression()));
+                default -> throw new IllegalArgumentException("unknown selector " + selector.getClass().getName());
+            }
+        }
+
+        private int constant(Object value) {
+            for (int i = 0; i < constants.size(); i++) {
+                if (constants.get(i) == value) {
+                    return i;
+                }
+            }
+            constants.add(value);
+            return constants.size() - 1;
+        }
+
+        private void emit(int... instruction) {
+            if (length + instruction.length > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, length + instruction.length));
+            }
+            System.arraycopy(instruction, 0, code, length, instruction.length);
+            length += instruction.length;
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonPathUtils;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.MatchConsumer;
+import org.killeroonie.jsonpath.PathCursor;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+import org.killeroonie.jsonpath.parser.filter.EvaluationContext;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+import static org.killeroonie.jsonpath.evaluator.PathProgram.*;
+
+/**
+ * Runs a {@link PathProgram} on one root match, finding one match at a time.
+ * <p>
+ * Each frame of the stack is a node and the instruction applied to it next, with the position of that instruction in
+ * the children of the node. The stack is a set of parallel arrays, so pushing a frame allocates nothing. Selecting a
+ * child pushes a frame for it at the next segment, so the frame below each frame is its parent, and the matches are
+ * found depth-first, in the order of the interpreter. A match is found as soon as its frame reaches
+ * {@link PathProgram#EMIT}.
+ * <p>
+ * Frames hold the value and the key of each node, and a {@link JSONPathMatch} is only created for a frame when one is
+ * needed, by the iterator or a filter. While a match is passed to a {@link MatchConsumer}, the VM is its cursor. A VM
+ * that only finds values creates no matches at all.
+ * <p>
+ * The stacks of the VMs that {@link PathProgram} runs to the end, for values, forEach and evaluate, are reused: each
+ * thread keeps its last released VM, so the stack of a steady stream of queries stops growing, and no arrays are
+ * allocated, however deep the documents are.
+ */
+final class QueryVM implements Iterator<JSONPathMatch>, PathCursor {
+
+    private static final int INITIAL_DEPTH = 16;
+    private static final int MAX_IDLE_DEPTH = 4096; // deeper stacks aren't kept, to bound the memory of idle threads
+    private static final ThreadLocal<QueryVM> IDLE = new ThreadLocal<>(); // the released VM of each thread
+
+    private PathProgram program;
+    private int[] code;
+    private boolean valuesOnly;
+
+    // the stack of frames, of which sp is the top
+    private int sp = -1;
+    private Object[] values = new Object[INITIAL_DEPTH];
+    private String[] names = new String[INITIAL_DEPTH]; // the member name, or null if an element
+    private int[] indices = new int[INITIAL_DEPTH]; // the element index
+    private boolean[] memberKeys = new boolean[INITIAL_DEPTH]; // true if the name is selected as a key
+    private JSONPathMatch[] matches = new JSONPathMatch[INITIAL_DEPTH]; // created when needed
+    private int[] pcs = new int[INITIAL_DEPTH];
+    private int[] nexts = new int[INITIAL_DEPTH]; // the start of the next segment
+    private int[] depths = new int[INITIAL_DEPTH]; // the depth of descendant segments
+    private boolean[] started = new boolean[INITIAL_DEPTH]; // true if the instruction at pc has started iterating
+    private int[] positions = new int[INITIAL_DEPTH]; // the next array index
+    private int[] limits = new int[INITIAL_DEPTH]; // the array index to stop at
+    private Iterator<?>[] iterators = new Iterator<?>[INITIAL_DEPTH]; // the remaining object members, if an object
+    private EvaluationContext[] contexts = new EvaluationContext[INITIAL_DEPTH];
+
+    private JSONPathMatch next;
+
+    /**
+     * @param valuesOnly true if only the values of the matches are needed, not their locations.
+     */
+    QueryVM(PathProgram program, JSONPathMatch root, boolean valuesOnly) {
+        start(program, root, valuesOnly);
+    }
+
+    /**
+     * @return the released VM of this thread, or a new one if there is none, ready to run {@code program} on
+     * {@code root}. The VM must be {@linkplain #release() released} once the program has run, and not used after.
+     */
+    static QueryVM acquire(PathProgram program, JSONPathMatch root, boolean valuesOnly) {
+        final QueryVM vm = IDLE.get();
+        if (vm == null) {
+            return new QueryVM(program, root, valuesOnly);
+        }
+        IDLE.remove();
+        vm.start(program, root, valuesOnly);
+        return vm;
+    }
+
+    /**
+     * Clears the stack, and keeps this VM for the next {@link #acquire} of this thread.
+     */
+    void release() {
+        while (sp >= 0) {
+            pop();
+        }
+        next = null;
+        program = null;
+        code = null;
+        if (values.length <= MAX_IDLE_DEPTH) {
+            IDLE.set(this);
+        }
+    }
+
+    private void start(PathProgram program, JSONPathMatch root, boolean valuesOnly) {
+        this.program = program;
+        this.code = program.code;
+        this.valuesOnly = valuesOnly;
+        push(root.obj, null, 0, 0, 1);
+        matches[0] = root;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && run()) {
+            next = match(sp);
+            pop();
+        }
+        return next != null;
+    }
+
+    @Override
+    public JSONPathMatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JSONPathMatch result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @return an iterator over the values of the remaining matches. This VM is released when they have all been
+     * iterated.
+     */
+    Iterator<Object> values() {
+        return new Iterator<>() {
+            private boolean found; // true if the frame of the next value is on top of the stack
+            private boolean released;
+
+            @Override
+            public boolean hasNext() {
+                if (!found && !released) {
+                    found = run();
+                    if (!found) {
+                        release();
+                        released = true;
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Object value = values[sp];
+                pop();
+                found = false;
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Passes the remaining matches to {@code consumer}, with this VM as their cursor.
+     */
+    void forEach(MatchConsumer consumer) {
+        while (run()) {
+            consumer.accept(values[sp], this);
+            pop();
+        }
+    }
+
+    /**
+     * Runs the program until it finds the next match, whose frame is left on top of the stack.
+     * @return false if there are no more matches.
+     */
+    private boolean run() {
+        while (sp >= 0) {
+            final int pc = pcs[sp];
+            final Object obj = values[sp];
+            switch (code[pc]) {
+                case CHILD -> {
+                    nexts[sp] = code[pc + 1];
+                    pcs[sp] = pc + 2;
+                }
+                case DESCENDANT -> {
+                    if (depths[sp] > program.env.maxRecursionDepth) {
+                        throw new JSONPathRecursionException("recursion limit exceeded",
+                                (Token) program.constants[code[pc + 2]]);
+                    }
+                    nexts[sp] = code[pc + 1];
+                    pcs[sp] = pc + 3;
+                }
+                case NAME -> {
+                    pcs[sp] = pc + 2;
+                    if (JsonValues.isObject(obj)) {
+                        final String name = program.names[code[pc + 1]];
+                        final Object value = JsonValues.member(obj, name);
+                        if (value != UNDEFINED) {
+                            push(value, name, 0, nexts[sp], 1);
+                        }
+                    }
+                }
+                case INDEX -> {
+                    pcs[sp] = pc + 2;
+                    if (JsonValues.isArray(obj)) {
+                        final int size = JsonValues.size(obj);
+                        final int index = code[pc + 1];
+                        final int normalized = index < 0 ? size + index : index;
+                        if (normalized >= 0 && normalized < size) {
+                            push(JsonValues.element(obj, normalized), null, normalized, nexts[sp], 1);
+                        }
+                    }
+                }
+                case SLICE -> slice(pc, obj);
+                case WILDCARD -> wildcard(pc, obj);
+                case KEYS -> keys(pc, obj);
+                case FILTER -> filter(pc, obj);
+                case END_CHILD -> pop();
+                case END_DESCENDANT -> descend(pc, obj);
+                case EMIT -> {
+                    return true;
+                }
+                default -> throw new IllegalStateException("bad opcode " + code[pc] + " at " + pc);
+            }
+        }
+        return false;
+    }
+
+    private void slice(int pc, Object obj) {
+        final long step = program.longs[code[pc + 1] + 2];
+        if (!started[sp]) {
+            if (!JsonValues.isArray(obj) || step == 0) {
+                endSelector(pc + 2);
+                return;
+            }
+            final long start = program.longs[code[pc + 1]];
+            final long stop = program.longs[code[pc + 1] + 1];
+            final long length = JsonValues.size(obj);
+            if (step > 0) {
+                positions[sp] = (int) bound(start == OMITTED ? 0 : normalize(start, length), 0, length);
+                limits[sp] = (int) bound(stop == OMITTED ? length : normalize(stop, length), 0, length);
+            } else {
+                positions[sp] = (int) bound(start == OMITTED ? length - 1 : normalize(start, length), -1, length - 1);
+                limits[sp] = (int) bound(stop == OMITTED ? -length - 1 : normalize(stop, length), -1, length - 1);
+            }
+            started[sp] = true;
+        }
+        final int i = positions[sp];
+        final int limit = limits[sp];
+        if (step > 0 ? i < limit : i > limit) {
+            // step from i without overflowing, stopping at the limit
+            positions[sp] = step > 0
+                    ? (limit - i <= step ? limit : i + (int) step)
+                    : (i - limit <= -step ? limit : i + (int) step);
+            push(JsonValues.element(obj, i), null, i, nexts[sp], 1);
+        } else {
+            endSelector(pc + 2);
+        }
+    }
+
+    private static long normalize(long index, long length) {
+        return index >= 0 ? index : length + index;
+    }
+
+    private static long bound(long index, long min, long max) {
+        return Math.min(Math.max(index, min), max);
+    }
+
+    private void wildcard(int pc, Object obj) {
+        if (!started[sp] && !startChildren(obj)) {
+            endSelector(pc + 1);
+            return;
+        }
+        final Iterator<?> members = iterators[sp];
+        if (members == null) {
+            final int i = positions[sp];
+            if (i < limits[sp]) {
+                positions[sp] = i + 1;
+                push(JsonValues.element(obj, i), null, i, nexts[sp], 1);
+                return;
+            }
+        } else if (members.hasNext()) {
+            final Map.Entry<?, ?> member = (Map.Entry<?, ?>) members.next();
+            push(member.getValue(), (String) member.getKey(), 0, nexts[sp], 1);
+            return;
+        }
+        endSelector(pc + 1);
+    }
+
+    private void keys(int pc, Object obj) {
+        if (!started[sp]) {
+            if (!JsonValues.isObject(obj)) {
+                endSelector(pc + 1);
+                return;
+            }
+            iterators[sp] = JsonValues.names(obj);
+            started[sp] = true;
+        }
+        final Iterator<?> names = iterators[sp];
+        if (names.hasNext()) {
+            final String name = (String) names.next();
+            push(name, name, 0, nexts[sp], 1);
+            memberKeys[sp] = true;
+        } else {
+            endSelector(pc + 1);
+        }
+    }
+
+    private void filter(int pc, Object obj) {
+        if (!started[sp]) {
+            if (!startChildren(obj)) {
+                endSelector(pc + 2);
+                return;
+            }
+            // a filter only sees the location of the node it selects from through the matches of relative queries,
+            // whose locations aren't observable, so without locations the query starts from the root match instead
+            contexts[sp] = new EvaluationContext(valuesOnly ? matches[0] : match(sp));
+        }
+        final FilterExpression expression = (FilterExpression) program.constants[code[pc + 1]];
+        final EvaluationContext context = contexts[sp];
+        final Iterator<?> members = iterators[sp];
+        if (members == null) {
+            final int limit = limits[sp];
+            for (int i = positions[sp]; i < limit; i++) {
+                final Object element = JsonValues.element(obj, i);
+                context.moveTo(element, i);
+                if (expression.test(context)) {
+                    positions[sp] = i + 1;
+                    push(element, null, i, nexts[sp], 1);
+                    return;
+                }
+            }
+        } else {
+            while (members.hasNext()) {
+                final Map.Entry<?, ?> member = (Map.Entry<?, ?>) members.next();
+                context.moveTo(member.getValue(), (String) member.getKey());
+                if (expression.test(context)) {
+                    push(member.getValue(), (String) member.getKey(), 0, nexts[sp], 1);
+                    return;
+                }
+            }
+        }
+        endSelector(pc + 2);
+    }
+
+    /**
+     * Pushes the next child array or object of the match, at the start of the descendant segment, or pops the frame
+     * when there are none left.
+     */
+    private void descend(int pc, Object obj) {
+        if (!started[sp] && !startChildren(obj)) {
+            pop();
+            return;
+        }
+        final Iterator<?> members = iterators[sp];
+        if (members == null) {
+            final int limit = limits[sp];
+            for (int i = positions[sp]; i < limit; i++) {
+                final Object element = JsonValues.element(obj, i);
+                if (JsonValues.isObject(element) || JsonValues.isArray(element)) {
+                    positions[sp] = i + 1;
+                    push(element, null, i, code[pc + 1], depths[sp] + 1);
+                    return;
+                }
+            }
+        } else {
+            while (members.hasNext()) {
+                final Map.Entry<?, ?> member = (Map.Entry<?, ?>) members.next();
+                final Object value = member.getValue();
+                if (JsonValues.isObject(value) || JsonValues.isArray(value)) {
+                    push(value, (String) member.getKey(), 0, code[pc + 1], depths[sp] + 1);
+                    return;
+                }
+            }
+        }
+        pop();
+    }
+
+    /**
+     * Starts iterating the elements of an array, by position, or the members of an object, by iterator.
+     * @return false if {@code obj} is neither.
+     */
+    private boolean startChildren(Object obj) {
+        if (JsonValues.isArray(obj)) {
+            positions[sp] = 0;
+            limits[sp] = JsonValues.size(obj);
+        } else if (JsonValues.isObject(obj)) {
+            iterators[sp] = JsonValues.members(obj);
+        } else {
+            return false;
+        }
+        started[sp] = true;
+        return true;
+    }
+
+    /**
+     * Moves the top frame to the next instruction, at {@code pc}.
+     */
+    private void endSelector(int pc) {
+        pcs[sp] = pc;
+        started[sp] = false;
+        iterators[sp] = null;
+        contexts[sp] = null;
+    }
+
+    /**
+     * Pushes a frame for a node, the member {@code name} of the node below, or its element at {@code index} if
+     * {@code name} is null.
+     */
+    private void push(Object value, String name, int index, int pc, int depth) {
+        if (++sp == values.length) {
+            final int length = sp * 2;
+            values = Arrays.copyOf(values, length);
+            names = Arrays.copyOf(names, length);
+            indices = Arrays.copyOf(indices, length);
+            memberKeys = Arrays.copyOf(memberKeys, length);
+            matches = Arrays.copyOf(matches, length);
+            pcs = Arrays.copyOf(pcs, length);
+            nexts = Arrays.copyOf(nexts, length);
+            depths = Arrays.copyOf(depths, length);
+            started = Arrays.copyOf(started, length);
+            positions = Arrays.copyOf(positions, length);
+            limits = Arrays.copyOf(limits, length);
+            iterators = Arrays.copyOf(iterators, length);
+            contexts = Arrays.copyOf(contexts, length);
+        }
+        values[sp] = value;
+        names[sp] = name;
+        indices[sp] = index;
+        pcs[sp] = pc;
+        depths[sp] = depth;
+    }
+
+    private void pop() {
+        values[sp] = null;
+        names[sp] = null;
+        memberKeys[sp] = false;
+        matches[sp] = null;
+        started[sp] = false;
+        iterators[sp] = null;
+        contexts[sp] = null;
+        sp--;
+    }
+
+    /**
+     * @return the match of the node of a frame, created with the matches of the frames below it if needed.
+     */
+    private JSONPathMatch match(int frame) {
+        int first = frame;
+        while (matches[first] == null) {
+            first--;
+        }
+        for (int i = first + 1; i <= frame; i++) {
+            final JSONPathMatch parent = matches[i - 1];
+            matches[i] = names[i] == null ? parent.newChild(values[i], indices[i])
+                    : memberKeys[i] ? parent.newKeyChild(names[i])
+                    : parent.newChild(values[i], names[i]);
+        }
+        return matches[frame];
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// PathCursor, the location of the match on top of the stack
+    ////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Object value() {
+        return values[sp];
+    }
+
+    @Override
+    public int depth() {
+        return matches[0].getParts().size() + sp;
+    }
+
+    @Override
+    public Object part(int index) {
+        final int rootDepth = matches[0].getParts().size();
+        if (index < rootDepth) {
+            return matches[0].getParts().get(index);
+        }
+        final int frame = index - rootDepth + 1;
+        if (names[frame] == null) {
+            return indices[frame];
+        }
+        return memberKeys[frame] ? JsonPathUtils.KEYS_SELECTOR + names[frame] : names[frame];
+    }
+
+    @Override
+    public String path() {
+        if (matches[sp] != null) {
+            return matches[sp].path();
+        }
+        final StringBuilder sb = new StringBuilder(matches[0].path());
+        for (int i = 1; i <= sp; i++) {
+            sb.append('[');
+            if (names[i] == null) {
+                sb.append(indices[i]);
+            } else {
+                if (memberKeys[i]) {
+                    sb.append(JsonPathUtils.KEYS_SELECTOR);
+                }
+                JsonPathUtils.appendCanonicalString(sb, names[i]);
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public JSONPathMatch toMatch() {
+        return match(sp);
+    }
+}
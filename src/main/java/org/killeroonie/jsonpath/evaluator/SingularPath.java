@@ -0,0 +1,105 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPointer;
+import org.killeroonie.jsonpath.parser.segment.JSONPathChildSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * A singular {@link JSONPath}, made of name and index selectors only, lowered to a fixed array of steps.
+ * <p>
+ * A singular path selects at most one node, so {@link #get} follows its steps in a plain loop, reading the members and
+ * elements directly, without creating iterators or matches. Singular paths are immutable and can be shared between
+ * threads.
+ */
+public final class SingularPath {
+
+    private final String[] names; // the member name of each step, or null if the step is an index
+    private final long[] indices; // the index of each step that isn't a name, counted from the end if negative
+
+    private SingularPath(String[] names, long[] indices) {
+        this.names = names;
+        this.indices = indices;
+    }
+
+    /**
+     * @param segments the segments of a path.
+     * @return the steps of the segments, or null if the segments aren't all a child segment with a single name or
+     * index selector.
+     */
+    public static SingularPath compile(List<JSONPathSegment> segments) {
+        final String[] names = new String[segments.size()];
+        final long[] indices = new long[segments.size()];
+        for (int i = 0; i < names.length; i++) {
+            final JSONPathSegment segment = segments.get(i);
+            if (!(segment instanceof JSONPathChildSegment) || segment.size() != 1) {
+                return null;
+            }
+            final JSONPathSelector selector = segment.selector(0);
+            if (selector instanceof NameSelector name) {
+                names[i] = name.getName();
+            } else if (selector instanceof IndexSelector index) {
+                indices[i] = index.getIndex();
+            } else {
+                return null;
+            }
+        }
+        return new SingularPath(names, indices);
+    }
+
+    /**
+     * @param root a document loaded by {@link org.killeroonie.jsonpath.JsonLoader#load(Object)}.
+     * @return the node this path selects in {@code root}, or {@link JSONPointer#UNDEFINED} if it selects no node.
+     */
+    public Object get(Object root) {
+        Object node = root;
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i];
+            if (name != null) {
+                if (node instanceof Map<?, ?> map) {
+                    final Object value = map.get(name);
+                    if (value == null && !map.containsKey(name)) {
+                        return UNDEFINED;
+                    }
+                    node = value;
+                } else if (node instanceof JsonNode object && object.isObject()) {
+                    node = object.get(name);
+                    if (node == null) {
+                        return UNDEFINED;
+                    }
+                } else {
+                    return UNDEFINED;
+                }
+            } else {
+                final long index = indices[i];
+                if (node instanceof List<?> list) {
+                    final int size = list.size();
+                    final long normalized = index < 0 ? size + index : index;
+                    if (normalized < 0 || normalized >= size) {
+                        return UNDEFINED;
+                    }
+                    node = list.get((int) normalized);
+                } else if (node instanceof JsonNode array && array.isArray()) {
+                    final int size = array.size();
+                    final long normalized = index < 0 ? size + index : index;
+                    if (normalized < 0 || normalized >= size) {
+                        return UNDEFINED;
+                    }
+                    node = array.get((int) normalized);
+                } else {
+                    return UNDEFINED;
+                }
+            }
+        }
+        return node;
+    }
+}
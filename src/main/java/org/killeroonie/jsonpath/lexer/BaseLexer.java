@@ -3,22 +3,78 @@ package org.killeroonie.jsonpath.lexer;
 import org.jetbrains.annotations.Nullable;
 import org.killeroonie.jsonpath.JSONPathEnvironment;
 import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenBuffer;
 import org.killeroonie.jsonpath.TokenKind;
 
 import java.util.*;
 
+/**
+ * Base class for Lexers.
+ * <p>
+ * A Lexer is safe to share between threads. Each call to {@code tokenize()} or {@code tokenSource()} creates its own
+ * {@link ScannerState}, and the rule tables are built once, on first use, while holding this Lexer's lock. Subclasses
+ * that build their own tables in {@link #buildRules(Map)} must only read them after calling
+ * {@link #getLexerRulesMap()}, which safely publishes everything built during initialization, and must not modify
+ * them afterward.
+ */
 public abstract class BaseLexer implements Lexer {
 
+    private static final int TOKEN_KIND_COUNT = TokenKind.values().length;
+
     private final JSONPathEnvironment env;
-    private transient ScannerState scannerState;
     // lexerRulesMap relies on insertion order
     private final Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap = new LinkedHashMap<>(); //we rely on insertion order
     // customLexerRulesMap is used to override entries in lexerRulesMap, so entry order here is not important
     private final Map<TokenKind, RulesBuilder.LexerRule> customLexerRulesMap = new EnumMap<>(TokenKind.class);
+    // read-only view of lexerRulesMap, written after all rule tables are built
+    private volatile Map<TokenKind, RulesBuilder.LexerRule> publishedRulesMap;
+    // the emitKind of each rule in lexerRulesMap, indexed by the ordinal of its TokenKind key
+    private final TokenKind[] emitKinds = new TokenKind[TOKEN_KIND_COUNT];
+
+    private volatile WhitespacePolicy whitespacePolicy = WhitespacePolicy.LENIENT;
+
+    /**
+     * Generate a sequence of Tokens from a JSONPath string.
+     *
+     * @param jsonPathText The JSONPath string to tokenize
+     * @return List of Token objects, materialized from the buffer returned by {@link #tokenizeToBuffer(String)}
+     */
+    public List<Token> tokenize(String jsonPathText) {
+        return tokenizeToBuffer(jsonPathText).toList();
+    }
 
-    private WhitespacePolicy whitespacePolicy = WhitespacePolicy.LENIENT;
+    public TokenBuffer tokenizeToBuffer(String jsonPathText) {
+        getLexerRulesMap();
+        final ScannerState scanner = initScanner(jsonPathText);
+        //noinspection StatementWithEmptyBody
+        while (scanNext(scanner)) {
+            // scan the entire path
+        }
+        // remove spaces if whitespace policy is lenient.
+        TokenBuffer tokens = enactWhitespacePolicy(scanner.getTokenBuffer());
+        tokens.add(TokenKind.EOF, -1, -1);
+        return tokens;
+    }
 
-    public abstract List<Token> tokenize(String jsonPathText);
+    public TokenSource tokenSource(String jsonPathText) {
+        getLexerRulesMap();
+        return new IncrementalScan(initScanner(jsonPathText), getWhitespacePolicy());
+    }
+
+    /**
+     * Scans the input at the current scanner position and appends the resulting tokens to the scanner's buffer. One
+     * step usually appends one token, but it may append several (e.g., the parts of a slice), or none, when input is
+     * skipped.
+     * <p>
+     * Implementations must only be called after {@link #getLexerRulesMap()}, which both {@link #tokenizeToBuffer(String)}
+     * and {@link #tokenSource(String)} call before scanning.
+     *
+     * @param scanner the state of the current scan.
+     * @return false if the scanner was already at the end of the input, true otherwise.
+     * @throws org.killeroonie.jsonpath.exception.JSONPathSyntaxException if the input at the scanner position is not
+     * a legal token.
+     */
+    protected abstract boolean scanNext(ScannerState scanner);
 
     /**
      * Builds the rules for this Lexer and adds them to the argument Map.
@@ -45,33 +101,44 @@ public abstract class BaseLexer implements Lexer {
         return env;
     }
 
-    protected final ScannerState getScannerState() {
-        return scannerState;
-    }
-
     /**
-     * Resets the Lexer state in preparation of tokenizing an input string
+     * Creates the scanner state for tokenizing an input string. The state belongs to a single call to
+     * {@code tokenize()}, so concurrent calls don't interfere with each other.
      * @param jsonPathText the JSON path query string being scanned
      * @return the newly initialized ScannerState
      */
     protected final ScannerState initScanner(String jsonPathText) {
-        // reset the Lexer state in preparation of tokenizing an input string
-        scannerState = new ScannerState(jsonPathText);
-        return scannerState;
+        return new ScannerState(jsonPathText);
     }
 
     protected Map<TokenKind, RulesBuilder.LexerRule> initRules() {
         // The order of these operations is significant.
         buildCustomLexerRules(customLexerRulesMap);
         buildRules(lexerRulesMap);
+        Arrays.fill(emitKinds, null);
+        for (var entry : lexerRulesMap.entrySet()) {
+            emitKinds[entry.getKey().ordinal()] = entry.getValue().emitKind();
+        }
         return lexerRulesMap;
     }
 
+    /**
+     * Returns the rules of this Lexer, building them on first use.
+     * @return an unmodifiable view of the rules map.
+     */
     protected final Map<TokenKind, RulesBuilder.LexerRule> getLexerRulesMap() {
-        if (lexerRulesMap.isEmpty()) {
-            initRules();
+        Map<TokenKind, RulesBuilder.LexerRule> rules = publishedRulesMap;
+        if (rules == null) {
+            synchronized (this) {
+                rules = publishedRulesMap;
+                if (rules == null) {
+                    initRules();
+                    rules = Collections.unmodifiableMap(lexerRulesMap);
+                    publishedRulesMap = rules;
+                }
+            }
         }
-        return lexerRulesMap;
+        return rules;
     }
 
     protected final Map<TokenKind, RulesBuilder.LexerRule> getCustomLexerRulesMap() {
@@ -121,54 +188,60 @@ public abstract class BaseLexer implements Lexer {
      * TokenKinds to a single emitted TokenKind.
      */
     protected final TokenKind emitKind(TokenKind lookupToken) {
-        return lexerRulesMap.get(lookupToken).emitKind();
+        final TokenKind kind = emitKinds[lookupToken.ordinal()];
+        return kind != null ? kind : lexerRulesMap.get(lookupToken).emitKind();
     }
 
     /**
-     * Convenience method that returns the current scanner character, or '\0' if the scanner is at EOF.
-     *
-     * @return the current character by calling getScannerState().currentChar();
+     * A TokenSource that runs {@link #scanNext(ScannerState)} on demand. The whitespace policy is read once, when the
+     * scan starts.
      */
-    protected final char currentChar() {
-        return scannerState.currentChar();
-    }
+    private final class IncrementalScan implements TokenSource {
 
-    /**
-     * Convenience method that returns the current scanner position index. If the value returned equals
-     * the length of the jsonpath query text, the scanner is at EOF.
-     *
-     * @return the current scanner position by calling getScannerState().getPositionIndex();
-     */
-    protected final int position() {
-        return scannerState.getPositionIndex();
-    }
+        private final ScannerState scanner;
+        private final boolean removeSpaces;
+        private boolean atEOF;
 
-    /**
-     * Convenience method that calls advanceToken() on the scanner.
-     * @param kind the TokenKind for the new Token
-     * @param value the scanned value for the Token
-     * @return the new Token
-     */
-    @SuppressWarnings("UnusedReturnValue")
-    protected final Token advanceToken(TokenKind kind, String value) {
-        return scannerState.advanceToken(kind, value);
+        IncrementalScan(ScannerState scanner, WhitespacePolicy policy) {
+            this.scanner = scanner;
+            this.removeSpaces = policy == WhitespacePolicy.LENIENT;
+        }
+
+        @Override
+        public TokenBuffer buffer() {
+            return scanner.getTokenBuffer();
+        }
+
+        @Override
+        public boolean scanMore() {
+            if (atEOF) {
+                return false;
+            }
+            final TokenBuffer tokens = scanner.getTokenBuffer();
+            final int size = tokens.size();
+            while (tokens.size() == size) {
+                if (!scanNext(scanner)) {
+                    tokens.add(TokenKind.EOF, -1, -1);
+                    atEOF = true;
+                    break;
+                }
+                if (removeSpaces) {
+                    tokens.removeAll(TokenKind.SPACE, size);
+                }
+            }
+            return true;
+        }
     }
 
     /**
-     * Remove SPACE tokens from the argument List if the whitespace policy is LENIENT.
-     * @param tokens the List of tokens to process
-     * @return the same argument List if policy is STRICT, otherwise list of Tokens with all SPACE Tokens removed.
+     * Remove SPACE tokens from the argument buffer if the whitespace policy is LENIENT.
+     * @param tokens the buffer of tokens to process. It is modified in place.
+     * @return the argument buffer, with all SPACE Tokens removed if the policy is LENIENT.
      */
-    protected List<Token> enactWhitespacePolicy(List<Token> tokens) {
-        if ( getWhitespacePolicy() == WhitespacePolicy.STRICT ) {
-            return tokens;
-        }
-        List<Token> strippedTokens = new ArrayList<>(tokens.size());
-        for (Token token : tokens) {
-            if ( token.kind() != TokenKind.SPACE ) {
-                strippedTokens.add(token);
-            }
+    protected TokenBuffer enactWhitespacePolicy(TokenBuffer tokens) {
+        if ( getWhitespacePolicy() == WhitespacePolicy.LENIENT ) {
+            tokens.removeAll(TokenKind.SPACE);
         }
-        return strippedTokens;
+        return tokens;
     }
 }
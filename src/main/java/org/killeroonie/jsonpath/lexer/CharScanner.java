@@ -0,0 +1,127 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the end of whitespace runs and string literals in the scanned text, for the default {@code SPACE},
+ * {@code SINGLE_QUOTE_STRING} and {@code DOUBLE_QUOTE_STRING} rules.
+ * <p>
+ * This implementation reads one char at a time. When the {@code jdk.incubator.vector} module is present in the boot
+ * layer, e.g. with {@code --add-modules jdk.incubator.vector}, {@link #get()} returns a {@link VectorCharScanner},
+ * which compares a vector of 16 to 64 chars at a time, depending on the hardware. Set the system property
+ * {@value #DISABLE_VECTOR_PROPERTY} to {@code true} to always use this implementation.
+ */
+class CharScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CharScanner.class);
+
+    static final String DISABLE_VECTOR_PROPERTY = "org.killeroonie.jsonpath.disableVectorScanning";
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_SCANNER_CLASS = "org.killeroonie.jsonpath.lexer.VectorCharScanner";
+
+    private static final CharScanner INSTANCE = create();
+
+    CharScanner() {
+    }
+
+    /**
+     * @return the CharScanner used by the Lexers.
+     */
+    static CharScanner get() {
+        return INSTANCE;
+    }
+
+    private static CharScanner create() {
+        if (Boolean.getBoolean(DISABLE_VECTOR_PROPERTY) || ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return new CharScanner();
+        }
+        // loaded by name, so the vector classes are never resolved when the module is absent
+        try {
+            return (CharScanner) Class.forName(VECTOR_SCANNER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Using scalar scanning: {}", e.toString());
+            return new CharScanner();
+        }
+    }
+
+    /**
+     * @return true if this scanner compares a vector of chars at a time.
+     */
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * @return true if {@code c} is matched by {@link org.killeroonie.jsonpath.Constants#SPACES_RE}.
+     */
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * @return true if {@code c} is a line terminator, which the {@code .} in the string literal patterns doesn't
+     * match.
+     */
+    static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * @return the index of the first char at or after {@code from} that isn't blank, or the length of the text.
+     */
+    int skipBlanks(ScannerState scanner, int from) {
+        final String text = scanner.getJsonPathText();
+        final int length = text.length();
+        int i = from;
+        while (i < length && isBlank(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index of the first {@code quote} or line terminator at or after {@code from}, or the length of the
+     * text.
+     */
+    int indexOfQuoteOrLineEnd(ScannerState scanner, int from, char quote) {
+        final String text = scanner.getJsonPathText();
+        final int length = text.length();
+        int i = from;
+        while (i < length) {
+            final char c = text.charAt(i);
+            if (c == quote || isLineTerminator(c)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Finds the end of the string literal starting with the quote at {@code start}, as the default string literal
+     * patterns match it. A quote preceded by a backslash doesn't close the literal, and a line terminator can't be part
+     * of it. If the text has no unescaped closing quote before the end of the line, the literal ends at the last
+     * escaped quote, as the regex backtracks to it.
+     *
+     * @return the index after the closing quote, or -1 if the literal is unterminated.
+     */
+    final int stringLiteralEnd(ScannerState scanner, int start) {
+        final String text = scanner.getJsonPathText();
+        final int length = text.length();
+        final char quote = text.charAt(start);
+        int lastEscapedQuote = -1;
+        int i = start + 1;
+        while (i < length) {
+            i = indexOfQuoteOrLineEnd(scanner, i, quote);
+            if (i == length || text.charAt(i) != quote) {
+                break;
+            }
+            if (text.charAt(i - 1) != '\\') {
+                return i + 1;
+            }
+            lastEscapedQuote = i++;
+        }
+        return lastEscapedQuote < 0 ? -1 : lastEscapedQuote + 1;
+    }
+}
@@ -0,0 +1,876 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.Constants;
+import org.killeroonie.jsonpath.TokenKind;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the rules used by {@link JJPLexer} into a single {@link ScannerDFA}.
+ * <p>
+ * The compiler reproduces the scanning order of {@code JJPLexer.tokenize()} by assigning each rule to a priority
+ * group:
+ * <ol>
+ *     <li>SPACE</li>
+ *     <li>IDENTIFIER, plus the keyword lexemes that look like identifiers</li>
+ *     <li>SINGLE_QUOTE_STRING</li>
+ *     <li>DOUBLE_QUOTE_STRING</li>
+ *     <li>LIST_SLICE</li>
+ *     <li>NUMBER</li>
+ *     <li>RE_PATTERN</li>
+ *     <li>one and two character lexemes</li>
+ * </ol>
+ * Regex rules are translated with a small regular expression compiler that understands the constructs used in the
+ * default rules: literals, character classes, the common escapes, groups, alternation and greedy quantifiers.
+ * Lookaround, lazy quantifiers, anchors and back references are not regular, so rules using them can't be compiled,
+ * with one exception: the default string literal and regex literal rules are replaced by regular patterns that
+ * accept exactly the same tokens (see {@link #REGULAR_EQUIVALENTS}).
+ * <p>
+ * {@link UnsupportedRuleException} is thrown when a rule can't be compiled.
+ */
+public final class DFACompiler {
+
+    // Priority groups, highest priority first. These mirror the order of the checks in JJPLexer.tokenize()
+    static final int GROUP_SPACE = 0;
+    static final int GROUP_IDENTIFIER = 1;
+    static final int GROUP_SINGLE_QUOTE_STRING = 2;
+    static final int GROUP_DOUBLE_QUOTE_STRING = 3;
+    static final int GROUP_LIST_SLICE = 4;
+    static final int GROUP_NUMBER = 5;
+    static final int GROUP_RE_PATTERN = 6;
+    static final int GROUP_LEXEME = 7;
+
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+
+    // The characters that `.` does not match when no flags are set.
+    private static final String LINE_TERMINATORS = "\\n\\r\\u0085\\u2028\\u2029";
+
+    /**
+     * Regular patterns that match the same tokens as default rule patterns that use lookaround or lazy quantifiers.
+     * <p>
+     * In the string literal patterns, {@code (?:(?!(?<!\\)").)*} allows any character except a line terminator, and a
+     * quote only when it follows a backslash. That is the same as a sequence of non-quote characters, backslashes,
+     * and backslash-quote pairs. Because the closing quote is found by backtracking, the regex returns the longest
+     * such match, which is exactly what the DFA returns.
+     * <p>
+     * In the regex literal pattern, the lazy {@code .+?} ends at the first slash after the first pattern character.
+     */
+    static final Map<String, String> REGULAR_EQUIVALENTS = Map.of(
+            Constants.DOUBLE_QUOTE_STRING_RE,
+            "\"(?:[^\"\\\\%s]|\\\\\"?)*\"".formatted(LINE_TERMINATORS),
+            Constants.SINGLE_QUOTE_STRING_RE,
+            "'(?:[^'\\\\%s]|\\\\'?)*'".formatted(LINE_TERMINATORS),
+            Constants.REGEX_PATTERN_RE,
+            "/[^%s][^/%s]*/[aims]*".formatted(LINE_TERMINATORS, LINE_TERMINATORS)
+    );
+
+    /**
+     * Thrown when a lexer rule can't be expressed as a DFA.
+     */
+    public static final class UnsupportedRuleException extends RuntimeException {
+        UnsupportedRuleException(String message) {
+            super(message);
+        }
+    }
+
+    private DFACompiler() {}
+
+    /**
+     * Compiles the argument rules into a {@link ScannerDFA} that emits the same tokens as {@link JJPLexer} would.
+     *
+     * @param lexerRulesMap the complete rules map of the Lexer, including any custom rules.
+     * @return the compiled DFA.
+     * @throws UnsupportedRuleException if any rule used by the scanner can't be compiled to a DFA.
+     */
+    public static ScannerDFA compile(Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap) {
+        final Nfa nfa = new Nfa();
+        final boolean[] stringIntroducers = new boolean[128];
+        int stringGroupMask = 0;
+
+        addRegexRule(nfa, lexerRulesMap, TokenKind.SPACE, GROUP_SPACE, null, true);
+        final RulesBuilder.RegexRule identifierRule =
+                addRegexRule(nfa, lexerRulesMap, TokenKind.IDENTIFIER, GROUP_IDENTIFIER, null, false);
+
+        // JJPLexer only tries the string rules when the current char is a quote.
+        final CharSet quotes = CharSet.of(Constants.SINGLE_QUOTE_CHAR).union(CharSet.of(Constants.DOUBLE_QUOTE_CHAR));
+        for (TokenKind kind : List.of(TokenKind.SINGLE_QUOTE_STRING, TokenKind.DOUBLE_QUOTE_STRING)) {
+            final int group = kind == TokenKind.SINGLE_QUOTE_STRING
+                    ? GROUP_SINGLE_QUOTE_STRING : GROUP_DOUBLE_QUOTE_STRING;
+            final RulesBuilder.RegexRule rule = addRegexRule(nfa, lexerRulesMap, kind, group, quotes, true);
+            if (rule != null) {
+                stringGroupMask |= 1 << group;
+                for (char quote : new char[]{Constants.SINGLE_QUOTE_CHAR, Constants.DOUBLE_QUOTE_CHAR}) {
+                    if (!rule.hasFirstSet() || rule.firstSetContains(quote)) {
+                        stringIntroducers[quote] = true;
+                    }
+                }
+            }
+        }
+        addRegexRule(nfa, lexerRulesMap, TokenKind.LIST_SLICE, GROUP_LIST_SLICE, null, false);
+        addRegexRule(nfa, lexerRulesMap, TokenKind.NUMBER, GROUP_NUMBER, null, true);
+        // JJPLexer only tries the regex literal rule when the current char is a slash.
+        addRegexRule(nfa, lexerRulesMap, TokenKind.RE_PATTERN, GROUP_RE_PATTERN, CharSet.of(Constants.SLASH_CHAR),
+                false);
+
+        addLexemeRules(nfa, lexerRulesMap, identifierRule);
+
+        return new SubsetConstruction(nfa).build(stringIntroducers, stringGroupMask);
+    }
+
+    /**
+     * Resolves the TokenKind that JJPLexer emits for a lookup kind; see {@code BaseLexer.emitKind()}.
+     */
+    private static TokenKind emitKind(Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap, TokenKind lookupKind) {
+        final RulesBuilder.LexerRule rule = lexerRulesMap.get(lookupKind);
+        return rule == null ? lookupKind : rule.emitKind();
+    }
+
+    /**
+     * Adds a regex rule to the NFA. {@code requiredFirstChars} restricts the first character of the rule to the chars
+     * JJPLexer tests for before it tries the rule, and {@code useFirstSet} is true if JJPLexer tests the first set of the
+     * rule.
+     */
+    private static RulesBuilder.RegexRule addRegexRule(Nfa nfa,
+                                                        Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap,
+                                                        TokenKind kind,
+                                                        int group,
+                                                        CharSet requiredFirstChars,
+                                                        boolean useFirstSet) {
+        final RulesBuilder.LexerRule lexerRule = lexerRulesMap.get(kind);
+        if (lexerRule == null) {
+            return null;
+        }
+        if (!(lexerRule instanceof RulesBuilder.RegexRule rule)) {
+            throw new UnsupportedRuleException("Expected a regex rule for " + kind + ", got " + lexerRule);
+        }
+        if (rule.pattern().flags() != 0) {
+            throw new UnsupportedRuleException("Regex flags are not supported, rule: " + kind);
+        }
+        final String source = REGULAR_EQUIVALENTS.getOrDefault(rule.pattern().pattern(), rule.pattern().pattern());
+        final Node node = new RegexParser(source, kind).parse();
+
+        CharSet firstChars = requiredFirstChars;
+        if (useFirstSet && rule.hasFirstSet()) {
+            CharSet firstSet = CharSet.EMPTY;
+            for (int ch : rule.firstSet()) {
+                firstSet = firstSet.union(CharSet.of(ch));
+            }
+            firstChars = firstChars == null ? firstSet : firstChars.intersect(firstSet);
+        }
+        final TokenKind emitKind = kind == TokenKind.SPACE ? TokenKind.SPACE : emitKind(lexerRulesMap, kind);
+        nfa.addRule(node, firstChars, group, 1, emitKind);
+        return rule;
+    }
+
+    /**
+     * Adds the one and two char lexemes, and the keywords, following the construction of the lookup maps in
+     * {@code JJPLexer.buildRules()}.
+     */
+    private static void addLexemeRules(Nfa nfa,
+                                       Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap,
+                                       RulesBuilder.RegexRule identifierRule) {
+        final Map<String, TokenKind> tokenLookup = new LinkedHashMap<>();
+        final Map<String, TokenKind> keywords = new LinkedHashMap<>();
+        for (var entry : lexerRulesMap.entrySet()) {
+            if (entry.getValue() instanceof RulesBuilder.LexemeRule(String lexeme, TokenKind emitKind)
+                    && lexeme != null) {
+                tokenLookup.put(lexeme, emitKind);
+                if (entry.getKey().isKeyword()) {
+                    keywords.put(lexeme, entry.getKey());
+                }
+            }
+        }
+        for (var entry : tokenLookup.entrySet()) {
+            final String lexeme = entry.getKey();
+            if (lexeme.length() == 1 || lexeme.length() == 2) {
+                nfa.addRule(Node.literal(lexeme), null, GROUP_LEXEME, 0, emitKind(lexerRulesMap, entry.getValue()));
+            }
+        }
+        // A keyword is only recognized when the whole identifier matches it.
+        if (identifierRule != null) {
+            final Pattern identifierPattern = identifierRule.pattern();
+            for (var entry : keywords.entrySet()) {
+                if (identifierPattern.matcher(entry.getKey()).matches()) {
+                    nfa.addRule(Node.literal(entry.getKey()), null, GROUP_IDENTIFIER, 0,
+                            emitKind(lexerRulesMap, entry.getValue()));
+                }
+            }
+        }
+    }
+
+
+    //*************************************************************************
+    //*    Character sets
+    //*************************************************************************
+
+    /**
+     * An immutable set of code points stored as sorted, disjoint, inclusive ranges.
+     */
+    record CharSet(int[] ranges) {
+
+        static final CharSet EMPTY = new CharSet(new int[0]);
+        static final CharSet ALL = range(0, MAX_CODE_POINT);
+        // The line terminators, which `.` does not match when no flags are set.
+        static final CharSet DOT_EXCLUDED = of('\n').union(of('\r')).union(of(0x0085))
+                .union(of(0x2028)).union(of(0x2029));
+
+        static CharSet of(int codePoint) {
+            return range(codePoint, codePoint);
+        }
+
+        static CharSet range(int low, int high) {
+            return new CharSet(new int[]{low, high});
+        }
+
+        static CharSet ofChars(String chars) {
+            CharSet result = EMPTY;
+            for (int i = 0; i < chars.length(); i++) {
+                result = result.union(of(chars.charAt(i)));
+            }
+            return result;
+        }
+
+        boolean isEmpty() {
+            return ranges.length == 0;
+        }
+
+        boolean contains(int codePoint) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (codePoint < ranges[i]) {
+                    return false;
+                }
+                if (codePoint <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        CharSet union(CharSet other) {
+            final int[] all = Arrays.copyOf(ranges, ranges.length + other.ranges.length);
+            System.arraycopy(other.ranges, 0, all, ranges.length, other.ranges.length);
+            final int pairs = all.length / 2;
+            final Integer[] order = new Integer[pairs];
+            for (int i = 0; i < pairs; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> all[i * 2]));
+            final int[] merged = new int[all.length];
+            int size = 0;
+            for (int index : order) {
+                final int low = all[index * 2];
+                final int high = all[index * 2 + 1];
+                if (size > 0 && low <= merged[size - 1] + 1) {
+                    merged[size - 1] = Math.max(merged[size - 1], high);
+                } else {
+                    merged[size++] = low;
+                    merged[size++] = high;
+                }
+            }
+            return new CharSet(Arrays.copyOf(merged, size));
+        }
+
+        CharSet complement() {
+            final int[] result = new int[ranges.length + 2];
+            int size = 0;
+            int next = 0;
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] > next) {
+                    result[size++] = next;
+                    result[size++] = ranges[i] - 1;
+                }
+                next = ranges[i + 1] + 1;
+            }
+            if (next <= MAX_CODE_POINT) {
+                result[size++] = next;
+                result[size++] = MAX_CODE_POINT;
+            }
+            return new CharSet(Arrays.copyOf(result, size));
+        }
+
+        CharSet intersect(CharSet other) {
+            return complement().union(other.complement()).complement();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CharSet(int[] otherRanges) && Arrays.equals(ranges, otherRanges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ranges);
+        }
+
+        @Override
+        public String toString() {
+            return "CharSet" + Arrays.toString(ranges);
+        }
+    }
+
+
+    //*************************************************************************
+    //*    Regex syntax tree
+    //*************************************************************************
+
+    sealed interface Node {
+        record Chars(CharSet chars) implements Node {}
+        record Sequence(List<Node> items) implements Node {}
+        record Alternation(List<Node> alternatives) implements Node {}
+        record Repeat(Node item, int min, int max) implements Node {} // max < 0 means unbounded
+
+        static Node literal(String text) {
+            final List<Node> items = new ArrayList<>();
+            text.codePoints().forEach(cp -> items.add(new Chars(CharSet.of(cp))));
+            return new Sequence(items);
+        }
+    }
+
+    /**
+     * Recursive descent parser for the subset of {@link Pattern} syntax that describes regular languages.
+     */
+    static final class RegexParser {
+
+        private final String pattern;
+        private final TokenKind kind;
+        private int position;
+
+        RegexParser(String pattern, TokenKind kind) {
+            this.pattern = pattern;
+            this.kind = kind;
+        }
+
+        Node parse() {
+            final Node node = parseAlternation();
+            if (position < pattern.length()) {
+                throw unsupported("unexpected '" + pattern.charAt(position) + "'");
+            }
+            return node;
+        }
+
+        private UnsupportedRuleException unsupported(String reason) {
+            return new UnsupportedRuleException("Can't compile regex for %s: %s at index %d of `%s`"
+                    .formatted(kind, reason, position, pattern));
+        }
+
+        private boolean atEnd() {
+            return position >= pattern.length();
+        }
+
+        private char peek() {
+            return pattern.charAt(position);
+        }
+
+        private boolean accept(char ch) {
+            if (!atEnd() && peek() == ch) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private Node parseAlternation() {
+            final List<Node> alternatives = new ArrayList<>();
+            alternatives.add(parseSequence());
+            while (accept('|')) {
+                alternatives.add(parseSequence());
+            }
+            return alternatives.size() == 1 ? alternatives.getFirst() : new Node.Alternation(alternatives);
+        }
+
+        private Node parseSequence() {
+            final List<Node> items = new ArrayList<>();
+            while (!atEnd() && peek() != '|' && peek() != ')') {
+                items.add(parseRepeat());
+            }
+            return items.size() == 1 ? items.getFirst() : new Node.Sequence(items);
+        }
+
+        private Node parseRepeat() {
+            Node item = parseAtom();
+            while (!atEnd()) {
+                final int min;
+                final int max;
+                final char ch = peek();
+                if (ch == '*') {
+                    position++;
+                    min = 0;
+                    max = -1;
+                } else if (ch == '+') {
+                    position++;
+                    min = 1;
+                    max = -1;
+                } else if (ch == '?') {
+                    position++;
+                    min = 0;
+                    max = 1;
+                } else if (ch == '{') {
+                    position++;
+                    min = parseNumber();
+                    if (accept(',')) {
+                        max = (!atEnd() && peek() == '}') ? -1 : parseNumber();
+                    } else {
+                        max = min;
+                    }
+                    if (!accept('}')) {
+                        throw unsupported("malformed bounded quantifier");
+                    }
+                } else {
+                    break;
+                }
+                if (!atEnd() && (peek() == '?' || peek() == '+')) {
+                    throw unsupported("lazy and possessive quantifiers are not supported");
+                }
+                item = new Node.Repeat(item, min, max);
+            }
+            return item;
+        }
+
+        private int parseNumber() {
+            final int start = position;
+            while (!atEnd() && Character.isDigit(peek())) {
+                position++;
+            }
+            if (start == position) {
+                throw unsupported("expected a number");
+            }
+            return Integer.parseInt(pattern, start, position, 10);
+        }
+
+        private Node parseAtom() {
+            final char ch = peek();
+            switch (ch) {
+                case '(' -> {
+                    position++;
+                    if (accept('?')) {
+                        if (accept(':')) {
+                            // non-capturing group
+                        } else if (!atEnd() && peek() == '<' && position + 1 < pattern.length()
+                                && Character.isLetter(pattern.charAt(position + 1))) {
+                            // named group; the name is irrelevant here
+                            while (!atEnd() && peek() != '>') {
+                                position++;
+                            }
+                            position++;
+                        } else {
+                            throw unsupported("lookaround and inline flags are not supported");
+                        }
+                    }
+                    final Node group = parseAlternation();
+                    if (!accept(')')) {
+                        throw unsupported("missing ')'");
+                    }
+                    return group;
+                }
+                case '[' -> {
+                    position++;
+                    return new Node.Chars(parseClass());
+                }
+                case '.' -> {
+                    position++;
+                    return new Node.Chars(CharSet.DOT_EXCLUDED.complement());
+                }
+                case '\\' -> {
+                    position++;
+                    return new Node.Chars(parseEscape());
+                }
+                case '^', '$' -> throw unsupported("anchors are not supported");
+                case '*', '+', '?', '{' -> throw unsupported("dangling quantifier");
+                default -> {
+                    final int codePoint = pattern.codePointAt(position);
+                    position += Character.charCount(codePoint);
+                    return new Node.Chars(CharSet.of(codePoint));
+                }
+            }
+        }
+
+        private CharSet parseClass() {
+            final boolean negated = accept('^');
+            CharSet result = CharSet.EMPTY;
+            boolean first = true;
+            while (!atEnd() && (peek() != ']' || first)) {
+                first = false;
+                if (peek() == '[' || (peek() == '&' && position + 1 < pattern.length()
+                        && pattern.charAt(position + 1) == '&')) {
+                    throw unsupported("nested classes and intersections are not supported");
+                }
+                final CharSet low = parseClassAtom();
+                if (!atEnd() && peek() == '-' && position + 1 < pattern.length()
+                        && pattern.charAt(position + 1) != ']') {
+                    position++;
+                    final CharSet high = parseClassAtom();
+                    if (low.ranges().length != 2 || low.ranges()[0] != low.ranges()[1]
+                            || high.ranges().length != 2 || high.ranges()[0] != high.ranges()[1]) {
+                        throw unsupported("invalid class range");
+                    }
+                    result = result.union(CharSet.range(low.ranges()[0], high.ranges()[0]));
+                } else {
+                    result = result.union(low);
+                }
+            }
+            if (!accept(']')) {
+                throw unsupported("missing ']'");
+            }
+            return negated ? result.complement() : result;
+        }
+
+        private CharSet parseClassAtom() {
+            if (accept('\\')) {
+                return parseEscape();
+            }
+            final int codePoint = pattern.codePointAt(position);
+            position += Character.charCount(codePoint);
+            return CharSet.of(codePoint);
+        }
+
+        private CharSet parseEscape() {
+            if (atEnd()) {
+                throw unsupported("trailing backslash");
+            }
+            final char ch = pattern.charAt(position++);
+            return switch (ch) {
+                case 'd' -> CharSet.range('0', '9');
+                case 'D' -> CharSet.range('0', '9').complement();
+                case 's' -> CharSet.ofChars(" \t\n\u000B\f\r");
+                case 'S' -> CharSet.ofChars(" \t\n\u000B\f\r").complement();
+                case 'w' -> CharSet.range('a', 'z').union(CharSet.range('A', 'Z'))
+                        .union(CharSet.range('0', '9')).union(CharSet.of('_'));
+                case 'W' -> CharSet.range('a', 'z').union(CharSet.range('A', 'Z'))
+                        .union(CharSet.range('0', '9')).union(CharSet.of('_')).complement();
+                case 't' -> CharSet.of('\t');
+                case 'n' -> CharSet.of('\n');
+                case 'r' -> CharSet.of('\r');
+                case 'f' -> CharSet.of('\f');
+                case 'a' -> CharSet.of('\u0007');
+                case 'e' -> CharSet.of('\u001B');
+                case 'x' -> CharSet.of(parseHex(2));
+                case 'u' -> CharSet.of(parseHex(4));
+                default -> {
+                    if (Character.isLetterOrDigit(ch)) {
+                        // \b, \B, \A, \z, \Z, \G, \p{..}, back references, etc.
+                        throw unsupported("escape \\" + ch + " is not supported");
+                    }
+                    yield CharSet.of(ch);
+                }
+            };
+        }
+
+        private int parseHex(int digits) {
+            if (position + digits > pattern.length()) {
+                throw unsupported("truncated hex escape");
+            }
+            final int value = Integer.parseInt(pattern, position, position + digits, 16);
+            position += digits;
+            return value;
+        }
+    }
+
+
+    //*************************************************************************
+    //*    NFA
+    //*************************************************************************
+
+    static final class NfaState {
+        final int id;
+        final List<NfaState> epsilons = new ArrayList<>(2);
+        final List<CharSet> edgeChars = new ArrayList<>(1);
+        final List<NfaState> edgeTargets = new ArrayList<>(1);
+        int group = ScannerDFA.NO_GROUP; // the rule group this state belongs to
+        boolean accepting;
+        int subPriority;
+        TokenKind kind;
+
+        NfaState(int id) {
+            this.id = id;
+        }
+    }
+
+    static final class Nfa {
+        final List<NfaState> states = new ArrayList<>();
+        final NfaState start;
+
+        Nfa() {
+            start = newState(ScannerDFA.NO_GROUP);
+        }
+
+        NfaState newState(int group) {
+            final NfaState state = new NfaState(states.size());
+            state.group = group;
+            states.add(state);
+            return state;
+        }
+
+        /**
+         * Adds a rule as an alternative from the start state. When {@code firstChars} is not null, the first
+         * character of the rule is restricted to that set.
+         */
+        void addRule(Node node, CharSet firstChars, int group, int subPriority, TokenKind kind) {
+            final NfaState ruleStart = newState(group);
+            final NfaState ruleEnd = newState(group);
+            build(node, ruleStart, ruleEnd, group);
+            ruleEnd.accepting = true;
+            ruleEnd.subPriority = subPriority;
+            ruleEnd.kind = kind;
+            if (firstChars == null) {
+                start.epsilons.add(ruleStart);
+                return;
+            }
+            // replace the rule's first transitions with transitions restricted to firstChars
+            final NfaState restrictedStart = newState(group);
+            for (NfaState state : closure(List.of(ruleStart))) {
+                for (int i = 0; i < state.edgeChars.size(); i++) {
+                    final CharSet chars = state.edgeChars.get(i).intersect(firstChars);
+                    if (!chars.isEmpty()) {
+                        restrictedStart.edgeChars.add(chars);
+                        restrictedStart.edgeTargets.add(state.edgeTargets.get(i));
+                    }
+                }
+            }
+            start.epsilons.add(restrictedStart);
+        }
+
+        private void build(Node node, NfaState from, NfaState to, int group) {
+            switch (node) {
+                case Node.Chars(CharSet chars) -> {
+                    from.edgeChars.add(chars);
+                    from.edgeTargets.add(to);
+                }
+                case Node.Sequence(List<Node> items) -> {
+                    NfaState current = from;
+                    for (int i = 0; i < items.size(); i++) {
+                        final NfaState next = i == items.size() - 1 ? to : newState(group);
+                        build(items.get(i), current, next, group);
+                        current = next;
+                    }
+                    if (items.isEmpty()) {
+                        from.epsilons.add(to);
+                    }
+                }
+                case Node.Alternation(List<Node> alternatives) -> {
+                    for (Node alternative : alternatives) {
+                        final NfaState altStart = newState(group);
+                        final NfaState altEnd = newState(group);
+                        from.epsilons.add(altStart);
+                        build(alternative, altStart, altEnd, group);
+                        altEnd.epsilons.add(to);
+                    }
+                }
+                case Node.Repeat(Node item, int min, int max) -> {
+                    NfaState current = from;
+                    for (int i = 0; i < min; i++) {
+                        final NfaState next = newState(group);
+                        build(item, current, next, group);
+                        current = next;
+                    }
+                    if (max < 0) {
+                        final NfaState loopStart = newState(group);
+                        final NfaState loopEnd = newState(group);
+                        current.epsilons.add(loopStart);
+                        current.epsilons.add(to);
+                        build(item, loopStart, loopEnd, group);
+                        loopEnd.epsilons.add(loopStart);
+                        loopEnd.epsilons.add(to);
+                    } else {
+                        current.epsilons.add(to);
+                        for (int i = min; i < max; i++) {
+                            final NfaState next = newState(group);
+                            build(item, current, next, group);
+                            next.epsilons.add(to);
+                            current = next;
+                        }
+                    }
+                }
+            }
+        }
+
+        List<NfaState> closure(Collection<NfaState> seeds) {
+            final BitSet seen = new BitSet(states.size());
+            final Deque<NfaState> work = new ArrayDeque<>(seeds);
+            final List<NfaState> result = new ArrayList<>();
+            for (NfaState seed : seeds) {
+                seen.set(seed.id);
+            }
+            while (!work.isEmpty()) {
+                final NfaState state = work.pop();
+                result.add(state);
+                for (NfaState next : state.epsilons) {
+                    if (!seen.get(next.id)) {
+                        seen.set(next.id);
+                        work.push(next);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+
+    //*************************************************************************
+    //*    Subset construction
+    //*************************************************************************
+
+    private static final class SubsetConstruction {
+
+        private final Nfa nfa;
+        private final List<CharSet> edgeSets = new ArrayList<>();
+        private int[] intervalStarts;  // start code point of each elementary interval
+        private int[] intervalClasses; // class id of each elementary interval
+        private int[] classRepresentatives;
+
+        SubsetConstruction(Nfa nfa) {
+            this.nfa = nfa;
+        }
+
+        ScannerDFA build(boolean[] stringIntroducers, int stringGroupMask) {
+            partitionAlphabet();
+            final int classCount = classRepresentatives.length;
+
+            final Map<BitSet, Integer> stateIds = new HashMap<>();
+            final List<BitSet> dfaStates = new ArrayList<>();
+            // state 0 is the dead state
+            final BitSet dead = new BitSet();
+            stateIds.put(dead, ScannerDFA.DEAD_STATE);
+            dfaStates.add(dead);
+            final BitSet start = toBitSet(nfa.closure(List.of(nfa.start)));
+            stateIds.put(start, ScannerDFA.START_STATE);
+            dfaStates.add(start);
+
+            final List<int[]> rows = new ArrayList<>();
+            rows.add(new int[classCount]); // the dead state transitions to itself
+            for (int stateIndex = 1; stateIndex < dfaStates.size(); stateIndex++) {
+                final BitSet current = dfaStates.get(stateIndex);
+                final int[] row = new int[classCount];
+                for (int cls = 0; cls < classCount; cls++) {
+                    final int representative = classRepresentatives[cls];
+                    final List<NfaState> targets = new ArrayList<>();
+                    for (int id = current.nextSetBit(0); id >= 0; id = current.nextSetBit(id + 1)) {
+                        final NfaState state = nfa.states.get(id);
+                        for (int edge = 0; edge < state.edgeChars.size(); edge++) {
+                            if (state.edgeChars.get(edge).contains(representative)) {
+                                targets.add(state.edgeTargets.get(edge));
+                            }
+                        }
+                    }
+                    final BitSet next = toBitSet(nfa.closure(targets));
+                    Integer nextId = stateIds.get(next);
+                    if (nextId == null) {
+                        nextId = dfaStates.size();
+                        stateIds.put(next, nextId);
+                        dfaStates.add(next);
+                    }
+                    row[cls] = nextId;
+                }
+                rows.add(row);
+            }
+
+            final int stateCount = dfaStates.size();
+            final int[] transitions = new int[stateCount * classCount];
+            final int[] acceptGroups = new int[stateCount];
+            final TokenKind[] acceptKinds = new TokenKind[stateCount];
+            final int[] minLiveGroups = new int[stateCount];
+            for (int stateIndex = 0; stateIndex < stateCount; stateIndex++) {
+                System.arraycopy(rows.get(stateIndex), 0, transitions, stateIndex * classCount, classCount);
+                int acceptGroup = ScannerDFA.NO_GROUP;
+                int acceptSubPriority = Integer.MAX_VALUE;
+                TokenKind acceptKind = null;
+                int minLiveGroup = ScannerDFA.NO_GROUP;
+                final BitSet members = dfaStates.get(stateIndex);
+                for (int id = members.nextSetBit(0); id >= 0; id = members.nextSetBit(id + 1)) {
+                    final NfaState state = nfa.states.get(id);
+                    if (state.accepting && (state.group < acceptGroup
+                            || (state.group == acceptGroup && state.subPriority < acceptSubPriority))) {
+                        acceptGroup = state.group;
+                        acceptSubPriority = state.subPriority;
+                        acceptKind = state.kind;
+                    }
+                    if (!state.edgeChars.isEmpty()) {
+                        minLiveGroup = Math.min(minLiveGroup, state.group);
+                    }
+                }
+                acceptGroups[stateIndex] = acceptGroup;
+                acceptKinds[stateIndex] = acceptKind;
+                minLiveGroups[stateIndex] = minLiveGroup;
+            }
+
+            // split the interval table into the ascii lookup table and the ranges >= 128
+            final int[] asciiClasses = new int[128];
+            for (int cp = 0; cp < 128; cp++) {
+                asciiClasses[cp] = classOfInterval(cp);
+            }
+            final List<Integer> starts = new ArrayList<>();
+            final List<Integer> classes = new ArrayList<>();
+            starts.add(128);
+            classes.add(classOfInterval(128));
+            for (int i = 0; i < intervalStarts.length; i++) {
+                if (intervalStarts[i] > 128) {
+                    starts.add(intervalStarts[i]);
+                    classes.add(intervalClasses[i]);
+                }
+            }
+            return new ScannerDFA(classCount, asciiClasses,
+                    starts.stream().mapToInt(Integer::intValue).toArray(),
+                    classes.stream().mapToInt(Integer::intValue).toArray(),
+                    transitions, acceptGroups, acceptKinds, minLiveGroups, stringIntroducers, stringGroupMask);
+        }
+
+        /**
+         * Splits the code point range into elementary intervals that no edge distinguishes, then merges intervals
+         * that belong to exactly the same edges into one character class.
+         */
+        private void partitionAlphabet() {
+            final TreeSet<Integer> cuts = new TreeSet<>();
+            cuts.add(0);
+            for (NfaState state : nfa.states) {
+                for (CharSet chars : state.edgeChars) {
+                    edgeSets.add(chars);
+                    final int[] ranges = chars.ranges();
+                    for (int i = 0; i < ranges.length; i += 2) {
+                        cuts.add(ranges[i]);
+                        if (ranges[i + 1] < MAX_CODE_POINT) {
+                            cuts.add(ranges[i + 1] + 1);
+                        }
+                    }
+                }
+            }
+            // ascii is always split out so the lookup table boundary falls on an interval boundary
+            cuts.add(128);
+            intervalStarts = cuts.stream().mapToInt(Integer::intValue).toArray();
+            intervalClasses = new int[intervalStarts.length];
+            final Map<BitSet, Integer> signatures = new HashMap<>();
+            final List<Integer> representatives = new ArrayList<>();
+            for (int i = 0; i < intervalStarts.length; i++) {
+                final BitSet signature = new BitSet(edgeSets.size());
+                for (int edge = 0; edge < edgeSets.size(); edge++) {
+                    if (edgeSets.get(edge).contains(intervalStarts[i])) {
+                        signature.set(edge);
+                    }
+                }
+                Integer cls = signatures.get(signature);
+                if (cls == null) {
+                    cls = representatives.size();
+                    signatures.put(signature, cls);
+                    representatives.add(intervalStarts[i]);
+                }
+                intervalClasses[i] = cls;
+            }
+            classRepresentatives = representatives.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private int classOfInterval(int codePoint) {
+            int index = Arrays.binarySearch(intervalStarts, codePoint);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            return intervalClasses[index];
+        }
+
+        private BitSet toBitSet(List<NfaState> states) {
+            final BitSet result = new BitSet(nfa.states.size());
+            for (NfaState state : states) {
+                result.set(state.id);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenKind;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * A table-driven scanning mode for {@link JJPLexer}.
+ * <p>
+ * When the rules are built, all the rules used by {@code JJPLexer} (the default rules, and any custom Lexer and
+ * environment rules) are compiled by {@link DFACompiler} into a single {@link ScannerDFA}. Each token is then
+ * recognized with one pass over its characters using integer transition tables, without creating any
+ * {@link java.util.regex.Matcher} objects. The tokens and syntax errors produced are identical to those of
+ * {@code JJPLexer}.
+ * <p>
+ * If a rule uses a regex construct that can't be compiled to a DFA, this Lexer falls back to {@code JJPLexer}'s
+ * regex based scanning.
+ * <p>
+ * To use this Lexer, pass {@code DFALexer.class} as the lexer class of a {@link JSONPathEnvironment}.
+ */
+public class DFALexer extends JJPLexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DFALexer.class);
+
+    private ScannerDFA dfa;
+    private TokenScanner tokenScanner;
+
+    /**
+     * Constructor for Lexer.
+     *
+     * @param env The JSONPathEnvironment configuration
+     */
+    public DFALexer(JSONPathEnvironment env) {
+        super(env);
+    }
+
+    /**
+     * Builds the rules as {@link JJPLexer} does, then compiles them to a {@link ScannerDFA}.
+     */
+    @Override
+    protected void buildRules(final Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap) {
+        super.buildRules(lexerRulesMap);
+        try {
+            dfa = DFACompiler.compile(lexerRulesMap);
+        } catch (DFACompiler.UnsupportedRuleException e) {
+            logger.warn("Using regex scanning: {}", e.getMessage());
+            dfa = null;
+        }
+        tokenScanner = dfa == null ? null : compileScanner(dfa);
+    }
+
+    /**
+     * Creates the TokenScanner used to recognize each token. This implementation interprets the DFA's tables.
+     * @param scannerDFA the DFA compiled from this Lexer's rules.
+     * @return a TokenScanner which returns the same results as {@code scannerDFA}.
+     */
+    protected TokenScanner compileScanner(ScannerDFA scannerDFA) {
+        return scannerDFA;
+    }
+
+    /**
+     * @return the compiled DFA, or {@code null} if the rules could not be compiled and this Lexer uses regex scanning.
+     */
+    public final ScannerDFA getScannerDFA() {
+        getLexerRulesMap();
+        return dfa;
+    }
+
+    /**
+     * @return the TokenScanner created from the DFA by {@link #compileScanner(ScannerDFA)}, or null if the rules couldn't
+     * be compiled to a DFA.
+     */
+    protected final TokenScanner getTokenScanner() {
+        getLexerRulesMap();
+        return tokenScanner;
+    }
+
+    /**
+     * Scans the next token from a JSONPath string with the compiled DFA.
+     *
+     * @param scanner the state of the current scan
+     * @return false if the scanner was already at the end of the input
+     */
+    @Override
+    protected boolean scanNext(final ScannerState scanner) {
+        final ScannerDFA scannerDFA = getScannerDFA();
+        if (scannerDFA == null) {
+            return super.scanNext(scanner);
+        }
+        final TokenScanner tokenScanner = this.tokenScanner;
+        if ( scanner.currentChar() == EOF_CHAR) {
+            return false;
+        }
+        if ( scanWithCharScanner(scanner) ) {
+            return true;
+        }
+        final String jsonPathText = scanner.getJsonPathText();
+        final int start = scanner.getPositionIndex();
+        final long scanResult = tokenScanner.scan(jsonPathText, start);
+        final int state = scanResult == ScannerDFA.NO_MATCH ? ScannerDFA.DEAD_STATE : ScannerDFA.state(scanResult);
+        if ( scannerDFA.isStringIntroducer(scanner.currentChar()) &&
+             ( state == ScannerDFA.DEAD_STATE ||
+               scannerDFA.acceptGroup(state) > DFACompiler.GROUP_DOUBLE_QUOTE_STRING ) ) {
+            // region started with a quote but couldn't finish scanning, so it's unterminated
+            throw new JSONPathSyntaxException("Unterminated string literal %s".formatted(jsonPathText.substring(start)),
+                    new Token(TokenKind.ILLEGAL, jsonPathText.substring(start), start, jsonPathText));
+        }
+        if (state == ScannerDFA.DEAD_STATE) {
+            // Illegal Character
+            String errMsg = "Unrecognized character: '%c' at start of string '%s', jsonpath string: %s"
+                    .formatted( scanner.currentChar(), jsonPathText.substring(start), jsonPathText );
+            throw new JSONPathSyntaxException( errMsg
+            , new Token( TokenKind.ILLEGAL, String.valueOf(scanner.currentChar()), start, jsonPathText));
+        }
+        scanner.advanceToken( scannerDFA.kind(state), ScannerDFA.end(scanResult) - start );
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.codegen.CodegenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DFALexer} that generates a specialized scanner class for its rules at runtime.
+ * <p>
+ * When the rules are built, the {@link ScannerDFA} compiled from them is generated as bytecode by
+ * {@link ScannerCodegen}, with every state and transition written as straight-line code and branches, and defined as
+ * a hidden class with {@link java.lang.invoke.MethodHandles.Lookup#defineHiddenClass}. The JIT compiler can then
+ * optimize the scanner for this Lexer's rule set, including any custom Lexer and environment rules. The tokens and
+ * syntax errors produced are identical to those of {@link JJPLexer}.
+ * <p>
+ * If the scanner can't be generated, this Lexer falls back to interpreting the DFA's tables as {@code DFALexer} does.
+ * <p>
+ * To use this Lexer, pass {@code GeneratedLexer.class} as the lexer class of a {@link JSONPathEnvironment}.
+ */
+public class GeneratedLexer extends DFALexer {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedLexer.class);
+
+    /**
+     * Constructor for Lexer.
+     *
+     * @param env The JSONPathEnvironment configuration
+     */
+    public GeneratedLexer(JSONPathEnvironment env) {
+        super(env);
+    }
+
+    /**
+     * Generates a scanner class for the DFA.
+     */
+    @Override
+    protected TokenScanner compileScanner(ScannerDFA scannerDFA) {
+        try {
+            return ScannerCodegen.generate(scannerDFA);
+        } catch (CodegenException e) {
+            logger.warn("Using table driven scanning: {}", e.getMessage());
+            return scannerDFA;
+        }
+    }
+
+    /**
+     * @return true if this Lexer scans with a generated class, false if it fell back to interpreting the DFA.
+     */
+    public final boolean isScannerGenerated() {
+        getLexerRulesMap();
+        return getTokenScanner() != null && !(getTokenScanner() instanceof ScannerDFA);
+    }
+}
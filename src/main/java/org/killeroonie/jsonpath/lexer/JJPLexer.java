@@ -42,15 +42,15 @@ public class JJPLexer extends BaseLexer{
     // Instance variables
     private final Map<String, TokenKind> tokenLookupMap = new LinkedHashMap<>(TokenKind.values().length, 1);
 
-    // This maps single-char lexemes as their char int values to their String representations. This avoids String creation
-    // during the scanner loop.
-    private final IntKeyMap<String> oneCharLexemesMap = new IntKeyMap<>(String.class, 128);
-
-    // todo - turn twoCharLexeme set into a map of two-chars to String so we don't have to convert the two chars to a
-    // new String object every loop iteration.
-    private final Set<String> twoCharLexemesSet = new HashSet<>();
+    // Lookup tables for the one and two-char lexemes and the keywords, generated from tokenLookupMap and keywordMap.
+    // These avoid String creation during the scanner loop.
+    private LexemeTable lexemeTable;
     private final Map<String, TokenKind> keywordMap = new HashMap<>();
     private final Map<TokenKind, RulesBuilder.LexerRule> regExRuleMap = new LinkedHashMap<>();
+    // whether the whitespace and string literal rules are the defaults, which CharScanner scans without their regexes
+    private boolean scanBlanks;
+    private boolean scanStringLiterals;
+    private final CharScanner charScanner = CharScanner.get();
 
 
     /**
@@ -65,8 +65,8 @@ public class JJPLexer extends BaseLexer{
 
     /**
      * Builds this Lexer's rules based on the default rules and including any custom rules
-     * for the Lexer and the JSONPathEnvironment. It also populates {@code tokenLookupMap},
-     * {@code oneCharLexemesMap}, {@code twoCharLexemesSet}, and {@code keywordMap}
+     * for the Lexer and the JSONPathEnvironment. It also populates {@code tokenLookupMap} and {@code keywordMap}, and
+     * generates the {@code lexemeTable} from them.
      */
     @Override
     protected void buildRules(final Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap) {
@@ -83,22 +83,13 @@ public class JJPLexer extends BaseLexer{
             //System.out.println("key:" + entry.getKey() + ", value:"+entry.getValue());
         }
 
-        // generate the lexeme and regex sets and maps for matching
-        oneCharLexemesMap.clear();
-        twoCharLexemesSet.clear();
+        // generate the lexeme and regex tables and maps for matching
         keywordMap.clear();
         regExRuleMap.clear();
         for (var entry: lexerRulesMap.entrySet()) {
             TokenKind kind = entry.getKey();
             RulesBuilder.LexerRule rule = entry.getValue();
             if (rule instanceof RulesBuilder.LexemeRule lr) {
-                int length = lr.lexeme().length();
-                if (length == 1) {
-                    //System.out.println("writing to onecharLexemesMap: "+lr.lexeme());
-                    oneCharLexemesMap.put(lr.lexeme().charAt(0), lr.lexeme()); // all lexemes are in the BMP, so this is safe.
-                } else if (length == 2) {
-                    twoCharLexemesSet.add(lr.lexeme());
-                }
                 if ( kind.isKeyword() ) {
                     keywordMap.put(lr.lexeme(), kind);
                 }
@@ -106,11 +97,24 @@ public class JJPLexer extends BaseLexer{
                 regExRuleMap.put(kind, rule);
             }
         }
-/*        System.out.println("One char lexemes map: "+oneCharLexemesMap.toString());
-        for (int key : oneCharLexemesMap.keySet()) {
-            System.out.println(oneCharLexemesMap.get(key));
-        }*/
+        // one and two-char lexemes are looked up in tokenLookupMap, all lexemes are in the BMP.
+        lexemeTable = new LexemeTable(tokenLookupMap, keywordMap);
+
+        scanBlanks = isDefaultRegexRule(lexerRulesMap.get(TokenKind.SPACE), Constants.SPACES_RE);
+        // an identifier that could start with a quote would be scanned before the string literal
+        final RulesBuilder.LexerRule identifierRule = lexerRulesMap.get(TokenKind.IDENTIFIER);
+        scanStringLiterals =
+                isDefaultRegexRule(lexerRulesMap.get(TokenKind.SINGLE_QUOTE_STRING), Constants.SINGLE_QUOTE_STRING_RE) &&
+                isDefaultRegexRule(lexerRulesMap.get(TokenKind.DOUBLE_QUOTE_STRING), Constants.DOUBLE_QUOTE_STRING_RE) &&
+                identifierRule instanceof RulesBuilder.RegexRule ir &&
+                !ir.pattern().matcher(Constants.SINGLE_QUOTE).lookingAt() &&
+                !ir.pattern().matcher(Constants.DOUBLE_QUOTE).lookingAt();
+    }
 
+    private static boolean isDefaultRegexRule(RulesBuilder.LexerRule rule, String defaultRegex) {
+        return rule instanceof RulesBuilder.RegexRule regexRule &&
+               regexRule.pattern().flags() == 0 &&
+               regexRule.pattern().pattern().equals(defaultRegex);
     }
 
 
@@ -127,111 +131,137 @@ public class JJPLexer extends BaseLexer{
      */
 
     /**
-     * Generate a sequence of getTokenList from a JSONPath string.
+     * Scans the next token from a JSONPath string.
      *
-     * @param jsonPathText The JSONPath string to tokenize
-     * @return Iterator of Token objects
+     * @param scanner the state of the current scan
+     * @return false if the scanner was already at the end of the input
      */
     @Override
-    public List<Token> tokenize(final String jsonPathText) {
-        final ScannerState                              scanner = initScanner(jsonPathText);
+    protected boolean scanNext(final ScannerState scanner) {
+        final String                               jsonPathText = scanner.getJsonPathText();
         final Map<TokenKind, RulesBuilder.LexerRule> lexerRules = getLexerRulesMap();
-        while ( currentChar() != EOF_CHAR) {
-//            System.out.printf("current char is %s, pos= %d%n", currentChar(), position());
-            Matcher matcher;
-            RulesBuilder.RegexRule regexRule;
-            regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.SPACE);
-            if ( inFirstSet(regexRule) ) {
-                matcher = regexRule.getRegionMatcher(jsonPathText, position());
-                if (matcher.lookingAt()) {
-                    scanner.advanceToken(TokenKind.SPACE, matcher.group());
-                    continue;
-                }
-            }
-            //4 of these RegExRules could all be processed in a simple loop
-            // since they just match, and if they match, they emit the token with the matched text as the token value.
-            // SPACE, LIST_SLICE, NUMBER, AND RE_PATTERN all are processed the same way
-            // Quoted strings and Identifiers are processed a little differently.
-            // Identifiers could be processed with a simple rule if we have a KEYWORD match rule
-            // that runs before Identifiers and we match the KEYWORDS on a word boundary.
-            // That would just leave Strings as special. Strings are "special" because of error handling and reporting.
-            // if we encounter a quote in the input, we expect to eventually find that same quote before EOF, or we
-            // have an unterminated String.
-            // maybe we can add a handler function parameter to the RegExRule for cases like this. A callback function.
-            // it would be null for all other RegExRules except for String.
-
-            // Identifiers and keywords also handled here
-            // (member-name-shorthand, true, false, null, function names, extension keywords)
-            //-----------------------------------------------------------------------------------------
-            regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.IDENTIFIER);
-            matcher = regexRule.getRegionMatcher(jsonPathText, position());
+        if ( scanner.currentChar() == EOF_CHAR) {
+            return false;
+        }
+//        System.out.printf("current char is %s, pos= %d%n", scanner.currentChar(), scanner.getPositionIndex());
+        if ( scanWithCharScanner(scanner) ) {
+            return true;
+        }
+        Matcher matcher;
+        RulesBuilder.RegexRule regexRule;
+        regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.SPACE);
+        if ( inFirstSet(regexRule, scanner) ) {
+            matcher = scanner.getRegionMatcher(regexRule);
             if (matcher.lookingAt()) {
-                processIdentifier(matcher.group());
-                continue;
+                scanner.advanceToken(TokenKind.SPACE, matcher.end() - matcher.start());
+                return true;
             }
+        }
+        //4 of these RegExRules could all be processed in a simple loop
+        // since they just match, and if they match, they emit the token with the matched text as the token value.
+        // SPACE, LIST_SLICE, NUMBER, AND RE_PATTERN all are processed the same way
+        // Quoted strings and Identifiers are processed a little differently.
+        // Identifiers could be processed with a simple rule if we have a KEYWORD match rule
+        // that runs before Identifiers and we match the KEYWORDS on a word boundary.
+        // That would just leave Strings as special. Strings are "special" because of error handling and reporting.
+        // if we encounter a quote in the input, we expect to eventually find that same quote before EOF, or we
+        // have an unterminated String.
+        // maybe we can add a handler function parameter to the RegExRule for cases like this. A callback function.
+        // it would be null for all other RegExRules except for String.
+
+        // Identifiers and keywords also handled here
+        // (member-name-shorthand, true, false, null, function names, extension keywords)
+        //-----------------------------------------------------------------------------------------
+        regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.IDENTIFIER);
+        matcher = scanner.getRegionMatcher(regexRule);
+        if (matcher.lookingAt()) {
+            processIdentifier(scanner, matcher.end() - matcher.start());
+            return true;
+        }
 
-            // String literals
-            if ( Constants.SINGLE_QUOTE_CHAR == currentChar() ||
-                 Constants.DOUBLE_QUOTE_CHAR == currentChar() ) {
-                processStringLiteral(jsonPathText);
-                continue;
-            }
+        // String literals
+        if ( Constants.SINGLE_QUOTE_CHAR == scanner.currentChar() ||
+             Constants.DOUBLE_QUOTE_CHAR == scanner.currentChar() ) {
+            processStringLiteral(scanner, jsonPathText);
+            return true;
+        }
+
+        // Slice selector
+        regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.LIST_SLICE);
+        matcher = scanner.getRegionMatcher(regexRule);
+        if (matcher.lookingAt()) {
+            scanner.advanceToken( emitKind(TokenKind.LIST_SLICE),  matcher.end() - matcher.start());
+            return true;
+        }
 
-            // Slice selector
-            regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.LIST_SLICE);
-            matcher = regexRule.getRegionMatcher(jsonPathText, position());
+        // Number literals
+        // Slice selector
+        regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.NUMBER);
+        if ( inFirstSet(regexRule, scanner) ) {
+            matcher = scanner.getRegionMatcher(regexRule);
             if (matcher.lookingAt()) {
-                scanner.advanceToken( emitKind(TokenKind.LIST_SLICE),  matcher.group());
-                continue;
+                scanner.advanceToken( emitKind(TokenKind.NUMBER),  matcher.end() - matcher.start());
+                return true;
             }
+        }
 
-            // Number literals
-            // Slice selector
-            regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.NUMBER);
-            if ( inFirstSet(regexRule) ) {
-                matcher = regexRule.getRegionMatcher(jsonPathText, position());
-                if (matcher.lookingAt()) {
-                    scanner.advanceToken( emitKind(TokenKind.NUMBER),  matcher.group());
-                    continue;
-                }
+        // regex pattern for =~ comparisons
+        regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.RE_PATTERN);
+        if ( Constants.SLASH_CHAR == scanner.currentChar() ) {
+            matcher = scanner.getRegionMatcher(regexRule);
+            if (matcher.lookingAt()) {
+                scanner.advanceToken( emitKind(TokenKind.RE_PATTERN), matcher.end() - matcher.start());
+                return true;
             }
+        }
 
-            // regex pattern for =~ comparisons
-            regexRule = (RulesBuilder.RegexRule) lexerRules.get(TokenKind.RE_PATTERN);
-            if ( Constants.SLASH_CHAR == currentChar() ) {
-                matcher = regexRule.getRegionMatcher(jsonPathText, position());
-                if (matcher.lookingAt()) {
-                    scanner.advanceToken( emitKind(TokenKind.RE_PATTERN), matcher.group());
-                    continue;
-                }
-            }
+        TokenKind kind = lexemeTable.twoChars(jsonPathText, scanner.getPositionIndex());
+        if (kind != null) {
+            scanner.advanceToken( emitKind(kind),  2);
+            return true;
+        }
+        kind = lexemeTable.oneChar(scanner.currentChar());
+        if ( kind != null ){
+            scanner.advanceToken( emitKind(kind),  1);
+            return true;
+        }
 
-            // todo - this is the only place in the loop we create String objects. We'll want to refactor this like we
-            // did with the oneCharLexemesMap so we don't have to create new Strings in each iteration.
-            String firstTwoChars = scanner.peekNextChars(2);
-            if (twoCharLexemesSet.contains(firstTwoChars)) {
-                final TokenKind kind = tokenLookupMap.get(firstTwoChars);
-                scanner.advanceToken( emitKind(kind),  firstTwoChars);
-                continue;
-            }
-            String lexeme = oneCharLexemesMap.get(currentChar());
-            if ( lexeme != null ){
-                final TokenKind kind = tokenLookupMap.get(lexeme);
-                scanner.advanceToken( emitKind(kind),  lexeme);
-                continue;
-            }
+        // Illegal Character
+        //System.out.println(scanner.getTokenList());
+        String errMsg = "Unrecognized character: '%c' at start of string '%s', jsonpath string: %s"
+                .formatted( scanner.currentChar(),jsonPathText.substring( scanner.getPositionIndex() ),jsonPathText );
+        throw new JSONPathSyntaxException( errMsg
+        , new Token( TokenKind.ILLEGAL, String.valueOf(scanner.currentChar()), scanner.getPositionIndex(), jsonPathText));
+    }
 
-            // Illegal Character
-            //System.out.println(scanner.getTokenList());
-            String errMsg = "Unrecognized character: '%c' at start of string '%s', jsonpath string: %s"
-                    .formatted( scanner.currentChar(),jsonPathText.substring( scanner.getPositionIndex() ),jsonPathText );
-            throw new JSONPathSyntaxException( errMsg
-            , new Token( TokenKind.ILLEGAL, String.valueOf(scanner.currentChar()), scanner.getPositionIndex(), jsonPathText));
+    /**
+     * Scans a whitespace run or a string literal at the current position without their regexes, when their rules
+     * are the defaults. Long runs and literals are scanned a vector of chars at a time when the Vector API is
+     * available.
+     *
+     * @param scanner the state of the current scan
+     * @return true if a token was scanned, false if the current char doesn't start a token that can be scanned this way.
+     * @throws JSONPathSyntaxException if the current char starts an unterminated string literal.
+     */
+    protected final boolean scanWithCharScanner(final ScannerState scanner) {
+        getLexerRulesMap();
+        final char c = scanner.currentChar();
+        final int start = scanner.getPositionIndex();
+        if ( scanBlanks && CharScanner.isBlank(c) ) {
+            scanner.advanceToken(TokenKind.SPACE, charScanner.skipBlanks(scanner, start + 1) - start);
+            return true;
         }
-        // remove spaces if whitespace policy is lenient.
-        List<Token> tokens = enactWhitespacePolicy(scanner.getTokenList());
-        tokens.add(Token.EOF);
-        return tokens;
+        if ( scanStringLiterals && (c == Constants.SINGLE_QUOTE_CHAR || c == Constants.DOUBLE_QUOTE_CHAR) ) {
+            final int end = charScanner.stringLiteralEnd(scanner, start);
+            if (end < 0) {
+                throw unterminatedStringLiteral(scanner, scanner.getJsonPathText());
+            }
+            final TokenKind kind = c == Constants.SINGLE_QUOTE_CHAR
+                    ? TokenKind.SINGLE_QUOTE_STRING : TokenKind.DOUBLE_QUOTE_STRING;
+            scanner.advanceToken(emitKind(kind), end - start);
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -241,12 +271,13 @@ public class JJPLexer extends BaseLexer{
      * Otherwise, this method returns {@code false}, indicating that a first-set exists for the rule AND the current character
      * was NOT found in that set.
      * @param regexRule the rule from which to extract a first-set
+     * @param scanner the state of the current scan
      * @return {@code false} if the current character is not the first-set, otherwise returns {@code true}.
      */
-    protected final boolean inFirstSet(RulesBuilder.RegexRule regexRule) {
+    protected final boolean inFirstSet(RulesBuilder.RegexRule regexRule, ScannerState scanner) {
         boolean isInFirstSet = true;
         if (regexRule.hasFirstSet()) {
-            isInFirstSet = regexRule.firstSetContains(getScannerState().currentChar());
+            isInFirstSet = regexRule.firstSetContains(scanner.currentChar());
         }
         return isInFirstSet;
     }
@@ -255,41 +286,40 @@ public class JJPLexer extends BaseLexer{
     /**
      * Processes identifiers and keywords, including member-name-shorthand, `true`, `false`, `null`, function names,
      * and extension keywords.
-     * @param text the matched group value. I.e., the text that matched the identifier regex pattern.
+     * @param scanner the state of the current scan
+     * @param length the length of the text that matched the identifier regex pattern, starting at the scanner position.
      */
-    protected void processIdentifier(String text) {
-        TokenKind kind = keywordMap.get(text);
-        ScannerState scannerState = getScannerState();
+    protected void processIdentifier(ScannerState scanner, int length) {
+        final int start = scanner.getPositionIndex();
+        TokenKind kind = lexemeTable.keyword(scanner.getJsonPathText(), start, start + length);
         if (kind != null) {
             // we scanned a keyword
-            scannerState.advanceToken(emitKind(kind), text);
+            scanner.advanceToken(emitKind(kind), length);
             return;
         }
-        scannerState.advanceToken(emitKind(TokenKind.IDENTIFIER), text);
+        scanner.advanceToken(emitKind(TokenKind.IDENTIFIER), length);
     }
 
-    protected void processStringLiteral(final String jsonPathText) {
+    protected void processStringLiteral(final ScannerState scanner, final String jsonPathText) {
         RulesBuilder.RegexRule regexRule = (RulesBuilder.RegexRule) getLexerRulesMap().get(TokenKind.SINGLE_QUOTE_STRING);
-        if ( inFirstSet(regexRule) ) {
-            Matcher matcher = regexRule.getRegionMatcher(jsonPathText, position());
+        if ( inFirstSet(regexRule, scanner) ) {
+            Matcher matcher = scanner.getRegionMatcher(regexRule);
             if (matcher.lookingAt()) {
-                advanceToken( emitKind(TokenKind.SINGLE_QUOTE_STRING),  matcher.group());
+                scanner.advanceToken( emitKind(TokenKind.SINGLE_QUOTE_STRING),  matcher.end() - matcher.start());
             } else {
-                // region started with a single quote but couldn't finish scanning, so it's unterminated
-                throw new JSONPathSyntaxException("Unterminated string literal %s".formatted(jsonPathText.substring(position())),
-                        new Token(TokenKind.ILLEGAL, jsonPathText.substring(position()), position(),  jsonPathText));
+                // region started with a quote but couldn't finish scanning, so it's unterminated
+                throw unterminatedStringLiteral(scanner, jsonPathText);
             }
 
         }
         regexRule = (RulesBuilder.RegexRule) getLexerRulesMap().get(TokenKind.DOUBLE_QUOTE_STRING);
-        if ( inFirstSet(regexRule) ) {
-            Matcher matcher = regexRule.getRegionMatcher(jsonPathText, position());
+        if ( inFirstSet(regexRule, scanner) ) {
+            Matcher matcher = scanner.getRegionMatcher(regexRule);
             if (matcher.lookingAt()) {
-                advanceToken( emitKind(TokenKind.DOUBLE_QUOTE_STRING),  matcher.group());
+                scanner.advanceToken( emitKind(TokenKind.DOUBLE_QUOTE_STRING),  matcher.end() - matcher.start());
             } else {
-                // region started with a single quote but couldn't finish scanning, so it's unterminated
-                throw new JSONPathSyntaxException("Unterminated string literal %s".formatted(jsonPathText.substring(position())),
-                        new Token(TokenKind.ILLEGAL, jsonPathText.substring(position()), position(),  jsonPathText));
+                // region started with a quote but couldn't finish scanning, so it's unterminated
+                throw unterminatedStringLiteral(scanner, jsonPathText);
             }
         }
     }
@@ -297,6 +327,11 @@ public class JJPLexer extends BaseLexer{
 
     // Helper classes and methods
 
+    private static JSONPathSyntaxException unterminatedStringLiteral(ScannerState scanner, String jsonPathText) {
+        return new JSONPathSyntaxException("Unterminated string literal %s".formatted(jsonPathText.substring(scanner.getPositionIndex())),
+                new Token(TokenKind.ILLEGAL, jsonPathText.substring(scanner.getPositionIndex()), scanner.getPositionIndex(),  jsonPathText));
+    }
+
 
 
     //**************************************************************************
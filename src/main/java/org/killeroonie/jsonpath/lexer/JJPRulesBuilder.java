@@ -7,14 +7,17 @@ import java.util.EnumMap;
 
 public class JJPRulesBuilder implements RulesBuilder {
 
-    private final EnumMap<TokenKind, LexerRule> rules = new EnumMap<>(TokenKind.class);
+    // Built once and never modified. Concurrent first calls may each build the rules, but they build equal maps.
+    private volatile EnumMap<TokenKind, LexerRule> rules;
 
     @Override
     public EnumMap<TokenKind, LexerRule> getRules() {
-        if (rules.isEmpty()) {
-            rules.putAll(buildDefaultRulesMap());
+        EnumMap<TokenKind, LexerRule> defaultRules = rules;
+        if (defaultRules == null) {
+            defaultRules = buildDefaultRulesMap();
+            rules = defaultRules;
         }
-        return rules;
+        return new EnumMap<>(defaultRules);
     }
 
     private  EnumMap<TokenKind, LexerRule> buildDefaultRulesMap() {
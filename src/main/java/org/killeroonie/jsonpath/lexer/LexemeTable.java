@@ -0,0 +1,228 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.TokenKind;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable lookup tables for the lexemes and keywords of a Lexer's rules, built when the rules are built.
+ * <p>
+ * Lookups read the scanned text in place, so no {@code String} is created to probe the tables:
+ * <ul>
+ *     <li>one-char lexemes are found by indexing an array with the char.</li>
+ *     <li>two-char lexemes are found by hashing the pair of chars as a single int.</li>
+ *     <li>keywords are found by their length, then by hashing the characters of the scanned identifier, and confirmed
+ *     by comparing the region of the text with the keyword.</li>
+ * </ul>
+ * The hash tables are open addressed. Each table's hash multiplier is chosen when it's built so that no two keys share
+ * a slot, when such a multiplier can be found, which makes every lookup a single probe.
+ */
+final class LexemeTable {
+
+    private static final int MIN_ONE_CHAR_TABLE_SIZE = 128;
+    // the number of multipliers tried for each table size before the table size is doubled
+    private static final int MULTIPLIER_ATTEMPTS = 512;
+    private static final int MAX_EXTRA_BITS = 4;
+
+    private final TokenKind[] oneCharKinds;     // indexed by char
+
+    private final int[] pairKeys;               // the two chars of a lexeme, as (first << 16) | second
+    private final TokenKind[] pairKinds;
+    private final HashLayout pairLayout;
+
+    private final int[] keywordHashes;          // String.hashCode() of each keyword
+    private final String[] keywords;
+    private final TokenKind[] keywordKinds;
+    private final HashLayout keywordLayout;
+    private final int maxKeywordLength;
+
+    /**
+     * Builds the tables.
+     * @param lexemeKinds maps each lexeme to the TokenKind to look up when it's scanned. Lexemes other than one or two
+     *                    chars are ignored.
+     * @param keywordKinds maps each keyword to the TokenKind to look up when it's scanned as an identifier.
+     */
+    LexemeTable(Map<String, TokenKind> lexemeKinds, Map<String, TokenKind> keywordKinds) {
+        int oneCharTableSize = MIN_ONE_CHAR_TABLE_SIZE;
+        int pairCount = 0;
+        for (String lexeme : lexemeKinds.keySet()) {
+            if (lexeme.length() == 1) {
+                oneCharTableSize = Math.max(oneCharTableSize, lexeme.charAt(0) + 1);
+            } else if (lexeme.length() == 2) {
+                pairCount++;
+            }
+        }
+
+        oneCharKinds = new TokenKind[oneCharTableSize];
+        final int[] pairs = new int[pairCount];
+        final TokenKind[] kindsOfPairs = new TokenKind[pairCount];
+        int pairIndex = 0;
+        for (var entry : lexemeKinds.entrySet()) {
+            final String lexeme = entry.getKey();
+            if (lexeme.length() == 1) {
+                oneCharKinds[lexeme.charAt(0)] = entry.getValue();
+            } else if (lexeme.length() == 2) {
+                pairs[pairIndex] = pairKey(lexeme.charAt(0), lexeme.charAt(1));
+                kindsOfPairs[pairIndex] = entry.getValue();
+                pairIndex++;
+            }
+        }
+        pairLayout = HashLayout.of(pairs);
+        pairKeys = new int[pairLayout.size()];
+        pairKinds = new TokenKind[pairLayout.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            final int slot = pairLayout.slotOf(i);
+            pairKeys[slot] = pairs[i];
+            pairKinds[slot] = kindsOfPairs[i];
+        }
+
+        final int[] hashes = new int[keywordKinds.size()];
+        final String[] words = keywordKinds.keySet().toArray(new String[0]);
+        int maxLength = 0;
+        for (int i = 0; i < words.length; i++) {
+            hashes[i] = words[i].hashCode();
+            maxLength = Math.max(maxLength, words[i].length());
+        }
+        maxKeywordLength = maxLength;
+        keywordLayout = HashLayout.of(hashes);
+        keywordHashes = new int[keywordLayout.size()];
+        keywords = new String[keywordLayout.size()];
+        this.keywordKinds = new TokenKind[keywordLayout.size()];
+        for (int i = 0; i < words.length; i++) {
+            final int slot = keywordLayout.slotOf(i);
+            keywordHashes[slot] = hashes[i];
+            keywords[slot] = words[i];
+            this.keywordKinds[slot] = keywordKinds.get(words[i]);
+        }
+    }
+
+    private static int pairKey(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    /**
+     * @return the TokenKind of the one-char lexeme {@code c}, or null if {@code c} isn't a lexeme.
+     */
+    TokenKind oneChar(char c) {
+        return c < oneCharKinds.length ? oneCharKinds[c] : null;
+    }
+
+    /**
+     * @return the TokenKind of the two-char lexeme at {@code index} in the text, or null if the two chars at
+     * {@code index} aren't a lexeme.
+     */
+    TokenKind twoChars(String text, int index) {
+        if (index + 1 >= text.length()) {
+            return null;
+        }
+        final int key = pairKey(text.charAt(index), text.charAt(index + 1));
+        for (int slot = pairLayout.slot(key); pairKinds[slot] != null; slot = pairLayout.next(slot)) {
+            if (pairKeys[slot] == key) {
+                return pairKinds[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the TokenKind of the keyword spanning {@code start} to {@code end} in the text, or null if that region of
+     * the text isn't a keyword.
+     */
+    TokenKind keyword(String text, int start, int end) {
+        final int length = end - start;
+        if (length > maxKeywordLength) {
+            return null;
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        for (int slot = keywordLayout.slot(hash); keywords[slot] != null; slot = keywordLayout.next(slot)) {
+            if (keywordHashes[slot] == hash && keywords[slot].length() == length &&
+                text.regionMatches(start, keywords[slot], 0, length)) {
+                return keywordKinds[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The slot assignment for a set of int keys in an open addressed table. Keys that collide are placed in the next
+     * free slot.
+     */
+    private static final class HashLayout {
+
+        private final int multiplier;
+        private final int shift;
+        private final int mask;
+        private final int[] slots; // the slot of each key, in the order the keys were given
+
+        private HashLayout(int multiplier, int bits, int[] keys) {
+            this.multiplier = multiplier;
+            this.shift = 32 - bits;
+            this.mask = (1 << bits) - 1;
+            this.slots = new int[keys.length];
+            final boolean[] used = new boolean[1 << bits];
+            for (int i = 0; i < keys.length; i++) {
+                int slot = slot(keys[i]);
+                while (used[slot]) {
+                    slot = next(slot);
+                }
+                used[slot] = true;
+                slots[i] = slot;
+            }
+        }
+
+        /**
+         * Searches for a multiplier that places every key in its own slot, in a table with at most half its slots
+         * used. Keys with equal values always collide; if the search fails the table falls back to probing.
+         */
+        static HashLayout of(int[] keys) {
+            final int minBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(keys.length * 2));
+            for (int bits = minBits; bits <= minBits + MAX_EXTRA_BITS; bits++) {
+                final boolean[] used = new boolean[1 << bits];
+                for (int attempt = 0; attempt < MULTIPLIER_ATTEMPTS; attempt++) {
+                    final int multiplier = multiplier(attempt);
+                    if (isPerfect(keys, multiplier, bits, used)) {
+                        return new HashLayout(multiplier, bits, keys);
+                    }
+                }
+            }
+            return new HashLayout(multiplier(0), minBits, keys);
+        }
+
+        private static int multiplier(int attempt) {
+            // odd multipliers spread by the golden ratio, starting with the golden ratio itself
+            return (0x9E3779B9 + attempt * 0x6A09E668) | 1;
+        }
+
+        private static boolean isPerfect(int[] keys, int multiplier, int bits, boolean[] used) {
+            Arrays.fill(used, false);
+            for (int key : keys) {
+                final int slot = (key * multiplier) >>> (32 - bits);
+                if (used[slot]) {
+                    return false;
+                }
+                used[slot] = true;
+            }
+            return true;
+        }
+
+        int size() {
+            return mask + 1;
+        }
+
+        int slotOf(int keyIndex) {
+            return slots[keyIndex];
+        }
+
+        int slot(int key) {
+            return (key * multiplier) >>> shift;
+        }
+
+        int next(int slot) {
+            return (slot + 1) & mask;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.killeroonie.jsonpath.lexer;
 
 import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenBuffer;
 
 import java.util.List;
 
@@ -10,6 +11,21 @@ public interface Lexer {
 
     List<Token> tokenize(String jsonPathText);
 
+    /**
+     * Scans a JSONPath string into a compact {@link TokenBuffer}, without creating any Token objects.
+     * @param jsonPathText the JSONPath string to tokenize
+     * @return the scanned tokens, ending with an EOF token.
+     */
+    TokenBuffer tokenizeToBuffer(String jsonPathText);
+
+    /**
+     * Starts an incremental scan of a JSONPath string. Nothing is scanned until tokens are pulled from the returned
+     * source, e.g., by a {@link org.killeroonie.jsonpath.parser.TokenStream} as the parser consumes them.
+     * @param jsonPathText the JSONPath string to tokenize
+     * @return a source of the same tokens {@link #tokenizeToBuffer(String)} returns, ending with an EOF token.
+     */
+    TokenSource tokenSource(String jsonPathText);
+
     enum WhitespacePolicy {
         LENIENT,
         STRICT
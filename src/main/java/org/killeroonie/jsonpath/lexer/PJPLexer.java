@@ -16,6 +16,13 @@ import java.util.regex.Pattern;
  */
 public class PJPLexer extends BaseLexer{
 
+    // All the rules combined into one alternation pattern. See compileRules().
+    private Pattern masterPattern;
+    // The TokenKind of each rule, in rule order.
+    private TokenKind[] ruleKinds;
+    // The group number of each rule's group in the master pattern, in rule order.
+    private int[] ruleGroups;
+
     /**
      * Constructor for Lexer.
      * @param env The JSONPathEnvironment configuration
@@ -32,117 +39,163 @@ public class PJPLexer extends BaseLexer{
     @Override
     protected void buildRules(Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap) {
         super.buildRules(lexerRulesMap);
+        compileRules(lexerRulesMap);
+    }
+
+    /**
+     * Combines all the rules into a single alternation pattern with one named group per rule, in rule order, like
+     * {@code compile_rules()} in python-jsonpath's lexer.py. Because alternatives are tried from left to right, the
+     * first rule that matches at the scan position wins, just as if each rule had been tried in turn.
+     * <p>
+     * The rule groups are named {@code R0, R1, ...} since Java group names can't contain underscores. The group
+     * number of each rule group is recorded in {@code ruleGroups} so the matched rule can be found without looking up
+     * group names.
+     * @param lexerRulesMap the complete rules map of this Lexer.
+     */
+    private void compileRules(Map<TokenKind, RulesBuilder.LexerRule> lexerRulesMap) {
+        final StringBuilder masterRegex = new StringBuilder();
+        final TokenKind[] kinds = new TokenKind[lexerRulesMap.size()];
+        final int[] groups = new int[lexerRulesMap.size()];
+        int ruleIndex = 0;
+        int groupNumber = 1;
+        for (var entry : lexerRulesMap.entrySet()) {
+            final Pattern pattern = switch (entry.getValue()) {
+                case RulesBuilder.RegexRule regexRule -> regexRule.pattern();
+                case RulesBuilder.LexemeRule lexemeRule -> Pattern.compile(Pattern.quote(lexemeRule.lexeme()));
+                default -> throw new IllegalStateException("Unexpected rule type: " + entry.getValue());
+            };
+            if (ruleIndex > 0) {
+                masterRegex.append('|');
+            }
+            masterRegex.append("(?<R").append(ruleIndex).append('>')
+                       .append(inlineFlags(pattern)).append(pattern.pattern()).append(')');
+            kinds[ruleIndex] = entry.getKey();
+            groups[ruleIndex] = groupNumber;
+            // the rule group, plus any groups the rule pattern defines
+            groupNumber += 1 + pattern.matcher("").groupCount();
+            ruleIndex++;
+        }
+        masterPattern = Pattern.compile(masterRegex.toString());
+        ruleKinds = kinds;
+        ruleGroups = groups;
+    }
+
+    /**
+     * Returns the embedded flag expression that applies the flags a rule's pattern was compiled with when it is
+     * part of the master pattern.
+     */
+    private static String inlineFlags(Pattern pattern) {
+        final int flags = pattern.flags();
+        if (flags == 0) {
+            return "";
+        }
+        if ((flags & (Pattern.LITERAL | Pattern.CANON_EQ)) != 0) {
+            throw new IllegalArgumentException("LITERAL and CANON_EQ flags are not supported in rule " + pattern);
+        }
+        final StringBuilder inline = new StringBuilder("(?");
+        if ((flags & Pattern.CASE_INSENSITIVE) != 0) inline.append('i');
+        if ((flags & Pattern.UNIX_LINES) != 0) inline.append('d');
+        if ((flags & Pattern.MULTILINE) != 0) inline.append('m');
+        if ((flags & Pattern.DOTALL) != 0) inline.append('s');
+        if ((flags & Pattern.UNICODE_CASE) != 0) inline.append('u');
+        if ((flags & Pattern.COMMENTS) != 0) inline.append('x');
+        if ((flags & Pattern.UNICODE_CHARACTER_CLASS) != 0) inline.append('U');
+        return inline.append(')').toString();
     }
 
     @Override
-    public List<Token> tokenize(final String jsonPathText) {
-        final ScannerState  scanner = initScanner(jsonPathText);
-        final Map<TokenKind, RulesBuilder.LexerRule> lexerRules = getLexerRulesMap();
-
-        while ( currentChar() != EOF_CHAR) {
-//            System.out.printf("current char is %s, pos= %d%n", currentChar(), position());
-            Matcher matcher = null;
-            RulesBuilder.RegexRule regexRule;
-            TokenKind kind = null;
-            String matchtext = null;
-            for (TokenKind key : lexerRules.keySet()) {
-                regexRule = (RulesBuilder.RegexRule) lexerRules.get(key);
-                matcher = regexRule.getRegionMatcher(jsonPathText, position());
-                if (matcher.lookingAt()) {
-                    matchtext = matcher.group();
-                    kind = key;
+    protected boolean scanNext(final ScannerState scanner) {
+        final String jsonPathText = scanner.getJsonPathText();
+        getLexerRulesMap();
+        if ( scanner.currentChar() == EOF_CHAR) {
+            return false;
+        }
+        // one Matcher for the whole scan, its region is moved to the scanner position for each token.
+        final Matcher matcher = scanner.getMatcher(masterPattern);
+//        System.out.printf("current char is %s, pos= %d%n", scanner.currentChar(), scanner.getPositionIndex());
+        TokenKind kind = null;
+        int matchLength = 0;
+        matcher.region(scanner.getPositionIndex(), jsonPathText.length());
+        if (matcher.lookingAt()) {
+            matchLength = matcher.end() - matcher.start();
+            // find the rule whose group participated in the match
+            for (int i = 0; i < ruleGroups.length; i++) {
+                if (matcher.start(ruleGroups[i]) != -1) {
+                    kind = ruleKinds[i];
                     break;
                 }
             }
-            assert kind != null : "Kind is null, ";
+        }
+        assert kind != null : "Kind is null, ";
 
-            if (kind == TokenKind.DOT_PROPERTY) {
-                scanner.advance(1); // consume the dot
-                advanceToken(emitKind(kind), matcher.group("GPROP"));
-            }
-            else if (kind == TokenKind.BARE_PROPERTY) {
-                // this doesn't seem to do anything different from the default behavior.
-                advanceToken(emitKind(kind), matchtext);
-            }
-            else if (kind == TokenKind.LIST_SLICE) {
-                Token sliceStart = new Token(
-                        TokenKind.SLICE_START,
-                        matcher.group("GLSLICESTART"),
-                        matcher.start("GLSLICESTART"),
-                        jsonPathText
-                );
-                Token sliceStop = new Token(
-                        TokenKind.SLICE_STOP,
-                        matcher.group("GLSLICESTOP"),
-                        matcher.start("GLSLICESTOP"),
-                        jsonPathText
-                );
-                String sliceStepText = matcher.group("GLSLICESTEP") == null ? "" : matcher.group( "GLSLICESTEP");
-                Token sliceStep = new Token(
-                        TokenKind.SLICE_STEP,
-                        sliceStepText,
-                        matcher.start("GLSLICESTEP"),
-                        jsonPathText
-                );
-                scanner.getTokenList().add(sliceStart);
-                scanner.getTokenList().add(sliceStop);
-                scanner.getTokenList().add(sliceStep);
-                scanner.advance(matchtext.length());
-            }
-            else if ( kind == TokenKind.DOUBLE_QUOTE_STRING ) {
-                scanner.advance(1); // opening quote
-                advanceToken(emitKind(kind), matcher.group("GDQUOTE"));
-                scanner.advance(1); // closing quote
-            }
-            else if ( kind == TokenKind.SINGLE_QUOTE_STRING ) {
-                scanner.advance(1); // opening quote
-                advanceToken(emitKind(kind), matcher.group("GSQUOTE"));
-                scanner.advance(1); // closing quote
-            }
-            else if ( kind == TokenKind.INT ) {
-                // PJP treats positive exponents without fractions as ints.
-                if (matcher.group("GEXP") != null && matcher.group("GEXP").charAt(1) == '-') {
-                    advanceToken(TokenKind.FLOAT, matchtext);
-                } else {
-                    advanceToken(TokenKind.INT, matchtext);
-                }
-            }
-            else if ( kind == TokenKind.RE_PATTERN ) {
-                scanner.advance(1); // consume opening '/'
-                advanceToken( TokenKind.RE_PATTERN, matcher.group("GRE"));
-                scanner.advance(1);  // consume closing '/'
-                advanceToken( TokenKind.RE_FLAGS, matcher.group("GREFLAGS"));
-            }
-            else if ( kind == TokenKind.NONE  || kind == TokenKind.NULL ) {
-                // this behavior is not different from the default, no reason for a separate rule here
-                // emitKind() will emit a TokenKind.NIL TokenKind for either of these
-                advanceToken(emitKind(kind), matchtext);
-            }
-            else if ( kind == TokenKind.FUNCTION) {
-                advanceToken(emitKind(kind), matcher.group("GFUNC"));
-                scanner.advance(1); // to consume left-paren
-            }
-            else if ( kind == TokenKind.SKIP ) {
-                scanner.advance(matchtext.length());
-            }
-            else if ( kind == TokenKind.ILLEGAL ) {
-                throw new JSONPathSyntaxException("unexpected token %s".formatted(matchtext),
-                        new Token(TokenKind.ILLEGAL, matchtext , position(), jsonPathText));
-            }
-            else //noinspection ConstantValue
-                if ( kind != null ) {
-                // standard behavior for the non-special tokens
-                advanceToken(emitKind(kind), matchtext);
-            }
-            else {
-                throw new JSONPathException("TokenKind is null. Position: " + position() +
-                        ", current char: " + currentChar() + ", jsonPathText: " + jsonPathText);
+        if (kind == TokenKind.DOT_PROPERTY) {
+            scanner.advance(1); // consume the dot
+            scanner.advanceToken(emitKind(kind), matcher.end("GPROP") - matcher.start("GPROP"));
+        }
+        else if (kind == TokenKind.BARE_PROPERTY) {
+            // this doesn't seem to do anything different from the default behavior.
+            scanner.advanceToken(emitKind(kind), matchLength);
+        }
+        else if (kind == TokenKind.LIST_SLICE) {
+            final TokenBuffer tokens = scanner.getTokenBuffer();
+            tokens.add(TokenKind.SLICE_START, matcher.start("GLSLICESTART"), matcher.end("GLSLICESTART"));
+            tokens.add(TokenKind.SLICE_STOP, matcher.start("GLSLICESTOP"), matcher.end("GLSLICESTOP"));
+            // start and end are -1 when there is no step, giving an empty value
+            tokens.add(TokenKind.SLICE_STEP, matcher.start("GLSLICESTEP"), matcher.end("GLSLICESTEP"));
+            scanner.advance(matchLength);
+        }
+        else if ( kind == TokenKind.DOUBLE_QUOTE_STRING ) {
+            scanner.advance(1); // opening quote
+            scanner.advanceToken(emitKind(kind), matcher.end("GDQUOTE") - matcher.start("GDQUOTE"));
+            scanner.advance(1); // closing quote
+        }
+        else if ( kind == TokenKind.SINGLE_QUOTE_STRING ) {
+            scanner.advance(1); // opening quote
+            scanner.advanceToken(emitKind(kind), matcher.end("GSQUOTE") - matcher.start("GSQUOTE"));
+            scanner.advance(1); // closing quote
+        }
+        else if ( kind == TokenKind.INT ) {
+            // PJP treats positive exponents without fractions as ints.
+            final int exponentStart = matcher.start("GEXP");
+            if (exponentStart != -1 && jsonPathText.charAt(exponentStart + 1) == '-') {
+                scanner.advanceToken(TokenKind.FLOAT, matchLength);
+            } else {
+                scanner.advanceToken(TokenKind.INT, matchLength);
             }
         }
-        // remove spaces if whitespace policy is lenient.
-        List<Token> tokens = enactWhitespacePolicy(scanner.getTokenList());
-        tokens.add(Token.EOF);
-        return tokens;
+        else if ( kind == TokenKind.RE_PATTERN ) {
+            scanner.advance(1); // consume opening '/'
+            scanner.advanceToken( TokenKind.RE_PATTERN, matcher.end("GRE") - matcher.start("GRE"));
+            scanner.advance(1);  // consume closing '/'
+            scanner.advanceToken( TokenKind.RE_FLAGS, matcher.end("GREFLAGS") - matcher.start("GREFLAGS"));
+        }
+        else if ( kind == TokenKind.NONE  || kind == TokenKind.NULL ) {
+            // this behavior is not different from the default, no reason for a separate rule here
+            // emitKind() will emit a TokenKind.NIL TokenKind for either of these
+            scanner.advanceToken(emitKind(kind), matchLength);
+        }
+        else if ( kind == TokenKind.FUNCTION) {
+            scanner.advanceToken(emitKind(kind), matcher.end("GFUNC") - matcher.start("GFUNC"));
+            scanner.advance(1); // to consume left-paren
+        }
+        else if ( kind == TokenKind.SKIP ) {
+            scanner.advance(matchLength);
+        }
+        else if ( kind == TokenKind.ILLEGAL ) {
+            String matchtext = matcher.group();
+            throw new JSONPathSyntaxException("unexpected token %s".formatted(matchtext),
+                    new Token(TokenKind.ILLEGAL, matchtext , scanner.getPositionIndex(), jsonPathText));
+        }
+        else //noinspection ConstantValue
+            if ( kind != null ) {
+            // standard behavior for the non-special tokens
+            scanner.advanceToken(emitKind(kind), matchLength);
+        }
+        else {
+            throw new JSONPathException("TokenKind is null. Position: " + scanner.getPositionIndex() +
+                    ", current char: " + scanner.currentChar() + ", jsonPathText: " + jsonPathText);
+        }
+        return true;
     }
 
     static void t1() {
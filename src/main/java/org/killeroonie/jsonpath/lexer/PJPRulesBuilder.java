@@ -40,14 +40,17 @@ public class PJPRulesBuilder implements RulesBuilder {
     public static final String FILTER_CONTEXT_TOKEN_RE = "_";
     public static final String KEYS_SELECTOR_TOKEN_RE  = "\\~";
 
-    private final Map<TokenKind, RulesBuilder.LexerRule> rules = new LinkedHashMap<>();
+    // Built once and never modified. Concurrent first calls may each build the rules, but they build equal maps.
+    private volatile Map<TokenKind, RulesBuilder.LexerRule> rules;
 
 
     public Map<TokenKind, RulesBuilder.LexerRule> getRules() {
-        if (rules.isEmpty()) {
-            rules.putAll(buildDefaultRulesMap());
+        Map<TokenKind, RulesBuilder.LexerRule> defaultRules = rules;
+        if (defaultRules == null) {
+            defaultRules = buildDefaultRulesMap();
+            rules = defaultRules;
         }
-        return rules;
+        return new LinkedHashMap<>(defaultRules);
     }
 
 
@@ -13,6 +13,8 @@ public interface RulesBuilder {
     /**
      * Returns the LexerRules generated by this RuleBuilder as a Map where the
      * key is a TokenKind, and the value is the LexerRule generated for the key.
+     * Each call returns a new Map that the caller may modify. Implementations must be safe to call from multiple
+     * threads, since a RulesBuilder is shared by all the Lexers of a {@code JSONPathEnvironment}.
      * @return EnumMap<TokenKind, LexerRule> for the rules generated by this instance.
      */
     Map<TokenKind, LexerRule> getRules() ;
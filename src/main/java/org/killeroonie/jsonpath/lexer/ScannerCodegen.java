@@ -0,0 +1,436 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.codegen.ClassFileWriter;
+import org.killeroonie.jsonpath.codegen.CodeBuilder;
+import org.killeroonie.jsonpath.codegen.CodeBuilder.Label;
+import org.killeroonie.jsonpath.codegen.CodegenException;
+
+import java.lang.invoke.MethodHandles;
+import java.util.*;
+
+import static org.killeroonie.jsonpath.codegen.CodeBuilder.*;
+
+/**
+ * Generates a {@link TokenScanner} class from a {@link ScannerDFA}, with the DFA's states and transitions written as
+ * code instead of being read from tables. The class is defined as a hidden class, so it can be unloaded with the
+ * Lexer that uses it.
+ * <p>
+ * Each reachable state becomes a block of code that records the state's accepting rule group, stops when no higher
+ * priority token can still be matched, then reads the next character and branches on its class directly to the block
+ * of the next state. Non-ASCII characters are classified by the DFA.
+ * <p>
+ * HotSpot does not JIT compile very large methods, so the states are split among several static methods. States
+ * that are part of the same loop, i.e. the same strongly connected component of the transition graph, are always
+ * placed in the same method, and the components are assigned to methods in topological order. A transition into
+ * another method is a call that returns the result of the scan, so the depth of these calls is bounded by the number
+ * of methods, whatever the length of the token.
+ */
+final class ScannerCodegen {
+
+    // a method is closed when the estimated size of its states reaches this
+    private static final int METHOD_BUDGET = 6000;
+
+    private static final String CLASS_NAME = "org/killeroonie/jsonpath/lexer/GeneratedTokenScanner";
+    private static final String DFA_CLASS = "org/killeroonie/jsonpath/lexer/ScannerDFA";
+    private static final String DFA_DESCRIPTOR = "L" + DFA_CLASS + ";";
+    private static final String STATE_METHOD_DESCRIPTOR = "(Ljava/lang/String;IIIIII)J";
+
+    // The local variables of the state methods. The first seven are the parameters.
+    private static final int TEXT = 0;
+    private static final int LENGTH = 1;
+    private static final int POSITION = 2;
+    private static final int BEST_GROUP = 3;
+    private static final int BEST_STATE = 4;
+    private static final int BEST_END = 5;
+    private static final int STATE = 6;      // the state to enter; also the state waiting for a non-ASCII char class
+    private static final int CHAR = 7;
+    private static final int CHAR_CLASS = 8;
+    private static final int PACKED = 9;
+    private static final int STATE_METHOD_LOCALS = 10;
+    private static final int STATE_METHOD_STACK = 8;
+
+    // entering the method with this state starts scanning from the start state
+    private static final int INITIAL_ENTRY = -1;
+
+    private final ScannerDFA dfa;
+    private final int classCount;
+    private final List<int[]> methodStates = new ArrayList<>();
+    private final int[] methodOfState;
+
+    private ScannerCodegen(ScannerDFA dfa) {
+        this.dfa = dfa;
+        this.classCount = dfa.classCount();
+        this.methodOfState = new int[dfa.stateCount()];
+        Arrays.fill(methodOfState, -1);
+        partition();
+    }
+
+    /**
+     * Generates and defines a scanner class for the argument DFA.
+     *
+     * @param dfa the DFA to generate.
+     * @return a new TokenScanner which returns the same results as {@code dfa.scan()}.
+     * @throws CodegenException if the class can't be generated or defined.
+     */
+    static TokenScanner generate(ScannerDFA dfa) {
+        final byte[] classFile = new ScannerCodegen(dfa).writeClass();
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(classFile, dfa, true);
+            return (TokenScanner) lookup.lookupClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new CodegenException("Can't define the generated scanner class: " + e, e);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Partitioning
+    ////////////////////////////////////////////////////////////////////
+
+    private int target(int state, int charClass) {
+        return dfa.transition(state, charClass);
+    }
+
+    /**
+     * Assigns the reachable states to methods, keeping each strongly connected component together.
+     */
+    private void partition() {
+        final List<int[]> components = stronglyConnectedComponents();
+        List<Integer> current = new ArrayList<>();
+        int currentSize = 0;
+        // Tarjan's algorithm finds the components in reverse topological order
+        for (int c = components.size() - 1; c >= 0; c--) {
+            final int[] component = components.get(c);
+            int size = 0;
+            for (int state : component) {
+                size += estimateSize(state);
+            }
+            if (!current.isEmpty() && currentSize + size > METHOD_BUDGET) {
+                addMethod(current);
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+            for (int state : component) {
+                current.add(state);
+            }
+            currentSize += size;
+        }
+        addMethod(current);
+    }
+
+    private void addMethod(List<Integer> states) {
+        final int method = methodStates.size();
+        final int[] sorted = states.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int state : sorted) {
+            methodOfState[state] = method;
+        }
+        methodStates.add(sorted);
+    }
+
+    private List<int[]> stronglyConnectedComponents() {
+        // iterative Tarjan's algorithm over the states reachable from the start state
+        final int stateCount = dfa.stateCount();
+        final int[] index = new int[stateCount];
+        final int[] lowLink = new int[stateCount];
+        final boolean[] onStack = new boolean[stateCount];
+        Arrays.fill(index, -1);
+        final Deque<Integer> stack = new ArrayDeque<>();
+        final Deque<int[]> work = new ArrayDeque<>(); // {state, next char class to visit}
+        final List<int[]> components = new ArrayList<>();
+        int nextIndex = 0;
+
+        work.push(new int[]{ScannerDFA.START_STATE, 0});
+        index[ScannerDFA.START_STATE] = lowLink[ScannerDFA.START_STATE] = nextIndex++;
+        stack.push(ScannerDFA.START_STATE);
+        onStack[ScannerDFA.START_STATE] = true;
+        while (!work.isEmpty()) {
+            final int[] frame = work.peek();
+            final int state = frame[0];
+            if (frame[1] < classCount) {
+                final int next = target(state, frame[1]++);
+                if (next == ScannerDFA.DEAD_STATE) {
+                    continue;
+                }
+                if (index[next] < 0) {
+                    index[next] = lowLink[next] = nextIndex++;
+                    stack.push(next);
+                    onStack[next] = true;
+                    work.push(new int[]{next, 0});
+                } else if (onStack[next]) {
+                    lowLink[state] = Math.min(lowLink[state], index[next]);
+                }
+                continue;
+            }
+            work.pop();
+            if (!work.isEmpty()) {
+                final int parent = work.peek()[0];
+                lowLink[parent] = Math.min(lowLink[parent], lowLink[state]);
+            }
+            if (lowLink[state] == index[state]) {
+                final List<Integer> component = new ArrayList<>();
+                int member;
+                do {
+                    member = stack.pop();
+                    onStack[member] = false;
+                    component.add(member);
+                } while (member != state);
+                components.add(component.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return components;
+    }
+
+    /**
+     * @return an upper bound on the number of bytes of code generated for the state.
+     */
+    private int estimateSize(int state) {
+        final Set<Integer> targets = new HashSet<>();
+        for (int c = 0; c < classCount; c++) {
+            targets.add(target(state, c));
+        }
+        // accept and live checks, char read, slow path stub and switch entries, and a call stub per target
+        return 90 + switchSize(state) + 24 * targets.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// Code generation
+    ////////////////////////////////////////////////////////////////////
+
+    private byte[] writeClass() {
+        final ClassFileWriter cf = new ClassFileWriter(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL,
+                CLASS_NAME, "java/lang/Object", "org/killeroonie/jsonpath/lexer/TokenScanner");
+        final int constantField = ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL;
+        cf.addField(constantField, "DFA", DFA_DESCRIPTOR);
+        cf.addField(constantField, "ASCII_CLASSES", "[I");
+
+        // static initializer, reads the DFA from the class data
+        CodeBuilder code = cf.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V", 3, 0);
+        code.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                        "()Ljava/lang/invoke/MethodHandles$Lookup;")
+                .ldc("_")
+                .ldcClass(DFA_CLASS)
+                .invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;")
+                .type(CHECKCAST, DFA_CLASS)
+                .op(DUP)
+                .field(PUTSTATIC, CLASS_NAME, "DFA", DFA_DESCRIPTOR)
+                .invoke(INVOKEVIRTUAL, DFA_CLASS, "asciiClasses", "()[I")
+                .field(PUTSTATIC, CLASS_NAME, "ASCII_CLASSES", "[I")
+                .op(RETURN);
+
+        code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1);
+        code.var(ALOAD, 0)
+                .invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V")
+                .op(RETURN);
+
+        // public long scan(String text, int start)
+        code = cf.addMethod(ClassFileWriter.ACC_PUBLIC, "scan", "(Ljava/lang/String;I)J", 7, 3);
+        code.var(ALOAD, 1)
+                .var(ALOAD, 1)
+                .invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I")
+                .var(ILOAD, 2)
+                .iconst(ScannerDFA.NO_GROUP)
+                .iconst(-1)
+                .iconst(-1)
+                .iconst(INITIAL_ENTRY)
+                .invoke(INVOKESTATIC, CLASS_NAME, methodName(methodOfState[ScannerDFA.START_STATE]),
+                        STATE_METHOD_DESCRIPTOR)
+                .op(LRETURN);
+
+        for (int method = 0; method < methodStates.size(); method++) {
+            writeStateMethod(cf, method);
+        }
+        return cf.toByteArray();
+    }
+
+    private static String methodName(int method) {
+        return "s" + method;
+    }
+
+    private void writeStateMethod(ClassFileWriter cf, int method) {
+        final int[] states = methodStates.get(method);
+        final CodeBuilder code = cf.addMethod(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_STATIC,
+                methodName(method), STATE_METHOD_DESCRIPTOR, STATE_METHOD_STACK, STATE_METHOD_LOCALS);
+        final Label done = code.newLabel();
+        final Label slowPath = code.newLabel();
+        final Map<Integer, Label> arrive = new HashMap<>();
+        final Map<Integer, Label> branch = new TreeMap<>(); // states that read a char, and their class switch
+        final Map<Integer, Label> calls = new TreeMap<>();  // states in other methods
+        final boolean hasStart = methodOfState[ScannerDFA.START_STATE] == method;
+        for (int state : states) {
+            arrive.put(state, code.newLabel());
+        }
+        final Label initialRead = code.newLabel();
+
+        // entry
+        final List<Integer> entryKeys = new ArrayList<>();
+        final List<Label> entryLabels = new ArrayList<>();
+        if (hasStart) {
+            entryKeys.add(INITIAL_ENTRY);
+            entryLabels.add(initialRead);
+        }
+        for (int state : states) {
+            entryKeys.add(state);
+            entryLabels.add(arrive.get(state));
+        }
+        code.var(ILOAD, STATE)
+                .lookupSwitch(entryKeys.stream().mapToInt(Integer::intValue).toArray(),
+                        entryLabels.toArray(new Label[0]), done);
+
+        for (int state : states) {
+            code.place(arrive.get(state));
+            final int group = dfa.acceptGroup(state);
+            if (group != ScannerDFA.NO_GROUP) {
+                // if (group <= bestGroup) { bestGroup = group; bestState = state; bestEnd = position; }
+                final Label notBetter = code.newLabel();
+                code.var(ILOAD, BEST_GROUP).iconst(group).jump(IF_ICMPLT, notBetter)
+                        .iconst(group).var(ISTORE, BEST_GROUP)
+                        .iconst(state).var(ISTORE, BEST_STATE)
+                        .var(ILOAD, POSITION).var(ISTORE, BEST_END)
+                        .place(notBetter);
+            }
+            final int minLiveGroup = dfa.minLiveGroup(state);
+            final boolean isStart = state == ScannerDFA.START_STATE;
+            if (minLiveGroup == ScannerDFA.NO_GROUP && !isStart) {
+                // nothing can be accepted after this state
+                code.jump(GOTO, done);
+                continue;
+            }
+            if (minLiveGroup != ScannerDFA.NO_GROUP) {
+                // nothing of equal or higher priority can match a longer token
+                code.var(ILOAD, BEST_GROUP).iconst(minLiveGroup).jump(IF_ICMPLT, done);
+            }
+            if (isStart) {
+                code.place(initialRead);
+            }
+            final Label switchLabel = code.newLabel();
+            final Label nonAscii = code.newLabel();
+            branch.put(state, switchLabel);
+            code.var(ILOAD, POSITION).var(ILOAD, LENGTH).jump(IF_ICMPGE, done)
+                    .var(ALOAD, TEXT).var(ILOAD, POSITION)
+                    .invoke(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C")
+                    .op(DUP).var(ISTORE, CHAR)
+                    .iconst(128).jump(IF_ICMPGE, nonAscii)
+                    .field(GETSTATIC, CLASS_NAME, "ASCII_CLASSES", "[I")
+                    .var(ILOAD, CHAR).op(IALOAD).var(ISTORE, CHAR_CLASS)
+                    .iinc(POSITION, 1)
+                    .place(switchLabel)
+                    .var(ILOAD, CHAR_CLASS);
+            writeTransitions(code, state, arrive, calls, done);
+            code.place(nonAscii).iconst(state).var(ISTORE, STATE).jump(GOTO, slowPath);
+        }
+
+        // non-ASCII chars and surrogate pairs are classified by the DFA
+        code.place(slowPath)
+                .field(GETSTATIC, CLASS_NAME, "DFA", DFA_DESCRIPTOR)
+                .var(ALOAD, TEXT).var(ILOAD, POSITION)
+                .invoke(INVOKEVIRTUAL, DFA_CLASS, "classAt", "(Ljava/lang/String;I)I")
+                .var(ISTORE, PACKED)
+                .var(ILOAD, PACKED).iconst(0xFFFF).op(IAND).var(ISTORE, CHAR_CLASS)
+                .var(ILOAD, POSITION).var(ILOAD, PACKED).iconst(16).op(IUSHR).op(IADD).var(ISTORE, POSITION)
+                .var(ILOAD, STATE)
+                .lookupSwitch(branch.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                        branch.values().toArray(new Label[0]), done);
+
+        // transitions to states in other methods
+        for (var call : calls.entrySet()) {
+            code.place(call.getValue())
+                    .var(ALOAD, TEXT).var(ILOAD, LENGTH).var(ILOAD, POSITION)
+                    .var(ILOAD, BEST_GROUP).var(ILOAD, BEST_STATE).var(ILOAD, BEST_END)
+                    .iconst(call.getKey())
+                    .invoke(INVOKESTATIC, CLASS_NAME, methodName(methodOfState[call.getKey()]), STATE_METHOD_DESCRIPTOR)
+                    .op(LRETURN);
+        }
+
+        // return bestState < 0 ? NO_MATCH : ((long) bestState << 32) | bestEnd
+        final Label found = code.newLabel();
+        code.place(done)
+                .var(ILOAD, BEST_STATE).jump(IFGE, found)
+                .lconst(ScannerDFA.NO_MATCH).op(LRETURN)
+                .place(found)
+                .var(ILOAD, BEST_STATE).op(I2L).iconst(32).op(LSHL)
+                .var(ILOAD, BEST_END).op(I2L).op(LOR)
+                .op(LRETURN);
+
+        if (code.size() > HUGE_METHOD_LIMIT) {
+            throw new CodegenException("Generated scanner method has %d bytes of code, the JIT limit is %d"
+                    .formatted(code.size(), HUGE_METHOD_LIMIT));
+        }
+    }
+
+    /**
+     * Writes the branch on the char class on top of the stack to the block of the next state.
+     */
+    private void writeTransitions(CodeBuilder code, int state, Map<Integer, Label> arrive, Map<Integer, Label> calls,
+                                  Label done) {
+        final int defaultTarget = mostFrequentTarget(state);
+        final Label defaultLabel = targetLabel(code, defaultTarget, arrive, calls, done);
+        final List<Integer> keys = new ArrayList<>();
+        final List<Label> labels = new ArrayList<>();
+        for (int c = 0; c < classCount; c++) {
+            final int next = target(state, c);
+            if (next != defaultTarget) {
+                keys.add(c);
+                labels.add(targetLabel(code, next, arrive, calls, done));
+            }
+        }
+        if (keys.isEmpty()) {
+            code.op(POP).jump(GOTO, defaultLabel);
+        } else if (useTableSwitch(keys)) {
+            final int low = keys.getFirst();
+            final Label[] table = new Label[keys.getLast() - low + 1];
+            Arrays.fill(table, defaultLabel);
+            for (int i = 0; i < keys.size(); i++) {
+                table[keys.get(i) - low] = labels.get(i);
+            }
+            code.tableSwitch(low, table, defaultLabel);
+        } else {
+            code.lookupSwitch(keys.stream().mapToInt(Integer::intValue).toArray(),
+                    labels.toArray(new Label[0]), defaultLabel);
+        }
+    }
+
+    private Label targetLabel(CodeBuilder code, int next, Map<Integer, Label> arrive, Map<Integer, Label> calls,
+                              Label done) {
+        if (next == ScannerDFA.DEAD_STATE) {
+            return done;
+        }
+        final Label local = arrive.get(next);
+        return local != null ? local : calls.computeIfAbsent(next, k -> code.newLabel());
+    }
+
+    private int mostFrequentTarget(int state) {
+        final Map<Integer, Integer> counts = new HashMap<>();
+        int best = ScannerDFA.DEAD_STATE;
+        int bestCount = 0;
+        for (int c = 0; c < classCount; c++) {
+            final int next = target(state, c);
+            final int count = counts.merge(next, 1, Integer::sum);
+            if (count > bestCount) {
+                best = next;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private static boolean useTableSwitch(List<Integer> keys) {
+        final int range = keys.getLast() - keys.getFirst() + 1;
+        return 12 + 4 * range <= 8 + 8 * keys.size();
+    }
+
+    private int switchSize(int state) {
+        final int defaultTarget = mostFrequentTarget(state);
+        final List<Integer> keys = new ArrayList<>();
+        for (int c = 0; c < classCount; c++) {
+            if (target(state, c) != defaultTarget) {
+                keys.add(c);
+            }
+        }
+        if (keys.isEmpty()) {
+            return 4;
+        }
+        final int range = keys.getLast() - keys.getFirst() + 1;
+        return 4 + Math.min(12 + 4 * range, 8 + 8 * keys.size());
+    }
+}
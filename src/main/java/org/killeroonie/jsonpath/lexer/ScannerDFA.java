@@ -0,0 +1,209 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.TokenKind;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, table-driven deterministic finite automaton that recognizes one token at a time.
+ * <p>
+ * Instances are produced by {@link DFACompiler} from a Lexer's rules map. The input alphabet is reduced to a small
+ * number of character classes: code points below 128 are classified with a direct lookup table, and all other code
+ * points by a binary search over the class boundaries. Each state has one row in the transition table, indexed by
+ * character class.
+ * <p>
+ * Every accepting state records the rule <em>group</em> that accepts there and the {@link TokenKind} to emit.
+ * Groups are numbered in priority order, lowest first. {@link #scan(String, int)} reproduces the behavior of
+ * {@link JJPLexer}: the highest priority group that matches at all wins, and within that group the longest match wins.
+ */
+public final class ScannerDFA implements TokenScanner {
+
+    /** Returned by {@link #scan(String, int)} when no group matches at the scan position. */
+    public static final long NO_MATCH = -1L;
+
+    /** Marks a state that does not accept, or a state with no live transitions. */
+    static final int NO_GROUP = Integer.MAX_VALUE;
+
+    static final int DEAD_STATE = 0;
+    static final int START_STATE = 1;
+
+    private final int classCount;
+    private final int[] asciiClasses;      // class id for code points 0..127
+    private final int[] rangeStarts;       // sorted first code point of each range >= 128
+    private final int[] rangeClasses;      // class id for each range in rangeStarts
+    private final int[] transitions;       // [state * classCount + class] -> next state
+    private final int[] acceptGroups;      // accepting group per state, or NO_GROUP
+    private final TokenKind[] acceptKinds; // emitted TokenKind per accepting state
+    private final int[] minLiveGroups;     // lowest group that can still accept from this state, or NO_GROUP
+    private final boolean[] stringIntroducers; // chars (< 128) that start a string literal rule
+    private final int stringGroupMask;     // bit set of the groups that scan string literals
+
+    ScannerDFA(int classCount,
+               int[] asciiClasses,
+               int[] rangeStarts,
+               int[] rangeClasses,
+               int[] transitions,
+               int[] acceptGroups,
+               TokenKind[] acceptKinds,
+               int[] minLiveGroups,
+               boolean[] stringIntroducers,
+               int stringGroupMask) {
+        this.classCount = classCount;
+        this.asciiClasses = asciiClasses;
+        this.rangeStarts = rangeStarts;
+        this.rangeClasses = rangeClasses;
+        this.transitions = transitions;
+        this.acceptGroups = acceptGroups;
+        this.acceptKinds = acceptKinds;
+        this.minLiveGroups = minLiveGroups;
+        this.stringIntroducers = stringIntroducers;
+        this.stringGroupMask = stringGroupMask;
+    }
+
+    /**
+     * Scans a single token starting at {@code start}. No objects are allocated.
+     *
+     * @param text  the JSONPath query text.
+     * @param start the index of the first character of the token.
+     * @return {@link #NO_MATCH}, or the accepting state in the high 32 bits and the exclusive end index of the
+     * token in the low 32 bits. Use {@link #state(long)}, {@link #end(long)} and {@link #kind(int)} to unpack it.
+     */
+    @Override
+    public long scan(final String text, final int start) {
+        final int length = text.length();
+        int state = START_STATE;
+        int bestGroup = NO_GROUP;
+        int bestState = -1;
+        int bestEnd = -1;
+        int i = start;
+        while (i < length) {
+            int codePoint = text.charAt(i);
+            int width = 1;
+            if (Character.isHighSurrogate((char) codePoint) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                // java.util.regex matches by code point, so we do too.
+                codePoint = Character.toCodePoint((char) codePoint, text.charAt(i + 1));
+                width = 2;
+            }
+            state = transitions[state * classCount + classOf(codePoint)];
+            if (state == DEAD_STATE) {
+                break;
+            }
+            i += width;
+            final int group = acceptGroups[state];
+            if (group != NO_GROUP && group <= bestGroup) {
+                bestGroup = group;
+                bestState = state;
+                bestEnd = i;
+            }
+            if (minLiveGroups[state] > bestGroup) {
+                // nothing of equal or higher priority can match a longer token
+                break;
+            }
+        }
+        return bestState < 0 ? NO_MATCH : ((long) bestState << 32) | bestEnd;
+    }
+
+    /**
+     * @param scanResult a value returned by {@link #scan(String, int)}, other than {@link #NO_MATCH}.
+     * @return the accepting state.
+     */
+    public static int state(long scanResult) {
+        return (int) (scanResult >>> 32);
+    }
+
+    /**
+     * @param scanResult a value returned by {@link #scan(String, int)}, other than {@link #NO_MATCH}.
+     * @return the exclusive end index of the scanned token.
+     */
+    public static int end(long scanResult) {
+        return (int) scanResult;
+    }
+
+    /**
+     * @param state an accepting state returned by {@link #state(long)}.
+     * @return the TokenKind to emit for the token.
+     */
+    public TokenKind kind(int state) {
+        return acceptKinds[state];
+    }
+
+    /**
+     * @param state an accepting state returned by {@link #state(long)}.
+     * @return true if the token was recognized by a string literal rule.
+     */
+    public boolean isStringLiteral(int state) {
+        final int group = acceptGroups[state];
+        return group < Integer.SIZE && (stringGroupMask & (1 << group)) != 0;
+    }
+
+    /**
+     * @param ch a character from the input text.
+     * @return true if a string literal rule must match when a token starts with {@code ch}.
+     */
+    public boolean isStringIntroducer(char ch) {
+        return ch < stringIntroducers.length && stringIntroducers[ch];
+    }
+
+    /**
+     * @return the number of states, including the dead state.
+     */
+    public int stateCount() {
+        return acceptGroups.length;
+    }
+
+    /**
+     * @return the number of character classes in the reduced input alphabet.
+     */
+    public int classCount() {
+        return classCount;
+    }
+
+    /**
+     * Classifies the character, or surrogate pair, at index {@code i} as {@link #scan(String, int)} does.
+     *
+     * @return the number of chars read in the high 16 bits, and the character class in the low 16 bits.
+     */
+    int classAt(String text, int i) {
+        final char c = text.charAt(i);
+        if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+            return (2 << 16) | classOf(Character.toCodePoint(c, text.charAt(i + 1)));
+        }
+        return (1 << 16) | classOf(c);
+    }
+
+    /**
+     * @return the class ids of the code points below 128. The array must not be modified.
+     */
+    int[] asciiClasses() {
+        return asciiClasses;
+    }
+
+    int classOf(int codePoint) {
+        if (codePoint < 128) {
+            return asciiClasses[codePoint];
+        }
+        int index = Arrays.binarySearch(rangeStarts, codePoint);
+        if (index < 0) {
+            index = -index - 2; // the range that starts before codePoint
+        }
+        return rangeClasses[index];
+    }
+
+    int transition(int state, int characterClass) {
+        return transitions[state * classCount + characterClass];
+    }
+
+    int acceptGroup(int state) {
+        return acceptGroups[state];
+    }
+
+    int minLiveGroup(int state) {
+        return minLiveGroups[state];
+    }
+
+    @Override
+    public String toString() {
+        return "ScannerDFA[states=%d, classes=%d]".formatted(stateCount(), classCount);
+    }
+}
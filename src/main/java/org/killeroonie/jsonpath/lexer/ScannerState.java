@@ -4,33 +4,89 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenBuffer;
 import org.killeroonie.jsonpath.TokenKind;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public final class ScannerState {
 
+    private static final int INITIAL_MATCHERS = 8;
+
     private final String jsonPathText;
     private int positionIndex;
-    private final List<Token> tokenList;
+    private final TokenBuffer tokenBuffer;
+    // Matchers reused for every token of the scan, paired with their Patterns
+    private Pattern[] matcherPatterns;
+    private Matcher[] matchers;
+    private int matcherCount;
+    // the text as a char array, for vector scanning
+    private char[] chars;
 
     ScannerState(String jsonPathText) {
         this.jsonPathText = jsonPathText;
         this.positionIndex = 0;
-        this.tokenList = new ArrayList<>();
+        this.tokenBuffer = new TokenBuffer(jsonPathText);
     }
 
     String getJsonPathText() {
         return jsonPathText;
     }
 
+    /**
+     * @return the input text as a char array. The array is created on the first call, and must not be modified.
+     */
+    char[] getChars() {
+        if (chars == null) {
+            chars = jsonPathText.toCharArray();
+        }
+        return chars;
+    }
+
     int getPositionIndex() {
         return positionIndex;
     }
 
-    List<Token> getTokenList() {
-        return tokenList;
+    TokenBuffer getTokenBuffer() {
+        return tokenBuffer;
+    }
+
+    /**
+     * Returns a Matcher for the argument Pattern over the input text. The Matcher is created on the first call for
+     * each Pattern, and reused for every token of this scan.
+     *
+     * @param pattern the Pattern to match.
+     * @return the Matcher for the Pattern in this scan.
+     */
+    Matcher getMatcher(Pattern pattern) {
+        for (int i = 0; i < matcherCount; i++) {
+            if (matcherPatterns[i] == pattern) {
+                return matchers[i];
+            }
+        }
+        if (matchers == null) {
+            matcherPatterns = new Pattern[INITIAL_MATCHERS];
+            matchers = new Matcher[INITIAL_MATCHERS];
+        } else if (matcherCount == matchers.length) {
+            matcherPatterns = Arrays.copyOf(matcherPatterns, matcherCount * 2);
+            matchers = Arrays.copyOf(matchers, matcherCount * 2);
+        }
+        final Matcher matcher = pattern.matcher(jsonPathText);
+        matcherPatterns[matcherCount] = pattern;
+        matchers[matcherCount++] = matcher;
+        return matcher;
+    }
+
+    /**
+     * Returns the Matcher for the argument rule, with its region set from the current position to the end of the input.
+     *
+     * @param rule the rule to match.
+     * @return the Matcher for the rule's Pattern in this scan.
+     */
+    Matcher getRegionMatcher(RulesBuilder.RegexRule rule) {
+        return getMatcher(rule.pattern()).region(positionIndex, jsonPathText.length());
     }
 
     /**
@@ -100,19 +156,25 @@ public final class ScannerState {
     }
 
     /**
-     * Create and add the new {@link Token} to the list of getTokenList and advance the scanner getPositionIndex by
-     * the length of the Token value.
+     * Add a new token to the token buffer and advance the scanner getPositionIndex by the length of the Token value.
      *
      * @param kind  the {@link TokenKind} of the new Token.
      * @param value the scanned text the Token represents.
-     * @return the newly created Token.
      */
-    @NotNull
-    Token advanceToken(TokenKind kind, String value) {
-        final Token newToken = makeToken(kind, value);
-        tokenList.add(newToken);
-        advance(value.length());
-        return newToken;
+    void advanceToken(TokenKind kind, String value) {
+        advanceToken(kind, value.length());
+    }
+
+    /**
+     * Add a new token, whose value starts at the current getPositionIndex, to the token buffer and advance the scanner
+     * getPositionIndex by the length of the Token value. No String is created for the value.
+     *
+     * @param kind   the {@link TokenKind} of the new Token.
+     * @param length the length of the scanned text the Token represents.
+     */
+    void advanceToken(TokenKind kind, int length) {
+        tokenBuffer.add(kind, positionIndex, positionIndex + length);
+        advance(length);
     }
 
     @Contract("_, _ -> new")
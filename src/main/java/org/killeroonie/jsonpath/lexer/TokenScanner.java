@@ -0,0 +1,18 @@
+package org.killeroonie.jsonpath.lexer;
+
+/**
+ * Recognizes one token at a time, as {@link ScannerDFA#scan(String, int)} does. Implemented by {@link ScannerDFA}
+ * itself, which interprets its transition tables, and by the classes {@link GeneratedLexer} generates from them.
+ */
+public interface TokenScanner {
+
+    /**
+     * Scans a single token starting at {@code start}.
+     *
+     * @param text  the JSONPath query text.
+     * @param start the index of the first character of the token.
+     * @return {@link ScannerDFA#NO_MATCH}, or the accepting state in the high 32 bits and the exclusive end index of
+     * the token in the low 32 bits.
+     */
+    long scan(String text, int start);
+}
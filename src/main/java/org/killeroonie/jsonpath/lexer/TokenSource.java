@@ -0,0 +1,30 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.killeroonie.jsonpath.TokenBuffer;
+
+/**
+ * An incremental scan of a single JSONPath string, as returned by {@link Lexer#tokenSource(String)}.
+ * <p>
+ * Tokens are appended to {@link #buffer()} only when {@link #scanMore()} is called, so a consumer such as
+ * {@link org.killeroonie.jsonpath.parser.TokenStream} pulls tokens from the scanner as it needs them. A syntax error
+ * is thrown by the call to {@code scanMore()} that reaches it, and the rest of the path is never scanned.
+ * <p>
+ * A TokenSource belongs to a single consumer and is not safe to share between threads.
+ */
+public interface TokenSource {
+
+    /**
+     * @return the buffer the scanned tokens are appended to. The consumer may discard tokens it has finished with
+     * from the front of the buffer with {@link TokenBuffer#discard(int)}.
+     */
+    TokenBuffer buffer();
+
+    /**
+     * Scans until at least one token has been appended to the buffer. After the last token of the path has been
+     * scanned, the next call appends the EOF token.
+     *
+     * @return true if tokens were appended, or false if the EOF token has already been appended.
+     * @throws org.killeroonie.jsonpath.exception.JSONPathSyntaxException if the next token is illegal.
+     */
+    boolean scanMore();
+}
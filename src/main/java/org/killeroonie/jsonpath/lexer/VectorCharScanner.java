@@ -0,0 +1,74 @@
+package org.killeroonie.jsonpath.lexer;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link CharScanner} that compares the chars of the text a vector at a time, with the incubating Vector API.
+ * <p>
+ * This class must only be loaded when the {@code jdk.incubator.vector} module is present. Runs shorter than a few
+ * vectors are scanned by the scalar code, as are the chars left over after the last full vector.
+ */
+final class VectorCharScanner extends CharScanner {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    // shorter runs are faster to scan one char at a time than to copy the text for
+    private static final int MIN_VECTOR_SCAN = 2 * SPECIES.length();
+
+    VectorCharScanner() {
+    }
+
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    int skipBlanks(ScannerState scanner, int from) {
+        final int length = scanner.getJsonPathText().length();
+        if (length - from < MIN_VECTOR_SCAN) {
+            return super.skipBlanks(scanner, from);
+        }
+        final char[] chars = scanner.getChars();
+        final int bound = from + SPECIES.loopBound(length - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            final ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            final VectorMask<Short> blanks = v.eq((short) ' ')
+                    .or(v.eq((short) '\t'))
+                    .or(v.eq((short) '\n'))
+                    .or(v.eq((short) '\u000B'))
+                    .or(v.eq((short) '\f'))
+                    .or(v.eq((short) '\r'));
+            if (!blanks.allTrue()) {
+                return i + blanks.not().firstTrue();
+            }
+        }
+        return super.skipBlanks(scanner, i);
+    }
+
+    @Override
+    int indexOfQuoteOrLineEnd(ScannerState scanner, int from, char quote) {
+        final int length = scanner.getJsonPathText().length();
+        if (length - from < MIN_VECTOR_SCAN) {
+            return super.indexOfQuoteOrLineEnd(scanner, from, quote);
+        }
+        final char[] chars = scanner.getChars();
+        final int bound = from + SPECIES.loopBound(length - from);
+        int i = from;
+        for (; i < bound; i += SPECIES.length()) {
+            final ShortVector v = ShortVector.fromCharArray(SPECIES, chars, i);
+            final VectorMask<Short> found = v.eq((short) quote)
+                    .or(v.eq((short) '\n'))
+                    .or(v.eq((short) '\r'))
+                    .or(v.eq((short) '\u0085'))
+                    .or(v.eq((short) '\u2028'))
+                    .or(v.eq((short) '\u2029'));
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        return super.indexOfQuoteOrLineEnd(scanner, i, quote);
+    }
+}
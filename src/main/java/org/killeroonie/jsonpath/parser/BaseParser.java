@@ -1,6 +1,9 @@
 package org.killeroonie.jsonpath.parser;
 
 import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JsonPathUtils;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
 
 public abstract  class BaseParser implements Parser {
 
@@ -13,4 +16,134 @@ public abstract  class BaseParser implements Parser {
     public JSONPathEnvironment getEnv() {
         return env;
     }
+
+    /**
+     * Decodes the value of a string literal token, as specified by RFC 9535 section 2.3.1.1. The value must not
+     * include the quotes.
+     * <p>
+     * If the environment doesn't decode unicode escapes, the value is returned as is.
+     *
+     * @param value the characters between the quotes.
+     * @param quote the quote character of the literal, either {@code '} or {@code "}.
+     * @param token the token of the literal, for error messages.
+     * @return the decoded string.
+     * @throws JSONPathSyntaxException if the literal contains an invalid escape sequence or an unescaped control
+     * character.
+     */
+    protected String decodeStringLiteral(CharSequence value, char quote, Token token) {
+        if (!env.isUnicodeEscape()) {
+            return value.toString();
+        }
+        StringBuilder sb = null; // only created when the literal contains an escape
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x20) {
+                throw new JSONPathSyntaxException(
+                        "invalid character U+%04X in string literal".formatted((int) c), token);
+            }
+            if (c != '\\') {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(value.length()).append(value, 0, i);
+            }
+            if (++i == value.length()) {
+                throw new JSONPathSyntaxException("invalid escape sequence at end of string literal", token);
+            }
+            final char escaped = value.charAt(i);
+            switch (escaped) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case '/' -> sb.append('/');
+                case '\\' -> sb.append('\\');
+                case 'u' -> {
+                    final char high = hexChar(value, i + 1, token);
+                    i += 4;
+                    if (Character.isLowSurrogate(high)) {
+                        throw new JSONPathSyntaxException("unexpected low surrogate in string literal", token);
+                    }
+                    sb.append(high);
+                    if (Character.isHighSurrogate(high)) {
+                        if (i + 2 >= value.length() || value.charAt(i + 1) != '\\' || value.charAt(i + 2) != 'u') {
+                            throw new JSONPathSyntaxException("unpaired high surrogate in string literal", token);
+                        }
+                        final char low = hexChar(value, i + 3, token);
+                        if (!Character.isLowSurrogate(low)) {
+                            throw new JSONPathSyntaxException("unpaired high surrogate in string literal", token);
+                        }
+                        sb.append(low);
+                        i += 6;
+                    }
+                }
+                default -> {
+                    if (escaped != quote) {
+                        throw new JSONPathSyntaxException(
+                                "invalid escape sequence '\\%c' in string literal".formatted(escaped), token);
+                    }
+                    sb.append(escaped);
+                }
+            }
+        }
+        return sb == null ? value.toString() : sb.toString();
+    }
+
+    private static char hexChar(CharSequence value, int start, Token token) {
+        if (start + 4 > value.length()) {
+            throw new JSONPathSyntaxException("incomplete unicode escape sequence in string literal", token);
+        }
+        int codeUnit = 0;
+        for (int i = start; i < start + 4; i++) {
+            final int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                throw new JSONPathSyntaxException("invalid unicode escape sequence in string literal", token);
+            }
+            codeUnit = (codeUnit << 4) | digit;
+        }
+        return (char) codeUnit;
+    }
+
+    /**
+     * Parses an integer used as an index or slice argument. RFC 9535 doesn't allow leading zeros or {@code -0}, and
+     * limits integers to the range of I-JSON, from -(2<sup>53</sup>)+1 to (2<sup>53</sup>)-1.
+     *
+     * @param value the text of the integer.
+     * @param token the token of the integer, for error messages.
+     * @return the integer.
+     * @throws JSONPathSyntaxException if the text isn't a valid integer, or is out of range.
+     */
+    protected long parseIndex(CharSequence value, Token token) {
+        final int length = value.length();
+        final int digitsStart = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+        if (digitsStart == length) {
+            throw new JSONPathSyntaxException("expected an integer, found '%s'".formatted(value), token);
+        }
+        if (value.charAt(digitsStart) == '0' && (length - digitsStart > 1 || digitsStart == 1)) {
+            throw new JSONPathSyntaxException("leading zero in integer '%s'".formatted(value), token);
+        }
+        // I-JSON integers have at most 16 digits, so anything longer is out of range
+        long result = 0;
+        for (int i = digitsStart; i < length; i++) {
+            final int digit = Character.digit(value.charAt(i), 10);
+            if (digit < 0) {
+                throw new JSONPathSyntaxException("expected an integer, found '%s'".formatted(value), token);
+            }
+            if (i - digitsStart >= 16) {
+                throw new JSONPathSyntaxException("integer '%s' is out of range".formatted(value), token);
+            }
+            result = result * 10 + digit;
+        }
+        if (digitsStart == 1) {
+            result = -result;
+        }
+        if (result > JsonPathUtils.JSON_MAX_INT_INDEX || result < JsonPathUtils.JSON_MIN_INT_INDEX) {
+            throw new JSONPathSyntaxException("integer '%s' is out of range".formatted(value), token);
+        }
+        return result;
+    }
 }
@@ -2,12 +2,66 @@ package org.killeroonie.jsonpath.parser;
 
 import org.killeroonie.jsonpath.JSONPathEnvironment;
 import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenKind;
+import org.killeroonie.jsonpath.exception.JSONPathNameException;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.exception.JSONPathTypeException;
+import org.killeroonie.jsonpath.parser.filter.Comparison;
+import org.killeroonie.jsonpath.parser.filter.ComparisonOperator;
+import org.killeroonie.jsonpath.parser.filter.CurrentKey;
+import org.killeroonie.jsonpath.parser.filter.ExpressionType;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+import org.killeroonie.jsonpath.parser.filter.FilterOptimizer;
+import org.killeroonie.jsonpath.parser.filter.FilterQuery;
+import org.killeroonie.jsonpath.parser.filter.FunctionCall;
+import org.killeroonie.jsonpath.parser.filter.ListLiteral;
+import org.killeroonie.jsonpath.parser.filter.Literal;
+import org.killeroonie.jsonpath.parser.filter.Logical;
+import org.killeroonie.jsonpath.parser.filter.LogicalOperator;
+import org.killeroonie.jsonpath.parser.filter.Not;
+import org.killeroonie.jsonpath.parser.filter.RegexLiteral;
+import org.killeroonie.jsonpath.parser.segment.JSONPathChildSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
 import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.KeysSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+/**
+ * A recursive descent parser for the tokens of the {@link org.killeroonie.jsonpath.lexer.PJPLexer}.
+ * <p>
+ * The parser reads each token once, by kind, without backtracking. Parsers are stateless and can be shared between
+ * threads: the state of a parse is held in the TokenStream and a {@link SelectorStack} created for each call.
+ * <p>
+ * Filter expressions are parsed by a Pratt parser, in which each operator has a binding power, its precedence. Rather
+ * than recursing for each operand, it keeps operands and pending operators on explicit stacks in an
+ * {@link ExpressionStack}, so deeply nested parentheses can't overflow the call stack.
+ */
 public class PJPParser extends BaseParser {
 
+    protected static final int PRECEDENCE_LOWEST = 1;
+    protected static final int PRECEDENCE_LOGICAL_OR = 3;
+    protected static final int PRECEDENCE_LOGICAL_AND = 4;
+    protected static final int PRECEDENCE_RELATIONAL = 5;
+    protected static final int PRECEDENCE_MEMBERSHIP = 6;
+    protected static final int PRECEDENCE_PREFIX = 7;
+
+    private static final Pattern NUMBER = Pattern.compile("-?(?:0|[1-9][0-9]*)(?:\\.[0-9]+)?(?:[eE][-+]?[0-9]+)?");
+
     // we may need an environment parameter here
     public PJPParser(JSONPathEnvironment env) {
         super(env);
@@ -15,11 +69,715 @@ public class PJPParser extends BaseParser {
 
     /**
      * Parses a JSONPath from a stream of tokens.
-     * @param tokens the List of Tokens
+     * @param stream the TokenStream
      * @return the List of JSONPathSegment
      */
     @Override
-    public List<JSONPathSegment> parse(List<Token> tokens) {
-        return List.of();
+    public List<JSONPathSegment> parse(TokenStream stream) {
+        final TokenKind first = stream.currentKind();
+        if (first == TokenKind.ROOT || first == TokenKind.PSEUDO_ROOT) {
+            stream.advance();
+        }
+        final List<JSONPathSegment> segments = parsePath(stream, new SelectorStack());
+        switch (stream.currentKind()) {
+            case EOF, UNION, INTERSECTION -> {}
+            default -> throw new JSONPathSyntaxException(
+                    "unexpected token '%s'".formatted(stream.currentValue()), stream.current());
+        }
+        return segments;
+    }
+
+    /**
+     * Parses segments until the current token can't start a segment.
+     */
+    protected List<JSONPathSegment> parsePath(TokenStream stream, SelectorStack selectors) {
+        final List<JSONPathSegment> segments = new ArrayList<>();
+        while (true) {
+            switch (stream.currentKind()) {
+                case PROPERTY, BARE_PROPERTY, WILD, KEY_SELECTOR -> {
+                    final Token token = stream.current();
+                    segments.add(new JSONPathChildSegment(getEnv(), token, single(shorthandSelector(stream, token))));
+                }
+                case LIST_START -> {
+                    final Token token = stream.current();
+                    segments.add(new JSONPathChildSegment(getEnv(), token, parseBracketedSelection(stream, selectors)));
+                }
+                case DDOT -> {
+                    final Token token = stream.current();
+                    final JSONPathSelector[] descendantSelectors = switch (stream.advance()) {
+                        case PROPERTY, BARE_PROPERTY, WILD, KEY_SELECTOR ->
+                                single(shorthandSelector(stream, stream.current()));
+                        case LIST_START -> parseBracketedSelection(stream, selectors);
+                        default -> throw new JSONPathSyntaxException(
+                                "bald descendant segment, expected a selector after '..'", token);
+                    };
+                    segments.add(new JSONPathRecursiveDescentSegment(getEnv(), token, descendantSelectors));
+                }
+                default -> {
+                    return segments;
+                }
+            }
+            stream.advance();
+        }
+    }
+
+    private static JSONPathSelector[] single(JSONPathSelector selector) {
+        return new JSONPathSelector[]{selector};
+    }
+
+    /**
+     * @return the selector for a name, wildcard or keys selector written without brackets, e.g. {@code .name}.
+     */
+    private JSONPathSelector shorthandSelector(TokenStream stream, Token token) {
+        return switch (token.kind()) {
+            case PROPERTY, BARE_PROPERTY -> new NameSelector(token, stream.currentValue().toString(), true);
+            case WILD -> new WildcardSelector(token);
+            case KEY_SELECTOR -> new KeysSelector(token);
+            default -> throw new IllegalStateException("not a shorthand selector: " + token.kind());
+        };
+    }
+
+    /**
+     * Parses the selectors between {@code [} and {@code ]}. The stream is left at the closing bracket.
+     */
+    protected JSONPathSelector[] parseBracketedSelection(TokenStream stream, SelectorStack selectors) {
+        final Token start = stream.current();
+        if (stream.advance() == TokenKind.RBRACKET) {
+            throw new JSONPathSyntaxException("empty bracketed segment", start);
+        }
+        final int mark = selectors.mark();
+        while (true) {
+            selectors.push(parseSelector(stream, selectors));
+            switch (stream.advance()) {
+                case RBRACKET -> {
+                    return selectors.pop(mark);
+                }
+                case COMMA -> {
+                    if (stream.advance() == TokenKind.RBRACKET) {
+                        throw new JSONPathSyntaxException("unexpected trailing comma", stream.current());
+                    }
+                }
+                case EOF -> throw new JSONPathSyntaxException("unclosed bracketed selection", start);
+                default -> throw new JSONPathSyntaxException(
+                        "expected a comma or a closing bracket, found '%s'".formatted(stream.currentValue()),
+                        stream.current());
+            }
+        }
+    }
+
+    /**
+     * Parses one selector of a bracketed selection. The stream is left at the last token of the selector.
+     */
+    protected JSONPathSelector parseSelector(TokenStream stream, SelectorStack selectors) {
+        final Token token = stream.current();
+        return switch (token.kind()) {
+            case INT -> new IndexSelector(token, parseIndex(stream.currentValue(), token));
+            case SLICE_START -> parseSlice(stream, token);
+            case DOUBLE_QUOTE_STRING -> new NameSelector(token,
+                    decodeStringLiteral(stream.currentValue(), '"', token), false);
+            case SINGLE_QUOTE_STRING -> new NameSelector(token,
+                    decodeStringLiteral(stream.currentValue(), '\'', token), false);
+            case WILD -> new WildcardSelector(token);
+            case KEY_SELECTOR -> new KeysSelector(token);
+            case FILTER -> parseFilter(stream, selectors);
+            case EOF -> throw new JSONPathSyntaxException("unexpected end of query, expected a selector", token);
+            default -> throw new JSONPathSyntaxException(
+                    "unexpected token '%s' in bracketed selection".formatted(stream.currentValue()), token);
+        };
+    }
+
+    /**
+     * Parses the {@code SLICE_START SLICE_STOP SLICE_STEP} tokens of a slice selector. Empty values are omitted
+     * arguments.
+     */
+    private JSONPathSelector parseSlice(TokenStream stream, Token token) {
+        final Long start = sliceArgument(stream);
+        stream.advance();
+        final Long stop = sliceArgument(stream);
+        stream.advance();
+        final Long step = sliceArgument(stream);
+        return new SliceSelector(token, start, stop, step);
+    }
+
+    private Long sliceArgument(TokenStream stream) {
+        final CharSequence value = stream.currentValue();
+        return value.isEmpty() ? null : parseIndex(value, stream.current());
+    }
+
+    /**
+     * Parses a filter selector, from the {@code ?} token. The stream is left at the last token of the expression.
+     */
+    protected JSONPathSelector parseFilter(TokenStream stream, SelectorStack selectors) {
+        final Token token = stream.current();
+        stream.advance();
+        final FilterExpression expression = parseFilterExpression(stream, selectors);
+        checkTest(expression, token);
+        stream.reset(stream.mark() - 1);
+        return new FilterSelector(token, optimizeFilter(expression));
+    }
+
+    /**
+     * Optimizes the expression of a filter selector with a {@link FilterOptimizer}. Subexpressions that only depend on
+     * the root and the filter context are hoisted if the environment caches filters.
+     */
+    protected FilterExpression optimizeFilter(FilterExpression expression) {
+        return new FilterOptimizer(getEnv().isCacheFilters()).optimize(expression);
+    }
+
+    /**
+     * Parses a filter expression. The stream is left at the first token after the expression.
+     * <p>
+     * The parser alternates between reading an operand, with any prefix operators and opening parentheses before it,
+     * and reading an infix operator. Before an infix operator is pushed, the pending operators that bind at least as
+     * tightly are applied to the operands on the stack. A closing parenthesis applies the operators back to its
+     * opening parenthesis, or function call.
+     */
+    protected FilterExpression parseFilterExpression(TokenStream stream, SelectorStack selectors) {
+        final ExpressionStack stack = new ExpressionStack();
+        boolean expectOperand = true;
+        while (true) {
+            final TokenKind kind = stream.currentKind();
+            if (expectOperand) {
+                switch (kind) {
+                    case NOT, NOT_EXT -> stack.pushOperator(kind, stream.current(), PRECEDENCE_PREFIX);
+                    case LPAREN -> stack.pushGroup(kind, stream.current(), null);
+                    case FUNCTION -> stack.pushGroup(kind, stream.current(), function(stream));
+                    case RPAREN -> {
+                        if (stack.topKind() != TokenKind.FUNCTION || stack.operandCount() != stack.topMark()) {
+                            throw new JSONPathSyntaxException("expected an expression, found ')'", stream.current());
+                        }
+                        reduceGroup(stack, stream.current()); // a call without arguments
+                        expectOperand = false;
+                    }
+                    default -> {
+                        stack.pushOperand(parsePrimary(stream, selectors));
+                        expectOperand = false;
+                        continue; // parsePrimary moves past the operand
+                    }
+                }
+                stream.advance();
+                continue;
+            }
+            final int precedence = infixPrecedence(kind);
+            if (precedence > 0) {
+                reduce(stack, precedence);
+                stack.pushOperator(kind, stream.current(), precedence);
+                expectOperand = true;
+            } else if (kind == TokenKind.RPAREN) {
+                reduceGroup(stack, stream.current());
+            } else if (kind == TokenKind.COMMA) {
+                reduce(stack, PRECEDENCE_LOWEST);
+                if (stack.topKind() == null) {
+                    return stack.popOperand(); // the comma separates the selectors of a bracketed selection
+                }
+                if (stack.topKind() != TokenKind.FUNCTION) {
+                    throw new JSONPathSyntaxException("unexpected ',' in parentheses", stream.current());
+                }
+                expectOperand = true;
+            } else {
+                reduce(stack, PRECEDENCE_LOWEST);
+                if (stack.topKind() == TokenKind.FUNCTION) {
+                    throw new JSONPathSyntaxException("unclosed function call", stack.topToken());
+                }
+                if (stack.topKind() == TokenKind.LPAREN) {
+                    throw new JSONPathSyntaxException("unbalanced parentheses", stack.topToken());
+                }
+                return stack.popOperand();
+            }
+            stream.advance();
+        }
+    }
+
+    /**
+     * @return the precedence of an infix operator, or 0 if {@code kind} isn't an infix operator.
+     */
+    protected int infixPrecedence(TokenKind kind) {
+        return switch (kind) {
+            case OR, OR_EXT -> PRECEDENCE_LOGICAL_OR;
+            case AND, AND_EXT -> PRECEDENCE_LOGICAL_AND;
+            case EQ, NE, LG, DIAMOND, LT, LE, GT, GE, RE -> PRECEDENCE_RELATIONAL;
+            case IN, CONTAINS -> PRECEDENCE_MEMBERSHIP;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Applies the pending operators with a precedence of at least {@code precedence}, stopping at an open group.
+     */
+    private void reduce(ExpressionStack stack, int precedence) {
+        while (stack.topPrecedence() >= precedence) {
+            final TokenKind kind = stack.topKind();
+            final Token token = stack.topToken();
+            stack.popOperator();
+            if (kind == TokenKind.NOT || kind == TokenKind.NOT_EXT) {
+                final FilterExpression operand = stack.popOperand();
+                checkTest(operand, token);
+                stack.pushOperand(new Not(operand));
+                continue;
+            }
+            switch (kind) {
+                case AND, AND_EXT -> logical(stack, LogicalOperator.AND, token);
+                case OR, OR_EXT -> logical(stack, LogicalOperator.OR, token);
+                default -> {
+                    final FilterExpression right = stack.popOperand();
+                    final FilterExpression left = stack.popOperand();
+                    stack.pushOperand(comparison(comparisonOperator(kind), left, right, token));
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the innermost group at a {@code )}: a parenthesized expression, which leaves its operand on the stack,
+     * or a function call, which replaces its arguments with the call.
+     */
+    private void reduceGroup(ExpressionStack stack, Token token) {
+        reduce(stack, PRECEDENCE_LOWEST);
+        final TokenKind kind = stack.topKind();
+        if (kind == null) {
+            throw new JSONPathSyntaxException("unbalanced parentheses", token);
+        }
+        final Token start = stack.topToken();
+        final FilterFunction function = stack.topFunction();
+        final int mark = stack.topMark();
+        stack.popOperator();
+        if (kind == TokenKind.FUNCTION) {
+            stack.pushOperand(call(start, function, stack.popOperands(mark)));
+        }
+    }
+
+    private FilterFunction function(TokenStream stream) {
+        final String name = stream.currentValue().toString();
+        final FilterFunction function = getEnv().getFunctionExtensions().get(name);
+        if (function == null) {
+            throw new JSONPathNameException("function '%s' is not defined".formatted(name), stream.current());
+        }
+        return function;
+    }
+
+    private static ComparisonOperator comparisonOperator(TokenKind kind) {
+        return switch (kind) {
+            case EQ -> ComparisonOperator.EQ;
+            case NE, LG, DIAMOND -> ComparisonOperator.NE;
+            case LT -> ComparisonOperator.LT;
+            case LE -> ComparisonOperator.LE;
+            case GT -> ComparisonOperator.GT;
+            case GE -> ComparisonOperator.GE;
+            case RE -> ComparisonOperator.RE;
+            case IN -> ComparisonOperator.IN;
+            case CONTAINS -> ComparisonOperator.CONTAINS;
+            default -> throw new IllegalStateException("not a comparison operator: " + kind);
+        };
+    }
+
+    /**
+     * Combines the two top operands into a chain of {@code operator}, merging the chains of either that is already a
+     * chain of the same operator. A chain of {@code &&} or {@code ||} becomes a single {@link Logical} node.
+     */
+    private void logical(ExpressionStack stack, LogicalOperator operator, Token token) {
+        final ExpressionStack.Chain right = chain(stack, operator, token);
+        final ExpressionStack.Chain left = chain(stack, operator, token);
+        stack.pushChain(left.append(right));
+    }
+
+    private ExpressionStack.Chain chain(ExpressionStack stack, LogicalOperator operator, Token token) {
+        if (stack.isChain(operator)) {
+            return stack.popChain();
+        }
+        final FilterExpression operand = stack.popOperand();
+        checkTest(operand, token);
+        return new ExpressionStack.Chain(operator, operand);
+    }
+
+    private FilterExpression comparison(ComparisonOperator operator, FilterExpression left, FilterExpression right,
+                                        Token token) {
+        if (getEnv().isWellTyped()) {
+            checkComparable(left, operator, false, token);
+            checkComparable(right, operator, true, token);
+        }
+        return new Comparison(operator, left, right);
+    }
+
+    private FilterExpression call(Token token, FilterFunction function, List<FilterExpression> arguments) {
+        final String name = token.value();
+        final List<ExpressionType> parameterTypes = function.parameterTypes();
+        if (arguments.size() != parameterTypes.size()) {
+            throw new JSONPathTypeException("%s() requires %d argument%s, found %d".formatted(name,
+                    parameterTypes.size(), parameterTypes.size() == 1 ? "" : "s", arguments.size()), token);
+        }
+        if (getEnv().isWellTyped()) {
+            for (int i = 0; i < arguments.size(); i++) {
+                checkArgument(name, parameterTypes.get(i), arguments.get(i), token);
+            }
+        }
+        return new FunctionCall(name, function, arguments);
+    }
+
+    /**
+     * Checks that an expression can be used as a test, by a filter selector or a logical operator: a query, or an
+     * expression of type LOGICAL or NODES. Only checked by well-typed environments.
+     */
+    protected void checkTest(FilterExpression expression, Token token) {
+        if (!getEnv().isWellTyped() || expression.type() != ExpressionType.VALUE) {
+            return;
+        }
+        if (expression instanceof FunctionCall call) {
+            throw new JSONPathTypeException("result of %s() must be compared".formatted(call.name()), token);
+        }
+        throw new JSONPathTypeException("%s is not a test expression".formatted(expression), token);
+    }
+
+    /**
+     * Checks that an expression can be an operand of a comparison: a literal, a singular query, or a function of type
+     * VALUE. A list literal is only allowed with {@code in} and {@code contains}, and a regular expression only on the
+     * right of {@code =~}.
+     */
+    private static void checkComparable(FilterExpression expression, ComparisonOperator operator, boolean right,
+                                        Token token) {
+        final boolean regexOperand = operator == ComparisonOperator.RE && right;
+        final String problem = switch (expression) {
+            case FilterQuery query -> query.isSingular() ? null : "non-singular query %s is not comparable";
+            case FunctionCall call -> call.type() == ExpressionType.VALUE ? null : "result of %s is not comparable";
+            case ListLiteral list -> operator.isMembership() ? null : "list literal %s is not comparable";
+            case RegexLiteral regex -> regexOperand ? null : "regular expression %s is not comparable";
+            default -> expression.type() == ExpressionType.VALUE ? null : "%s is not comparable";
+        };
+        if (problem == null && regexOperand && !(expression instanceof RegexLiteral)) {
+            throw new JSONPathTypeException("%s is not a regular expression".formatted(expression), token);
+        }
+        if (problem != null) {
+            throw new JSONPathTypeException(problem.formatted(expression), token);
+        }
+    }
+
+    private static void checkArgument(String name, ExpressionType parameterType, FilterExpression argument,
+                                      Token token) {
+        final boolean valid = switch (parameterType) {
+            case VALUE -> switch (argument) {
+                case FilterQuery query -> query.isSingular();
+                case ListLiteral list -> false;
+                case RegexLiteral regex -> false;
+                default -> argument.type() == ExpressionType.VALUE;
+            };
+            case LOGICAL -> argument.type() != ExpressionType.VALUE;
+            case NODES -> argument.type() == ExpressionType.NODES;
+        };
+        if (!valid) {
+            throw new JSONPathTypeException("%s() requires an argument of type %s, found %s"
+                    .formatted(name, parameterType, argument), token);
+        }
+    }
+
+    /**
+     * Parses an operand: a literal or a query. The stream is left at the first token after the operand.
+     */
+    protected FilterExpression parsePrimary(TokenStream stream, SelectorStack selectors) {
+        final Token token = stream.current();
+        final FilterQuery.Anchor anchor = switch (token.kind()) {
+            case SELF -> FilterQuery.Anchor.SELF;
+            case ROOT -> FilterQuery.Anchor.ROOT;
+            case FILTER_CONTEXT -> FilterQuery.Anchor.FILTER_CONTEXT;
+            default -> null;
+        };
+        if (anchor != null) {
+            stream.advance();
+            return new FilterQuery(anchor, parsePath(stream, selectors));
+        }
+        final FilterExpression primary = switch (token.kind()) {
+            case LIST_START -> parseListLiteral(stream);
+            case RE_PATTERN -> parseRegex(stream);
+            case KEY -> new CurrentKey();
+            case EOF -> throw new JSONPathSyntaxException("unexpected end of query, expected a filter expression", token);
+            default -> literal(stream, token);
+        };
+        stream.advance();
+        return primary;
+    }
+
+    private Literal literal(TokenStream stream, Token token) {
+        return switch (token.kind()) {
+            case INT, FLOAT -> number(stream.currentValue(), token);
+            case DOUBLE_QUOTE_STRING -> new Literal(decodeStringLiteral(stream.currentValue(), '"', token));
+            case SINGLE_QUOTE_STRING -> new Literal(decodeStringLiteral(stream.currentValue(), '\'', token));
+            case TRUE, TRUE_EXT -> Literal.TRUE;
+            case FALSE, FALSE_EXT -> Literal.FALSE;
+            case NULL, NULL_EXT, NIL, NONE -> Literal.NULL;
+            case UNDEFINED, MISSING -> Literal.NOTHING;
+            default -> throw new JSONPathSyntaxException(
+                    "unexpected token '%s' in filter expression".formatted(stream.currentValue()), token);
+        };
+    }
+
+    /**
+     * @return the number as a Long if it is written as an integer in the range of longs, or else as a Double.
+     */
+    private static Literal number(CharSequence value, Token token) {
+        final String text = value.toString();
+        if (!NUMBER.matcher(text).matches()) {
+            throw new JSONPathSyntaxException("invalid number literal '%s'".formatted(text), token);
+        }
+        if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0 && !text.equals("-0")) {
+            try {
+                return new Literal(Long.parseLong(text));
+            } catch (NumberFormatException e) {
+                // too long for a long
+            }
+        }
+        return new Literal(Double.parseDouble(text));
+    }
+
+    /**
+     * Parses a list of literals, from {@code [} to {@code ]}. The stream is left at the closing bracket.
+     */
+    private ListLiteral parseListLiteral(TokenStream stream) {
+        final Token start = stream.current();
+        final List<Object> values = new ArrayList<>();
+        if (stream.advance() == TokenKind.RBRACKET) {
+            return new ListLiteral(List.of());
+        }
+        while (true) {
+            values.add(literal(stream, stream.current()).value());
+            switch (stream.advance()) {
+                case RBRACKET -> {
+                    return new ListLiteral(Collections.unmodifiableList(values));
+                }
+                case COMMA -> stream.advance();
+                case EOF -> throw new JSONPathSyntaxException("unclosed list literal", start);
+                default -> throw new JSONPathSyntaxException(
+                        "expected a comma or a closing bracket, found '%s'".formatted(stream.currentValue()),
+                        stream.current());
+            }
+        }
+    }
+
+    /**
+     * Parses the {@code RE_PATTERN} and {@code RE_FLAGS} tokens of a regular expression literal. The stream is left at
+     * the last token of the literal.
+     */
+    private RegexLiteral parseRegex(TokenStream stream) {
+        final Token token = stream.current();
+        final String source = stream.currentValue().toString();
+        String flags = "";
+        if (stream.peekKind() == TokenKind.RE_FLAGS) {
+            stream.advance();
+            flags = stream.currentValue().toString();
+        }
+        int javaFlags = 0;
+        for (int i = 0; i < flags.length(); i++) {
+            final int patternFlags = RegexLiteral.patternFlags(flags.charAt(i));
+            if (patternFlags < 0) {
+                throw new JSONPathSyntaxException(
+                        "unknown regular expression flag '%c'".formatted(flags.charAt(i)), stream.current());
+            }
+            javaFlags |= patternFlags;
+        }
+        try {
+            return new RegexLiteral(source, flags, Pattern.compile(source, javaFlags));
+        } catch (PatternSyntaxException e) {
+            throw new JSONPathSyntaxException("invalid regular expression /%s/".formatted(source), e, token);
+        }
+    }
+
+    /**
+     * A stack of selectors shared by the bracketed selections of one parse, so a selection's selectors are gathered
+     * without creating a list for each selection. Nested selections, e.g. in filter queries, push above the
+     * selectors of the enclosing selection.
+     */
+    protected static final class SelectorStack {
+        private JSONPathSelector[] selectors = new JSONPathSelector[8];
+        private int size;
+
+        int mark() {
+            return size;
+        }
+
+        void push(JSONPathSelector selector) {
+            if (size == selectors.length) {
+                selectors = Arrays.copyOf(selectors, size * 2);
+            }
+            selectors[size++] = selector;
+        }
+
+        /**
+         * Removes the selectors pushed since {@code mark}, and returns them in an exactly sized array.
+         */
+        JSONPathSelector[] pop(int mark) {
+            final JSONPathSelector[] result = Arrays.copyOfRange(selectors, mark, size);
+            Arrays.fill(selectors, mark, size, null);
+            size = mark;
+            return result;
+        }
+    }
+
+    /**
+     * The operand and operator stacks of one filter expression. Groups, the parentheses and function calls, are
+     * operators with the lowest precedence that record the number of operands below them, so the operators pending
+     * inside a group are never applied to operands outside it.
+     * <p>
+     * The operands of {@code &&} and {@code ||} are gathered in {@link Chain}s, which only become {@link Logical} nodes
+     * when they are used by another operator, so nested chains are merged in linear time.
+     */
+    protected static final class ExpressionStack {
+        private FilterExpression[] operands = new FilterExpression[8];
+        private Chain[] chains = new Chain[8]; // the chain at each operand position, or null
+        private int operandCount;
+
+        private TokenKind[] kinds = new TokenKind[8];
+        private Token[] tokens = new Token[8];
+        private int[] precedences = new int[8];
+        private int[] marks = new int[8];
+        private FilterFunction[] functions = new FilterFunction[8];
+        private int operatorCount;
+
+        int operandCount() {
+            return operandCount;
+        }
+
+        void pushOperand(FilterExpression operand) {
+            push(operand, null);
+        }
+
+        void pushChain(Chain chain) {
+            push(null, chain);
+        }
+
+        private void push(FilterExpression operand, Chain chain) {
+            if (operandCount == operands.length) {
+                operands = Arrays.copyOf(operands, operandCount * 2);
+                chains = Arrays.copyOf(chains, operandCount * 2);
+            }
+            operands[operandCount] = operand;
+            chains[operandCount] = chain;
+            operandCount++;
+        }
+
+        /**
+         * @return true if the top operand is a chain of {@code operator}.
+         */
+        boolean isChain(LogicalOperator operator) {
+            final Chain chain = chains[operandCount - 1];
+            return chain != null && chain.operator == operator;
+        }
+
+        Chain popChain() {
+            final Chain chain = chains[--operandCount];
+            chains[operandCount] = null;
+            return chain;
+        }
+
+        FilterExpression popOperand() {
+            final int top = --operandCount;
+            final FilterExpression operand = operand(top);
+            operands[top] = null;
+            chains[top] = null;
+            return operand;
+        }
+
+        private FilterExpression operand(int index) {
+            final Chain chain = chains[index];
+            return chain == null ? operands[index] : new Logical(chain.operator, List.copyOf(chain.operands));
+        }
+
+        /**
+         * Removes the operands pushed since {@code mark}, and returns them in order.
+         */
+        List<FilterExpression> popOperands(int mark) {
+            final FilterExpression[] result = new FilterExpression[operandCount - mark];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = operand(mark + i);
+            }
+            Arrays.fill(operands, mark, operandCount, null);
+            Arrays.fill(chains, mark, operandCount, null);
+            operandCount = mark;
+            return List.of(result);
+        }
+
+        void pushOperator(TokenKind kind, Token token, int precedence) {
+            push(kind, token, precedence, operandCount, null);
+        }
+
+        /**
+         * Opens a group at a {@code (} or a function call.
+         */
+        void pushGroup(TokenKind kind, Token token, FilterFunction function) {
+            push(kind, token, 0, operandCount, function);
+        }
+
+        private void push(TokenKind kind, Token token, int precedence, int mark, FilterFunction function) {
+            if (operatorCount == kinds.length) {
+                final int capacity = operatorCount * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                tokens = Arrays.copyOf(tokens, capacity);
+                precedences = Arrays.copyOf(precedences, capacity);
+                marks = Arrays.copyOf(marks, capacity);
+                functions = Arrays.copyOf(functions, capacity);
+            }
+            kinds[operatorCount] = kind;
+            tokens[operatorCount] = token;
+            precedences[operatorCount] = precedence;
+            marks[operatorCount] = mark;
+            functions[operatorCount] = function;
+            operatorCount++;
+        }
+
+        void popOperator() {
+            operatorCount--;
+            tokens[operatorCount] = null;
+            functions[operatorCount] = null;
+        }
+
+        /**
+         * @return the kind of the top operator, or null if there are no pending operators.
+         */
+        TokenKind topKind() {
+            return operatorCount == 0 ? null : kinds[operatorCount - 1];
+        }
+
+        /**
+         * @return the precedence of the top operator, 0 for a group, or -1 if there are no pending operators.
+         */
+        int topPrecedence() {
+            return operatorCount == 0 ? -1 : precedences[operatorCount - 1];
+        }
+
+        Token topToken() {
+            return tokens[operatorCount - 1];
+        }
+
+        int topMark() {
+            return marks[operatorCount - 1];
+        }
+
+        FilterFunction topFunction() {
+            return functions[operatorCount - 1];
+        }
+
+        /**
+         * The operands of a chain of {@code &&} or {@code ||}, in order.
+         */
+        static final class Chain {
+            private final LogicalOperator operator;
+            private final ArrayDeque<FilterExpression> operands = new ArrayDeque<>();
+
+            Chain(LogicalOperator operator, FilterExpression operand) {
+                this.operator = operator;
+                operands.add(operand);
+            }
+
+            /**
+             * Appends the operands of {@code next}, copying the operands of the shorter chain into the longer.
+             * @return the merged chain, either this or {@code next}.
+             */
+            Chain append(Chain next) {
+                if (operands.size() >= next.operands.size()) {
+                    operands.addAll(next.operands);
+                    return this;
+                }
+                for (Iterator<FilterExpression> it = operands.descendingIterator(); it.hasNext(); ) {
+                    next.operands.addFirst(it.next());
+                }
+                return next;
+            }
+        }
     }
 }
@@ -7,6 +7,15 @@ import java.util.List;
 
 public interface Parser {
 
-    // Lists for now; we can get fancy later with iterables and token streams
-    List<JSONPathSegment> parse(List<Token> tokens);
+    /**
+     * Parses one path from the stream, starting at its root token. Parsing stops at the end of the stream, or at
+     * a union or intersection operator, which is left as the current token for the caller.
+     * @param stream the TokenStream positioned at the start of a path.
+     * @return the List of JSONPathSegment
+     */
+    List<JSONPathSegment> parse(TokenStream stream);
+
+    default List<JSONPathSegment> parse(List<Token> tokens) {
+        return parse(new TokenStream(tokens));
+    }
 }
@@ -1,8 +1,10 @@
 package org.killeroonie.jsonpath.parser;
 
 import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenBuffer;
 import org.killeroonie.jsonpath.TokenKind;
 import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.lexer.TokenSource;
 
 import java.util.Iterator;
 import java.util.List;
@@ -10,60 +12,148 @@ import java.util.Set;
 
 /**
  * Iterates over a stream of tokens
+ * <p>
+ * The tokens are read from a {@link TokenBuffer} by index. Parsers should prefer the {@code kind} and {@code value}
+ * accessors, e.g. {@link #currentKind()} and {@link #currentValue()}, which don't create {@link Token} objects. The
+ * Token returned by {@link #current()} is only materialized on request.
+ * <p>
+ * A stream created from a {@link TokenSource} is incremental: tokens are pulled from the scanner only when the stream
+ * moves to or looks ahead at them, so a syntax error stops the scan where the parser found it. To keep memory bounded
+ * for very long paths, an incremental stream discards the tokens more than {@link #RETAINED_TOKENS} behind the
+ * current token, and can't backtrack or reset to them.
  */
 public final class TokenStream  implements Iterator<Token> {
 
-    // we'll use this List as the token queue with an index variable to control the current position
-    private final List<Token> tokens;
-    private final int queueSize;
+    /**
+     * The number of consumed tokens an incremental stream keeps for backtracking.
+     */
+    public static final int RETAINED_TOKENS = 64;
+
+    // we'll use this buffer as the token queue with an index variable to control the current position
+    private final TokenBuffer tokens;
+    private TokenSource source; // null once all the tokens are in the buffer
+    private final boolean incremental;
+    private int discarded; // the number of tokens removed from the front of the buffer
     private int queueIndex;
-    private Token currentToken;
+    private Token currentToken; // materialized lazily by current()
 
-    public TokenStream(final List<Token> tokens) {
+    public TokenStream(final TokenBuffer tokens) {
         this.tokens = tokens;
-        queueSize = tokens.size();
+        this.incremental = false;
+        queueIndex = -1;
+        next();
+    }
+
+    /**
+     * Creates an incremental stream which pulls tokens from the argument source as they are needed.
+     *
+     * @param source an incremental scan, e.g., from {@link org.killeroonie.jsonpath.lexer.Lexer#tokenSource(String)}
+     */
+    public TokenStream(final TokenSource source) {
+        this.tokens = source.buffer();
+        this.source = source;
+        this.incremental = true;
         queueIndex = -1;
-        String jsonpath = tokens.isEmpty() ? "" : tokens.getFirst().path();
-        currentToken = Token.NO_TOKEN;
         next();
     }
 
+    public TokenStream(final List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
 
     public String toString() {
-        return "current: %s\nnext: %s".formatted(currentToken, peek());
+        return "current: %s\nnext: %s".formatted(current(), peek());
     }
 
     public Token current() {
+        if (currentToken == null) {
+            currentToken = tokenAt(queueIndex);
+        }
         return currentToken;
     }
 
+    /**
+     * @return the TokenKind of the current token.
+     */
+    public TokenKind currentKind() {
+        return kindAt(queueIndex);
+    }
+
+    /**
+     * @return the value of the current token as a view of the path string.
+     */
+    public CharSequence currentValue() {
+        final int bufferIndex = bufferIndex(queueIndex);
+        return bufferIndex < tokens.size() ? tokens.value(bufferIndex) : "";
+    }
+
+    /**
+     * @return the start index of the current token in the path string, or -1.
+     */
+    public int currentIndex() {
+        final int bufferIndex = bufferIndex(queueIndex);
+        return bufferIndex < tokens.size() ? tokens.start(bufferIndex) : -1;
+    }
+
     public int queueIndex() {
         return queueIndex;
     }
 
+    /**
+     * @return the buffer this stream iterates. The token at {@code queueIndex} is at index
+     * {@code queueIndex - bufferOffset()} in the buffer.
+     */
+    public TokenBuffer buffer() {
+        return tokens;
+    }
+
+    /**
+     * @return the number of tokens an incremental stream has discarded from the front of its buffer.
+     */
+    public int bufferOffset() {
+        return discarded;
+    }
+
     @Override
     public boolean hasNext() {
-        return queueIndex < queueSize;
+        return bufferIndex(queueIndex) < tokens.size();
     }
 
     @Override
     public Token next() {
-        Token nextToken;
-        if (queueIndex >= queueSize) {
-            nextToken = tokens.getLast();  // EOF Token
-        } else {
-            nextToken = tokens.get(++queueIndex);
+        advance();
+        return current();
+    }
+
+    /**
+     * Moves to the next token like {@link #next()}, without materializing the token.
+     *
+     * @return the TokenKind of the new current token.
+     */
+    public TokenKind advance() {
+        if (bufferIndex(queueIndex) < tokens.size()) {
+            queueIndex++;
         }
-        currentToken = nextToken;
-        return currentToken;
+        currentToken = null;
+        if (incremental && queueIndex - discarded >= 2 * RETAINED_TOKENS) {
+            final int count = queueIndex - discarded - RETAINED_TOKENS;
+            tokens.discard(count);
+            discarded += count;
+        }
+        return currentKind();
     }
 
     /**
      * "Closes" the stream. This just sets the queueIndex to the size of the token list and makes the current token
-     * the EOF token.
+     * the EOF token. An incremental stream stops scanning.
      */
     public void close() {
-        queueIndex = queueSize;
+        if (source != null) {
+            tokens.add(TokenKind.EOF, -1, -1);
+            source = null;
+        }
+        queueIndex = discarded + tokens.size();
         currentToken = Token.EOF;
     }
 
@@ -73,11 +163,22 @@ public final class TokenStream  implements Iterator<Token> {
      * @return the Token after the current Token, or the EOF Token if at EOF.
      */
     public Token peek() {
-        if (queueIndex >= queueSize - 1) {
-            return tokens.getLast();
-        } else {
-            return tokens.get(queueIndex + 1);
-        }
+        return tokenAt(queueIndex + 1);
+    }
+
+    /**
+     * @return the TokenKind of the token after the current token, or EOF if at EOF.
+     */
+    public TokenKind peekKind() {
+        return kindAt(queueIndex + 1);
+    }
+
+    /**
+     * @param offset the number of tokens to look ahead. 0 is the current token, 1 the next token, and so on.
+     * @return the TokenKind of the token {@code offset} tokens after the current token, or EOF if at EOF.
+     */
+    public TokenKind peekKind(int offset) {
+        return kindAt(queueIndex + offset);
     }
 
     /**
@@ -96,41 +197,100 @@ public final class TokenStream  implements Iterator<Token> {
      *
      * @param numTokens the number of Tokens in the queue to backtrack.
      * @return the new current token.
+     * @throws IllegalStateException if an incremental stream has discarded the token.
      */
     public Token backtrack(int numTokens) {
-        queueIndex = Math.max((queueIndex - numTokens), 0);
-        currentToken = tokens.get(queueIndex);
-        return currentToken;
+        reset(queueIndex - numTokens);
+        return current();
+    }
+
+    /**
+     * @return a mark that can be passed to {@link #reset(int)} to return to the current position.
+     */
+    public int mark() {
+        return queueIndex;
+    }
+
+    /**
+     * Moves to a position previously returned by {@link #mark()}.
+     *
+     * @param mark the queueIndex to move to.
+     * @throws IllegalStateException if an incremental stream has discarded the token at the mark.
+     */
+    public void reset(int mark) {
+        final int index = Math.max(mark, 0);
+        if (index < discarded) {
+            throw new IllegalStateException("Can't reset to token %d, the tokens before %d have been discarded"
+                    .formatted(index, discarded));
+        }
+        bufferIndex(index); // scan up to the mark
+        queueIndex = Math.min(index, discarded + tokens.size());
+        currentToken = null;
     }
 
     /**
      * Throws an exception if the current token type is not in the argument Set.
      */
     public void expect(Set<TokenKind> kinds) {
-        expectImpl(currentToken, kinds);
+        if (!kinds.contains(currentKind())) {
+            throwUnexpected(current(), kinds);
+        }
     }
 
     /**
      * Throws an exception if the TokenKind of the next Token in the queue is not in the argument Set.
      */
     public void expectPeek(Set<TokenKind> kinds) {
-        expectImpl(peek(), kinds);
+        if (!kinds.contains(peekKind())) {
+            throwUnexpected(peek(), kinds);
+        }
     }
 
-    private void expectImpl(Token t, Set<TokenKind> ts) {
-        if (!ts.contains(t.kind())) {
-            throw new JSONPathSyntaxException(
-                    "token kind: %s is not in the set: %s"
-                            .formatted(t.kind(), ts.toString()), t);
-        }
+    private void throwUnexpected(Token t, Set<TokenKind> ts) {
+        throw new JSONPathSyntaxException(
+                "token kind: %s is not in the set: %s"
+                        .formatted(t.kind(), ts.toString()), t);
     }
 
     /**
      * Throws an exception if the TokenKind of the next Token in the queue is present in the argument Set.
      */
     public void peekNotExpected(Set<TokenKind> kinds, String message) {
-        if (kinds.contains(peek().kind())) {
+        if (kinds.contains(peekKind())) {
             throw new JSONPathSyntaxException(message, peek());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Converts a queueIndex to an index in the buffer, first pulling tokens from the source until the buffer holds
+     * the token at that index or the scan is complete.
+     */
+    private int bufferIndex(int index) {
+        final int bufferIndex = index - discarded;
+        while (source != null && bufferIndex >= tokens.size()) {
+            if (!source.scanMore()) {
+                source = null;
+            }
+        }
+        return bufferIndex;
+    }
+
+    // Positions past the end of the buffer read as its last token, which is normally EOF.
+    private Token tokenAt(int index) {
+        final int bufferIndex = bufferIndex(index);
+        final int size = tokens.size();
+        if (bufferIndex < size) {
+            return tokens.token(bufferIndex);
+        }
+        return size == 0 ? Token.EOF : tokens.token(size - 1);
+    }
+
+    private TokenKind kindAt(int index) {
+        final int bufferIndex = bufferIndex(index);
+        final int size = tokens.size();
+        if (bufferIndex < size) {
+            return tokens.kind(bufferIndex);
+        }
+        return size == 0 ? TokenKind.EOF : tokens.kind(size - 1);
+    }
+}
@@ -0,0 +1,32 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * A comparison of two values, e.g. {@code @.price < 10}.
+ *
+ * @param operator the operator.
+ * @param left     the left operand.
+ * @param right    the right operand.
+ */
+public record Comparison(ComparisonOperator operator, FilterExpression left, FilterExpression right)
+        implements FilterExpression {
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.LOGICAL;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return test(context);
+    }
+
+    @Override
+    public boolean test(EvaluationContext context) {
+        return operator.apply(left.value(context), right.value(context));
+    }
+
+    @Override
+    public String toString() {
+        return left + " " + operator + " " + right;
+    }
+}
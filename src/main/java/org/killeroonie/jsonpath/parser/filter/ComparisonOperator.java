@@ -0,0 +1,119 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.killeroonie.jsonpath.JsonValues;
+
+import java.util.regex.Pattern;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * The operators of {@link Comparison}s. The comparison operators follow RFC 9535 section 2.3.5.2.2: a comparison of
+ * values that can't be compared is false, rather than an error. {@code =~}, {@code in} and {@code contains} are
+ * extensions.
+ */
+public enum ComparisonOperator {
+    EQ("=="),
+    NE("!="),
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">="),
+    /**
+     * True if the left operand is a string matched in full by the right operand, a {@link RegexLiteral}.
+     */
+    RE("=~"),
+    /**
+     * True if the left operand is an element of the array, or a member name of the object, on the right.
+     */
+    IN("in"),
+    /**
+     * {@link #IN} with its operands swapped.
+     */
+    CONTAINS("contains");
+
+    private final String symbol;
+
+    ComparisonOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    /**
+     * @return true for {@link #IN} and {@link #CONTAINS}, which bind more tightly than the other comparisons.
+     */
+    public boolean isMembership() {
+        return this == IN || this == CONTAINS;
+    }
+
+    /**
+     * Applies this operator to the values of two operands. Either value may be
+     * {@link org.killeroonie.jsonpath.JSONPointer#UNDEFINED}.
+     */
+    public boolean apply(Object left, Object right) {
+        return switch (this) {
+            case EQ -> JsonValues.equal(left, right);
+            case NE -> !JsonValues.equal(left, right);
+            case LT -> lessThan(left, right);
+            case LE -> lessThan(left, right) || JsonValues.equal(left, right);
+            case GT -> lessThan(right, left);
+            case GE -> lessThan(right, left) || JsonValues.equal(left, right);
+            case RE -> right instanceof Pattern pattern && JsonValues.scalar(left) instanceof String s
+                       && pattern.matcher(s).matches();
+            case IN -> contains(right, left);
+            case CONTAINS -> contains(left, right);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+
+    /**
+     * Numbers are ordered by value, and strings by the Unicode scalar values of their characters. No other values are
+     * ordered.
+     * @return true if {@code left} is ordered before {@code right}, as compared by {@link #LT}.
+     */
+    public static boolean lessThan(Object left, Object right) {
+        left = JsonValues.scalar(left);
+        right = JsonValues.scalar(right);
+        if (left instanceof Number a && right instanceof Number b) {
+            return JsonValues.compareNumbers(a, b) < 0;
+        }
+        if (left instanceof String a && right instanceof String b) {
+            return compareCodePoints(a, b) < 0;
+        }
+        return false;
+    }
+
+    /**
+     * Unlike {@link String#compareTo(String)}, which compares UTF-16 code units, orders supplementary characters after
+     * all the characters of the basic multilingual plane.
+     */
+    static int compareCodePoints(String a, String b) {
+        final int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return Integer.compare(a.codePointAt(i), b.codePointAt(i));
+            }
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    private static boolean contains(Object container, Object item) {
+        container = JsonValues.scalar(container);
+        if (JsonValues.isArray(container)) {
+            for (int i = 0, n = JsonValues.size(container); i < n; i++) {
+                if (JsonValues.equal(JsonValues.element(container, i), item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return JsonValues.isObject(container) && JsonValues.scalar(item) instanceof String name
+               && JsonValues.member(container, name) != UNDEFINED;
+    }
+}
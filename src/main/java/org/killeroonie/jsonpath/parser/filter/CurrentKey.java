@@ -0,0 +1,22 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * The name or index of the current node in its parent, written {@code #}.
+ */
+public record CurrentKey() implements FilterExpression {
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.VALUE;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return context.key();
+    }
+
+    @Override
+    public String toString() {
+        return "#";
+    }
+}
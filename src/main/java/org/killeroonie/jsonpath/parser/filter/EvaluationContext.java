@@ -0,0 +1,151 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.killeroonie.jsonpath.FilterContextVars;
+import org.killeroonie.jsonpath.JSONPathMatch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * The state of the evaluation of a filter selector: the node whose children are filtered, and the child being tested.
+ * <p>
+ * A filter selector creates one context for each node it filters, and moves it from child to child. The match of the
+ * current child is only created when an expression needs it, or when the child is selected. Contexts aren't
+ * thread-safe.
+ * <p>
+ * The results of {@link Hoisted} expressions are kept in the query scope of the parent's match, so they are computed
+ * once per query, and copied into the context, so each child reads them from an array.
+ */
+public final class EvaluationContext {
+
+    private static final Object NULL = new Object(); // a hoisted result of null, which maps can't hold
+
+    private final JSONPathMatch parent;
+    private Object current;
+    private Object key; // the String name or Integer index of current
+    private JSONPathMatch currentMatch;
+    private JSONPathMatch rootMatch;
+    private JSONPathMatch filterContextMatch;
+    private Object[] hoisted; // the results of hoisted expressions by slot, or null if not yet read
+
+    /**
+     * @param parent the match of the node whose children are filtered.
+     */
+    public EvaluationContext(JSONPathMatch parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Makes a member of the parent node the current node.
+     */
+    public void moveTo(Object value, String name) {
+        current = value;
+        key = name;
+        currentMatch = null;
+    }
+
+    /**
+     * Makes an element of the parent node the current node.
+     */
+    public void moveTo(Object value, int index) {
+        current = value;
+        key = index;
+        currentMatch = null;
+    }
+
+    /**
+     * @return the current node, selected by {@code @}.
+     */
+    public Object current() {
+        return current;
+    }
+
+    /**
+     * @return the name or index of the current node in its parent, selected by {@code #}.
+     */
+    public Object key() {
+        return key != null ? key : UNDEFINED;
+    }
+
+    /**
+     * @return the root of the target data, selected by {@code $}.
+     */
+    public Object root() {
+        return parent.root;
+    }
+
+    /**
+     * @return the data of the filter context, selected by {@code _}.
+     */
+    public Object filterContext() {
+        return parent.filterContext != null ? parent.filterContext.getData() : UNDEFINED;
+    }
+
+    /**
+     * @return the result of a hoisted expression, evaluated on the first call for the query.
+     */
+    Object hoisted(Hoisted expression) {
+        final int slot = expression.getSlot();
+        if (hoisted == null || slot >= hoisted.length) {
+            hoisted = hoisted == null ? new Object[slot + 1] : Arrays.copyOf(hoisted, slot + 1);
+        }
+        Object result = hoisted[slot];
+        if (result == null) {
+            final Map<Object, Object> scope = parent.queryScope();
+            result = scope.get(expression);
+            if (result == null) {
+                // not computeIfAbsent: the expression may evaluate other hoisted expressions of the same scope
+                result = expression.getExpression().evaluate(this);
+                if (result == null) {
+                    result = NULL;
+                }
+                final Object previous = scope.putIfAbsent(expression, result);
+                if (previous != null) {
+                    result = previous;
+                }
+            }
+            hoisted[slot] = result;
+        }
+        return result == NULL ? null : result;
+    }
+
+    /**
+     * @return the match of the current node, created on first use.
+     */
+    public JSONPathMatch currentMatch() {
+        JSONPathMatch result = currentMatch;
+        if (result == null) {
+            result = key instanceof Integer index ? parent.newChild(current, index) : parent.newChild(current, (String) key);
+            currentMatch = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return a match of the root of the target data, created on first use.
+     */
+    public JSONPathMatch rootMatch() {
+        JSONPathMatch result = rootMatch;
+        if (result == null) {
+            result = new JSONPathMatch(parent.filterContext, parent.root, null, "$", List.of(), parent.root);
+            rootMatch = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return a match of the filter context data, created on first use.
+     */
+    public JSONPathMatch filterContextMatch() {
+        JSONPathMatch result = filterContextMatch;
+        if (result == null) {
+            final FilterContextVars vars = parent.filterContext;
+            result = new JSONPathMatch(vars, filterContext(), null, "_", List.of(), parent.root);
+            filterContextMatch = result;
+        }
+        return result;
+    }
+}
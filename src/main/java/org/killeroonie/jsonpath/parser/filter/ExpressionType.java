@@ -0,0 +1,19 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * The types of filter expressions, from the function extension type system of RFC 9535 section 2.4.1.
+ */
+public enum ExpressionType {
+    /**
+     * A JSON value, or Nothing. Literals, singular queries and functions like {@code length()} have this type.
+     */
+    VALUE,
+    /**
+     * True or false. Comparisons, logical operators and functions like {@code match()} have this type.
+     */
+    LOGICAL,
+    /**
+     * A list of nodes. Filter queries have this type.
+     */
+    NODES
+}
@@ -0,0 +1,59 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * A node of the expression tree of a filter selector.
+ * <p>
+ * The tree is typed and flat: each node is one of a fixed set of immutable classes with an {@link ExpressionType},
+ * parentheses leave no node behind, and chains of {@code &&} or {@code ||} are held by a single {@link Logical} node.
+ * Expression trees can be shared between threads.
+ */
+public sealed interface FilterExpression
+        permits Comparison, CurrentKey, FilterQuery, FunctionCall, Hoisted, ListLiteral, Literal, Logical, Not,
+                RegexLiteral {
+
+    /**
+     * @return the type of the result of this expression.
+     */
+    ExpressionType type();
+
+    /**
+     * Evaluates this expression. The result depends on the {@link #type()}: a JSON value or
+     * {@link org.killeroonie.jsonpath.JSONPointer#UNDEFINED} for VALUE, a Boolean for LOGICAL, and a {@link NodeList}
+     * for NODES.
+     */
+    Object evaluate(EvaluationContext context);
+
+    /**
+     * Evaluates this expression as a test expression. A NodeList is true if it isn't empty. Outside of well-typed
+     * environments, a value is true if it exists and isn't false or null.
+     */
+    default boolean test(EvaluationContext context) {
+        final Object result = evaluate(context);
+        if (result instanceof Boolean b) {
+            return b;
+        }
+        if (result instanceof NodeList nodes) {
+            return !nodes.isEmpty();
+        }
+        return result != UNDEFINED && result != null;
+    }
+
+    /**
+     * Evaluates this expression as an operand of a comparison. A NodeList with one node is the value of that node,
+     * an empty NodeList is Nothing, and, outside of well-typed environments, a longer NodeList is the List of its
+     * values.
+     */
+    default Object value(EvaluationContext context) {
+        final Object result = evaluate(context);
+        if (result instanceof NodeList nodes) {
+            return switch (nodes.size()) {
+                case 0 -> UNDEFINED;
+                case 1 -> nodes.values().getFirst();
+                default -> nodes.values();
+            };
+        }
+        return result;
+    }
+}
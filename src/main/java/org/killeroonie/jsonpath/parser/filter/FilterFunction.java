@@ -0,0 +1,44 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.List;
+
+/**
+ * A function extension that can be called from filter expressions, e.g. {@code length(@.name) > 3}.
+ * <p>
+ * Functions are registered by name with {@link org.killeroonie.jsonpath.JSONPathEnvironment#getFunctionExtensions()}.
+ * The types of a function's parameters and result are checked when a path is compiled by a well-typed environment,
+ * following RFC 9535 section 2.4.3. Functions are called from many threads at once, so must be thread-safe.
+ */
+public interface FilterFunction {
+
+    /**
+     * @return the types of the parameters, one for each argument.
+     */
+    List<ExpressionType> parameterTypes();
+
+    /**
+     * @return the type of the result.
+     */
+    ExpressionType returnType();
+
+    /**
+     * A pure function has no side effects, and always returns the same result for the same arguments, so the optimizer
+     * may call it when a path is compiled, if its arguments are literals, or once per query, if they don't depend on
+     * the current node. Calls of other functions are left as they are, and made for each node.
+     *
+     * @return true if the function is pure. The default is false.
+     */
+    default boolean isPure() {
+        return false;
+    }
+
+    /**
+     * Calls the function. Each argument has been converted to the type of its parameter: a JSON value or
+     * {@link org.killeroonie.jsonpath.JSONPointer#UNDEFINED} for VALUE, a Boolean for LOGICAL, and a {@link NodeList}
+     * for NODES.
+     *
+     * @param arguments the arguments.
+     * @return the result, of the {@link #returnType()}.
+     */
+    Object call(Object[] arguments);
+}
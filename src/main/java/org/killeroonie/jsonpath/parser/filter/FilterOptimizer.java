@@ -0,0 +1,219 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies the expression of a filter selector after it's parsed. The optimized expression selects the same nodes as
+ * the original, with less work for each node:
+ * <ul>
+ *     <li>comparisons of literals, and calls of pure functions with literal arguments, are replaced by their
+ *     results;</li>
+ *     <li>double negations are removed, and a negated {@code ==} becomes {@code !=};</li>
+ *     <li>constant operands of {@code &&} and {@code ||} are removed, or decide the result of the whole chain;</li>
+ *     <li>if hoisting is enabled, the largest subexpressions that don't depend on the current node are wrapped in
+ *     {@link Hoisted} nodes, so they're evaluated once per query.</li>
+ * </ul>
+ * Only calls of {@linkplain FilterFunction#isPure() pure} functions are folded or hoisted, and a call that throws when
+ * it's folded is left as it is, so the exception is only thrown if the filter is applied to a node.
+ * <p>
+ * An optimizer numbers the hoisted expressions of one filter selector, so a new optimizer is used for each selector.
+ */
+public final class FilterOptimizer {
+
+    private final boolean hoist;
+    private int hoistedCount;
+
+    /**
+     * @param hoist true to hoist subexpressions that only depend on the root and the filter context.
+     */
+    public FilterOptimizer(boolean hoist) {
+        this.hoist = hoist;
+    }
+
+    /**
+     * @param expression a filter selector's expression, which has been checked by the parser.
+     * @return the optimized expression.
+     */
+    public FilterExpression optimize(FilterExpression expression) {
+        final FilterExpression simplified = simplify(expression, true);
+        return hoist ? hoist(simplified) : simplified;
+    }
+
+    /**
+     * @return the number of expressions hoisted by this optimizer.
+     */
+    public int hoistedCount() {
+        return hoistedCount;
+    }
+
+    /**
+     * Simplifies an expression and its subexpressions.
+     *
+     * @param test true if the expression's result is only used as a test. Otherwise, a LOGICAL expression must be
+     *             replaced by an expression that evaluates to the same Boolean.
+     */
+    private FilterExpression simplify(FilterExpression expression, boolean test) {
+        return switch (expression) {
+            case Comparison comparison -> simplifyComparison(comparison);
+            case Logical logical -> simplifyLogical(logical, test);
+            case Not not -> simplifyNot(not, test);
+            case FunctionCall call -> simplifyCall(call);
+            default -> expression;
+        };
+    }
+
+    private FilterExpression simplifyComparison(Comparison comparison) {
+        final FilterExpression left = simplify(comparison.left(), false);
+        final FilterExpression right = simplify(comparison.right(), false);
+        if (isConstant(left) && isConstant(right)) {
+            return constant(comparison.operator().apply(left.value(null), right.value(null)));
+        }
+        if (left == comparison.left() && right == comparison.right()) {
+            return comparison;
+        }
+        return new Comparison(comparison.operator(), left, right);
+    }
+
+    private FilterExpression simplifyLogical(Logical logical, boolean test) {
+        final LogicalOperator operator = logical.operator();
+        // the value of an operand that decides the result: false for &&, true for ||
+        final boolean decisive = operator == LogicalOperator.OR;
+        final List<FilterExpression> operands = new ArrayList<>(logical.operands().size());
+        for (FilterExpression operand : logical.operands()) {
+            final FilterExpression simplified = simplify(operand, true);
+            if (isConstant(simplified)) {
+                if (isTrue(simplified) == decisive) {
+                    return constant(decisive);
+                }
+                continue; // an operand that can't change the result
+            }
+            if (simplified instanceof Logical nested && nested.operator() == operator) {
+                operands.addAll(nested.operands());
+            } else {
+                operands.add(simplified);
+            }
+        }
+        return switch (operands.size()) {
+            case 0 -> constant(!decisive);
+            case 1 -> asBoolean(operands.getFirst(), test);
+            default -> operands.equals(logical.operands()) ? logical : new Logical(operator, operands);
+        };
+    }
+
+    /**
+     * Removes pairs of negations. Chains of negations are counted in a loop, so a long chain can't overflow the stack.
+     */
+    private FilterExpression simplifyNot(Not not, boolean test) {
+        int negations = 0;
+        FilterExpression operand = not;
+        while (operand instanceof Not next) {
+            negations++;
+            operand = next.operand();
+        }
+        operand = simplify(operand, true);
+        final boolean negated = negations % 2 == 1;
+        if (isConstant(operand)) {
+            return constant(isTrue(operand) != negated);
+        }
+        if (!negated) {
+            return asBoolean(operand, test);
+        }
+        if (operand instanceof Comparison comparison && comparison.operator() == ComparisonOperator.EQ) {
+            return new Comparison(ComparisonOperator.NE, comparison.left(), comparison.right());
+        }
+        if (operand instanceof Comparison comparison && comparison.operator() == ComparisonOperator.NE) {
+            return new Comparison(ComparisonOperator.EQ, comparison.left(), comparison.right());
+        }
+        return negations == 1 && operand == not.operand() ? not : new Not(operand);
+    }
+
+    private FilterExpression simplifyCall(FunctionCall call) {
+        final List<ExpressionType> parameterTypes = call.function().parameterTypes();
+        final List<FilterExpression> arguments = new ArrayList<>(call.arguments().size());
+        boolean constantArguments = true;
+        for (int i = 0; i < call.arguments().size(); i++) {
+            final FilterExpression argument =
+                    simplify(call.arguments().get(i), parameterTypes.get(i) == ExpressionType.LOGICAL);
+            constantArguments &= isConstant(argument);
+            arguments.add(argument);
+        }
+        final FunctionCall simplified = arguments.equals(call.arguments())
+                ? call : new FunctionCall(call.name(), call.function(), arguments);
+        if (constantArguments && call.type() != ExpressionType.NODES && call.function().isPure()) {
+            try {
+                return constant(simplified.evaluate(null));
+            } catch (RuntimeException e) {
+                return simplified; // thrown when the filter is applied instead
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Wraps the largest subexpressions that don't depend on the current node, and aren't constants, in Hoisted nodes.
+     */
+    private FilterExpression hoist(FilterExpression expression) {
+        if (isConstant(expression)) {
+            return expression;
+        }
+        if (isInvariant(expression)) {
+            return new Hoisted(expression, hoistedCount++);
+        }
+        return switch (expression) {
+            case Comparison comparison -> new Comparison(comparison.operator(),
+                    hoist(comparison.left()), hoist(comparison.right()));
+            case Logical logical -> new Logical(logical.operator(),
+                    logical.operands().stream().map(this::hoist).toList());
+            case Not not -> new Not(hoist(not.operand()));
+            case FunctionCall call -> new FunctionCall(call.name(), call.function(),
+                    call.arguments().stream().map(this::hoist).toList());
+            default -> expression;
+        };
+    }
+
+    /**
+     * @return true if the result of {@code expression} is the same for every node of a query.
+     */
+    private static boolean isInvariant(FilterExpression expression) {
+        return switch (expression) {
+            case Literal literal -> true;
+            case ListLiteral list -> true;
+            case RegexLiteral regex -> true;
+            case Hoisted hoisted -> true;
+            case CurrentKey key -> false;
+            // a filter inside the query is relative to the nodes of the query, not the current node
+            case FilterQuery query -> query.getAnchor() != FilterQuery.Anchor.SELF;
+            case Comparison comparison -> isInvariant(comparison.left()) && isInvariant(comparison.right());
+            case Logical logical -> logical.operands().stream().allMatch(FilterOptimizer::isInvariant);
+            case Not not -> isInvariant(not.operand());
+            case FunctionCall call ->
+                    call.function().isPure() && call.arguments().stream().allMatch(FilterOptimizer::isInvariant);
+        };
+    }
+
+    private static boolean isConstant(FilterExpression expression) {
+        return expression instanceof Literal || expression instanceof ListLiteral
+               || expression instanceof RegexLiteral;
+    }
+
+    // constants are evaluated without a context
+    private static boolean isTrue(FilterExpression constant) {
+        return constant.test(null);
+    }
+
+    private static Literal constant(Object value) {
+        if (value instanceof Boolean b) {
+            return b ? Literal.TRUE : Literal.FALSE;
+        }
+        return new Literal(value);
+    }
+
+    /**
+     * An expression used as an operand of a comparison must still evaluate to a Boolean when it replaces a LOGICAL
+     * expression. This only happens outside of well-typed environments.
+     */
+    private static FilterExpression asBoolean(FilterExpression expression, boolean test) {
+        return test || expression.type() == ExpressionType.LOGICAL ? expression : new Not(new Not(expression));
+    }
+}
@@ -0,0 +1,195 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.parser.segment.JSONPathChildSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * A query embedded in a filter expression, relative to the current node ({@code @}), the root ({@code $}) or the
+ * filter context ({@code _}), e.g. {@code @.price}.
+ * <p>
+ * A singular query, made of name and index selectors only, is evaluated by following its names and indices, without
+ * creating matches.
+ */
+public final class FilterQuery implements FilterExpression {
+
+    /**
+     * The node a query starts from.
+     */
+    public enum Anchor {
+        SELF("@"),
+        ROOT("$"),
+        FILTER_CONTEXT("_");
+
+        private final String symbol;
+
+        Anchor(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+    }
+
+    private final Anchor anchor;
+    private final List<JSONPathSegment> segments;
+    private final Object[] singularPath; // the String names and Long indices of a singular query, or null
+
+    /**
+     * @param anchor   the node the query starts from.
+     * @param segments the segments of the query.
+     */
+    public FilterQuery(Anchor anchor, List<JSONPathSegment> segments) {
+        this.anchor = anchor;
+        this.segments = List.copyOf(segments);
+        this.singularPath = singularPath(this.segments);
+    }
+
+    private static Object[] singularPath(List<JSONPathSegment> segments) {
+        final Object[] path = new Object[segments.size()];
+        for (int i = 0; i < path.length; i++) {
+            final JSONPathSegment segment = segments.get(i);
+            if (!(segment instanceof JSONPathChildSegment) || segment.size() != 1) {
+                return null;
+            }
+            final JSONPathSelector selector = segment.selector(0);
+            if (selector instanceof NameSelector name) {
+                path[i] = name.getName();
+            } else if (selector instanceof IndexSelector index) {
+                path[i] = index.getIndex();
+            } else {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    public Anchor getAnchor() {
+        return anchor;
+    }
+
+    public List<JSONPathSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return true if this query selects at most one node.
+     */
+    public boolean isSingular() {
+        return singularPath != null;
+    }
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.NODES;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        if (singularPath != null) {
+            final Object value = singularValue(context);
+            return new NodeList(value == UNDEFINED ? List.of() : Collections.singletonList(value));
+        }
+        final List<Object> values = new ArrayList<>();
+        for (Iterator<JSONPathMatch> it = matches(context); it.hasNext(); ) {
+            values.add(it.next().obj);
+        }
+        return new NodeList(values);
+    }
+
+    @Override
+    public boolean test(EvaluationContext context) {
+        if (singularPath != null) {
+            return singularValue(context) != UNDEFINED;
+        }
+        return matches(context).hasNext(); // the matches are lazy, so only the first is selected
+    }
+
+    @Override
+    public Object value(EvaluationContext context) {
+        if (singularPath != null) {
+            return singularValue(context);
+        }
+        return FilterExpression.super.value(context);
+    }
+
+    private Object start(EvaluationContext context) {
+        return switch (anchor) {
+            case SELF -> context.current();
+            case ROOT -> context.root();
+            case FILTER_CONTEXT -> context.filterContext();
+        };
+    }
+
+    private Object singularValue(EvaluationContext context) {
+        Object node = start(context);
+        for (Object step : singularPath) {
+            if (step instanceof String name) {
+                if (!JsonValues.isObject(node)) {
+                    return UNDEFINED;
+                }
+                node = JsonValues.member(node, name);
+                if (node == UNDEFINED) {
+                    return UNDEFINED;
+                }
+            } else {
+                if (!JsonValues.isArray(node)) {
+                    return UNDEFINED;
+                }
+                final long index = (Long) step;
+                final int size = JsonValues.size(node);
+                final long normalized = index < 0 ? size + index : index;
+                if (normalized < 0 || normalized >= size) {
+                    return UNDEFINED;
+                }
+                node = JsonValues.element(node, (int) normalized);
+            }
+        }
+        return node;
+    }
+
+    private Iterator<JSONPathMatch> matches(EvaluationContext context) {
+        final JSONPathMatch start = switch (anchor) {
+            case SELF -> context.currentMatch();
+            case ROOT -> context.rootMatch();
+            case FILTER_CONTEXT -> context.filterContextMatch();
+        };
+        Iterable<JSONPathMatch> matches = List.of(start);
+        for (JSONPathSegment segment : segments) {
+            matches = segment.resolve(matches);
+        }
+        return matches.iterator();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(anchor.symbol());
+        for (JSONPathSegment segment : segments) {
+            sb.append(segment);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FilterQuery that && anchor == that.anchor && segments.equals(that.segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(anchor, segments);
+    }
+}
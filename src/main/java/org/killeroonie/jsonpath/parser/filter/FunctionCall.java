@@ -0,0 +1,50 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A call of a function extension, e.g. {@code match(@.date, '1974-05-..')}.
+ *
+ * @param name      the name the function was called by.
+ * @param function  the function.
+ * @param arguments the arguments, one for each parameter of the function.
+ */
+public record FunctionCall(String name, FilterFunction function, List<FilterExpression> arguments)
+        implements FilterExpression {
+
+    public FunctionCall {
+        arguments = List.copyOf(arguments);
+    }
+
+    @Override
+    public ExpressionType type() {
+        return function.returnType();
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        final List<ExpressionType> parameterTypes = function.parameterTypes();
+        final Object[] values = new Object[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            final FilterExpression argument = arguments.get(i);
+            values[i] = switch (parameterTypes.get(i)) {
+                case VALUE -> argument.value(context);
+                case LOGICAL -> argument.test(context);
+                case NODES -> nodes(argument.evaluate(context));
+            };
+        }
+        return function.call(values);
+    }
+
+    // outside of well-typed environments, a value passed for a NODES parameter is a list of one node
+    private static NodeList nodes(Object result) {
+        return result instanceof NodeList nodes ? nodes : new NodeList(Collections.singletonList(result));
+    }
+
+    @Override
+    public String toString() {
+        return arguments.stream().map(Object::toString).collect(Collectors.joining(", ", name + "(", ")"));
+    }
+}
@@ -0,0 +1,56 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * A subexpression that doesn't depend on the current node, only on the root and the filter context, e.g. the
+ * {@code count($.items[*])} of {@code @.size < count($.items[*])}. It is evaluated once per query, and its result is
+ * reused for every node the filter tests. Created by the {@link FilterOptimizer}.
+ */
+public final class Hoisted implements FilterExpression {
+
+    private final FilterExpression expression;
+    private final int slot;
+    private final int hash;
+
+    /**
+     * @param expression the hoisted expression.
+     * @param slot       the index of the expression among the hoisted expressions of its filter selector.
+     */
+    public Hoisted(FilterExpression expression, int slot) {
+        this.expression = expression;
+        this.slot = slot;
+        this.hash = expression.hashCode(); // the query scope is keyed by hoisted expressions
+    }
+
+    public FilterExpression getExpression() {
+        return expression;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public ExpressionType type() {
+        return expression.type();
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return context.hoisted(this);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other == this || other instanceof Hoisted that && hash == that.hash && expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,68 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles I-Regexp patterns (RFC 9485), the patterns of the {@code match()} and {@code search()} functions, to Java
+ * patterns.
+ * <p>
+ * I-Regexp is close to a subset of Java's syntax. The difference that matters is the dot, which matches any character
+ * except {@code \n} and {@code \r} in I-Regexp, while Java's also excludes other line terminators. Patterns are
+ * usually literals, so compiled patterns are cached.
+ */
+final class IRegexp {
+
+    private static final int MAX_CACHED_PATTERNS = 256;
+    private static final ConcurrentHashMap<String, Optional<Pattern>> CACHE = new ConcurrentHashMap<>();
+
+    private IRegexp() {}
+
+    /**
+     * @return the compiled pattern, or null if {@code iregexp} isn't a valid pattern.
+     */
+    static Pattern compile(String iregexp) {
+        Optional<Pattern> pattern = CACHE.get(iregexp);
+        if (pattern == null) {
+            pattern = compileUncached(iregexp);
+            if (CACHE.size() >= MAX_CACHED_PATTERNS) {
+                CACHE.clear();
+            }
+            CACHE.putIfAbsent(iregexp, pattern);
+        }
+        return pattern.orElse(null);
+    }
+
+    private static Optional<Pattern> compileUncached(String iregexp) {
+        final StringBuilder sb = new StringBuilder(iregexp.length() + 8);
+        boolean inClass = false;
+        for (int i = 0; i < iregexp.length(); i++) {
+            final char c = iregexp.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    sb.append(c);
+                    if (++i < iregexp.length()) {
+                        sb.append(iregexp.charAt(i));
+                    }
+                }
+                case '[' -> {
+                    inClass = true;
+                    sb.append(c);
+                }
+                case ']' -> {
+                    inClass = false;
+                    sb.append(c);
+                }
+                case '.' -> sb.append(inClass ? "." : "[^\\n\\r]");
+                default -> sb.append(c);
+            }
+        }
+        try {
+            return Optional.of(Pattern.compile(sb.toString()));
+        } catch (PatternSyntaxException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A list of literal values, the right operand of the {@code in} operator, e.g. {@code @.color in ['red', 'blue']}. It
+ * evaluates to a JSON array.
+ *
+ * @param values the values of the literals, which may include null.
+ */
+public record ListLiteral(List<Object> values) implements FilterExpression {
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.VALUE;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return values.stream().map(Literal::toString).collect(Collectors.joining(", ", "[", "]"));
+    }
+}
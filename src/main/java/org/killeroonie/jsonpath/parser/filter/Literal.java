@@ -0,0 +1,41 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.killeroonie.jsonpath.JsonPathUtils;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * A literal value: a String, a Long or Double, a Boolean, null, or {@link org.killeroonie.jsonpath.JSONPointer#UNDEFINED}
+ * for the {@code undefined} keyword.
+ *
+ * @param value the value.
+ */
+public record Literal(Object value) implements FilterExpression {
+
+    public static final Literal TRUE = new Literal(Boolean.TRUE);
+    public static final Literal FALSE = new Literal(Boolean.FALSE);
+    public static final Literal NULL = new Literal(null);
+    public static final Literal NOTHING = new Literal(UNDEFINED);
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.VALUE;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return toString(value);
+    }
+
+    static String toString(Object value) {
+        if (value instanceof String s) {
+            return JsonPathUtils.canonicalString(s);
+        }
+        return value == UNDEFINED ? "undefined" : String.valueOf(value);
+    }
+}
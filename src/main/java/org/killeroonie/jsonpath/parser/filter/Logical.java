@@ -0,0 +1,46 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The conjunction or disjunction of two or more test expressions, e.g. {@code @.a && @.b && @.c}. Operands are
+ * evaluated from left to right, and evaluation stops at the first operand that decides the result.
+ *
+ * @param operator the operator.
+ * @param operands the operands, at least two. None of them is a Logical with the same operator.
+ */
+public record Logical(LogicalOperator operator, List<FilterExpression> operands) implements FilterExpression {
+
+    public Logical {
+        operands = List.copyOf(operands);
+    }
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.LOGICAL;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return test(context);
+    }
+
+    @Override
+    public boolean test(EvaluationContext context) {
+        final boolean or = operator == LogicalOperator.OR;
+        for (FilterExpression operand : operands) {
+            if (operand.test(context) == or) {
+                return or;
+            }
+        }
+        return !or;
+    }
+
+    @Override
+    public String toString() {
+        return operands.stream()
+                .map(operand -> operand instanceof Logical ? "(" + operand + ")" : operand.toString())
+                .collect(Collectors.joining(" " + operator + " "));
+    }
+}
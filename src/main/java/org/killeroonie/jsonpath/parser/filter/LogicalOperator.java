@@ -0,0 +1,24 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * The operators of {@link Logical} expressions.
+ */
+public enum LogicalOperator {
+    AND("&&"),
+    OR("||");
+
+    private final String symbol;
+
+    LogicalOperator(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public String symbol() {
+        return symbol;
+    }
+
+    @Override
+    public String toString() {
+        return symbol;
+    }
+}
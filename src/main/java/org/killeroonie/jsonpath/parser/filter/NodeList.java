@@ -0,0 +1,22 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.List;
+
+/**
+ * The result of an expression of type {@link ExpressionType#NODES}: the values of the nodes selected by a filter query,
+ * in document order.
+ * <p>
+ * A NodeList is distinct from a JSON array, which is a single value.
+ *
+ * @param values the values of the selected nodes.
+ */
+public record NodeList(List<Object> values) {
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
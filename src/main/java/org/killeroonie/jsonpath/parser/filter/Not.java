@@ -0,0 +1,29 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+/**
+ * The logical negation of a test expression, e.g. {@code !@.a}.
+ *
+ * @param operand the negated expression.
+ */
+public record Not(FilterExpression operand) implements FilterExpression {
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.LOGICAL;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return test(context);
+    }
+
+    @Override
+    public boolean test(EvaluationContext context) {
+        return !operand.test(context);
+    }
+
+    @Override
+    public String toString() {
+        return operand instanceof Comparison || operand instanceof Logical ? "!(" + operand + ")" : "!" + operand;
+    }
+}
@@ -0,0 +1,76 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * A regular expression literal, the right operand of the {@code =~} operator, e.g. {@code @.name =~ /^a/i}. It
+ * evaluates to the compiled {@link Pattern}.
+ */
+public final class RegexLiteral implements FilterExpression {
+
+    private final String source;
+    private final String flags;
+    private final Pattern pattern;
+
+    /**
+     * @param source  the pattern, as written between the slashes.
+     * @param flags   the flags following the pattern: {@code i}, {@code m} and {@code s}.
+     * @param pattern the compiled pattern.
+     */
+    public RegexLiteral(String source, String flags, Pattern pattern) {
+        this.source = source;
+        this.flags = flags;
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param flag a flag of a regular expression literal.
+     * @return the {@link Pattern} flags for {@code flag}, or -1 if it isn't {@code i}, {@code m} or {@code s}.
+     */
+    public static int patternFlags(char flag) {
+        return switch (flag) {
+            case 'i' -> Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            case 'm' -> Pattern.MULTILINE;
+            case 's' -> Pattern.DOTALL;
+            default -> -1;
+        };
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getFlags() {
+        return flags;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public ExpressionType type() {
+        return ExpressionType.VALUE;
+    }
+
+    @Override
+    public Object evaluate(EvaluationContext context) {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return "/" + source + "/" + flags;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RegexLiteral that && source.equals(that.source) && flags.equals(that.flags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, flags);
+    }
+}
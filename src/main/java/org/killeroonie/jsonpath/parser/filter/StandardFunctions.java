@@ -0,0 +1,110 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.killeroonie.jsonpath.JsonValues;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+import static org.killeroonie.jsonpath.parser.filter.ExpressionType.LOGICAL;
+import static org.killeroonie.jsonpath.parser.filter.ExpressionType.NODES;
+import static org.killeroonie.jsonpath.parser.filter.ExpressionType.VALUE;
+
+/**
+ * The function extensions defined by RFC 9535 section 2.4.
+ */
+public enum StandardFunctions implements FilterFunction {
+    /**
+     * The number of characters in a string, or elements in an array, or members in an object.
+     */
+    LENGTH("length", VALUE, VALUE) {
+        @Override
+        public Object call(Object[] arguments) {
+            final Object value = JsonValues.scalar(arguments[0]);
+            if (value instanceof String s) {
+                return s.codePointCount(0, s.length());
+            }
+            if (JsonValues.isArray(value) || JsonValues.isObject(value)) {
+                return JsonValues.size(value);
+            }
+            return UNDEFINED;
+        }
+    },
+    /**
+     * The number of nodes in a node list.
+     */
+    COUNT("count", VALUE, NODES) {
+        @Override
+        public Object call(Object[] arguments) {
+            return ((NodeList) arguments[0]).size();
+        }
+    },
+    /**
+     * True if a string matches an I-Regexp pattern in full.
+     */
+    MATCH("match", LOGICAL, VALUE, VALUE) {
+        @Override
+        public Object call(Object[] arguments) {
+            final Pattern pattern = pattern(arguments[1]);
+            return pattern != null && JsonValues.scalar(arguments[0]) instanceof String s
+                   && pattern.matcher(s).matches();
+        }
+    },
+    /**
+     * True if a string contains a substring matching an I-Regexp pattern.
+     */
+    SEARCH("search", LOGICAL, VALUE, VALUE) {
+        @Override
+        public Object call(Object[] arguments) {
+            final Pattern pattern = pattern(arguments[1]);
+            return pattern != null && JsonValues.scalar(arguments[0]) instanceof String s
+                   && pattern.matcher(s).find();
+        }
+    },
+    /**
+     * The value of the only node of a node list, or Nothing if the list is empty or has more than one node.
+     */
+    VALUE_OF("value", VALUE, NODES) {
+        @Override
+        public Object call(Object[] arguments) {
+            final NodeList nodes = (NodeList) arguments[0];
+            return nodes.size() == 1 ? nodes.values().getFirst() : UNDEFINED;
+        }
+    };
+
+    private final String functionName;
+    private final ExpressionType returnType;
+    private final List<ExpressionType> parameterTypes;
+
+    StandardFunctions(String functionName, ExpressionType returnType, ExpressionType... parameterTypes) {
+        this.functionName = functionName;
+        this.returnType = returnType;
+        this.parameterTypes = List.of(parameterTypes);
+    }
+
+    /**
+     * @return the name the function is called by in filter expressions.
+     */
+    public String functionName() {
+        return functionName;
+    }
+
+    @Override
+    public List<ExpressionType> parameterTypes() {
+        return parameterTypes;
+    }
+
+    @Override
+    public ExpressionType returnType() {
+        return returnType;
+    }
+
+    @Override
+    public boolean isPure() {
+        return true;
+    }
+
+    private static Pattern pattern(Object argument) {
+        return JsonValues.scalar(argument) instanceof String iregexp ? IRegexp.compile(iregexp) : null;
+    }
+}
@@ -0,0 +1,121 @@
+package org.killeroonie.jsonpath.parser.segment;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The nodes being visited by a descendant segment, each with its depth and the position of the next child to visit.
+ * The stack is a set of parallel arrays, so visiting a node allocates nothing but its match, and the members iterator
+ * of an object.
+ * <p>
+ * Stacks are reused: each thread keeps its last released stack for the next traversal, so a steady stream of
+ * traversals allocates no arrays, however deep the documents are. A traversal that isn't finished, like an iterator
+ * that is dropped, doesn't release its stack, and the next traversal creates a new one.
+ */
+final class DescentStack {
+
+    private static final int INITIAL_DEPTH = 16;
+    private static final int MAX_IDLE_DEPTH = 4096; // deeper stacks aren't kept, to bound the memory of idle threads
+    private static final ThreadLocal<DescentStack> IDLE = new ThreadLocal<>(); // the released stack of each thread
+
+    private int top = -1;
+    private JSONPathMatch[] matches = new JSONPathMatch[INITIAL_DEPTH];
+    private int[] depths = new int[INITIAL_DEPTH];
+    private Iterator<?>[] members = new Iterator<?>[INITIAL_DEPTH]; // the remaining members, if an object
+    private int[] sizes = new int[INITIAL_DEPTH]; // the number of elements, if an array
+    private int[] indices = new int[INITIAL_DEPTH]; // the next element index
+
+    private DescentStack() {}
+
+    /**
+     * @return the released stack of this thread, or a new stack if there is none. The stack must be
+     * {@linkplain #release() released} once the traversal has ended, and not used after.
+     */
+    static DescentStack acquire() {
+        final DescentStack stack = IDLE.get();
+        if (stack == null) {
+            return new DescentStack();
+        }
+        IDLE.remove();
+        return stack;
+    }
+
+    /**
+     * Clears the stack, and keeps it for the next {@link #acquire} of this thread.
+     */
+    void release() {
+        while (top >= 0) {
+            pop();
+        }
+        if (matches.length <= MAX_IDLE_DEPTH) {
+            IDLE.set(this);
+        }
+    }
+
+    boolean isEmpty() {
+        return top < 0;
+    }
+
+    /**
+     * @return the depth of the node on top of the stack.
+     */
+    int depth() {
+        return depths[top];
+    }
+
+    /**
+     * Pushes a node, to visit its children from the first.
+     */
+    void push(JSONPathMatch match, int depth) {
+        if (++top == matches.length) {
+            final int length = top * 2;
+            matches = Arrays.copyOf(matches, length);
+            depths = Arrays.copyOf(depths, length);
+            members = Arrays.copyOf(members, length);
+            sizes = Arrays.copyOf(sizes, length);
+            indices = Arrays.copyOf(indices, length);
+        }
+        matches[top] = match;
+        depths[top] = depth;
+        members[top] = JsonValues.isObject(match.obj) ? JsonValues.members(match.obj) : null;
+        sizes[top] = JsonValues.isArray(match.obj) ? JsonValues.size(match.obj) : 0;
+        indices[top] = 0;
+    }
+
+    void pop() {
+        matches[top] = null;
+        members[top] = null;
+        top--;
+    }
+
+    /**
+     * @return the next child array or object of the node on top of the stack, or null if there are no more.
+     */
+    JSONPathMatch nextChild() {
+        final JSONPathMatch match = matches[top];
+        final Iterator<?> it = members[top];
+        if (it != null) {
+            while (it.hasNext()) {
+                final Map.Entry<?, ?> member = (Map.Entry<?, ?>) it.next();
+                final Object value = member.getValue();
+                if (JsonValues.isObject(value) || JsonValues.isArray(value)) {
+                    return match.newChild(value, (String) member.getKey());
+                }
+            }
+            return null;
+        }
+        final int size = sizes[top];
+        while (indices[top] < size) {
+            final int i = indices[top]++;
+            final Object element = JsonValues.element(match.obj, i);
+            if (JsonValues.isObject(element) || JsonValues.isArray(element)) {
+                return match.newChild(element, i);
+            }
+        }
+        return null;
+    }
+}
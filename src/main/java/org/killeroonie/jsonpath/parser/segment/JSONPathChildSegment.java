@@ -0,0 +1,39 @@
+package org.killeroonie.jsonpath.parser.segment;
+
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+
+/**
+ * The JSONPath child segment, e.g. {@code .name} or {@code ['a', 0]}, which applies its selectors to each node.
+ */
+public final class JSONPathChildSegment extends JSONPathSegment {
+
+    public JSONPathChildSegment(JSONPathEnvironment env, Token token, JSONPathSelector[] selectors) {
+        super(env, token, selectors);
+    }
+
+    @Override
+    protected Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        return applySelectors(match);
+    }
+
+    @Override
+    protected Spliterator<JSONPathMatch> split(JSONPathMatch match, int threshold) {
+        return size() == 1 ? selector(0).spliterator(match, threshold) : null;
+    }
+
+    @Override
+    public boolean isSingular() {
+        return size() == 1 && selector(0).isSingular();
+    }
+
+    @Override
+    public String toString() {
+        return selectorsToString();
+    }
+}
@@ -0,0 +1,184 @@
+package org.killeroonie.jsonpath.parser.segment;
+
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The JSONPath descendant segment, e.g. {@code ..name} or {@code ..[0]}, which applies its selectors to each node and
+ * all of its descendants, in depth-first pre-order.
+ * <p>
+ * Descendants are visited lazily, so consuming the first match visits only the nodes up to the one it's selected from.
+ * With {@linkplain JSONPathEnvironment#setParallelDescent parallel descent}, they're visited eagerly instead, and the
+ * children of big arrays and objects are split between ForkJoin workers.
+ */
+public final class JSONPathRecursiveDescentSegment extends JSONPathSegment {
+
+    public JSONPathRecursiveDescentSegment(JSONPathEnvironment env, Token token, JSONPathSelector[] selectors) {
+        super(env, token, selectors);
+    }
+
+    @Override
+    protected Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        if (getEnv().isParallelDescent()) {
+            final List<JSONPathMatch> selected = new ArrayList<>();
+            descend(match, 1, selected);
+            return selected.iterator();
+        }
+        return new DescentIterator(match);
+    }
+
+    /**
+     * Visits a match and its descendants in pre-order, adding the matches selected from them to {@code out}. The
+     * children of arrays and objects of at least {@code parallelThreshold} children are visited by a
+     * {@link DescentTask}, in parallel.
+     */
+    private void descend(JSONPathMatch start, int depth, List<JSONPathMatch> out) {
+        final DescentStack stack = DescentStack.acquire();
+        JSONPathMatch match = start;
+        while (true) {
+            if (depth > getEnv().maxRecursionDepth) {
+                throw new JSONPathRecursionException("recursion limit exceeded", getToken());
+            }
+            applySelectors(match).forEachRemaining(out::add);
+            stack.push(match, depth);
+            if (JsonValues.size(match.obj) >= getEnv().parallelThreshold) {
+                final List<JSONPathMatch> children = new ArrayList<>();
+                for (JSONPathMatch child = stack.nextChild(); child != null; child = stack.nextChild()) {
+                    children.add(child);
+                }
+                stack.pop();
+                // a few ranges for each worker, so the workers that finish first can steal the rest
+                final int parallelism = ForkJoinTask.inForkJoinPool()
+                        ? ForkJoinTask.getPool().getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+                final int grain = Math.max(1, children.size() / (4 * parallelism));
+                out.addAll(new DescentTask(children, 0, children.size(), depth + 1, grain).invoke());
+            }
+            match = null;
+            while (match == null && !stack.isEmpty()) {
+                match = stack.nextChild();
+                if (match == null) {
+                    stack.pop();
+                }
+            }
+            if (match == null) {
+                stack.release();
+                return;
+            }
+            depth = stack.depth() + 1;
+        }
+    }
+
+    /**
+     * Visits a range of the children of a big array or object, splitting it in two while it has more than
+     * {@code grain} children. The matches of the two halves are concatenated, so they stay in document order.
+     */
+    private final class DescentTask extends RecursiveTask<List<JSONPathMatch>> {
+        private final List<JSONPathMatch> children;
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final int grain;
+
+        DescentTask(List<JSONPathMatch> children, int from, int to, int depth, int grain) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.grain = grain;
+        }
+
+        @Override
+        protected List<JSONPathMatch> compute() {
+            if (to - from > grain) {
+                final int middle = (from + to) >>> 1;
+                final DescentTask first = new DescentTask(children, from, middle, depth, grain);
+                first.fork();
+                final List<JSONPathMatch> second = new DescentTask(children, middle, to, depth, grain).compute();
+                final List<JSONPathMatch> result = first.join();
+                result.addAll(second);
+                return result;
+            }
+            final List<JSONPathMatch> result = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                descend(children.get(i), depth, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Visits a match and its descendants in pre-order, applying the selectors to each node when it is visited. The
+     * nodes being visited are held on a {@link DescentStack}, and the next node is visited only when the matches
+     * selected from the previous one have all been consumed. The stack is released when the last node has been
+     * visited.
+     */
+    private final class DescentIterator implements Iterator<JSONPathMatch> {
+        private DescentStack stack = DescentStack.acquire(); // null once released
+        private Iterator<JSONPathMatch> selected;
+
+        DescentIterator(JSONPathMatch match) {
+            visit(match, 1);
+        }
+
+        private void visit(JSONPathMatch match, int depth) {
+            if (depth > getEnv().maxRecursionDepth) {
+                throw new JSONPathRecursionException("recursion limit exceeded", getToken());
+            }
+            selected = applySelectors(match);
+            stack.push(match, depth);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!selected.hasNext()) {
+                if (stack == null) {
+                    return false;
+                }
+                JSONPathMatch child = null;
+                while (child == null && !stack.isEmpty()) {
+                    child = stack.nextChild();
+                    if (child == null) {
+                        stack.pop();
+                    }
+                }
+                if (child == null) {
+                    stack.release();
+                    stack = null;
+                    return false;
+                }
+                visit(child, stack.depth() + 1);
+            }
+            return true;
+        }
+
+        @Override
+        public JSONPathMatch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return selected.next();
+        }
+    }
+
+    @Override
+    public boolean isSingular() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return ".." + selectorsToString();
+    }
+}
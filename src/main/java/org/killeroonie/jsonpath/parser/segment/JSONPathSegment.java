@@ -1,7 +1,279 @@
 package org.killeroonie.jsonpath.parser.segment;
 
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Base class for all JSONPath segments.
+ * <p>
+ * A segment holds its selectors in an array that is owned by the segment: the parser hands over an exactly sized array,
+ * which is never copied or modified. Segments are immutable and can be shared between threads.
+ */
 public abstract class JSONPathSegment {
 
+    private final JSONPathEnvironment env;
+    private final Token token;
+    private final JSONPathSelector[] selectors;
+
+    /**
+     * @param env       the environment of the path.
+     * @param token     the token at the start of the segment.
+     * @param selectors the selectors of the segment. The segment takes ownership of the array.
+     */
+    protected JSONPathSegment(JSONPathEnvironment env, Token token, JSONPathSelector[] selectors) {
+        this.env = env;
+        this.token = token;
+        this.selectors = selectors;
+    }
+
+    public JSONPathEnvironment getEnv() {
+        return env;
+    }
+
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * @return the number of selectors in this segment.
+     */
+    public int size() {
+        return selectors.length;
+    }
+
+    /**
+     * @return the selector at {@code index}.
+     */
+    public JSONPathSelector selector(int index) {
+        return selectors[index];
+    }
+
+    /**
+     * @return an unmodifiable view of the selectors of this segment.
+     */
+    public List<JSONPathSelector> selectors() {
+        return List.of(selectors);
+    }
+
+    /**
+     * Apply this segment to each match in {@code matches}.
+     * <p>
+     * The result is lazy and pull-based: each match is selected only when it is pulled from the iterator, so consuming
+     * the first match visits only the nodes needed to find it.
+     * @param matches the matches selected by the previous segment, or the root match.
+     * @return the matches selected by this segment.
+     */
+    public Iterable<JSONPathMatch> resolve(Iterable<JSONPathMatch> matches) {
+        return () -> new SelectionIterator(matches.iterator());
+    }
+
+    /**
+     * Apply this segment to each match that {@code matches} reports, as a spliterator that parallel streams can split.
+     * <p>
+     * The spliterator is split by splitting {@code matches}, or else the children selected from a single match, when
+     * its selector splits them: the elements of arrays of at least {@code threshold} elements are split between the
+     * workers of a stream. The matches are reported in order, so ordered streams collect them in document order.
+     * @param matches   the matches selected by the previous segment, or the root match.
+     * @param threshold the least number of elements of an array for the selected elements to be split.
+     * @return the matches selected by this segment.
+     */
+    public Spliterator<JSONPathMatch> spliterator(Spliterator<JSONPathMatch> matches, int threshold) {
+        return new SelectionSpliterator(matches, null, threshold);
+    }
+
+    /**
+     * @return true if this segment selects at most one child of each match, by a single name or index.
+     */
+    public abstract boolean isSingular();
+
+    /**
+     * Applies the selectors of this segment to one match, lazily.
+     * @return the selected matches, in order.
+     */
+    protected abstract Iterator<JSONPathMatch> select(JSONPathMatch match);
+
+    /**
+     * Applies the selectors of this segment to one match, as a spliterator that can be split, if they split the
+     * children they select.
+     * <p>
+     * This implementation returns null, and the matches are selected with {@link #select} by a single worker.
+     * @return the selected matches, in order, or null if they aren't split.
+     */
+    protected Spliterator<JSONPathMatch> split(JSONPathMatch match, int threshold) {
+        return null;
+    }
+
+    /**
+     * Applies each selector to {@code match}, in order, lazily.
+     */
+    protected final Iterator<JSONPathMatch> applySelectors(JSONPathMatch match) {
+        if (selectors.length == 1) {
+            return selectors[0].select(match);
+        }
+        return new Iterator<>() {
+            private int next; // the next selector
+            private Iterator<JSONPathMatch> selected = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!selected.hasNext() && next < selectors.length) {
+                    selected = selectors[next++].select(match);
+                }
+                return selected.hasNext();
+            }
+
+            @Override
+            public JSONPathMatch next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return selected.next();
+            }
+        };
+    }
+
+    /**
+     * @return the selectors, as they appear in a normalized path, e.g. {@code ['a', 0]}.
+     */
+    protected final String selectorsToString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < selectors.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(selectors[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other != null && other.getClass() == getClass() &&
+               Arrays.equals(selectors, ((JSONPathSegment) other).selectors);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * getClass().hashCode() + Arrays.hashCode(selectors);
+    }
+
+    /**
+     * Selects from the input matches one at a time, pulling the next input match only when the matches selected from
+     * the previous one have all been consumed.
+     */
+    private final class SelectionIterator implements Iterator<JSONPathMatch> {
+        private final Iterator<JSONPathMatch> input;
+        private Iterator<JSONPathMatch> selected = Collections.emptyIterator();
+
+        SelectionIterator(Iterator<JSONPathMatch> input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!selected.hasNext() && input.hasNext()) {
+                selected = select(input.next());
+            }
+            return selected.hasNext();
+        }
+
+        @Override
+        public JSONPathMatch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return selected.next();
+        }
+    }
+
+    /**
+     * Selects from the input matches one at a time, like {@link SelectionIterator}, and splits the input matches, or
+     * the matches selected from the current one, when it is split.
+     */
+    private final class SelectionSpliterator implements Spliterator<JSONPathMatch> {
+        private final Spliterator<JSONPathMatch> input;
+        private final int threshold;
+        private Spliterator<JSONPathMatch> split; // the matches selected from the current input match, if split
+        private Iterator<JSONPathMatch> selected = Collections.emptyIterator(); // or else, the selected matches
+        private JSONPathMatch next; // the input match pulled by advanceInput()
+
+        SelectionSpliterator(Spliterator<JSONPathMatch> input, Spliterator<JSONPathMatch> split, int threshold) {
+            this.input = input;
+            this.split = split;
+            this.threshold = threshold;
+        }
+
+        /**
+         * Selects from the next input match.
+         * @return false if there are no more input matches.
+         */
+        private boolean advanceInput() {
+            if (!input.tryAdvance(match -> next = match)) {
+                return false;
+            }
+            split = split(next, threshold);
+            selected = split == null ? select(next) : Collections.emptyIterator();
+            next = null;
+            return true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super JSONPathMatch> action) {
+            do {
+                if (split != null && split.tryAdvance(action)) {
+                    return true;
+                }
+                split = null;
+                if (selected.hasNext()) {
+                    action.accept(selected.next());
+                    return true;
+                }
+            } while (advanceInput());
+            return false;
+        }
+
+        @Override
+        public Spliterator<JSONPathMatch> trySplit() {
+            final Spliterator<JSONPathMatch> prefix = input.trySplit();
+            if (prefix != null) {
+                // the prefix reports the rest of the current selections, then the selections from its input
+                final SelectionSpliterator result = new SelectionSpliterator(prefix, split, threshold);
+                result.selected = selected;
+                split = null;
+                selected = Collections.emptyIterator();
+                return result;
+            }
+            if (split == null && !selected.hasNext() && !advanceInput()) {
+                return null;
+            }
+            final Spliterator<JSONPathMatch> selectedPrefix = split != null ? split.trySplit() : null;
+            if (selectedPrefix == null) {
+                return null;
+            }
+            return new SelectionSpliterator(Spliterators.emptySpliterator(), selectedPrefix, threshold);
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE; // unknown, so streams keep splitting while it can be split
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
 }
 
 /*
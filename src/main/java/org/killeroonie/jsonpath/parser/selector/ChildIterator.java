@@ -0,0 +1,37 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Selects the children of a node one at a time, as they are pulled.
+ */
+abstract class ChildIterator implements Iterator<JSONPathMatch> {
+
+    private JSONPathMatch next;
+
+    /**
+     * @return the next selected child, or null if there are no more.
+     */
+    protected abstract JSONPathMatch advance();
+
+    @Override
+    public final boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public final JSONPathMatch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final JSONPathMatch result = next;
+        next = null;
+        return result;
+    }
+}
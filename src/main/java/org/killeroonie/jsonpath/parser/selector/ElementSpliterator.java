@@ -0,0 +1,84 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Selects children from a range of positions in an array, for parallel streams. The range is split in two while it
+ * has at least {@code threshold} positions left, so the children of small arrays are selected by a single worker.
+ */
+abstract class ElementSpliterator implements Spliterator<JSONPathMatch> {
+
+    private int position;
+    private final int end;
+    private final int threshold;
+    private final int characteristics;
+
+    /**
+     * @param from            the first position.
+     * @param to              the position after the last one.
+     * @param threshold       the least number of positions left for the range to be split.
+     * @param characteristics the characteristics besides {@link #ORDERED} and {@link #NONNULL}.
+     */
+    ElementSpliterator(int from, int to, int threshold, int characteristics) {
+        this.position = from;
+        this.end = to;
+        this.threshold = Math.max(threshold, 2);
+        this.characteristics = ORDERED | NONNULL | characteristics;
+    }
+
+    /**
+     * @return the child selected at {@code position}, or null if it isn't selected.
+     */
+    protected abstract JSONPathMatch select(int position);
+
+    /**
+     * @return a spliterator over the positions from {@code from} to {@code to}, of the same array.
+     */
+    protected abstract ElementSpliterator range(int from, int to);
+
+    @Override
+    public final boolean tryAdvance(Consumer<? super JSONPathMatch> action) {
+        while (position < end) {
+            final JSONPathMatch selected = select(position++);
+            if (selected != null) {
+                action.accept(selected);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public final void forEachRemaining(Consumer<? super JSONPathMatch> action) {
+        while (position < end) {
+            final JSONPathMatch selected = select(position++);
+            if (selected != null) {
+                action.accept(selected);
+            }
+        }
+    }
+
+    @Override
+    public final Spliterator<JSONPathMatch> trySplit() {
+        if (end - position < threshold) {
+            return null;
+        }
+        final int middle = (position + end) >>> 1;
+        final ElementSpliterator prefix = range(position, middle);
+        position = middle;
+        return prefix;
+    }
+
+    @Override
+    public final long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public final int characteristics() {
+        return characteristics;
+    }
+}
@@ -0,0 +1,143 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.parser.filter.EvaluationContext;
+import org.killeroonie.jsonpath.parser.filter.FilterExpression;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Selects the elements of a JSON array, or the values of the members of a JSON object, for which a filter expression
+ * is true, e.g. {@code $.books[?@.price < 10]}.
+ */
+public final class FilterSelector extends JSONPathSelector {
+
+    private final FilterExpression expression;
+
+    /**
+     * @param token      the {@code ?} token.
+     * @param expression the filter expression.
+     */
+    public FilterSelector(Token token, FilterExpression expression) {
+        super(token);
+        this.expression = expression;
+    }
+
+    public FilterExpression getExpression() {
+        return expression;
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        final Object obj = match.obj;
+        if (JsonValues.isArray(obj)) {
+            final EvaluationContext context = new EvaluationContext(match);
+            final int size = JsonValues.size(obj);
+            for (int i = 0; i < size; i++) {
+                context.moveTo(JsonValues.element(obj, i), i);
+                if (expression.test(context)) {
+                    out.accept(context.currentMatch());
+                }
+            }
+        } else if (JsonValues.isObject(obj)) {
+            final EvaluationContext context = new EvaluationContext(match);
+            for (Iterator<Map.Entry<String, Object>> it = JsonValues.members(obj); it.hasNext(); ) {
+                final Map.Entry<String, Object> member = it.next();
+                context.moveTo(member.getValue(), member.getKey());
+                if (expression.test(context)) {
+                    out.accept(context.currentMatch());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        final Object obj = match.obj;
+        if (JsonValues.isArray(obj)) {
+            final EvaluationContext context = new EvaluationContext(match);
+            final int size = JsonValues.size(obj);
+            return new ChildIterator() {
+                private int i;
+
+                @Override
+                protected JSONPathMatch advance() {
+                    while (i < size) {
+                        final int index = i++;
+                        context.moveTo(JsonValues.element(obj, index), index);
+                        if (expression.test(context)) {
+                            return context.currentMatch();
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+        if (JsonValues.isObject(obj)) {
+            final EvaluationContext context = new EvaluationContext(match);
+            final Iterator<Map.Entry<String, Object>> members = JsonValues.members(obj);
+            return new ChildIterator() {
+                @Override
+                protected JSONPathMatch advance() {
+                    while (members.hasNext()) {
+                        final Map.Entry<String, Object> member = members.next();
+                        context.moveTo(member.getValue(), member.getKey());
+                        if (expression.test(context)) {
+                            return context.currentMatch();
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public Spliterator<JSONPathMatch> spliterator(JSONPathMatch match, int threshold) {
+        final Object obj = match.obj;
+        if (!JsonValues.isArray(obj)) {
+            return null;
+        }
+        final class Elements extends ElementSpliterator {
+            private final EvaluationContext context = new EvaluationContext(match); // one for each worker
+
+            Elements(int from, int to) {
+                super(from, to, threshold, 0);
+            }
+
+            @Override
+            protected JSONPathMatch select(int position) {
+                context.moveTo(JsonValues.element(obj, position), position);
+                return expression.test(context) ? context.currentMatch() : null;
+            }
+
+            @Override
+            protected ElementSpliterator range(int from, int to) {
+                return new Elements(from, to);
+            }
+        }
+        return new Elements(0, JsonValues.size(obj));
+    }
+
+    @Override
+    public String toString() {
+        return "?" + expression;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FilterSelector that && expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+}
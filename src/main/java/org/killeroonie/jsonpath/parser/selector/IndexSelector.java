@@ -0,0 +1,60 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.function.Consumer;
+
+/**
+ * Selects the element at a given index from a JSON array. Negative indices count back from the end of the array.
+ */
+public final class IndexSelector extends JSONPathSelector {
+
+    private final long index;
+
+    /**
+     * @param token the token of the index.
+     * @param index the index, in the range of I-JSON integers.
+     */
+    public IndexSelector(Token token, long index) {
+        super(token);
+        this.index = index;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        if (JsonValues.isArray(match.obj)) {
+            final int size = JsonValues.size(match.obj);
+            final long normalized = index < 0 ? size + index : index;
+            if (normalized >= 0 && normalized < size) {
+                final int i = (int) normalized;
+                out.accept(match.newChild(JsonValues.element(match.obj, i), i));
+            }
+        }
+    }
+
+    @Override
+    public boolean isSingular() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(index);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof IndexSelector that && index == that.index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(index);
+    }
+}
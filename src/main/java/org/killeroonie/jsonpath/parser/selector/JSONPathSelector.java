@@ -0,0 +1,74 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Base class for all JSONPath selectors. A selector selects zero or more children of a node, and is applied to each
+ * node by the segment that contains it.
+ * <p>
+ * Selectors are immutable and can be shared between threads.
+ */
+public abstract class JSONPathSelector {
+
+    private final Token token;
+
+    protected JSONPathSelector(Token token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the token at the start of this selector, for error messages.
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * Applies this selector to a node, passing each selected child to {@code out} in document order.
+     * @param match the node.
+     * @param out   receives the selected children.
+     */
+    public abstract void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out);
+
+    /**
+     * Applies this selector to a node lazily, selecting each child only when it is pulled from the iterator.
+     * <p>
+     * This implementation selects the children with {@link #resolve}, which is fine for selectors that select at most
+     * one child. Selectors that select many children override it.
+     * @param match the node.
+     * @return the selected children, in document order.
+     */
+    public Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        final List<JSONPathMatch> selected = new ArrayList<>(1);
+        resolve(match, selected::add);
+        return selected.iterator();
+    }
+
+    /**
+     * Applies this selector to a node as a spliterator that parallel streams can split, if this selector selects many
+     * elements of arrays.
+     * <p>
+     * This implementation returns null, and the children are selected with {@link #select} by a single worker.
+     * Selectors that select many elements override it, and split the arrays of at least {@code threshold} elements.
+     * @param match     the node.
+     * @param threshold the least number of elements left for the spliterator to be split.
+     * @return the selected children, in document order, or null if this selector doesn't split them.
+     */
+    public Spliterator<JSONPathMatch> spliterator(JSONPathMatch match, int threshold) {
+        return null;
+    }
+
+    /**
+     * @return true if this selector selects at most one child of any node.
+     */
+    public boolean isSingular() {
+        return false;
+    }
+}
@@ -0,0 +1,70 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonPathUtils;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Selects the member names of a JSON object, an extension to RFC 9535 written {@code ~}.
+ * <p>
+ * Each selected name is matched with the path part {@code ~name}, which a {@link org.killeroonie.jsonpath.JSONPointer}
+ * resolves to the name itself.
+ */
+public final class KeysSelector extends JSONPathSelector {
+
+    public KeysSelector(Token token) {
+        super(token);
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        if (JsonValues.isObject(match.obj)) {
+            for (Iterator<String> it = JsonValues.names(match.obj); it.hasNext(); ) {
+                out.accept(newKeyMatch(match, it.next()));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        if (!JsonValues.isObject(match.obj)) {
+            return Collections.emptyIterator();
+        }
+        final Iterator<String> names = JsonValues.names(match.obj);
+        return new ChildIterator() {
+            @Override
+            protected JSONPathMatch advance() {
+                return names.hasNext() ? newKeyMatch(match, names.next()) : null;
+            }
+        };
+    }
+
+    /**
+     * @param match the match of a JSON object.
+     * @param name  a member name of the object.
+     * @return the match of the name, as selected by this selector.
+     */
+    public static JSONPathMatch newKeyMatch(JSONPathMatch match, String name) {
+        return match.newKeyChild(name);
+    }
+
+    @Override
+    public String toString() {
+        return JsonPathUtils.KEYS_SELECTOR;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KeysSelector;
+    }
+
+    @Override
+    public int hashCode() {
+        return KeysSelector.class.hashCode();
+    }
+}
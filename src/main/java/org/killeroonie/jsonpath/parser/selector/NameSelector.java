@@ -0,0 +1,68 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonPathUtils;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.function.Consumer;
+
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * Selects the value of the member with a given name, from a JSON object.
+ */
+public final class NameSelector extends JSONPathSelector {
+
+    private final String name;
+    private final boolean shorthand;
+
+    /**
+     * @param token     the token of the name.
+     * @param name      the decoded member name.
+     * @param shorthand true if the name was written with the dot notation, e.g. {@code $.name}.
+     */
+    public NameSelector(Token token, String name, boolean shorthand) {
+        super(token);
+        this.name = name;
+        this.shorthand = shorthand;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isShorthand() {
+        return shorthand;
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        if (JsonValues.isObject(match.obj)) {
+            final Object value = JsonValues.member(match.obj, name);
+            if (value != UNDEFINED) {
+                out.accept(match.newChild(value, name));
+            }
+        }
+    }
+
+    @Override
+    public boolean isSingular() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return JsonPathUtils.canonicalString(name);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NameSelector that && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+}
@@ -0,0 +1,173 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Selects a range of elements from a JSON array, as specified by RFC 9535 section 2.3.4.
+ * <p>
+ * Start and stop default to the ends of the array in the direction of the step, and the step defaults to 1. A step of
+ * 0 selects nothing.
+ */
+public final class SliceSelector extends JSONPathSelector {
+
+    private final Long start;
+    private final Long stop;
+    private final Long step;
+
+    /**
+     * @param token the token at the start of the slice.
+     * @param start the start index, or null if omitted.
+     * @param stop  the stop index, or null if omitted.
+     * @param step  the step, or null if omitted.
+     */
+    public SliceSelector(Token token, Long start, Long stop, Long step) {
+        super(token);
+        this.start = start;
+        this.stop = stop;
+        this.step = step;
+    }
+
+    public Long getStart() {
+        return start;
+    }
+
+    public Long getStop() {
+        return stop;
+    }
+
+    public Long getStep() {
+        return step;
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        final Object obj = match.obj;
+        if (!JsonValues.isArray(obj)) {
+            return;
+        }
+        final long step = this.step == null ? 1 : this.step;
+        if (step == 0) {
+            return;
+        }
+        final long length = JsonValues.size(obj);
+        if (step > 0) {
+            final long lower = bound(start == null ? 0 : normalize(start, length), 0, length);
+            final long upper = bound(stop == null ? length : normalize(stop, length), 0, length);
+            for (long i = lower; i < upper; i += step) {
+                out.accept(match.newChild(JsonValues.element(obj, (int) i), (int) i));
+            }
+        } else {
+            final long upper = bound(start == null ? length - 1 : normalize(start, length), -1, length - 1);
+            final long lower = bound(stop == null ? -length - 1 : normalize(stop, length), -1, length - 1);
+            for (long i = upper; lower < i; i += step) {
+                out.accept(match.newChild(JsonValues.element(obj, (int) i), (int) i));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        final Object obj = match.obj;
+        final long step = this.step == null ? 1 : this.step;
+        if (!JsonValues.isArray(obj) || step == 0) {
+            return Collections.emptyIterator();
+        }
+        final long length = JsonValues.size(obj);
+        final long first;
+        final long limit;
+        if (step > 0) {
+            first = bound(start == null ? 0 : normalize(start, length), 0, length);
+            limit = bound(stop == null ? length : normalize(stop, length), 0, length);
+        } else {
+            first = bound(start == null ? length - 1 : normalize(start, length), -1, length - 1);
+            limit = bound(stop == null ? -length - 1 : normalize(stop, length), -1, length - 1);
+        }
+        return new ChildIterator() {
+            private long i = first;
+
+            @Override
+            protected JSONPathMatch advance() {
+                if (step > 0 ? i >= limit : i <= limit) {
+                    return null;
+                }
+                final int index = (int) i;
+                i += step;
+                return match.newChild(JsonValues.element(obj, index), index);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<JSONPathMatch> spliterator(JSONPathMatch match, int threshold) {
+        final Object obj = match.obj;
+        final long step = this.step == null ? 1 : this.step;
+        if (!JsonValues.isArray(obj) || step == 0) {
+            return null;
+        }
+        final long length = JsonValues.size(obj);
+        final long first;
+        final long count; // the number of selected elements
+        if (step > 0) {
+            first = bound(start == null ? 0 : normalize(start, length), 0, length);
+            final long limit = bound(stop == null ? length : normalize(stop, length), 0, length);
+            count = first < limit ? (limit - first - 1) / step + 1 : 0;
+        } else {
+            first = bound(start == null ? length - 1 : normalize(start, length), -1, length - 1);
+            final long limit = bound(stop == null ? -length - 1 : normalize(stop, length), -1, length - 1);
+            count = first > limit ? (first - limit - 1) / -step + 1 : 0;
+        }
+        // position p of the slice selects the element at first + p * step
+        final class Elements extends ElementSpliterator {
+            Elements(int from, int to) {
+                super(from, to, threshold, Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+
+            @Override
+            protected JSONPathMatch select(int position) {
+                final int index = (int) (first + position * step);
+                return match.newChild(JsonValues.element(obj, index), index);
+            }
+
+            @Override
+            protected ElementSpliterator range(int from, int to) {
+                return new Elements(from, to);
+            }
+        }
+        return new Elements(0, (int) count);
+    }
+
+    private static long normalize(long index, long length) {
+        return index >= 0 ? index : length + index;
+    }
+
+    private static long bound(long index, long min, long max) {
+        return Math.min(Math.max(index, min), max);
+    }
+
+    @Override
+    public String toString() {
+        return "%s:%s:%s".formatted(
+                start == null ? "" : start,
+                stop == null ? "" : stop,
+                step == null ? "" : step);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SliceSelector that && Objects.equals(start, that.start) &&
+               Objects.equals(stop, that.stop) && Objects.equals(step, that.step);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, stop, step);
+    }
+}
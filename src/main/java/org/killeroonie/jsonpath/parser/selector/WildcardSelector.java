@@ -0,0 +1,110 @@
+package org.killeroonie.jsonpath.parser.selector;
+
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.JsonValues;
+import org.killeroonie.jsonpath.Token;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Selects every element of a JSON array, or the value of every member of a JSON object.
+ */
+public final class WildcardSelector extends JSONPathSelector {
+
+    public WildcardSelector(Token token) {
+        super(token);
+    }
+
+    @Override
+    public void resolve(JSONPathMatch match, Consumer<? super JSONPathMatch> out) {
+        final Object obj = match.obj;
+        if (JsonValues.isArray(obj)) {
+            final int size = JsonValues.size(obj);
+            for (int i = 0; i < size; i++) {
+                out.accept(match.newChild(JsonValues.element(obj, i), i));
+            }
+        } else if (JsonValues.isObject(obj)) {
+            for (Iterator<Map.Entry<String, Object>> it = JsonValues.members(obj); it.hasNext(); ) {
+                final Map.Entry<String, Object> member = it.next();
+                out.accept(match.newChild(member.getValue(), member.getKey()));
+            }
+        }
+    }
+
+    @Override
+    public Iterator<JSONPathMatch> select(JSONPathMatch match) {
+        final Object obj = match.obj;
+        if (JsonValues.isArray(obj)) {
+            final int size = JsonValues.size(obj);
+            return new ChildIterator() {
+                private int i;
+
+                @Override
+                protected JSONPathMatch advance() {
+                    if (i >= size) {
+                        return null;
+                    }
+                    final int index = i++;
+                    return match.newChild(JsonValues.element(obj, index), index);
+                }
+            };
+        }
+        if (JsonValues.isObject(obj)) {
+            final Iterator<Map.Entry<String, Object>> members = JsonValues.members(obj);
+            return new ChildIterator() {
+                @Override
+                protected JSONPathMatch advance() {
+                    if (!members.hasNext()) {
+                        return null;
+                    }
+                    final Map.Entry<String, Object> member = members.next();
+                    return match.newChild(member.getValue(), member.getKey());
+                }
+            };
+        }
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public Spliterator<JSONPathMatch> spliterator(JSONPathMatch match, int threshold) {
+        final Object obj = match.obj;
+        if (!JsonValues.isArray(obj)) {
+            return null;
+        }
+        final class Elements extends ElementSpliterator {
+            Elements(int from, int to) {
+                super(from, to, threshold, Spliterator.SIZED | Spliterator.SUBSIZED);
+            }
+
+            @Override
+            protected JSONPathMatch select(int position) {
+                return match.newChild(JsonValues.element(obj, position), position);
+            }
+
+            @Override
+            protected ElementSpliterator range(int from, int to) {
+                return new Elements(from, to);
+            }
+        }
+        return new Elements(0, JsonValues.size(obj));
+    }
+
+    @Override
+    public String toString() {
+        return "*";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WildcardSelector;
+    }
+
+    @Override
+    public int hashCode() {
+        return WildcardSelector.class.hashCode();
+    }
+}
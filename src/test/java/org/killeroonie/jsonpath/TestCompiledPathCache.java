@@ -0,0 +1,218 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.exception.JSONPathNameException;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.lexer.JJPLexer;
+import org.killeroonie.jsonpath.lexer.JJPRulesBuilder;
+import org.killeroonie.jsonpath.parser.BaseParser;
+import org.killeroonie.jsonpath.parser.TokenStream;
+import org.killeroonie.jsonpath.parser.filter.ExpressionType;
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompiledPathCache {
+
+    /**
+     * Skips the tokens of each path, so these tests only depend on the lexer and the compile pipeline.
+     */
+    public static class SkippingParser extends BaseParser {
+        public SkippingParser(JSONPathEnvironment env) {
+            super(env);
+        }
+
+        @Override
+        public List<JSONPathSegment> parse(TokenStream stream) {
+            while (stream.currentKind() != TokenKind.EOF && stream.currentKind() != TokenKind.UNION &&
+                   stream.currentKind() != TokenKind.INTERSECTION) {
+                stream.advance();
+            }
+            return List.of();
+        }
+    }
+
+    private static JSONPathEnvironment newEnv() {
+        return new JSONPathEnvironment(true, true, true,
+                JJPRulesBuilder.class, JJPLexer.class, SkippingParser.class);
+    }
+
+    /**
+     * @return a function without parameters that returns {@code value}.
+     */
+    private static FilterFunction constant(int value) {
+        return new FilterFunction() {
+            @Override
+            public List<ExpressionType> parameterTypes() {
+                return List.of();
+            }
+
+            @Override
+            public ExpressionType returnType() {
+                return ExpressionType.VALUE;
+            }
+
+            @Override
+            public Object call(Object[] arguments) {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    void test_compile_hits_and_misses() {
+        JSONPathEnvironment env = newEnv();
+        CompiledJSONPath first = env.compile("$.a.b");
+        assertInstanceOf(JSONPath.class, first);
+        assertSame(first, env.compile("$.a.b"));
+        assertSame(first, env.compile("$.a.b"));
+        assertNotSame(first, env.compile("$.a.c"));
+
+        CompiledPathCache.Stats stats = env.getPathCache().stats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(0, stats.evictions());
+        assertEquals(2, stats.size());
+        assertEquals(0.5, stats.hitRate());
+    }
+
+    @Test
+    void test_compile_compound_paths() {
+        JSONPathEnvironment env = newEnv();
+        CompiledJSONPath path = env.compile("$.a | $.b & ^.c");
+        CompoundJSONPath compound = assertInstanceOf(CompoundJSONPath.class, path);
+        assertEquals(2, compound.paths.size());
+        assertEquals(env.unionToken, compound.paths.get(0).op());
+        assertEquals(env.intersectionToken, compound.paths.get(1).op());
+        assertSame(path, env.compile("$.a | $.b & ^.c"));
+
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$.a |"));
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$.a & "));
+    }
+
+    @Test
+    void test_syntax_errors_are_not_cached() {
+        JSONPathEnvironment env = newEnv();
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$['a"));
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$['a"));
+        assertEquals(0, env.getPathCache().size());
+        assertEquals(2, env.getPathCache().stats().misses());
+    }
+
+    @Test
+    void test_eviction_is_bounded() {
+        JSONPathEnvironment env = newEnv();
+        env.setPathCacheSize(8);
+        CompiledJSONPath hot = env.compile("$.hot");
+        for (int i = 0; i < 100; i++) {
+            env.compile("$.cold" + i);
+            // keep the hot path referenced, so the clock hand passes over it
+            assertSame(hot, env.compile("$.hot"));
+        }
+        CompiledPathCache cache = env.getPathCache();
+        assertEquals(8, cache.size());
+        assertEquals(93, cache.stats().evictions());
+        assertSame(hot, cache.getIfPresent("$.hot"));
+        assertNull(cache.getIfPresent("$.cold0"));
+        assertNotNull(cache.getIfPresent("$.cold99"));
+    }
+
+    @Test
+    void test_invalidation() {
+        JSONPathEnvironment env = newEnv();
+        env.setPathCacheSize(4);
+        CompiledPathCache cache = env.getPathCache();
+        CompiledJSONPath path = env.compile("$.a");
+        env.compile("$.b");
+        cache.invalidate("$.a");
+        assertNull(cache.getIfPresent("$.a"));
+        assertEquals(1, cache.size());
+        CompiledJSONPath recompiled = env.compile("$.a");
+        assertNotSame(path, recompiled);
+        assertEquals(path, recompiled);
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        for (int i = 0; i < 10; i++) {
+            env.compile("$.x" + i);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(6, cache.stats().evictions());
+    }
+
+    @Test
+    void test_disabled_cache() {
+        JSONPathEnvironment env = newEnv();
+        env.setPathCacheSize(0);
+        CompiledJSONPath path = env.compile("$.a");
+        assertNotSame(path, env.compile("$.a"));
+        assertEquals(path, env.compile("$.a"));
+        assertEquals(0, env.getPathCache().size());
+        assertEquals(3, env.getPathCache().stats().misses());
+        assertThrows(IllegalArgumentException.class, () -> env.setPathCacheSize(-1));
+    }
+
+    @Test
+    void test_concurrent_compiles() throws Exception {
+        JSONPathEnvironment env = newEnv();
+        env.setPathCacheSize(32);
+        final int threads = 16;
+        final int lookups = 2_000;
+        AtomicInteger failures = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < lookups; i++) {
+                        String path = "$.p" + ((i * 31 + seed) % 64);
+                        if (!(env.compile(path) instanceof JSONPath)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        assertEquals(0, failures.get());
+        CompiledPathCache.Stats stats = env.getPathCache().stats();
+        assertEquals((long) threads * lookups, stats.hits() + stats.misses());
+        assertTrue(stats.size() <= 32, "size: " + stats.size());
+    }
+
+    @Test
+    void test_changed_functions_invalidate_the_cache() {
+        JSONPathEnvironment env = new PJPEnv();
+        Map<String, FilterFunction> functions = env.getFunctionExtensions();
+        functions.put("answer", constant(1));
+        CompiledJSONPath first = env.compile("$[?@ == answer()]");
+        assertSame(first, env.compile("$[?@ == answer()]"));
+        assertEquals(List.of(1), first.findall(List.of(1, 2)));
+
+        functions.put("answer", constant(2));
+        assertEquals(0, env.getPathCache().size());
+        CompiledJSONPath replaced = env.compile("$[?@ == answer()]");
+        assertNotSame(first, replaced);
+        assertEquals(List.of(2), replaced.findall(List.of(1, 2)));
+        assertEquals(List.of(1), first.findall(List.of(1, 2))); // paths keep the functions they were compiled with
+
+        functions.keySet().remove("answer");
+        assertThrows(JSONPathNameException.class, () -> env.compile("$[?@ == answer()]"));
+        functions.putIfAbsent("answer", constant(3));
+        assertEquals(List.of(3), env.compile("$[?@ == answer()]").findall(List.of(1, 3)));
+        // setting the same function keeps the cache
+        functions.put("answer", functions.get("answer"));
+        assertEquals(1, env.getPathCache().size());
+    }
+}
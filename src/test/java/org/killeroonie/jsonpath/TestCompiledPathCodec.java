@@ -0,0 +1,351 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.codegen.ClassFileWriter;
+import org.killeroonie.jsonpath.codegen.CodeBuilder;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.lexer.RulesBuilder;
+import org.killeroonie.jsonpath.parser.filter.ExpressionType;
+import org.killeroonie.jsonpath.parser.filter.FilterFunction;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompiledPathCodec {
+
+    private static final List<String> PATHS = List.of(
+            "$.store.book[*].author",
+            "$..book[?@.price < 10 && @.category == 'fiction'].title",
+            "$.a[1:-1:2, 0, 'b']..[*]",
+            "^[?@.name =~ /^a\\u00e9./i]",
+            "$[?count(@.*) > length($.limit) || !(@.x in [1, 2.5, 'x', null])]",
+            "$.a[?@.b == _.c].~ | $.b[?#  != 'k'] & $.c",
+            "$['\\ud83d\\ude00', 'tab\\t'][?value(@..x) == -0]");
+
+    private Path directory;
+
+    /**
+     * Counts the paths it lexes and parses.
+     */
+    private static class CountingEnv extends PJPEnv {
+        final AtomicInteger compiled = new AtomicInteger();
+
+        @Override
+        protected CompiledJSONPath compileUncached(String path) {
+            compiled.incrementAndGet();
+            return super.compileUncached(path);
+        }
+    }
+
+    /**
+     * Also accepts {@code ;} as the union operator, so it has different rules than {@link PJPEnv}.
+     */
+    private static class SemicolonUnionEnv extends CountingEnv {
+        @Override
+        protected Map<TokenKind, RulesBuilder.LexerRule> buildCustomEnvRules() {
+            Map<TokenKind, RulesBuilder.LexerRule> rules = super.buildCustomEnvRules();
+            rules.put(TokenKind.UNION, new RulesBuilder.RegexRule(Pattern.compile("[|;]"), TokenKind.UNION));
+            return rules;
+        }
+    }
+
+    /**
+     * A pure function without parameters that returns {@link #value()}.
+     */
+    public abstract static class ConstantFunction implements FilterFunction {
+        protected abstract int value();
+
+        @Override
+        public List<ExpressionType> parameterTypes() {
+            return List.of();
+        }
+
+        @Override
+        public ExpressionType returnType() {
+            return ExpressionType.VALUE;
+        }
+
+        @Override
+        public Object call(Object[] arguments) {
+            return value();
+        }
+
+        @Override
+        public boolean isPure() {
+            return true;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> ctsPaths() {
+        JSONPathEnvironment env = new PJPEnv();
+        return test_cts.test_load_ctsFile().tests().stream()
+                .filter(c -> !c.isInvalid())
+                .filter(c -> {
+                    try {
+                        env.compile(c.jsonPath());
+                        return true;
+                    } catch (JSONPathSyntaxException e) {
+                        return false; // cases that PJPEnv rejects, see TestPJPParser
+                    }
+                })
+                .map(c -> Arguments.of(Named.of(c.testName(), c)));
+    }
+
+    /**
+     * @return an instance of a build of the class {@code RebuiltFunction}, whose {@code value()} returns
+     * {@code value}, defined by a new class loader like a class of a new version of an application.
+     */
+    private static FilterFunction rebuiltFunction(int value) throws ReflectiveOperationException {
+        String name = "org/killeroonie/jsonpath/RebuiltFunction";
+        ClassFileWriter cf = new ClassFileWriter(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL, name,
+                ConstantFunction.class.getName().replace('.', '/'));
+        cf.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1, 1)
+                .var(CodeBuilder.ALOAD, 0)
+                .invoke(CodeBuilder.INVOKESPECIAL, ConstantFunction.class.getName().replace('.', '/'), "<init>", "()V")
+                .op(CodeBuilder.RETURN);
+        cf.addMethod(ClassFileWriter.ACC_PUBLIC, "value", "()I", 1, 1)
+                .iconst(value)
+                .op(CodeBuilder.IRETURN);
+        byte[] classFile = cf.toByteArray();
+        ClassLoader loader = new ClassLoader(TestCompiledPathCodec.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String className) throws ClassNotFoundException {
+                if (!className.equals(name.replace('/', '.'))) {
+                    throw new ClassNotFoundException(className);
+                }
+                return defineClass(className, classFile, 0, classFile.length);
+            }
+
+            @Override
+            public InputStream getResourceAsStream(String resource) {
+                return resource.equals(name + ".class") ? new ByteArrayInputStream(classFile)
+                        : super.getResourceAsStream(resource);
+            }
+        };
+        return (FilterFunction) loader.loadClass(name.replace('/', '.')).getConstructor().newInstance();
+    }
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("compiled-paths");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("ctsPaths")
+    void test_round_trip(test_cts.CTSTestCase testCase) throws IOException {
+        JSONPathEnvironment env = new PJPEnv();
+        CompiledJSONPath path = env.compile(testCase.jsonPath());
+        CompiledJSONPath loaded = CompiledPathCodec.deserialize(new PJPEnv(), CompiledPathCodec.serialize(path));
+        assertEquals(path, loaded);
+        assertEquals(path.toString(), loaded.toString());
+        assertEquals(path.findall(testCase.rootValue()), loaded.findall(testCase.rootValue()));
+    }
+
+    @Test
+    void test_round_trip_of_extensions() throws IOException {
+        JSONPathEnvironment env = new PJPEnv();
+        for (String string : PATHS) {
+            CompiledJSONPath path = env.compile(string);
+            CompiledJSONPath loaded = CompiledPathCodec.deserialize(env, CompiledPathCodec.serialize(path));
+            assertEquals(path, loaded, string);
+            assertEquals(path.toString(), loaded.toString(), string);
+        }
+    }
+
+    @Test
+    void test_deserialize_checks_the_environment() throws IOException {
+        byte[] bytes = CompiledPathCodec.serialize(new PJPEnv().compile("$.a[?@.b]"));
+        assertEquals(new PJPEnv().getRulesFingerprint(), new PJPEnv().getRulesFingerprint());
+        assertNotEquals(new PJPEnv().getRulesFingerprint(), new SemicolonUnionEnv().getRulesFingerprint());
+        assertThrows(StreamCorruptedException.class,
+                () -> CompiledPathCodec.deserialize(new SemicolonUnionEnv(), bytes));
+        assertThrows(StreamCorruptedException.class,
+                () -> CompiledPathCodec.deserialize(new PJPEnv(), new byte[]{1, 2, 3, 4, 5}));
+        assertThrows(IOException.class,
+                () -> CompiledPathCodec.deserialize(new PJPEnv(), Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    @Test
+    void test_compile_loads_stored_paths() {
+        CountingEnv first = new CountingEnv();
+        first.setCompiledPathDirectory(directory);
+        List<CompiledJSONPath> compiled = new ArrayList<>();
+        for (String path : PATHS) {
+            compiled.add(first.compile(path));
+        }
+        assertEquals(PATHS.size(), first.compiled.get());
+        assertEquals(PATHS.size(), first.getCompiledPathStore().stats().writes());
+        assertThrows(JSONPathSyntaxException.class, () -> first.compile("$['a"));
+        assertEquals(PATHS.size(), first.getCompiledPathStore().size());
+
+        CountingEnv second = new CountingEnv();
+        second.setCompiledPathDirectory(directory);
+        for (int i = 0; i < PATHS.size(); i++) {
+            assertEquals(compiled.get(i), second.compile(PATHS.get(i)));
+        }
+        assertEquals(0, second.compiled.get());
+        CompiledPathStore.Stats stats = second.getCompiledPathStore().stats();
+        assertEquals(PATHS.size(), stats.hits());
+        assertEquals(0, stats.misses());
+        assertEquals(0, stats.failures());
+        assertEquals(List.of(1, 2), second.compile("$[1, 2]").findall(List.of(0, 1, 2)));
+        assertEquals(1, second.compiled.get());
+    }
+
+    @Test
+    void test_changed_rules_use_a_new_file() {
+        CountingEnv pjp = new CountingEnv();
+        pjp.setCompiledPathDirectory(directory);
+        pjp.compile("$.a | $.b");
+
+        SemicolonUnionEnv changed = new SemicolonUnionEnv();
+        changed.setCompiledPathDirectory(directory);
+        assertNotEquals(pjp.getCompiledPathStore().getFile(), changed.getCompiledPathStore().getFile());
+        assertEquals(pjp.compile("$.a | $.b"), changed.compile("$.a ; $.b"));
+        assertEquals(1, changed.compiled.get());
+        assertEquals(0, changed.getCompiledPathStore().stats().hits());
+    }
+
+    @Test
+    void test_damaged_file() throws IOException {
+        CountingEnv first = new CountingEnv();
+        first.setCompiledPathDirectory(directory);
+        for (String path : PATHS) {
+            first.compile(path);
+        }
+        first.setCompiledPathDirectory(null);
+        Path file = directory.resolve(first.getRulesFingerprint() + CompiledPathStore.FILE_EXTENSION);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        CountingEnv second = new CountingEnv();
+        second.setCompiledPathDirectory(directory);
+        for (String path : PATHS) {
+            assertEquals(first.compile(path), second.compile(path));
+        }
+        CompiledPathStore.Stats stats = second.getCompiledPathStore().stats();
+        assertEquals(PATHS.size() - 1, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.writes());
+        assertEquals(1, stats.failures());
+
+        CountingEnv third = new CountingEnv();
+        third.setCompiledPathDirectory(directory);
+        for (String path : PATHS) {
+            third.compile(path);
+        }
+        assertEquals(0, third.compiled.get());
+        assertEquals(0, third.getCompiledPathStore().stats().failures());
+    }
+
+    @Test
+    void test_stores_sharing_a_file() {
+        // both stores read the directory before there is a file, like two processes started together
+        CountingEnv first = new CountingEnv();
+        first.setCompiledPathDirectory(directory);
+        CountingEnv second = new CountingEnv();
+        second.setCompiledPathDirectory(directory);
+        assertEquals(0, first.getCompiledPathStore().size());
+        assertEquals(0, second.getCompiledPathStore().size());
+        for (int i = 0; i < PATHS.size(); i++) {
+            (i % 2 == 0 ? first : second).compile(PATHS.get(i));
+        }
+        assertEquals(PATHS.size(), first.compiled.get() + second.compiled.get());
+        // a store reads the paths appended by the other before it appends its own
+        assertEquals(PATHS.size() - 1, second.getCompiledPathStore().size());
+        assertEquals(PATHS.size(), first.getCompiledPathStore().size());
+
+        CountingEnv third = new CountingEnv();
+        third.setCompiledPathDirectory(directory);
+        for (String path : PATHS) {
+            assertEquals(first.compile(path), third.compile(path));
+        }
+        assertEquals(0, third.compiled.get());
+        assertEquals(PATHS.size(), third.getCompiledPathStore().stats().hits());
+        assertEquals(0, third.getCompiledPathStore().stats().failures());
+    }
+
+    @Test
+    void test_rebuilt_functions_use_a_new_file() throws ReflectiveOperationException {
+        CountingEnv first = new CountingEnv();
+        first.getFunctionExtensions().put("answer", rebuiltFunction(1));
+        first.setCompiledPathDirectory(directory);
+        assertEquals(List.of(0), first.compile("$[?answer() == 1]").findall(List.of(0)));
+
+        // the call was folded into the stored path, so a build whose function returns 2 mustn't load it
+        CountingEnv second = new CountingEnv();
+        second.getFunctionExtensions().put("answer", rebuiltFunction(2));
+        second.setCompiledPathDirectory(directory);
+        assertNotEquals(first.getCompiledPathStore().getFile(), second.getCompiledPathStore().getFile());
+        assertEquals(List.of(), second.compile("$[?answer() == 1]").findall(List.of(0)));
+        assertEquals(1, second.compiled.get());
+
+        CountingEnv third = new CountingEnv();
+        third.getFunctionExtensions().put("answer", rebuiltFunction(1));
+        third.setCompiledPathDirectory(directory);
+        assertEquals(first.getCompiledPathStore().getFile(), third.getCompiledPathStore().getFile());
+        assertEquals(List.of(0), third.compile("$[?answer() == 1]").findall(List.of(0)));
+        assertEquals(0, third.compiled.get());
+    }
+
+    @Test
+    void test_changed_functions_use_a_new_file() throws ReflectiveOperationException {
+        CountingEnv env = new CountingEnv();
+        env.setCompiledPathDirectory(directory);
+        env.getFunctionExtensions().put("answer", rebuiltFunction(1));
+        Path file = env.getCompiledPathStore().getFile();
+        String fingerprint = env.getRulesFingerprint();
+        assertEquals(List.of(0), env.compile("$[?answer() == 1]").findall(List.of(0)));
+
+        env.getFunctionExtensions().put("answer", rebuiltFunction(2));
+        assertNotEquals(fingerprint, env.getRulesFingerprint());
+        assertNotEquals(file, env.getCompiledPathStore().getFile());
+        assertEquals(List.of(), env.compile("$[?answer() == 1]").findall(List.of(0)));
+        assertEquals(2, env.compiled.get());
+
+        // the same build of the function is back, with its file
+        env.getFunctionExtensions().put("answer", rebuiltFunction(1));
+        assertEquals(fingerprint, env.getRulesFingerprint());
+        assertEquals(file, env.getCompiledPathStore().getFile());
+        assertEquals(List.of(0), env.compile("$[?answer() == 1]").findall(List.of(0)));
+        assertEquals(2, env.compiled.get());
+        assertEquals(1, env.getCompiledPathStore().stats().hits());
+    }
+}
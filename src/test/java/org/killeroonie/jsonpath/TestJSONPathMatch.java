@@ -0,0 +1,44 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJSONPathMatch {
+
+    private static JSONPathMatch rootMatch(Object data) {
+        return new JSONPathMatch(new FilterContextVars(), data, null, "$", new ArrayList<>(), data);
+    }
+
+    @Test
+    void test_locations_are_built_from_the_parents() {
+        JSONPathMatch root = rootMatch(List.of());
+        JSONPathMatch child = root.newChild("x", "a'b").newChild("y", 2).newKeyChild("k");
+        assertEquals("$['a\\'b'][2][~'k']", child.path());
+        assertEquals(List.of("a'b", 2, "~k"), child.getParts());
+        assertSame(child.path(), child.path());
+        assertSame(child.getParts(), child.getParts());
+        assertEquals("/a'b/2/~0k", child.pointer().toString());
+    }
+
+    @Test
+    void test_given_locations_are_kept() {
+        JSONPathMatch root = new JSONPathMatch(null, 1, null, "_", List.of("p"), 1);
+        JSONPathMatch child = root.newChild(2, "~q", "_[~'q']").newChild(3, 0);
+        assertEquals("_[~'q'][0]", child.path());
+        assertEquals(List.of("p", "~q", 0), child.getParts());
+    }
+
+    @Test
+    void test_deep_locations() {
+        JSONPathMatch match = rootMatch(List.of());
+        for (int i = 0; i < 100_000; i++) {
+            match = match.newChild(i, 0);
+        }
+        assertEquals(100_000, match.getParts().size());
+        assertEquals(1 + 3 * 100_000, match.path().length());
+    }
+}
@@ -0,0 +1,100 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.evaluator.EvaluationStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that finding the first match visits only the nodes needed to find it.
+ */
+public class TestLazyEvaluation {
+
+    /**
+     * @return a list of {@code elements} that records the name and index of each element read in {@code visited}.
+     */
+    private static List<Object> countingList(List<String> visited, String name, Object... elements) {
+        List<Object> list = new ArrayList<>() {
+            @Override
+            public Object get(int index) {
+                visited.add(name + "[" + index + "]");
+                return super.get(index);
+            }
+        };
+        list.addAll(List.of(elements));
+        return list;
+    }
+
+    static Stream<EvaluationStrategy> strategies() {
+        return Stream.of(EvaluationStrategy.values());
+    }
+
+    /**
+     * @return the strategies whose iterators find matches lazily.
+     */
+    static Stream<EvaluationStrategy> lazyStrategies() {
+        return Stream.of(EvaluationStrategy.INTERPRETER, EvaluationStrategy.VM);
+    }
+
+    private static PJPEnv newEnv(EvaluationStrategy strategy) {
+        PJPEnv env = new PJPEnv();
+        env.setEvaluationStrategy(strategy);
+        return env;
+    }
+
+    @ParameterizedTest
+    @MethodSource("strategies")
+    void test_descent_stops_at_the_first_match(EvaluationStrategy strategy) {
+        List<String> visited = new ArrayList<>();
+        List<Object> data = countingList(visited, "a",
+                countingList(visited, "b", 1, Map.of("x", 1), 2),
+                countingList(visited, "c", Map.of("x", 2)));
+        PJPEnv env = newEnv(strategy);
+        assertEquals("$[0][1]['x']", env.compile("$..x").match(data).path());
+        assertEquals(List.of("a[0]", "b[0]", "b[1]"), visited);
+        visited.clear();
+        assertTrue(env.compile("$..x").exists(data));
+        assertEquals(List.of("a[0]", "b[0]", "b[1]"), visited);
+        assertFalse(env.compile("$..y").exists(data));
+    }
+
+    @ParameterizedTest
+    @MethodSource("strategies")
+    void test_existence_tests_stop_at_the_first_match(EvaluationStrategy strategy) {
+        List<String> visited = new ArrayList<>();
+        List<Object> data = List.of(countingList(visited, "a", Map.of("x", 1), 2, 3), 4);
+        assertEquals(List.of(data.get(0)), newEnv(strategy).compile("$[?@..x]").findall(data));
+        assertEquals(List.of("a[0]"), visited);
+    }
+
+    @ParameterizedTest
+    @MethodSource("lazyStrategies")
+    void test_matches_are_found_as_they_are_pulled(EvaluationStrategy strategy) {
+        List<String> visited = new ArrayList<>();
+        List<Object> first = countingList(visited, "b", 1, 2);
+        List<Object> data = countingList(visited, "a", first, 3);
+        CompiledJSONPath path = newEnv(strategy).compile("$..*");
+        assertSame(first, path.query(data).first().obj);
+        assertEquals(List.of("a[0]"), visited);
+        visited.clear();
+        assertSame(first, path.values(data).iterator().next());
+        assertEquals(List.of("a[0]"), visited);
+    }
+
+    @ParameterizedTest
+    @MethodSource("strategies")
+    void test_unions_are_applied_as_they_are_pulled(EvaluationStrategy strategy) {
+        List<String> visited = new ArrayList<>();
+        List<Object> data = countingList(visited, "a", 1, 2, 3);
+        CompiledJSONPath path = newEnv(strategy).compile("$[0] | $[2] | $[?@ > 1]");
+        assertEquals("$[0]", path.match(data).path());
+        assertEquals(List.of("a[0]"), visited);
+        assertEquals(List.of(1, 3, 2, 3), path.findall(data));
+    }
+}
@@ -0,0 +1,159 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that paths evaluated in parallel find the same matches, in the same order, as paths evaluated sequentially.
+ */
+public class TestParallelEvaluation {
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> ctsCases() {
+        JSONPathEnvironment env = new PJPEnv();
+        return test_cts.test_load_ctsFile().tests().stream()
+                .filter(c -> !c.isInvalid())
+                .filter(c -> {
+                    try {
+                        env.compile(c.jsonPath());
+                        return true;
+                    } catch (JSONPathSyntaxException e) {
+                        return false; // cases that PJPEnv rejects, see TestPJPParser
+                    }
+                })
+                .map(c -> Arguments.of(Named.of(c.testName(), c)));
+    }
+
+    /**
+     * @return an environment that evaluates in parallel the children of arrays and objects of at least
+     * {@code threshold} children.
+     */
+    private static PJPEnv parallelEnv(int threshold) {
+        PJPEnv env = new PJPEnv();
+        env.parallelThreshold = threshold;
+        env.setParallelDescent(true);
+        return env;
+    }
+
+    /**
+     * @return a catalog of {@code size} items, each with a price, some nested in bundles.
+     */
+    private static Map<String, Object> catalog(int size) {
+        List<Object> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("price", i % 100);
+            if (i % 7 == 0) {
+                item.put("bundle", List.of(Map.of("price", -i), List.of(Map.of("price", i + 0.5))));
+            }
+            items.add(item);
+        }
+        Map<String, Object> catalog = new LinkedHashMap<>();
+        catalog.put("items", items);
+        catalog.put("price", 0);
+        return catalog;
+    }
+
+    private static List<String> describe(Iterable<JSONPathMatch> matches) {
+        List<String> result = new ArrayList<>();
+        for (JSONPathMatch match : matches) {
+            result.add(match.path() + " = " + match.obj);
+        }
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("ctsCases")
+    void test_cts(test_cts.CTSTestCase testCase) {
+        // a threshold of 1 splits every array and object
+        CompiledJSONPath parallel = parallelEnv(1).compile(testCase.jsonPath());
+        CompiledJSONPath sequential = new PJPEnv().compile(testCase.jsonPath());
+        assertEquals(describe(sequential.finditer(testCase.rootValue())),
+                describe(parallel.finditer(testCase.rootValue())));
+        assertEquals(describe(sequential.finditer(testCase.rootValue())),
+                describe(parallel.stream(testCase.rootValue()).parallel().toList()));
+        assertEquals(sequential.findall(testCase.rootValue()), parallel.findallParallel(testCase.rootValue()));
+    }
+
+    @Test
+    void test_streams_keep_document_order() {
+        Map<String, Object> data = catalog(50_000);
+        for (String path : List.of("$.items[*].price", "$.items[?@.price > 50 && @.bundle].id",
+                "$.items[-1:0:-3]", "$.items[10:40000:7].bundle[*]", "$.items[*]..price", "$.items[*] | $.price")) {
+            List<Object> expected = new PJPEnv().compile(path).findall(data);
+            assertEquals(expected, parallelEnv(1024).compile(path).findallParallel(data), path);
+            assertEquals(expected, new PJPEnv().compile(path).findallParallel(data), path);
+            assertEquals(expected, parallelEnv(1024).compile(path).stream(data).map(match -> match.obj).toList(), path);
+        }
+    }
+
+    @Test
+    void test_streams_split_big_arrays_only() {
+        PJPEnv env = new PJPEnv();
+        env.parallelThreshold = 100;
+        CompiledJSONPath path = env.compile("$.items[?@.price > 1]");
+        assertNull(path.stream(catalog(99)).spliterator().trySplit());
+        assertNotNull(path.stream(catalog(100)).spliterator().trySplit());
+    }
+
+    @Test
+    void test_streams_in_a_supplied_pool() {
+        Map<String, Object> data = catalog(20_000);
+        CompiledJSONPath path = parallelEnv(256).compile("$.items[?@.price < 10].id");
+        try (ForkJoinPool pool = new ForkJoinPool(3)) {
+            assertEquals(path.findall(data), path.findallParallel(data, null, pool));
+        }
+    }
+
+    @Test
+    void test_descent_keeps_document_order() {
+        Map<String, Object> data = catalog(20_000);
+        for (String path : List.of("$..price", "$..[?@.price > 50].id", "$.items..*")) {
+            List<Object> expected = new PJPEnv().compile(path).findall(data);
+            assertEquals(expected, parallelEnv(64).compile(path).findall(data), path);
+            assertEquals(expected, parallelEnv(1).compile(path).findall(data), path);
+        }
+    }
+
+    @Test
+    void test_descent_in_a_supplied_pool() throws Exception {
+        Map<String, Object> data = catalog(5_000);
+        CompiledJSONPath path = parallelEnv(16).compile("$..price");
+        List<Object> expected = new PJPEnv().compile("$..price").findall(data);
+        try (ForkJoinPool pool = new ForkJoinPool(3)) {
+            assertEquals(expected, pool.submit(() -> path.findall(data)).get());
+        }
+    }
+
+    @Test
+    void test_descent_recursion_limit() {
+        PJPEnv env = parallelEnv(1);
+        env.maxRecursionDepth = 3;
+        CompiledJSONPath path = env.compile("$..a");
+        assertEquals(List.of(1, 2), path.findall(List.of(Map.of("a", 1), Map.of("a", 2))));
+        Object tooDeep = List.of(1, List.of(List.of(List.of())));
+        assertThrows(JSONPathRecursionException.class, () -> path.findall(tooDeep));
+    }
+}
@@ -0,0 +1,74 @@
+package org.killeroonie.jsonpath;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.lexer.Lexer;
+import org.killeroonie.jsonpath.parser.TokenStream;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTokenBuffer {
+
+    @Test
+    void test_buffer_matches_token_list() {
+        Lexer lexer = new JJPEnv().getLexer();
+        String path = "$.foo[?@.bar == 'baz', 1:-1]";
+        TokenBuffer buffer = lexer.tokenizeToBuffer(path);
+        List<Token> tokens = lexer.tokenize(path);
+        assertEquals(tokens, buffer.toList());
+        for (int i = 0; i < buffer.size(); i++) {
+            assertEquals(tokens.get(i).kind(), buffer.kind(i));
+            assertEquals(tokens.get(i).value(), buffer.value(i).toString());
+            assertTrue(buffer.valueEquals(i, tokens.get(i).value()));
+        }
+        assertSame(Token.EOF, buffer.token(buffer.size() - 1));
+    }
+
+    @Test
+    void test_remove_all() {
+        TokenBuffer buffer = new TokenBuffer("$ . foo", 1);
+        buffer.add(TokenKind.ROOT, 0, 1);
+        buffer.add(TokenKind.SPACE, 1, 2);
+        buffer.add(TokenKind.DOT, 2, 3);
+        buffer.add(TokenKind.SPACE, 3, 4);
+        buffer.add(TokenKind.IDENTIFIER, 4, 7);
+        buffer.removeAll(TokenKind.SPACE);
+        assertEquals(3, buffer.size());
+        assertEquals(TokenKind.DOT, buffer.kind(1));
+        assertEquals("foo", buffer.stringValue(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.kind(3));
+    }
+
+    @Test
+    void test_of_token_list() {
+        String path = "$.foo";
+        List<Token> tokens = List.of(
+                new Token(TokenKind.ROOT, "$", 0, path),
+                new Token(TokenKind.DOUBLE_QUOTE_STRING, "not in path", 2, path),
+                Token.EOF);
+        TokenBuffer buffer = TokenBuffer.of(tokens);
+        assertEquals(tokens, buffer.toList());
+        assertEquals("not in path", buffer.value(1));
+    }
+
+    @Test
+    void test_token_stream_lookahead_and_backtrack() {
+        TokenStream stream = new TokenStream(new JJPEnv().getLexer().tokenizeToBuffer("$.foo.bar"));
+        assertEquals(TokenKind.ROOT, stream.currentKind());
+        assertEquals(TokenKind.DOT, stream.peekKind());
+        assertEquals(TokenKind.IDENTIFIER, stream.peekKind(2));
+        int mark = stream.mark();
+        stream.advance();
+        stream.advance();
+        assertEquals("foo", stream.currentValue().toString());
+        stream.reset(mark);
+        assertEquals(TokenKind.ROOT, stream.currentKind());
+        while (stream.hasNext()) {
+            stream.next();
+        }
+        assertEquals(TokenKind.EOF, stream.currentKind());
+        assertEquals(TokenKind.EOF, stream.peekKind());
+        assertEquals(TokenKind.IDENTIFIER, stream.backtrack(2).kind());
+    }
+}
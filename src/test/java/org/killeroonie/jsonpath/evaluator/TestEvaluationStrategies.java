@@ -0,0 +1,167 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.test_cts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that paths evaluated by each {@link EvaluationStrategy}, for each {@link DocumentModel} it reads documents
+ * with, select the same matches as the interpreter. The tests of the features of one strategy are in its own class,
+ * like {@link TestQueryVM} and {@link TestPathCodegen}.
+ */
+public class TestEvaluationStrategies {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<String> PATHS = List.of(
+            "$.a[?@.b == _.c].~",
+            "$..[?@.price <= 10 && !(@.category == 'x' || @.price >= 9)].price",
+            "$.store..book[-1:0:-2, 0, 5, 99999999999].title",
+            "$.store.book[::9007199254740991, -9007199254740991::-9007199254740991]",
+            "$[?count(@..*) > 2 || @.x in [1, 'y'] || @.s =~ /a.c/i]",
+            "$..*",
+            "$..book..price",
+            "$.a[?#  != 'k']");
+
+    private static final String DOCUMENT = """
+            {"store": {"book": [
+                {"title": "a", "price": 8.95, "category": "x"},
+                {"title": "b", "price": 12, "category": "y", "tags": [1, [2, {"price": 1}]]},
+                {"title": "c", "price": 9, "category": "y"},
+                {"title": "d", "price": null}]},
+             "a": {"k": {"b": 1}, "l": {"b": 2}, "m": null},
+             "x": 1, "s": "ABC"}""";
+
+    /**
+     * A strategy, and the document model its environment is set to.
+     */
+    record Evaluator(EvaluationStrategy strategy, DocumentModel model) {
+        @Override
+        public String toString() {
+            return strategy + "/" + model;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the evaluators compared with the interpreter. The VM reads every document model the same way.
+     */
+    static List<Evaluator> evaluators() {
+        List<Evaluator> result = new ArrayList<>();
+        result.add(new Evaluator(EvaluationStrategy.VM, DocumentModel.ANY));
+        for (DocumentModel model : DocumentModel.values()) {
+            result.add(new Evaluator(EvaluationStrategy.BYTECODE, model));
+        }
+        return result;
+    }
+
+    /**
+     * @return the valid CTS cases that {@link PJPEnv} accepts.
+     */
+    static Stream<test_cts.CTSTestCase> validCtsCases() {
+        JSONPathEnvironment env = new PJPEnv();
+        return test_cts.test_load_ctsFile().tests().stream()
+                .filter(c -> !c.isInvalid())
+                .filter(c -> {
+                    try {
+                        env.compile(c.jsonPath());
+                        return true;
+                    } catch (JSONPathSyntaxException e) {
+                        return false; // cases that PJPEnv rejects, see TestPJPParser
+                    }
+                });
+    }
+
+    static Stream<Arguments> ctsCases() {
+        return validCtsCases().flatMap(c -> evaluators().stream()
+                .map(evaluator -> Arguments.of(Named.of(evaluator + ": " + c.testName(), c), evaluator)));
+    }
+
+    static Stream<Arguments> evaluatorCases() {
+        return evaluators().stream().map(evaluator -> Arguments.of(Named.of(evaluator.toString(), evaluator)));
+    }
+
+    static PJPEnv newEnv(EvaluationStrategy strategy, DocumentModel model) {
+        PJPEnv env = new PJPEnv();
+        env.setEvaluationStrategy(strategy);
+        env.setDocumentModel(model);
+        return env;
+    }
+
+    private static List<String> describe(Iterable<JSONPathMatch> matches) {
+        List<String> result = new ArrayList<>();
+        for (JSONPathMatch match : matches) {
+            result.add(match.path() + " " + match.getParts() + " = " + match.obj);
+        }
+        return result;
+    }
+
+    private static List<String> describeEach(CompiledJSONPath path, Object data) {
+        List<String> result = new ArrayList<>();
+        path.forEach(data, (value, cursor) -> {
+            assertSame(value, cursor.value());
+            assertEquals(cursor.parts().size(), cursor.depth());
+            result.add(cursor.path() + " " + cursor.parts() + " = " + value);
+        });
+        return result;
+    }
+
+    /**
+     * Asserts that {@code path} selects the same matches, values and cursors in {@code data} when it's evaluated by
+     * {@code strategy} as when it's interpreted, with both environments set to {@code model}.
+     */
+    static void assertSameMatches(String path, Object data, EvaluationStrategy strategy, DocumentModel model) {
+        CompiledJSONPath interpreted = newEnv(EvaluationStrategy.INTERPRETER, model).compile(path);
+        CompiledJSONPath evaluated = newEnv(strategy, model).compile(path);
+        String message = strategy + "/" + model + ": " + path;
+        List<String> expected = describe(interpreted.finditer(data, null));
+        assertEquals(expected, describe(evaluated.finditer(data, null)), message);
+        assertEquals(expected, describeEach(evaluated, data), message);
+        assertEquals(expected, describeEach(interpreted, data), message);
+        assertEquals(interpreted.findall(data), evaluated.findall(data), message);
+        List<Object> values = new ArrayList<>();
+        evaluated.values(data).forEach(values::add);
+        assertEquals(interpreted.findall(data), values, message);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("ctsCases")
+    void test_cts(test_cts.CTSTestCase testCase, Evaluator evaluator) {
+        Object data = testCase.rootValue();
+        assertSameMatches(testCase.jsonPath(), data, evaluator.strategy(), evaluator.model());
+        assertSameMatches(testCase.jsonPath(), MAPPER.<JsonNode>valueToTree(data), evaluator.strategy(),
+                evaluator.model());
+    }
+
+    @ParameterizedTest
+    @MethodSource("evaluatorCases")
+    void test_extensions(Evaluator evaluator) throws Exception {
+        Object collections = MAPPER.readValue(DOCUMENT, Object.class);
+        for (String path : PATHS) {
+            assertSameMatches(path, collections, evaluator.strategy(), evaluator.model());
+            assertSameMatches(path, DOCUMENT, evaluator.strategy(), evaluator.model());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+import org.killeroonie.jsonpath.test_cts;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that {@link PathCodegen} generates every path, for each {@link DocumentModel}, and the features of generated
+ * paths. Their matches are compared with the interpreter's in {@link TestEvaluationStrategies}.
+ */
+public class TestPathCodegen {
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> ctsCases() {
+        return TestEvaluationStrategies.validCtsCases()
+                .flatMap(c -> Stream.of(DocumentModel.values())
+                        .map(model -> Arguments.of(Named.of(model + ": " + c.testName(), c), model)));
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("ctsCases")
+    void test_generate(test_cts.CTSTestCase testCase, DocumentModel model) {
+        // the matches are compared with the interpreter's in TestEvaluationStrategies
+        JSONPath path = (JSONPath) new PJPEnv().compile(testCase.jsonPath());
+        assertDoesNotThrow(() -> PathCodegen.generate(path, model));
+    }
+
+    @Test
+    void test_mixed_documents() {
+        // Maps holding JsonNodes and JsonNodes of Maps are read through JsonValues
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("node", TestEvaluationStrategies.MAPPER.<JsonNode>valueToTree(Map.of("a", List.of(1, 2, 3))));
+        data.put("list", List.of(Map.of("a", 4), TestEvaluationStrategies.MAPPER.<JsonNode>valueToTree(Map.of("a", 5))));
+        data.put("nothing", null);
+        for (DocumentModel model : DocumentModel.values()) {
+            for (String path : List.of("$..a", "$.*[*]", "$..[?@.a > 1]", "$.node.a[1:]", "$.nothing", "$..a[-1]")) {
+                TestEvaluationStrategies.assertSameMatches(path, data, EvaluationStrategy.BYTECODE, model);
+            }
+        }
+    }
+
+    @Test
+    void test_match_stops_at_the_first_match() {
+        PJPEnv env = TestEvaluationStrategies.newEnv(EvaluationStrategy.BYTECODE, DocumentModel.COLLECTIONS);
+        List<Object> visited = new ArrayList<>();
+        List<Object> data = new ArrayList<>() {
+            @Override
+            public Object get(int index) {
+                visited.add(index);
+                return super.get(index);
+            }
+        };
+        data.addAll(List.of(1, 2, 3, 4));
+        JSONPathMatch match = env.compile("$[?@ > 1]").match(data);
+        assertEquals("$[1]", match.path());
+        assertEquals(List.of(0, 1), visited);
+        assertNull(env.compile("$[?@ > 4]").match(data));
+    }
+
+    @Test
+    void test_recursion_limit() {
+        PJPEnv env = TestEvaluationStrategies.newEnv(EvaluationStrategy.BYTECODE, DocumentModel.ANY);
+        env.maxRecursionDepth = 3;
+        CompiledJSONPath path = env.compile("$..a");
+        assertEquals(List.of(1), path.findall(Map.of("b", Map.of("a", 1))));
+        Object tooDeep = Map.of("b", Map.of("c", Map.of("d", Map.of())));
+        assertThrows(JSONPathRecursionException.class, () -> path.findall(tooDeep));
+    }
+}
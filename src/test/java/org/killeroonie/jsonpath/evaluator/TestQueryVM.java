@@ -0,0 +1,162 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPathMatch;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.PathCursor;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies the features of paths run as {@link PathProgram}s. Their matches are compared with the interpreter's in
+ * {@link TestEvaluationStrategies}.
+ */
+public class TestQueryVM {
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    private static PJPEnv newEnv(EvaluationStrategy strategy) {
+        return TestEvaluationStrategies.newEnv(strategy, DocumentModel.ANY);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @Test
+    void test_vm_is_the_default() {
+        assertEquals(EvaluationStrategy.VM, new PJPEnv().getEvaluationStrategy());
+    }
+
+    @Test
+    void test_program() {
+        PathProgram program = PathProgram.compile((JSONPath) new PJPEnv().compile("$.a..['a', 1:]"));
+        assertEquals("""
+                0: CHILD 5
+                2: NAME 0 ('a')
+                4: END_CHILD
+                5: DESCENDANT 14 0
+                8: NAME 0 ('a')
+                10: SLICE 0 (1::1)
+                12: END_DESCENDANT 5
+                14: EMIT
+                """, program.toString());
+    }
+
+    @Test
+    void test_matches_are_lazy() {
+        List<Object> visited = new ArrayList<>();
+        List<Object> data = new ArrayList<>() {
+            @Override
+            public Object get(int index) {
+                visited.add(index);
+                return super.get(index);
+            }
+        };
+        data.addAll(List.of(1, 2, 3, 4));
+        Iterator<JSONPathMatch> matches = newEnv(EvaluationStrategy.VM).compile("$[?@ > 1]")
+                .finditer(data, null).iterator();
+        assertTrue(visited.isEmpty());
+        assertEquals("$[1]", matches.next().path());
+        assertEquals(List.of(0, 1), visited);
+        assertEquals("$[2]", matches.next().path());
+        assertEquals(List.of(0, 1, 2), visited);
+    }
+
+    @Test
+    void test_for_each_reuses_the_cursor() {
+        List<PathCursor> cursors = new ArrayList<>();
+        List<JSONPathMatch> matches = new ArrayList<>();
+        Object data = Map.of("a", List.of(1, Map.of("b", 2)));
+        newEnv(EvaluationStrategy.VM).compile("$..*").forEach(data, (value, cursor) -> {
+            cursors.add(cursor);
+            matches.add(cursor.toMatch());
+            assertEquals(cursor.toMatch().pointer().toString(), cursor.pointer().toString());
+        });
+        assertEquals(4, cursors.size());
+        assertTrue(cursors.stream().allMatch(cursor -> cursor == cursors.getFirst()));
+        // the matches stay valid after the calls
+        assertEquals(List.of("$['a']", "$['a'][0]", "$['a'][1]", "$['a'][1]['b']"),
+                matches.stream().map(match -> match.path()).toList());
+        assertEquals(List.of("a", 1, "b"), matches.get(3).getParts());
+    }
+
+    @Test
+    void test_deep_documents() {
+        // descending doesn't use the Java stack, whose depth would otherwise limit the document
+        PJPEnv env = newEnv(EvaluationStrategy.VM);
+        env.maxRecursionDepth = 100_000;
+        Object data = 1;
+        for (int i = 0; i < 5_000; i++) {
+            data = List.of(data);
+        }
+        assertEquals(List.of(1), env.compile("$..[?@ == 1]").findall(data));
+    }
+
+    @Test
+    void test_deep_documents_in_the_interpreter() {
+        Object data = 1;
+        for (int i = 0; i < 100_000; i++) {
+            data = List.of(data);
+        }
+        PJPEnv env = newEnv(EvaluationStrategy.INTERPRETER);
+        env.maxRecursionDepth = 200_000;
+        assertEquals(List.of(1), env.compile("$..[?@ == 1]").findall(data));
+        env.setParallelDescent(true);
+        assertEquals(List.of(1), env.compile("$..[?@ == 1]").findall(data));
+    }
+
+    @Test
+    void test_recursion_limit_of_deep_documents() {
+        Object data = 1;
+        for (int i = 0; i < 100_000; i++) {
+            data = List.of(data);
+        }
+        for (EvaluationStrategy strategy : List.of(EvaluationStrategy.INTERPRETER, EvaluationStrategy.VM)) {
+            CompiledJSONPath path = newEnv(strategy).compile("$..*");
+            Object deep = data;
+            assertThrows(JSONPathRecursionException.class, () -> path.findall(deep), strategy.name());
+            // the traversal that failed doesn't keep its stack, so the next one starts from an empty stack
+            assertEquals(List.of(List.of(1), 1), path.findall(List.of(List.of(1))), strategy.name());
+        }
+    }
+
+    @Test
+    void test_vms_are_reused() {
+        JSONPath path = (JSONPath) new PJPEnv().compile("$..a");
+        PathProgram program = PathProgram.compile(path);
+        Object data = Map.of("b", Map.of("a", 1));
+        JSONPathMatch root = path.finditer(data).iterator().next().parent.parent;
+        QueryVM vm = QueryVM.acquire(program, root, false);
+        assertNotSame(vm, QueryVM.acquire(program, root, false)); // a VM in use isn't reused
+        vm.release();
+        assertSame(vm, QueryVM.acquire(program, root, false));
+        vm.release();
+        // running a program to the end releases its VM
+        List<Object> values = new ArrayList<>();
+        program.forEach(root, (value, cursor) -> values.add(value));
+        program.values(root).forEachRemaining(values::add);
+        assertEquals(List.of(1, 1), values);
+        assertSame(vm, QueryVM.acquire(program, root, false));
+    }
+
+    @Test
+    void test_recursion_limit() {
+        PJPEnv env = newEnv(EvaluationStrategy.VM);
+        env.maxRecursionDepth = 3;
+        CompiledJSONPath path = env.compile("$..a");
+        assertEquals(List.of(1), path.findall(Map.of("b", Map.of("a", 1))));
+        Object tooDeep = Map.of("b", Map.of("c", Map.of("d", Map.of())));
+        assertThrows(JSONPathRecursionException.class, () -> path.findall(tooDeep));
+    }
+}
@@ -0,0 +1,107 @@
+package org.killeroonie.jsonpath.evaluator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.CompiledJSONPath;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.test_cts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.killeroonie.jsonpath.JSONPointer.UNDEFINED;
+
+/**
+ * Verifies that singular queries lowered to {@link SingularPath}s select the same node as the other evaluators.
+ */
+public class TestSingularPath {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> singularCtsCases() {
+        JSONPathEnvironment env = new PJPEnv();
+        return test_cts.test_load_ctsFile().tests().stream()
+                .filter(c -> !c.isInvalid())
+                .filter(c -> {
+                    try {
+                        return env.compile(c.jsonPath()) instanceof JSONPath path && path.singularQuery();
+                    } catch (JSONPathSyntaxException e) {
+                        return false; // cases that PJPEnv rejects, see TestPJPParser
+                    }
+                })
+                .map(c -> Arguments.of(Named.of(c.testName(), c)));
+    }
+
+    private static void assertSameNode(CompiledJSONPath path, Object data) {
+        List<Object> expected = path.findall(data);
+        assertTrue(expected.size() <= 1, path.toString());
+        assertEquals(expected.isEmpty() ? UNDEFINED : expected.getFirst(), path.get(data), path.toString());
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("singularCtsCases")
+    void test_cts(test_cts.CTSTestCase testCase) {
+        CompiledJSONPath path = new PJPEnv().compile(testCase.jsonPath());
+        assertSameNode(path, testCase.rootValue());
+        assertSameNode(path, MAPPER.<JsonNode>valueToTree(testCase.rootValue()));
+    }
+
+    @Test
+    void test_compile() {
+        PJPEnv env = new PJPEnv();
+        assertNotNull(SingularPath.compile(((JSONPath) env.compile("$.a[0]['b'][-1]")).segments));
+        assertNotNull(SingularPath.compile(((JSONPath) env.compile("$")).segments));
+        assertNull(SingularPath.compile(((JSONPath) env.compile("$.a[0, 1]")).segments));
+        assertNull(SingularPath.compile(((JSONPath) env.compile("$..a")).segments));
+        assertNull(SingularPath.compile(((JSONPath) env.compile("$.a.*")).segments));
+    }
+
+    @Test
+    void test_get() throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("a", List.of(1, Map.of("b", "c")));
+        data.put("n", null);
+        PJPEnv env = new PJPEnv();
+        assertEquals("c", env.compile("$.a[-1].b").get(data));
+        assertEquals(1, env.compile("$['a'][0]").get(data));
+        assertSame(data, env.compile("$").get(data));
+        assertNull(env.compile("$.n").get(data)); // a null member isn't a missing member
+        assertSame(UNDEFINED, env.compile("$.m").get(data));
+        assertSame(UNDEFINED, env.compile("$.a[2]").get(data));
+        assertSame(UNDEFINED, env.compile("$.a[0].b").get(data));
+        assertSame(UNDEFINED, env.compile("$.a.b").get(data));
+        assertSame(UNDEFINED, env.compile("$[0]").get(data));
+        assertEquals(MAPPER.readTree("\"c\""), env.compile("$.a[1].b").get("{\"a\": [1, {\"b\": \"c\"}]}"));
+    }
+
+    @Test
+    void test_get_other_paths() {
+        Object data = Map.of("a", new ArrayList<>(Arrays.asList(3, 4)));
+        PJPEnv env = new PJPEnv();
+        // paths that aren't singular return their first match
+        assertEquals(3, env.compile("$.a.*").get(data));
+        assertEquals(4, env.compile("$.a[1] | $.a[0]").get(data));
+        assertSame(UNDEFINED, env.compile("$..b").get(data));
+    }
+}
@@ -0,0 +1,84 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.Constants;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenKind;
+import org.killeroonie.jsonpath.parser.Parser;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that {@link CharScanner} and, when the Vector API is present, its vector implementation scan whitespace
+ * runs and string literals exactly as the default rule patterns match them.
+ */
+public class TestCharScanner {
+
+    private static final Pattern SPACES = Pattern.compile(Constants.SPACES_RE);
+    private static final Pattern SINGLE_QUOTE_STRING = Pattern.compile(Constants.SINGLE_QUOTE_STRING_RE);
+    private static final Pattern DOUBLE_QUOTE_STRING = Pattern.compile(Constants.DOUBLE_QUOTE_STRING_RE);
+    // chars that end or escape a literal, or end a whitespace run, mixed with plain chars
+    private static final String ALPHABET = "'\"\\ \t\n\r\u000B\f\u0085  ab$é";
+
+    private static int regexEnd(Pattern pattern, String text, int start) {
+        Matcher matcher = pattern.matcher(text).region(start, text.length());
+        return matcher.lookingAt() ? matcher.end() : -1;
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int parts = random.nextInt(8);
+        for (int i = 0; i < parts; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> sb.append(" ".repeat(random.nextInt(100)));
+                case 1 -> sb.append("x".repeat(random.nextInt(100)));
+                default -> sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void test_scanners_match_default_patterns() {
+        List<CharScanner> scanners = List.of(new CharScanner(), CharScanner.get());
+        Random random = new Random(9535);
+        for (int i = 0; i < 20_000; i++) {
+            char quote = random.nextBoolean() ? Constants.SINGLE_QUOTE_CHAR : Constants.DOUBLE_QUOTE_CHAR;
+            String text = quote + randomText(random);
+            ScannerState scanner = new ScannerState(text);
+            int expected = regexEnd(quote == Constants.SINGLE_QUOTE_CHAR ? SINGLE_QUOTE_STRING : DOUBLE_QUOTE_STRING,
+                    text, 0);
+            for (CharScanner charScanner : scanners) {
+                assertEquals(expected, charScanner.stringLiteralEnd(scanner, 0), text);
+            }
+
+            text = " " + randomText(random);
+            scanner = new ScannerState(text);
+            expected = regexEnd(SPACES, text, 0);
+            for (CharScanner charScanner : scanners) {
+                assertEquals(expected, charScanner.skipBlanks(scanner, 1), text);
+            }
+        }
+    }
+
+    @Test
+    void test_long_literals() {
+        String literal = "'" + "lorem \\' ipsum \"dolor\" ".repeat(500) + "'";
+        String path = "$[?@.a ==" + " ".repeat(1000) + literal + "]";
+        JSONPathEnvironment env = new JSONPathEnvironment(true, true, true,
+                JJPRulesBuilder.class, JJPLexer.class, Parser.class);
+        Lexer lexer = env.getLexer();
+        lexer.setWhitespacePolicy(Lexer.WhitespacePolicy.STRICT);
+        List<Token> tokens = lexer.tokenize(path);
+        assertEquals(TokenKind.SPACE, tokens.get(8).kind());
+        assertEquals(1000, tokens.get(8).value().length());
+        assertEquals(TokenKind.SINGLE_QUOTE_STRING, tokens.get(9).kind());
+        assertEquals(literal, tokens.get(9).value());
+    }
+}
@@ -0,0 +1,25 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.killeroonie.jsonpath.lexer.TestLexerEquivalence.newEnv;
+
+/**
+ * Verifies that the rules compile to the DFA of {@link DFALexer}. Its tokens and syntax errors are compared with
+ * {@link JJPLexer}'s in {@link TestLexerEquivalence}.
+ */
+public class TestDFALexer {
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @Test
+    void test_rules_compile() {
+        DFALexer jjpLexer = (DFALexer) newEnv(JJPRulesBuilder.class, DFALexer.class).getLexer();
+        assertNotNull(jjpLexer.getScannerDFA(), "JJP rules should compile to a DFA");
+        DFALexer rfcLexer = (DFALexer) newEnv(RFCRulesBuilder.class, DFALexer.class).getLexer();
+        assertNotNull(rfcLexer.getScannerDFA(), "RFC rules should compile to a DFA");
+    }
+}
@@ -0,0 +1,41 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.killeroonie.jsonpath.lexer.TestLexerEquivalence.newEnv;
+
+/**
+ * Verifies that {@link GeneratedLexer} generates its scanner class, and scans long tokens and non-ASCII characters. Its
+ * tokens and syntax errors are compared with {@link JJPLexer}'s in {@link TestLexerEquivalence}.
+ */
+public class TestGeneratedLexer {
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @Test
+    void test_scanner_generated() {
+        GeneratedLexer jjpLexer = (GeneratedLexer) newEnv(JJPRulesBuilder.class, GeneratedLexer.class).getLexer();
+        assertTrue(jjpLexer.isScannerGenerated(), "JJP rules should generate a scanner class");
+        GeneratedLexer rfcLexer = (GeneratedLexer) newEnv(RFCRulesBuilder.class, GeneratedLexer.class).getLexer();
+        assertTrue(rfcLexer.isScannerGenerated(), "RFC rules should generate a scanner class");
+    }
+
+    @Test
+    void test_long_tokens_and_non_ascii() {
+        Lexer regexLexer = newEnv(JJPRulesBuilder.class, JJPLexer.class).getLexer();
+        Lexer generatedLexer = newEnv(JJPRulesBuilder.class, GeneratedLexer.class).getLexer();
+        for (String path : List.of(
+                "$['" + "x".repeat(100_000) + "']",
+                "$." + "a".repeat(100_000) + "[" + "9".repeat(1000) + "]",
+                "$['café 😀'].naïve[?@.  == 1]")) {
+            assertEquals(regexLexer.tokenize(path), generatedLexer.tokenize(path));
+        }
+        assertThrows(JSONPathSyntaxException.class, () -> generatedLexer.tokenize("$['foo"));
+    }
+}
@@ -0,0 +1,109 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.*;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.parser.Parser;
+import org.killeroonie.jsonpath.parser.TokenStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that a {@link TokenStream} pulling from {@link Lexer#tokenSource(String)} sees the same tokens as
+ * {@link Lexer#tokenize(String)}, scans no further than it needs to, and keeps a bounded number of tokens.
+ */
+public class TestIncrementalLexer {
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> environments() {
+        Supplier<JSONPathEnvironment> jjp = JJPEnv::new;
+        Supplier<JSONPathEnvironment> rfc = RFCEnv::new;
+        Supplier<JSONPathEnvironment> pjp = PJPEnv::new;
+        Supplier<JSONPathEnvironment> dfa = () -> new JSONPathEnvironment(
+                true, true, true, JJPRulesBuilder.class, DFALexer.class, Parser.class);
+        return Stream.of(
+                Arguments.of(Named.of("JJPEnv", jjp)),
+                Arguments.of(Named.of("RFCEnv", rfc)),
+                Arguments.of(Named.of("PJPEnv", pjp)),
+                Arguments.of(Named.of("DFALexer", dfa)));
+    }
+
+    /**
+     * @return the tokens read from the stream, up to and including EOF.
+     */
+    private static List<Token> drain(TokenStream stream) {
+        final List<Token> tokens = new ArrayList<>();
+        tokens.add(stream.current());
+        while (stream.currentKind() != TokenKind.EOF) {
+            tokens.add(stream.next());
+        }
+        return tokens;
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("environments")
+    void test_same_tokens_as_tokenize(Supplier<JSONPathEnvironment> envSupplier) {
+        final Lexer lexer = envSupplier.get().getLexer();
+        for (Lexer.WhitespacePolicy policy : Lexer.WhitespacePolicy.values()) {
+            lexer.setWhitespacePolicy(policy);
+            for (test_cts.CTSTestCase testCase : test_cts.test_load_ctsFile().tests()) {
+                final String path = testCase.jsonPath();
+                List<Token> expected;
+                try {
+                    expected = lexer.tokenize(path);
+                } catch (JSONPathSyntaxException e) {
+                    JSONPathSyntaxException actual = assertThrows(JSONPathSyntaxException.class,
+                            () -> drain(new TokenStream(lexer.tokenSource(path))));
+                    assertEquals(e.getMessage(), actual.getMessage());
+                    continue;
+                }
+                assertEquals(expected, drain(new TokenStream(lexer.tokenSource(path))),
+                        "Tokenization of `%s` with %s policy".formatted(path, policy));
+            }
+        }
+    }
+
+    @Test
+    void test_syntax_error_stops_scan() {
+        final Lexer lexer = new JJPEnv().getLexer();
+        final String path = "$.foo`" + ".bar".repeat(100_000);
+        final TokenSource source = lexer.tokenSource(path);
+        final TokenStream stream = new TokenStream(source);
+        assertEquals(TokenKind.ROOT, stream.currentKind());
+        assertEquals(TokenKind.DOT, stream.advance());
+        assertEquals(TokenKind.IDENTIFIER, stream.advance());
+        assertThrows(JSONPathSyntaxException.class, stream::advance);
+        assertTrue(source.buffer().size() <= 3, "Scanned past the syntax error");
+    }
+
+    @Test
+    void test_retained_tokens_are_bounded() {
+        final Lexer lexer = new JJPEnv().getLexer();
+        final int segments = 50_000;
+        final TokenStream stream = new TokenStream(lexer.tokenSource("$" + ".foo".repeat(segments)));
+        int count = 1;
+        while (stream.advance() != TokenKind.EOF) {
+            count++;
+            assertTrue(stream.buffer().size() <= 2 * TokenStream.RETAINED_TOKENS + 1);
+        }
+        assertEquals(1 + 2 * segments, count);
+        assertEquals(TokenKind.IDENTIFIER, stream.backtrack(TokenStream.RETAINED_TOKENS - 1).kind());
+        assertThrows(IllegalStateException.class, () -> stream.reset(0));
+    }
+}
@@ -0,0 +1,80 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Test;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.TokenKind;
+import org.killeroonie.jsonpath.parser.Parser;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLexemeTable {
+
+    @Test
+    void test_lookups() {
+        Map<String, TokenKind> lexemes = new LinkedHashMap<>();
+        lexemes.put("$", TokenKind.ROOT);
+        lexemes.put("==", TokenKind.EQ);
+        lexemes.put("!=", TokenKind.NE);
+        lexemes.put("and", TokenKind.AND);
+        Map<String, TokenKind> keywords = Map.of("and", TokenKind.AND, "true", TokenKind.TRUE);
+        LexemeTable table = new LexemeTable(lexemes, keywords);
+
+        assertEquals(TokenKind.ROOT, table.oneChar('$'));
+        assertNull(table.oneChar('#'));
+        assertNull(table.oneChar('€'));
+        String text = "a!=b==";
+        assertEquals(TokenKind.NE, table.twoChars(text, 1));
+        assertEquals(TokenKind.EQ, table.twoChars(text, 4));
+        assertNull(table.twoChars(text, 2));
+        assertNull(table.twoChars(text, 5));
+        text = "x.true.and.trueish";
+        assertEquals(TokenKind.TRUE, table.keyword(text, 2, 6));
+        assertEquals(TokenKind.AND, table.keyword(text, 7, 10));
+        assertNull(table.keyword(text, 11, 18));
+        assertNull(table.keyword(text, 11, 14));
+    }
+
+    @Test
+    void test_keywords_with_equal_hash_codes() {
+        // "Aa" and "BB" have the same String.hashCode(), so these keywords can't all have their own slot
+        Map<String, TokenKind> keywords = new LinkedHashMap<>();
+        keywords.put("Aa", TokenKind.AND);
+        keywords.put("BB", TokenKind.OR);
+        keywords.put("AaAa", TokenKind.TRUE);
+        keywords.put("BBBB", TokenKind.FALSE);
+        keywords.put("AaBB", TokenKind.NULL);
+        LexemeTable table = new LexemeTable(Map.of(), keywords);
+        String text = "Aa BB AaAa BBBB AaBB BBAa";
+        assertEquals(TokenKind.AND, table.keyword(text, 0, 2));
+        assertEquals(TokenKind.OR, table.keyword(text, 3, 5));
+        assertEquals(TokenKind.TRUE, table.keyword(text, 6, 10));
+        assertEquals(TokenKind.FALSE, table.keyword(text, 11, 15));
+        assertEquals(TokenKind.NULL, table.keyword(text, 16, 20));
+        assertNull(table.keyword(text, 21, 25));
+    }
+
+    @Test
+    void test_custom_env_lexemes() {
+        JSONPathEnvironment env = new JSONPathEnvironment(true, true, true,
+                JJPRulesBuilder.class, JJPLexer.class, Parser.class) {
+            @Override
+            protected Map<TokenKind, RulesBuilder.LexerRule> buildCustomEnvRules() {
+                Map<TokenKind, RulesBuilder.LexerRule> rules = new LinkedHashMap<>();
+                rules.put(TokenKind.PSEUDO_ROOT, new RulesBuilder.LexemeRule("%", TokenKind.PSEUDO_ROOT));
+                rules.put(TokenKind.NE, new RulesBuilder.LexemeRule("<>", TokenKind.NE));
+                rules.put(TokenKind.AND_EXT, new RulesBuilder.LexemeRule("also", TokenKind.AND));
+                return rules;
+            }
+        };
+        List<Token> tokens = env.getLexer().tokenize("%[?@.a <> 1 also @.b]");
+        List<TokenKind> kinds = tokens.stream().map(Token::kind).toList();
+        assertEquals(List.of(TokenKind.PSEUDO_ROOT, TokenKind.LIST_START, TokenKind.FILTER, TokenKind.SELF,
+                TokenKind.DOT, TokenKind.IDENTIFIER, TokenKind.NE, TokenKind.NUMBER, TokenKind.AND, TokenKind.SELF,
+                TokenKind.DOT, TokenKind.IDENTIFIER, TokenKind.RBRACKET, TokenKind.EOF), kinds);
+    }
+}
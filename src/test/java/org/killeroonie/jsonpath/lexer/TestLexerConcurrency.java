@@ -0,0 +1,105 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.*;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.parser.Parser;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tokenizes the CTS selectors from many virtual threads sharing one environment, and checks every result against
+ * the result of tokenizing on a single thread.
+ */
+public class TestLexerConcurrency {
+
+    private static final int THREAD_COUNT = 64;
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> environments() {
+        Supplier<JSONPathEnvironment> jjp = JJPEnv::new;
+        Supplier<JSONPathEnvironment> rfc = RFCEnv::new;
+        Supplier<JSONPathEnvironment> pjp = PJPEnv::new;
+        Supplier<JSONPathEnvironment> dfa = () -> new JSONPathEnvironment(
+                true, true, true, JJPRulesBuilder.class, DFALexer.class, Parser.class);
+        Supplier<JSONPathEnvironment> generated = () -> new JSONPathEnvironment(
+                true, true, true, JJPRulesBuilder.class, GeneratedLexer.class, Parser.class);
+        return Stream.of(
+                Arguments.of(Named.of("JJPEnv", jjp)),
+                Arguments.of(Named.of("RFCEnv", rfc)),
+                Arguments.of(Named.of("PJPEnv", pjp)),
+                Arguments.of(Named.of("DFALexer", dfa)),
+                Arguments.of(Named.of("GeneratedLexer", generated)));
+    }
+
+    private static List<String> selectors() {
+        return test_cts.test_load_ctsFile().tests().stream()
+                .map(test_cts.CTSTestCase::jsonPath)
+                .toList();
+    }
+
+    /**
+     * @return the tokens as a String, or the syntax error message.
+     */
+    private static String tokenize(Lexer lexer, String path) {
+        try {
+            return lexer.tokenize(path).toString();
+        } catch (JSONPathSyntaxException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("environments")
+    void test_shared_lexer(Supplier<JSONPathEnvironment> envSupplier) throws Exception {
+        final List<String> paths = selectors();
+        final Lexer referenceLexer = envSupplier.get().getLexer();
+        final Map<String, String> expected = new HashMap<>();
+        for (String path : paths) {
+            expected.put(path, tokenize(referenceLexer, path));
+        }
+
+        // a new environment, so the threads also race to initialize the lexer and its rules
+        final JSONPathEnvironment sharedEnv = envSupplier.get();
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final List<Future<Integer>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                final List<String> shuffled = new ArrayList<>(paths);
+                Collections.shuffle(shuffled, new Random(i));
+                results.add(executor.submit(() -> {
+                    startGate.await();
+                    int mismatches = 0;
+                    for (String path : shuffled) {
+                        if (!expected.get(path).equals(tokenize(sharedEnv.getLexer(), path))) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            startGate.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get(), "Tokens from concurrent tokenize() calls differ");
+            }
+        }
+    }
+}
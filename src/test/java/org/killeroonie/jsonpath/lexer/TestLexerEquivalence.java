@@ -0,0 +1,88 @@
+package org.killeroonie.jsonpath.lexer;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.Token;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.parser.Parser;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that the lexers that compile the rules, {@link DFALexer} and {@link GeneratedLexer}, produce exactly the same
+ * tokens and syntax errors as {@link JJPLexer}. The tests of the features of one lexer are in its own class, like
+ * {@link TestDFALexer} and {@link TestGeneratedLexer}.
+ */
+public class TestLexerEquivalence {
+
+    private static final List<Class<? extends Lexer>> LEXER_CLASSES = List.of(DFALexer.class, GeneratedLexer.class);
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> allTestCases() {
+        Stream<Arguments> jjpTests = Stream.of("cts.jjplexer.json", "test_lex.json")
+                .flatMap(fileName -> Helper.load(fileName).tests().stream())
+                .flatMap(c -> LEXER_CLASSES.stream().map(lexerClass -> Arguments.of(
+                        Named.of(lexerClass.getSimpleName() + " JJP: " + c.description(), c),
+                        JJPRulesBuilder.class, lexerClass)));
+
+        Stream<Arguments> rfcTests = Helper.load("cts.rfc.json").tests().stream()
+                .flatMap(c -> LEXER_CLASSES.stream().map(lexerClass -> Arguments.of(
+                        Named.of(lexerClass.getSimpleName() + " RFC: " + c.description(), c),
+                        RFCRulesBuilder.class, lexerClass)));
+
+        return Stream.concat(jjpTests, rfcTests);
+    }
+
+    static Stream<Arguments> lexerClasses() {
+        return LEXER_CLASSES.stream().map(lexerClass -> Arguments.of(Named.of(lexerClass.getSimpleName(), lexerClass)));
+    }
+
+    static JSONPathEnvironment newEnv(Class<? extends RulesBuilder> rulesBuilderClass,
+                                      Class<? extends Lexer> lexerClass) {
+        return new JSONPathEnvironment(true, true, true, rulesBuilderClass, lexerClass, Parser.class);
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("lexerClasses")
+    void test_unterminated_string(Class<? extends Lexer> lexerClass) {
+        Lexer lexer = newEnv(JJPRulesBuilder.class, lexerClass).getLexer();
+        assertThrows(JSONPathSyntaxException.class, () -> lexer.tokenize("$['foo"));
+        assertThrows(JSONPathSyntaxException.class, () -> lexer.tokenize("$[\"foo]"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("allTestCases")
+    void test_tokenize(Helper.Case testCase, Class<? extends RulesBuilder> rulesBuilderClass,
+                       Class<? extends Lexer> lexerClass) {
+        for (Lexer.WhitespacePolicy policy : Lexer.WhitespacePolicy.values()) {
+            Lexer regexLexer = newEnv(rulesBuilderClass, JJPLexer.class).getLexer();
+            Lexer lexer = newEnv(rulesBuilderClass, lexerClass).getLexer();
+            regexLexer.setWhitespacePolicy(policy);
+            lexer.setWhitespacePolicy(policy);
+            List<Token> expected;
+            try {
+                expected = regexLexer.tokenize(testCase.path());
+            } catch (JSONPathSyntaxException e) {
+                JSONPathSyntaxException actual = assertThrows(JSONPathSyntaxException.class,
+                        () -> lexer.tokenize(testCase.path()));
+                assertEquals(e.getMessage(), actual.getMessage());
+                continue;
+            }
+            assertEquals(expected, lexer.tokenize(testCase.path()),
+                    "Tokenization of `%s` with %s policy".formatted(testCase.path(), policy));
+        }
+    }
+}
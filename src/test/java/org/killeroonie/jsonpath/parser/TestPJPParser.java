@@ -0,0 +1,251 @@
+package org.killeroonie.jsonpath.parser;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.*;
+import org.killeroonie.jsonpath.exception.JSONPathException;
+import org.killeroonie.jsonpath.exception.JSONPathNameException;
+import org.killeroonie.jsonpath.exception.JSONPathRecursionException;
+import org.killeroonie.jsonpath.exception.JSONPathSyntaxException;
+import org.killeroonie.jsonpath.exception.JSONPathTypeException;
+import org.killeroonie.jsonpath.parser.filter.Comparison;
+import org.killeroonie.jsonpath.parser.filter.ComparisonOperator;
+import org.killeroonie.jsonpath.parser.filter.FilterQuery;
+import org.killeroonie.jsonpath.parser.filter.Literal;
+import org.killeroonie.jsonpath.parser.filter.Logical;
+import org.killeroonie.jsonpath.parser.filter.LogicalOperator;
+import org.killeroonie.jsonpath.parser.filter.Not;
+import org.killeroonie.jsonpath.parser.segment.JSONPathChildSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathRecursiveDescentSegment;
+import org.killeroonie.jsonpath.parser.segment.JSONPathSegment;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+import org.killeroonie.jsonpath.parser.selector.IndexSelector;
+import org.killeroonie.jsonpath.parser.selector.JSONPathSelector;
+import org.killeroonie.jsonpath.parser.selector.NameSelector;
+import org.killeroonie.jsonpath.parser.selector.SliceSelector;
+import org.killeroonie.jsonpath.parser.selector.WildcardSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles the CTS selectors with {@link PJPEnv} and checks the values and normalized paths of the matches.
+ */
+public class TestPJPParser {
+
+    /**
+     * CTS tests that PJPEnv is known to fail, with the reason. Like python-jsonpath, the PJP lexer skips whitespace
+     * that RFC 9535 doesn't allow, and accepts capitalized keywords as extensions.
+     */
+    private static final Map<String, String> SKIP = Map.ofEntries(
+            Map.entry("basic, no leading whitespace", "the lexer skips leading whitespace"),
+            Map.entry("basic, no trailing whitespace", "the lexer skips trailing whitespace"),
+            Map.entry("filter, equals number, invalid no int digit", "the lexer skips the '.' of '.1'"),
+            Map.entry("filter, true, incorrectly capitalized", "'True' is an extension keyword"),
+            Map.entry("filter, false, incorrectly capitalized", "'False' is an extension keyword"),
+            Map.entry("filter, null, incorrectly capitalized", "'Null' is an extension keyword"),
+            Map.entry("whitespace, selectors, space between dot and name", "the lexer skips whitespace after '.'"),
+            Map.entry("whitespace, selectors, newline between dot and name", "the lexer skips whitespace after '.'"),
+            Map.entry("whitespace, selectors, tab between dot and name", "the lexer skips whitespace after '.'"),
+            Map.entry("whitespace, selectors, return between dot and name", "the lexer skips whitespace after '.'"),
+            Map.entry("whitespace, selectors, space between recursive descent and name",
+                    "the lexer skips whitespace after '..'"),
+            Map.entry("whitespace, selectors, newline between recursive descent and name",
+                    "the lexer skips whitespace after '..'"),
+            Map.entry("whitespace, selectors, tab between recursive descent and name",
+                    "the lexer skips whitespace after '..'"),
+            Map.entry("whitespace, selectors, return between recursive descent and name",
+                    "the lexer skips whitespace after '..'"));
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> ctsTestCases() {
+        return test_cts.test_load_ctsFile().tests().stream()
+                .filter(c -> !SKIP.containsKey(c.testName()))
+                .map(c -> Arguments.of(Named.of(c.testName(), c)));
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("ctsTestCases")
+    void test_cts(test_cts.CTSTestCase testCase) {
+        JSONPathEnvironment env = new PJPEnv();
+        if (testCase.isInvalid()) {
+            // badly typed filter expressions raise JSONPathTypeException, unknown functions JSONPathNameException
+            assertThrows(JSONPathException.class, () -> env.compile(testCase.jsonPath()));
+            return;
+        }
+        List<Object> values = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (JSONPathMatch match : env.compile(testCase.jsonPath()).finditer(testCase.rootValue())) {
+            values.add(match.obj);
+            paths.add(match.path());
+        }
+        assertTrue(testCase.resultsValues().contains(values),
+                "expected one of %s, got %s".formatted(testCase.resultsValues(), values));
+        assertTrue(testCase.resultsPaths().contains(paths),
+                "expected one of %s, got %s".formatted(testCase.resultsPaths(), paths));
+    }
+
+    @Test
+    void test_segments() {
+        JSONPathEnvironment env = new PJPEnv();
+        JSONPath path = (JSONPath) env.compile("$.a['b', 1][1:-1:2]..*");
+        assertEquals(4, path.segments.size());
+        JSONPathSegment names = path.segments.get(1);
+        assertInstanceOf(JSONPathChildSegment.class, names);
+        assertEquals(List.of(new NameSelector(null, "b", false), new IndexSelector(null, 1)), names.selectors());
+        SliceSelector slice = assertInstanceOf(SliceSelector.class, path.segments.get(2).selector(0));
+        assertEquals(1L, slice.getStart());
+        assertEquals(-1L, slice.getStop());
+        assertEquals(2L, slice.getStep());
+        JSONPathSegment descendants = path.segments.get(3);
+        assertInstanceOf(JSONPathRecursiveDescentSegment.class, descendants);
+        assertInstanceOf(WildcardSelector.class, descendants.selector(0));
+        assertEquals("$['a']['b', 1][1:-1:2]..[*]", path.toString());
+        assertThrows(UnsupportedOperationException.class, () -> names.selectors().add(null));
+    }
+
+    @Test
+    void test_singular_query() {
+        JSONPathEnvironment env = new PJPEnv();
+        assertTrue(((JSONPath) env.compile("$.a[0]['b']")).singularQuery());
+        assertTrue(((JSONPath) env.compile("$")).singularQuery());
+        assertFalse(((JSONPath) env.compile("$.a[0, 1]")).singularQuery());
+        assertFalse(((JSONPath) env.compile("$.a[*]")).singularQuery());
+        assertFalse(((JSONPath) env.compile("$..a")).singularQuery());
+    }
+
+    @Test
+    void test_string_literals() {
+        JSONPathEnvironment env = new PJPEnv();
+        Map<String, Object> data = Map.of("a'b", 1, "\u00e9\n", 2, "\ud83d\ude00", 3);
+        assertEquals(List.of(1), env.compile("$['a\\'b']").findall(data));
+        assertEquals(List.of(2), env.compile("$[\"\\u00E9\\n\"]").findall(data));
+        assertEquals(List.of(3), env.compile("$['\\uD83D\\uDE00']").findall(data));
+        assertEquals("$['a\\'b']", env.compile("$[\"a'b\"]").toString());
+    }
+
+    @Test
+    void test_json_text_and_keys_selector() {
+        JSONPathEnvironment env = new PJPEnv();
+        CompiledJSONPath path = env.compile("$.a.~");
+        List<String> paths = new ArrayList<>();
+        List<Object> keys = new ArrayList<>();
+        for (JSONPathMatch match : path.finditer("{\"a\": {\"x\": 1, \"y\": [2]}}")) {
+            keys.add(match.obj);
+            paths.add(match.path());
+        }
+        assertEquals(List.of("x", "y"), keys);
+        assertEquals(List.of("$['a'][~'x']", "$['a'][~'y']"), paths);
+        JSONPathMatch match = env.compile("$.a.y[0]").match("{\"a\": {\"x\": 1, \"y\": [2]}}");
+        assertEquals(List.of("a", "y", 0), match.getParts());
+        assertEquals("/a/y/0", match.pointer().toString());
+    }
+
+    @Test
+    void test_recursion_limit() {
+        JSONPathEnvironment env = new PJPEnv();
+        env.maxRecursionDepth = 10;
+        CompiledJSONPath path = env.compile("$..*");
+        assertEquals(9, path.findall(nestedLists(10)).size());
+        assertThrows(JSONPathRecursionException.class, () -> path.findall(nestedLists(11)));
+    }
+
+    @Test
+    void test_filter_expression_tree() {
+        JSONPathEnvironment env = new PJPEnv();
+        JSONPath path = (JSONPath) env.compile("$[?@.a && (@.b and !(@.c || @.d)) || @.e == 1]");
+        FilterSelector filter = assertInstanceOf(FilterSelector.class, path.segments.getFirst().selector(0));
+        FilterQuery a = (FilterQuery) ((Logical) ((Logical) filter.getExpression()).operands().get(0)).operands().get(0);
+        assertTrue(a.isSingular());
+        assertEquals(FilterQuery.Anchor.SELF, a.getAnchor());
+
+        // the chain of && is one node, and the parentheses leave no node
+        Logical expected = new Logical(LogicalOperator.OR, List.of(
+                new Logical(LogicalOperator.AND, List.of(a, query(env, "b"),
+                        new Not(new Logical(LogicalOperator.OR, List.of(query(env, "c"), query(env, "d")))))),
+                new Comparison(ComparisonOperator.EQ, query(env, "e"), new Literal(1L))));
+        assertEquals(expected, filter.getExpression());
+        assertEquals("$[?(@['a'] && @['b'] && !(@['c'] || @['d'])) || @['e'] == 1]", path.toString());
+
+        // prefix operators bind most tightly
+        assertEquals("$[?!@['a'] && @['b'] in [1, 'x']]", env.compile("$[?!@.a && @.b in [1, 'x']]").toString());
+    }
+
+    @Test
+    void test_deeply_nested_parentheses() {
+        JSONPathEnvironment env = new PJPEnv();
+        env.setPathCacheSize(0);
+        final int depth = 100_000;
+        String nested = "$[?" + "(".repeat(depth) + "@.a" + ")".repeat(depth) + "]";
+        assertEquals(env.compile("$[?@.a]"), env.compile(nested));
+        String chain = "$[?" + "(@.a && ".repeat(depth) + "@.b" + ")".repeat(depth) + "]";
+        Logical and = (Logical) ((FilterSelector) ((JSONPath) env.compile(chain)).segments.getFirst().selector(0))
+                .getExpression();
+        assertEquals(depth + 1, and.operands().size());
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$[?((@.a)]"));
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$[?(@.a))]"));
+        assertThrows(JSONPathSyntaxException.class, () -> env.compile("$[?()]"));
+    }
+
+    @Test
+    void test_filter_well_typedness() {
+        JSONPathEnvironment env = new PJPEnv();
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?@.* == 1]"));
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?length(@.a)]"));
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?count(1) == 1]"));
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?length(@.a, @.b) == 1]"));
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?match(@.a, 'x') == true]"));
+        assertThrows(JSONPathTypeException.class, () -> env.compile("$[?@.a == 1 == true]"));
+        assertThrows(JSONPathNameException.class, () -> env.compile("$[?nosuch(@.a)]"));
+    }
+
+    @Test
+    void test_filter_extensions() {
+        JSONPathEnvironment env = new PJPEnv();
+        Map<String, Object> data = Map.of("items", List.of(
+                Map.of("name", "apple", "tags", List.of("red", "fruit")),
+                Map.of("name", "Banana", "tags", List.of("yellow", "fruit")),
+                Map.of("name", "carrot", "tags", List.of("orange"))));
+        assertEquals(List.of("apple", "carrot"),
+                env.compile("$.items[?@.name in ['apple', 'carrot']].name").findall(data));
+        assertEquals(List.of("apple", "Banana"),
+                env.compile("$.items[?@.tags contains 'fruit'].name").findall(data));
+        assertEquals(List.of("Banana"), env.compile("$.items[?@.name =~ /b.*/i].name").findall(data));
+        assertEquals(List.of("carrot"), env.compile("$.items[?# == 2].name").findall(data));
+        assertEquals(List.of("Banana"), env.compile("$.items[?@.name == _.wanted].name")
+                .findall(data, new FilterContextVars(Map.of("wanted", "Banana"))));
+        assertEquals(List.of("apple", "Banana"),
+                env.compile("$.items[?count(@.tags[?@ == 'fruit']) > 0].name").findall(data));
+    }
+
+    private static FilterQuery query(JSONPathEnvironment env, String name) {
+        return new FilterQuery(FilterQuery.Anchor.SELF,
+                List.of(new JSONPathChildSegment(env, null,
+                        new JSONPathSelector[]{new NameSelector(null, name, true)})));
+    }
+
+    /**
+     * @return {@code depth} nested lists, with an empty list innermost.
+     */
+    private static Object nestedLists(int depth) {
+        Object data = List.of();
+        for (int i = 1; i < depth; i++) {
+            data = List.of(data);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,219 @@
+package org.killeroonie.jsonpath.parser.filter;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.killeroonie.jsonpath.JSONPath;
+import org.killeroonie.jsonpath.JSONPathEnvironment;
+import org.killeroonie.jsonpath.PJPEnv;
+import org.killeroonie.jsonpath.lexer.PJPLexer;
+import org.killeroonie.jsonpath.lexer.PJPRulesBuilder;
+import org.killeroonie.jsonpath.parser.PJPParser;
+import org.killeroonie.jsonpath.parser.selector.FilterSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFilterOptimizer {
+
+    /**
+     * An environment without well-typedness checks, which accepts literals as test expressions.
+     */
+    private static JSONPathEnvironment laxEnv() {
+        return new JSONPathEnvironment(true, true, false, PJPRulesBuilder.class, PJPLexer.class, PJPParser.class);
+    }
+
+    private static FilterExpression filter(JSONPathEnvironment env, String path) {
+        return ((FilterSelector) ((JSONPath) env.compile(path)).segments.getFirst().selector(0)).getExpression();
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// FIXTURE
+    ////////////////////////////////////////////////////////////////////
+
+    static Stream<Arguments> optimizedFilters() {
+        return Stream.of(
+                Arguments.of(Named.of("literal comparison", "$[?1 == 1 && @.x == 1]"), "$[?@['x'] == 1]"),
+                Arguments.of(Named.of("false literal comparison", "$[?@.x == 1 && 'a' > 'b']"), "$[?false]"),
+                Arguments.of(Named.of("function with literal arguments", "$[?length('abc') == 3 || @.x]"),
+                        "$[?true]"),
+                Arguments.of(Named.of("constant disjunct", "$[?@.x || 1 < 0 || @.y]"), "$[?@['x'] || @['y']]"),
+                Arguments.of(Named.of("double negation", "$[?!!@.x]"), "$[?@['x']]"),
+                Arguments.of(Named.of("triple negation", "$[?!!!@.x]"), "$[?!@['x']]"),
+                Arguments.of(Named.of("negated equality", "$[?!(@.x == 1)]"), "$[?@['x'] != 1]"),
+                Arguments.of(Named.of("chain merged after folding", "$[?@.a && (1 == 2 || @.b && @.c)]"),
+                        "$[?@['a'] && @['b'] && @['c']]"),
+                Arguments.of(Named.of("negated constant", "$[?!(1 == 1) || @.x]"), "$[?@['x']]"));
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    /// UNIT TESTS
+    ////////////////////////////////////////////////////////////////////
+
+    @ParameterizedTest
+    @MethodSource("optimizedFilters")
+    void test_optimized_filters(String path, String expected) {
+        JSONPathEnvironment env = new PJPEnv();
+        assertEquals(expected, env.compile(path).toString());
+    }
+
+    @Test
+    void test_constant_operands_in_lax_environment() {
+        JSONPathEnvironment env = laxEnv();
+        assertEquals("$[?@['x'] == 1]", env.compile("$[?true && @.x == 1]").toString());
+        assertEquals("$[?true]", env.compile("$[?@.x == 1 || true]").toString());
+        // a simplified operand of a comparison still evaluates to a Boolean
+        List<Map<String, Object>> data = List.of(Map.of("x", 1), Map.of("y", 2));
+        assertEquals(List.of(Map.of("x", 1)), env.compile("$[?(true && @.x) == true]").findall(data));
+    }
+
+    @Test
+    void test_long_negation_chain() {
+        JSONPathEnvironment env = new PJPEnv();
+        assertEquals(new FilterQuery(FilterQuery.Anchor.SELF, ((JSONPath) env.compile("$.x")).segments),
+                filter(env, "$[?" + "!".repeat(20_000) + "@.x]"));
+        assertInstanceOf(Not.class, filter(env, "$[?" + "!".repeat(20_001) + "@.x]"));
+    }
+
+    @Test
+    void test_root_subexpressions_are_evaluated_once_per_query() {
+        AtomicInteger calls = new AtomicInteger();
+        FilterFunction limit = new FilterFunction() {
+            @Override
+            public List<ExpressionType> parameterTypes() {
+                return List.of(ExpressionType.VALUE);
+            }
+
+            @Override
+            public ExpressionType returnType() {
+                return ExpressionType.VALUE;
+            }
+
+            @Override
+            public Object call(Object[] arguments) {
+                calls.incrementAndGet();
+                return arguments[0];
+            }
+
+            @Override
+            public boolean isPure() {
+                return true;
+            }
+        };
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(Map.of("n", i));
+        }
+        Map<String, Object> data = Map.of("limit", 3, "items", items, "groups", List.of(items, items));
+
+        JSONPathEnvironment env = new PJPEnv();
+        env.getFunctionExtensions().put("limit", limit);
+        FilterExpression expression = filter(env, "$[?@.n < limit($.limit)]");
+        Comparison comparison = assertInstanceOf(Comparison.class, expression);
+        assertInstanceOf(Hoisted.class, comparison.right());
+
+        assertEquals(List.of(0, 1, 2), env.compile("$.items[?@.n < limit($.limit)].n").findall(data));
+        assertEquals(1, calls.get());
+        // once per query, even when the filter is applied to many nodes
+        assertEquals(6, env.compile("$.groups[*][?@.n < limit($.limit)]").findall(data).size());
+        assertEquals(2, calls.get());
+
+        JSONPathEnvironment uncached = new JSONPathEnvironment(false, true, true,
+                PJPRulesBuilder.class, PJPLexer.class, PJPParser.class);
+        uncached.getFunctionExtensions().put("limit", limit);
+        assertInstanceOf(FunctionCall.class, ((Comparison) filter(uncached, "$[?@.n < limit($.limit)]")).right());
+        calls.set(0);
+        assertEquals(List.of(0, 1, 2), uncached.compile("$.items[?@.n < limit($.limit)].n").findall(data));
+        assertEquals(50, calls.get());
+    }
+
+    @Test
+    void test_hoisted_filters_are_equal() {
+        JSONPathEnvironment env = new PJPEnv();
+        env.setPathCacheSize(0);
+        String path = "$.a[?@.b > count($..c) && $.d[?@ == 1]]";
+        assertEquals(env.compile(path), env.compile(path));
+        Logical and = assertInstanceOf(Logical.class, filter(env, "$[?@.b > count($..c) && $.d[?@ == 1]]"));
+        assertInstanceOf(Hoisted.class, ((Comparison) and.operands().get(0)).right());
+        assertInstanceOf(Hoisted.class, and.operands().get(1));
+    }
+
+    @Test
+    void test_impure_functions_are_called_for_each_node() {
+        AtomicInteger ticks = new AtomicInteger();
+        JSONPathEnvironment env = new PJPEnv();
+        env.getFunctionExtensions().put("tick", function(List.of(), arguments -> ticks.incrementAndGet()));
+        env.getFunctionExtensions().put("echo", function(List.of(ExpressionType.VALUE), arguments -> {
+            ticks.incrementAndGet();
+            return arguments[0];
+        }));
+        assertInstanceOf(Comparison.class, filter(env, "$[?tick() > 1]"));
+        assertEquals(0, ticks.get());
+        assertEquals(List.of(2, 3, 4), env.compile("$[?tick() > 1]").findall(List.of(1, 2, 3, 4)));
+        assertEquals(4, ticks.get());
+        // nor hoisted, even if their arguments don't depend on the current node
+        Comparison comparison = assertInstanceOf(Comparison.class, filter(env, "$[?@ < echo($[0])]"));
+        assertInstanceOf(FunctionCall.class, comparison.right());
+    }
+
+    @Test
+    void test_functions_that_throw_are_not_folded() {
+        FilterFunction boom = new FilterFunction() {
+            @Override
+            public List<ExpressionType> parameterTypes() {
+                return List.of(ExpressionType.VALUE);
+            }
+
+            @Override
+            public ExpressionType returnType() {
+                return ExpressionType.LOGICAL;
+            }
+
+            @Override
+            public Object call(Object[] arguments) {
+                throw new IllegalArgumentException("boom");
+            }
+
+            @Override
+            public boolean isPure() {
+                return true;
+            }
+        };
+        JSONPathEnvironment env = new PJPEnv();
+        env.getFunctionExtensions().put("boom", boom);
+        assertFalse(filter(env, "$[?boom(1)]") instanceof Literal);
+        assertEquals(List.of(), env.compile("$[?boom(1)]").findall(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> env.compile("$[?boom(1)]").findall(List.of(1)));
+    }
+
+    /**
+     * @return an impure function of VALUE parameters that returns a VALUE.
+     */
+    private static FilterFunction function(List<ExpressionType> parameterTypes,
+                                           Function<Object[], Object> body) {
+        return new FilterFunction() {
+            @Override
+            public List<ExpressionType> parameterTypes() {
+                return parameterTypes;
+            }
+
+            @Override
+            public ExpressionType returnType() {
+                return ExpressionType.VALUE;
+            }
+
+            @Override
+            public Object call(Object[] arguments) {
+                return body.apply(arguments);
+            }
+        };
+    }
+}